@@ -2,6 +2,7 @@ package org.kin.framework.beans;
 
 import org.kin.framework.collection.CollectionFactories;
 import org.kin.framework.collection.MapFactories;
+import org.kin.framework.collection.PersistentHashMap;
 import org.kin.framework.utils.ClassUtils;
 
 import java.lang.reflect.Array;
@@ -79,6 +80,13 @@ abstract class PolymorphicCopy implements Copy<Object, Object> {
                 newCollection.add(selfCopy(o));
             }
             return newCollection;
+        } else if (PersistentHashMap.class.equals(sourceType)) {
+            //不可变map, 基于editor复制, 保持类型不变
+            PersistentHashMap.Editor<Object, Object> editor = PersistentHashMap.empty().edit();
+            for (Map.Entry entry : ((Map<Object, Object>) source).entrySet()) {
+                editor.put(selfCopy(entry.getKey()), selfCopy(entry.getValue()));
+            }
+            return editor.toPersistentMap();
         } else if (Map.class.isAssignableFrom(sourceType)) {
             //map
             Map<Object, Object> map = (Map<Object, Object>) source;
@@ -1,23 +1,36 @@
 package org.kin.framework.cache;
 
 import com.google.common.base.Preconditions;
+import org.kin.framework.collection.FrequencySketch;
+import org.kin.framework.collection.StripedBucketTable;
 import org.kin.framework.utils.ExceptionUtils;
-import org.kin.framework.utils.HashUtils;
+import org.kin.framework.utils.Maths;
+import org.kin.framework.utils.SysUtils;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
+import java.util.function.ToIntBiFunction;
 import java.util.stream.Collectors;
 
 /**
  * value支持引用计数缓存实现
  * 多锁设计
- * 1. 类似ConcurrentHashMap设计. 基于atomic array + linked list, 储存缓存entry, array寻址策略是hashcode(key) % array size. 这样设计的优势是提高访问缓存entry的并发能力
- * 2. 缓存entry的value访问基于entry对象锁, 因为缓存entry具备引用计数, 当引用计数减少到0时, 才会真正释放, 这里需要同步操作才能保证线程安全
+ * 1. 类似ConcurrentHashMap设计. 基于{@link StripedBucketTable}(atomic array + linked list), 储存缓存entry, 查询无锁, 写操作基于bucket head对象锁,
+ * 缓存entry增多后会并发扩容. 这样设计的优势是提高访问缓存entry的并发能力
+ * 2. 缓存entry的引用计数与removed标识打包成一个int state, 参考netty AbstractReferenceCountedByteBuf, 引用计数>0时的retain/release仅需cas, 无锁;
+ * 仅创建value, 引用计数0->1, 1->0以及移除时才使用entry对象锁, 保证value创建, 空闲entry状态维护以及移除的线程安全
+ * <p>
+ * 可以通过{@link ReferenceCountedCacheOptions}配置容量上限(entry数量或者权重)以及空闲entry过期时间, 此时引用计数减少到0的entry会作为空闲entry保留,
+ * 直到被再次引用或者被驱逐. 空闲entry驱逐默认基于W-TinyLFU, 新的空闲entry先进入window LRU, window满后与main LRU最久未使用的entry比较访问频率, 频率低的被驱逐.
+ * 驱逐在调用线程上分摊执行, 不会有额外线程. 引用计数大于0的entry永远不会被驱逐
  *
  * @author huangjianqin
  * @date 2023/6/27
@@ -25,18 +38,24 @@ import java.util.stream.Collectors;
 @ThreadSafe
 public class ReferenceCountedCache<K, V> {
     @SuppressWarnings("rawtypes")
-    private static final AtomicReferenceFieldUpdater<ReferenceCountedCache, AtomicReferenceArray> UPDATER =
-            AtomicReferenceFieldUpdater.newUpdater(ReferenceCountedCache.class, AtomicReferenceArray.class, "cache");
-
-    /** 原子数组bucket数量 */
+    private static final AtomicReferenceFieldUpdater<ReferenceCountedCache, EntryTable> UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(ReferenceCountedCache.class, EntryTable.class, "cache");
+    /** read buffer分段数量 */
+    private static final int READ_BUFFER_STRIPES = Maths.round2Power2(Math.min(SysUtils.CPU_NUM * 4, 64));
+    /** 每个read buffer可记录的访问次数 */
+    private static final int READ_BUFFER_SIZE = 16;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+    /** 初始bucket数量 */
     private final int bucketSize;
-    /** bucket mask */
-    private final int bucketMask;
 
-    /** bucket数组, lazy init */
-    private volatile AtomicReferenceArray<Entry<K, V>> cache;
+    /** 缓存entry table, lazy init */
+    private volatile EntryTable<K, V> cache;
     /** callback when cache really remove from {@link #cache} */
-    private final BiConsumer<K, V> removeListener;
+    private final RemovalListener<K, V> removeListener;
+    /** 驱逐策略, null表示不保留空闲entry */
+    @Nullable
+    private final Eviction eviction;
 
     public ReferenceCountedCache() {
         this(4);
@@ -52,18 +71,14 @@ public class ReferenceCountedCache<K, V> {
 
     public ReferenceCountedCache(int bucketSize, BiConsumer<K, V> removeListener) {
         this.bucketSize = bucketSize;
-        this.bucketMask = this.bucketSize - 1;
-        this.removeListener = removeListener;
+        this.removeListener = Objects.nonNull(removeListener) ? (k, v, c) -> removeListener.accept(k, v) : null;
+        this.eviction = null;
     }
 
-    /**
-     * 计算bucket数组index
-     *
-     * @param k key
-     * @return bucket数组index
-     */
-    private int index(K k) {
-        return HashUtils.efficientHash(k, bucketMask);
+    public ReferenceCountedCache(ReferenceCountedCacheOptions<K, V> options) {
+        this.bucketSize = options.getBucketSize();
+        this.removeListener = options.getRemovalListener();
+        this.eviction = options.isEvictionEnabled() ? new Eviction(options) : null;
     }
 
     /**
@@ -84,9 +99,17 @@ public class ReferenceCountedCache<K, V> {
      * @param supplier value   supplier
      * @return 缓存value
      */
+    @SuppressWarnings("unchecked")
     public V get(K k, Supplier<V> supplier) {
         Preconditions.checkNotNull(k, "key");
-        return Objects.requireNonNull(getEntry(k, true)).retainedGetOrCreate(supplier);
+        for (; ; ) {
+            Object value = Objects.requireNonNull(getEntry(k, true)).retainedGetOrCreate(supplier, this);
+            if (value != Entry.RETRY) {
+                afterAccess(k);
+                return (V) value;
+            }
+            //entry已被并发移除, 重新获取
+        }
     }
 
     /**
@@ -96,9 +119,31 @@ public class ReferenceCountedCache<K, V> {
      * @return 缓存value
      */
     @Nullable
+    @SuppressWarnings("unchecked")
     public V get(K k) {
         Preconditions.checkNotNull(k, "key");
-        return Objects.requireNonNull(getEntry(k, true)).retainedGet();
+        for (; ; ) {
+            Object value = Objects.requireNonNull(getEntry(k, true)).retainedGet(this);
+            if (value != Entry.RETRY) {
+                afterAccess(k);
+                return (V) value;
+            }
+            //entry已被并发移除, 重新获取
+        }
+    }
+
+    /**
+     * 记录访问频率, 并按需驱逐空闲entry
+     *
+     * @param k 缓存key
+     */
+    private void afterAccess(K k) {
+        if (Objects.isNull(eviction)) {
+            return;
+        }
+
+        eviction.recordAccess(k);
+        eviction.maintenance(false);
     }
 
     /**
@@ -126,82 +171,44 @@ public class ReferenceCountedCache<K, V> {
      * @param newIfAbsent 如果entry不存在, 则创建
      * @return 缓存entry实例
      */
+    @Nullable
+    @SuppressWarnings("unchecked")
     private Entry<K, V> getEntry(K k, boolean newIfAbsent) {
-        AtomicReferenceArray<Entry<K, V>> cache = this.cache;
+        EntryTable<K, V> cache = this.cache;
         if (Objects.isNull(cache)) {
-            //lazy init cache
-            cache = new AtomicReferenceArray<>(bucketSize);
+            if (!newIfAbsent) {
+                return null;
+            }
 
+            //lazy init cache
+            cache = new EntryTable<>(bucketSize);
             if (!UPDATER.compareAndSet(this, null, cache)) {
                 //原子更新失败, 说明其他线程初始化cache了, 重新获取
                 cache = this.cache;
             }
         }
 
-        int i = index(k);
-        Entry<K, V> head = cache.get(i);
-        if (Objects.isNull(head)) {
-            //lazy init linked list head
-            head = new Entry<>();
-            if (newIfAbsent) {
-                //缺省则创建缓存entry
-                //尝试创建head和缓存entry
-                Entry<K, V> entry = new Entry<>(head, k);
-                head.next = entry;
-                entry.prev = head;
-                if (cache.compareAndSet(i, null, head)) {
-                    return entry;
-                } else {
-                    head = cache.get(i);
-                }
-            } else {
-                //尝试创建head
-                if (!cache.compareAndSet(i, null, head)) {
-                    head = cache.get(i);
-                }
-            }
-        }
-
-        synchronized (head) {
-            Entry<K, V> curr = head;
-            for (; ; ) {
-                Entry<K, V> next = curr.next;
-                if (next == null) {
-                    if (newIfAbsent) {
-                        //缺省则创建缓存entry
-                        Entry<K, V> attr = new Entry<>(head, k);
-                        curr.next = attr;
-                        attr.prev = curr;
-                        return attr;
-                    } else {
-                        //直接返回
-                        return null;
-                    }
-                }
-
-                if (next.key.equals(k)) {
-                    return next;
-                }
-                curr = next;
-            }
-        }
+        return newIfAbsent ? cache.getOrCreate(k) : cache.find(k);
     }
 
     /**
      * 调用{@link #removeListener}
      *
-     * @param entry 缓存entry
+     * @param key   缓存key
+     * @param value 缓存value
+     * @param cause 移除原因
      */
-    private void applyRemoveListener(K key, V value) {
+    private void applyRemoveListener(K key, V value, RemovalCause cause) {
         if (Objects.isNull(removeListener)) {
             return;
         }
 
-        removeListener.accept(key, value);
+        removeListener.onRemoval(key, value, cause);
     }
 
     /**
      * 减少该缓存引用计数, 当缓存引用计数<0时, 才会真正从{@link #cache}移除
+     * 如果配置了驱逐策略, 则引用计数减少到0的缓存会作为空闲entry保留, 直到被驱逐
      *
      * @param k 缓存key
      * @return true表示缓存引用计数减少到0
@@ -213,13 +220,16 @@ public class ReferenceCountedCache<K, V> {
         }
 
         V value = entry.getValue();
-        boolean release = entry.release();
+        int state = entry.release(this);
 
-        if (release) {
-            applyRemoveListener(k, value);
+        if (state == Entry.REMOVED) {
+            applyRemoveListener(k, value, RemovalCause.RELEASED);
+        } else if (state == Entry.IDLE) {
+            //保留为空闲entry, 按需驱逐
+            eviction.maintenance(false);
         }
 
-        return release;
+        return state != Entry.RETAINED;
     }
 
     /**
@@ -233,51 +243,47 @@ public class ReferenceCountedCache<K, V> {
             return;
         }
 
-        V value = entry.getValue();
-        entry.remove();
-        applyRemoveListener(k, value);
+        removeExplicitly(entry);
+    }
+
+    /**
+     * 强制移除缓存entry, 仅当本次调用移除了entry才触发{@link #removeListener}, 避免与并发驱逐或者释放重复通知
+     */
+    private void removeExplicitly(Entry<K, V> entry) {
+        V value;
+        boolean removed;
+        synchronized (entry) {
+            value = entry.getValue();
+            removed = entry.remove(this);
+        }
+        if (removed) {
+            applyRemoveListener(entry.getKey(), value, RemovalCause.EXPLICIT);
+        }
+    }
+
+    /**
+     * 立即执行空闲entry驱逐, 一般不需要主动调用, 缓存访问时会分摊执行
+     */
+    public void cleanUp() {
+        if (Objects.nonNull(eviction)) {
+            eviction.maintenance(true);
+        }
     }
 
     /**
      * 强制清空缓存
      */
     public void clear() {
-        AtomicReferenceArray<Entry<K, V>> cache = this.cache;
+        EntryTable<K, V> cache = this.cache;
         if (Objects.isNull(cache)) {
             return;
         }
 
         List<Entry<K, V>> entries = new ArrayList<>();
-        for (int i = 0; i < bucketSize; i++) {
-            Entry<K, V> head = cache.get(i);
-
-            while (!cache.compareAndSet(i, head, null)) {
-                head = cache.get(i);
-            }
-
-            if (Objects.isNull(head)) {
-                continue;
-            }
-
-            synchronized (head) {
-                Entry<K, V> curr = head;
-                for (; ; ) {
-                    Entry<K, V> next = curr.next;
-                    if (Objects.nonNull(next)) {
-                        entries.add(next);
-                        curr = next;
-                    } else {
-                        break;
-                    }
-                }
-            }
-        }
-
+        cache.forEach(entries::add);
         for (Entry<K, V> entry : entries) {
-            K key = entry.getKey();
-            V value = entry.getValue();
-            entry.remove();
-            applyRemoveListener(key, value);
+            //加entry对象锁移除, 与并发驱逐或者释放互斥
+            removeExplicitly(entry);
         }
     }
 
@@ -296,32 +302,13 @@ public class ReferenceCountedCache<K, V> {
      * @return 缓存entry集合
      */
     private Collection<Entry<K, V>> entries() {
-        List<Entry<K, V>> entries = new ArrayList<>();
-        AtomicReferenceArray<Entry<K, V>> cache = this.cache;
-
+        EntryTable<K, V> cache = this.cache;
         if (Objects.isNull(cache)) {
             return Collections.emptyList();
         }
 
-        for (int i = 0; i < bucketSize; i++) {
-            Entry<K, V> head = cache.get(i);
-
-            if (Objects.isNull(head)) {
-                continue;
-            }
-
-            Entry<K, V> curr = head;
-            for (; ; ) {
-                Entry<K, V> next = curr.next;
-                if (Objects.nonNull(next)) {
-                    entries.add(next);
-                    curr = next;
-                } else {
-                    break;
-                }
-            }
-        }
-
+        List<Entry<K, V>> entries = new ArrayList<>();
+        cache.forEach(entries::add);
         return entries;
     }
 
@@ -331,7 +318,17 @@ public class ReferenceCountedCache<K, V> {
      * @return 缓存大小
      */
     public int size() {
-        return entries().size();
+        EntryTable<K, V> cache = this.cache;
+        return Objects.isNull(cache) ? 0 : cache.size();
+    }
+
+    /**
+     * 返回当前缓存权重之和, 仅配置了驱逐策略才有效, 否则返回-1
+     *
+     * @return 缓存权重之和
+     */
+    public long weightedSize() {
+        return Objects.nonNull(eviction) ? eviction.weightedSize.get() : -1;
     }
 
     //getter
@@ -342,123 +339,667 @@ public class ReferenceCountedCache<K, V> {
 
     //----------------------------------------------------------------------------------------------------
 
+    /**
+     * 空闲entry驱逐策略
+     * 空闲entry链表的修改都在entry对象锁内加{@link #lock}执行, 保证链表与entry状态一致;
+     * 而驱逐时先在{@link #lock}内选出victim, 释放锁后再逐个加entry对象锁移除, 锁顺序始终是entry对象锁->{@link #lock}, 避免死锁
+     */
+    final class Eviction {
+        /** 空闲entry链表锁 */
+        private final ReentrantLock lock = new ReentrantLock();
+        /** 缓存最大权重 */
+        private final long maximumWeight;
+        /** entry权重计算, null则每个entry权重为1 */
+        @Nullable
+        private final ToIntBiFunction<K, V> weigher;
+        /** 空闲entry过期时间, 单位纳秒, <=0表示不过期 */
+        private final long expireAfterAccessNanos;
+        /** 空闲entry过期检查间隔, 单位纳秒 */
+        private final long expireCheckIntervalNanos;
+        /** 访问频率估算, null则退化为LRU, 仅在{@link #lock}内修改 */
+        @Nullable
+        private final FrequencySketch sketch;
+        /** 访问记录, 读线程仅写入buffer, 由持有{@link #lock}的线程回放到{@link #sketch}, null则不记录 */
+        @Nullable
+        private final ReadBuffer<K>[] readBuffers;
+        /** window LRU最大权重 */
+        private final long windowMaximumWeight;
+        /** window LRU, 新的空闲entry先进入window */
+        private final LinkedHashSet<Entry<K, V>> window = new LinkedHashSet<>();
+        /** main LRU, 经过准入判断的空闲entry */
+        private final LinkedHashSet<Entry<K, V>> main = new LinkedHashSet<>();
+        /** window LRU当前权重 */
+        private long windowWeight;
+        /** 下次检查空闲entry过期的时间 */
+        private volatile long nextExpireCheckTime;
+        /** 所有entry(包括非空闲entry)权重之和 */
+        private final AtomicLong weightedSize = new AtomicLong();
+
+        private Eviction(ReferenceCountedCacheOptions<K, V> options) {
+            this.maximumWeight = options.getMaximumWeight();
+            this.weigher = options.getWeigher();
+            this.expireAfterAccessNanos = options.getExpireAfterAccessNanos();
+            //过期时间精度约为过期时间的1/16
+            this.expireCheckIntervalNanos = expireAfterAccessNanos >>> 4;
+            this.nextExpireCheckTime = System.nanoTime();
+            if (options.isTinyLfu() && maximumWeight != Long.MAX_VALUE) {
+                this.sketch = new FrequencySketch(maximumWeight);
+                this.readBuffers = newReadBuffers(READ_BUFFER_STRIPES);
+                //window LRU占总容量1%
+                this.windowMaximumWeight = Math.max(1, maximumWeight / 100);
+            } else {
+                this.sketch = null;
+                this.readBuffers = null;
+                this.windowMaximumWeight = Long.MAX_VALUE;
+            }
+        }
+
+        /**
+         * 计算entry权重
+         */
+        private int weigh(K key, V value) {
+            if (Objects.isNull(weigher)) {
+                return 1;
+            }
+            int weight = weigher.applyAsInt(key, value);
+            Preconditions.checkState(weight >= 0, "weight must be greater than or equal to 0");
+            return weight;
+        }
+
+        /**
+         * 记录访问, buffer满了则尝试回放, 获取锁失败则由持有锁的线程回放
+         */
+        private void recordAccess(K key) {
+            if (Objects.isNull(readBuffers)) {
+                return;
+            }
+            int index = (int) Thread.currentThread().getId() & (READ_BUFFER_STRIPES - 1);
+            if (readBuffers[index].offer(key) && lock.tryLock()) {
+                try {
+                    drainReadBuffers();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * 回放所有访问记录, 需在{@link #lock}内调用
+         */
+        private void drainReadBuffers() {
+            if (Objects.isNull(readBuffers)) {
+                return;
+            }
+            for (ReadBuffer<K> buffer : readBuffers) {
+                buffer.drain(sketch);
+            }
+        }
+
+        /**
+         * entry value创建, 需在entry对象锁内调用
+         */
+        private void onCreate(Entry<K, V> entry) {
+            weightedSize.addAndGet(entry.weight);
+        }
+
+        /**
+         * entry成为空闲entry, 需在entry对象锁内调用
+         */
+        private void onIdle(Entry<K, V> entry) {
+            lock.lock();
+            try {
+                unlink(entry);
+                window.add(entry);
+                windowWeight += entry.weight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 空闲entry再次被引用, 需在entry对象锁内调用
+         */
+        private void onActive(Entry<K, V> entry) {
+            lock.lock();
+            try {
+                unlink(entry);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * entry被移除, 需在entry对象锁内调用
+         */
+        private void onRemove(Entry<K, V> entry) {
+            lock.lock();
+            try {
+                unlink(entry);
+            } finally {
+                lock.unlock();
+            }
+            weightedSize.addAndGet(-entry.weight);
+        }
+
+        /**
+         * 从空闲entry链表移除, 需在{@link #lock}内调用
+         */
+        private void unlink(Entry<K, V> entry) {
+            if (window.remove(entry)) {
+                windowWeight -= entry.weight;
+            } else {
+                main.remove(entry);
+            }
+        }
+
+        /**
+         * 驱逐过期空闲entry以及超过容量上限的空闲entry
+         *
+         * @param force true则等待获取锁, 否则获取锁失败则直接返回, 由持有锁的线程完成驱逐
+         */
+        private void maintenance(boolean force) {
+            long now = System.nanoTime();
+            boolean checkExpire = expireAfterAccessNanos > 0 && (force || now - nextExpireCheckTime >= 0);
+            if (!checkExpire && weightedSize.get() <= maximumWeight) {
+                return;
+            }
+
+            List<Entry<K, V>> expired = Collections.emptyList();
+            List<Entry<K, V>> evicted = Collections.emptyList();
+            if (force) {
+                lock.lock();
+            } else if (!lock.tryLock()) {
+                return;
+            }
+            try {
+                //准入判断前先回放访问记录
+                drainReadBuffers();
+                //选出的victim还未真正移除, 需要扣除其权重
+                long size = weightedSize.get();
+                if (checkExpire) {
+                    nextExpireCheckTime = now + expireCheckIntervalNanos;
+                    expired = new ArrayList<>();
+                    size -= expire(window, now, expired);
+                    size -= expire(main, now, expired);
+                }
+
+                if (size > maximumWeight) {
+                    evicted = new ArrayList<>();
+                    size -= admit(size, evicted);
+                    while (size > maximumWeight) {
+                        //优先驱逐main LRU最久未使用的空闲entry
+                        Entry<K, V> victim = first(main.isEmpty() ? window : main);
+                        if (Objects.isNull(victim)) {
+                            //剩下的都是非空闲entry
+                            break;
+                        }
+                        unlink(victim);
+                        evicted.add(victim);
+                        size -= victim.weight;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            evict(expired, RemovalCause.EXPIRED);
+            evict(evicted, RemovalCause.SIZE);
+        }
+
+        /**
+         * 选出{@code idleEntries}中过期的空闲entry, 需在{@link #lock}内调用
+         *
+         * @return 过期entry权重之和
+         */
+        private long expire(LinkedHashSet<Entry<K, V>> idleEntries, long now, List<Entry<K, V>> expired) {
+            long weight = 0;
+            Iterator<Entry<K, V>> iterator = idleEntries.iterator();
+            while (iterator.hasNext()) {
+                Entry<K, V> entry = iterator.next();
+                if (now - entry.idleTime < expireAfterAccessNanos) {
+                    //链表按空闲时间排序, 后面的entry都未过期
+                    break;
+                }
+                iterator.remove();
+                if (idleEntries == window) {
+                    windowWeight -= entry.weight;
+                }
+                expired.add(entry);
+                weight += entry.weight;
+            }
+            return weight;
+        }
+
+        /**
+         * W-TinyLFU准入, window LRU超过容量的空闲entry与main LRU最久未使用的空闲entry比较访问频率, 频率低的被驱逐
+         * 需在{@link #lock}内调用
+         *
+         * @return 被驱逐entry权重之和
+         */
+        private long admit(long size, List<Entry<K, V>> evicted) {
+            long weight = 0;
+            while (windowWeight > windowMaximumWeight) {
+                Entry<K, V> candidate = first(window);
+                window.remove(candidate);
+                windowWeight -= candidate.weight;
+
+                Entry<K, V> victim = first(main);
+                if (Objects.isNull(sketch) || Objects.isNull(victim) || size - weight <= maximumWeight) {
+                    main.add(candidate);
+                    continue;
+                }
+
+                if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                    main.remove(victim);
+                    main.add(candidate);
+                    evicted.add(victim);
+                    weight += victim.weight;
+                } else {
+                    evicted.add(candidate);
+                    weight += candidate.weight;
+                }
+            }
+            return weight;
+        }
+
+        /**
+         * 真正移除选出的空闲entry, 如果entry已被再次引用, 则不会移除
+         */
+        private void evict(List<Entry<K, V>> entries, RemovalCause cause) {
+            for (Entry<K, V> entry : entries) {
+                V value = entry.evictIfIdle(ReferenceCountedCache.this);
+                if (Objects.nonNull(value)) {
+                    applyRemoveListener(entry.getKey(), value, cause);
+                }
+            }
+        }
+
+        @Nullable
+        private Entry<K, V> first(LinkedHashSet<Entry<K, V>> idleEntries) {
+            Iterator<Entry<K, V>> iterator = idleEntries.iterator();
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+    }
+
+    /**
+     * 创建read buffer数组, 唯一的泛型数组unchecked转换
+     */
+    @SuppressWarnings("unchecked")
+    private static <K> ReadBuffer<K>[] newReadBuffers(int size) {
+        ReadBuffer<K>[] readBuffers = (ReadBuffer<K>[]) new ReadBuffer<?>[size];
+        for (int i = 0; i < readBuffers.length; i++) {
+            readBuffers[i] = new ReadBuffer<>();
+        }
+        return readBuffers;
+    }
+
+    /**
+     * 有损的访问记录ring buffer, 多生产者, 单消费者(持有eviction lock的线程)
+     * buffer满了或者cas竞争失败, 则直接丢弃访问记录
+     */
+    private static final class ReadBuffer<K> {
+        private final AtomicLong writeCounter = new AtomicLong();
+        private final AtomicReferenceArray<K> buffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        /** 仅由持有eviction lock的线程修改 */
+        private volatile long readCounter;
+
+        /**
+         * @return buffer是否已满, 需要回放
+         */
+        boolean offer(K key) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            long size = tail - head;
+            if (size >= READ_BUFFER_SIZE) {
+                return true;
+            }
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) (tail & READ_BUFFER_MASK), key);
+                return size + 1 >= READ_BUFFER_SIZE;
+            }
+            return false;
+        }
+
+        /**
+         * 回放所有访问记录, 调用前需持有eviction lock
+         */
+        void drain(FrequencySketch sketch) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            for (; head < tail; head++) {
+                int index = (int) (head & READ_BUFFER_MASK);
+                K key = buffer.get(index);
+                if (key == null) {
+                    //生产者cas成功, 但未写入
+                    break;
+                }
+                buffer.lazySet(index, null);
+                sketch.increment(key);
+            }
+            readCounter = head;
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------
+
+    /**
+     * 基于{@link Object#equals(Object)}匹配key的{@link StripedBucketTable}
+     */
+    private static final class EntryTable<K, V> extends StripedBucketTable<K, Entry<K, V>> {
+        EntryTable(int initialCapacity) {
+            super(initialCapacity);
+        }
+
+        @Override
+        protected int hash(K key) {
+            int h = key.hashCode();
+            //高低位异或 目的是增加hash的复杂度
+            return h ^ (h >>> 16);
+        }
+
+        @Override
+        protected boolean matches(Entry<K, V> node, K key) {
+            return node.key.equals(key);
+        }
+
+        @Override
+        protected Entry<K, V> newHead() {
+            return new Entry<>();
+        }
+
+        @Override
+        protected Entry<K, V> newNode(K key) {
+            return new Entry<>(key);
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------
+
     /** cache entry */
-    private static class Entry<K, V> {
-        /** 所在链表head */
-        private final Entry<K, V> head;
+    private static class Entry<K, V> implements StripedBucketTable.Node<K, Entry<K, V>> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Entry> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+        /** {@link #release(ReferenceCountedCache)}结果, 引用计数仍大于0 */
+        static final int RETAINED = 0;
+        /** {@link #release(ReferenceCountedCache)}结果, 引用计数减少到0, 保留为空闲entry */
+        static final int IDLE = 1;
+        /** {@link #release(ReferenceCountedCache)}结果, 引用计数减少到0, 已移除 */
+        static final int REMOVED = 2;
+        /** entry已被移除, 需重新获取entry */
+        static final Object RETRY = new Object();
+
+        /** state removed标识 */
+        private static final int REMOVED_FLAG = 1;
+        /** state中引用计数单位, 即引用计数存储在state高31位 */
+        private static final int REF_UNIT = 2;
+
+        /** 所在链表head, null表示已移除 */
+        private volatile Entry<K, V> head;
         /** cache key */
         private final K key;
         /** cached value */
-        private V value;
-        /** 计数器 */
-        private int counter;
+        private volatile V value;
+        /** 引用计数 << 1 | removed标识, 一旦标识removed, 则不会再变化 */
+        private volatile int state;
+        /** entry权重, 仅配置了驱逐策略才有效 */
+        private int weight;
+        /** 最近一次成为空闲entry的时间, 仅配置了驱逐策略才有效 */
+        private long idleTime;
 
         /** prev linked list node */
         private Entry<K, V> prev;
         /** next linked list node */
-        private Entry<K, V> next;
+        private volatile Entry<K, V> next;
 
         /**
          * 特殊{@link Entry}实现
          * 用于构造链表head
          */
         private Entry() {
-            this(null, null);
+            this.head = this;
+            this.key = null;
         }
 
-        private Entry(Entry<K, V> head, K key) {
-            this.head = head;
+        private Entry(K key) {
             this.key = key;
         }
 
+        /**
+         * 引用计数>0且未移除时, 无锁递增引用计数
+         *
+         * @return 是否成功
+         */
+        private boolean tryRetain() {
+            for (; ; ) {
+                int state = this.state;
+                if ((state & REMOVED_FLAG) != 0 || state < REF_UNIT) {
+                    //已移除或者引用计数为0, 需加锁处理
+                    return false;
+                }
+                if (state + REF_UNIT < 0) {
+                    throw new IllegalStateException("reference count overflow");
+                }
+                if (STATE_UPDATER.compareAndSet(this, state, state + REF_UNIT)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 引用计数>1且未移除时, 无锁递减引用计数
+         *
+         * @return 是否成功
+         */
+        private boolean tryRelease() {
+            for (; ; ) {
+                int state = this.state;
+                if ((state & REMOVED_FLAG) != 0 || state <= REF_UNIT) {
+                    //已移除或者引用计数即将减少到0, 需加锁处理
+                    return false;
+                }
+                if (STATE_UPDATER.compareAndSet(this, state, state - REF_UNIT)) {
+                    return true;
+                }
+            }
+        }
+
         /**
          * 返回缓存value, 如果不存在则new一个, 同时递增缓存entry引用计数
          *
-         * @return this
+         * @return 缓存value, 或者{@link #RETRY}
          */
-        public synchronized V retainedGetOrCreate(Supplier<V> supplier) {
-            if (value == null) {
-                try {
-                    value = supplier.get();
-                } catch (Exception e) {
-                    //异常则移除缓存entry
-                    remove();
-                    ExceptionUtils.throwExt(e);
+        public Object retainedGetOrCreate(Supplier<V> supplier, ReferenceCountedCache<K, V> cache) {
+            //fast path, value一旦创建, 在移除前都不会变化, 而cas成功则说明entry未被移除
+            V value = this.value;
+            if (Objects.nonNull(value) && tryRetain()) {
+                return value;
+            }
+
+            synchronized (this) {
+                if ((state & REMOVED_FLAG) != 0) {
+                    return RETRY;
                 }
+
+                ReferenceCountedCache<K, V>.Eviction eviction = cache.eviction;
+                if (this.value == null) {
+                    try {
+                        this.value = supplier.get();
+                    } catch (Exception e) {
+                        //异常则移除缓存entry
+                        remove(cache);
+                        ExceptionUtils.throwExt(e);
+                    }
+
+                    if (Objects.nonNull(eviction) && Objects.nonNull(this.value)) {
+                        weight = eviction.weigh(key, this.value);
+                        eviction.onCreate(this);
+                    }
+                } else if (state < REF_UNIT && Objects.nonNull(eviction)) {
+                    //空闲entry再次被引用
+                    eviction.onActive(this);
+                }
+                //锁内引用计数为0时不会被并发修改, 引用计数>0时则可能与无锁retain/release并发, 故使用原子操作
+                STATE_UPDATER.getAndAdd(this, REF_UNIT);
+                return this.value;
             }
-            counter++;
-            return value;
         }
 
         /**
          * 返回缓存value, 同时递增缓存entry引用计数
          *
-         * @return this
+         * @return 缓存value, 或者{@link #RETRY}
          */
-        public synchronized V retainedGet() {
-            counter++;
-            return value;
+        public Object retainedGet(ReferenceCountedCache<K, V> cache) {
+            //先retain再读取value, cas成功则说明entry未被移除, 不会返回已释放entry的value
+            if (tryRetain()) {
+                return this.value;
+            }
+
+            synchronized (this) {
+                if ((state & REMOVED_FLAG) != 0) {
+                    return RETRY;
+                }
+
+                ReferenceCountedCache<K, V>.Eviction eviction = cache.eviction;
+                if (state < REF_UNIT && Objects.nonNull(this.value) && Objects.nonNull(eviction)) {
+                    //空闲entry再次被引用
+                    eviction.onActive(this);
+                }
+                STATE_UPDATER.getAndAdd(this, REF_UNIT);
+                return this.value;
+            }
         }
 
         /**
-         * 缓存entry引用计数-1. 如果引用计数减少到0, 则会从linked list移除
+         * 缓存entry引用计数-1. 如果引用计数减少到0, 则会从linked list移除, 如果配置了驱逐策略, 则保留为空闲entry
          *
-         * @return true if reference count equal to 0 after desc
+         * @return {@link #RETAINED}, {@link #IDLE}或者{@link #REMOVED}
          */
-        public synchronized boolean release() {
-            if (--counter <= 0) {
-                //从链表移除
-                remove();
-                return true;
-            } else {
-                return false;
+        public int release(ReferenceCountedCache<K, V> cache) {
+            if (tryRelease()) {
+                return RETAINED;
+            }
+
+            synchronized (this) {
+                ReferenceCountedCache<K, V>.Eviction eviction = cache.eviction;
+                for (; ; ) {
+                    int state = this.state;
+                    if ((state & REMOVED_FLAG) != 0 || state < REF_UNIT) {
+                        //已移除或者已是空闲entry
+                        return RETAINED;
+                    }
+                    if (state > REF_UNIT) {
+                        //无锁retain并发递增了引用计数
+                        if (STATE_UPDATER.compareAndSet(this, state, state - REF_UNIT)) {
+                            return RETAINED;
+                        }
+                        continue;
+                    }
+
+                    //引用计数减少到0
+                    if (Objects.nonNull(eviction) && Objects.nonNull(value) && head != null) {
+                        if (!STATE_UPDATER.compareAndSet(this, state, 0)) {
+                            continue;
+                        }
+                        //保留为空闲entry
+                        idleTime = System.nanoTime();
+                        eviction.onIdle(this);
+                        return IDLE;
+                    }
+
+                    if (!STATE_UPDATER.compareAndSet(this, state, REMOVED_FLAG)) {
+                        continue;
+                    }
+                    //从链表移除
+                    remove(cache);
+                    return REMOVED;
+                }
             }
         }
 
         /**
          * 不管缓存entry引用计数是多少, 直接移除
+         *
+         * @return true表示本次调用将entry从链表移除, false表示entry之前已被移除
          */
-        public synchronized void remove() {
-            counter = 0;
+        public synchronized boolean remove(ReferenceCountedCache<K, V> cache) {
+            //标识removed, 后续无锁retain/release都会失败
+            STATE_UPDATER.set(this, REMOVED_FLAG);
+            ReferenceCountedCache<K, V>.Eviction eviction = cache.eviction;
+            if (Objects.nonNull(eviction) && Objects.nonNull(value)) {
+                eviction.onRemove(this);
+            }
             value = null;
-            remove0();
+            //从链表移除
+            return cache.cache.unlink(this);
         }
 
         /**
-         * 将该entry从链表移除
+         * 如果是空闲entry, 则移除
+         *
+         * @return 被移除的缓存value, null表示entry已被再次引用或者已移除
          */
-        private void remove0() {
-            synchronized (head) {
-                if (prev == null) {
-                    // Removed before.
-                    return;
-                }
+        @Nullable
+        public synchronized V evictIfIdle(ReferenceCountedCache<K, V> cache) {
+            //锁内引用计数为0时不会被并发修改
+            if (state != 0 || Objects.isNull(value) || head == null) {
+                return null;
+            }
 
-                prev.next = next;
+            V value = this.value;
+            remove(cache);
+            return value;
+        }
 
-                if (next != null) {
-                    next.prev = prev;
-                }
+        //setter && getter
+        @Override
+        public K key() {
+            return key;
+        }
 
-                // Null out prev and next - this will guard against multiple remove0() calls which may corrupt
-                // the linked list for the bucket.
-                prev = null;
-                next = null;
-            }
+        @Override
+        public Entry<K, V> prev() {
+            return prev;
+        }
+
+        @Override
+        public void setPrev(Entry<K, V> prev) {
+            this.prev = prev;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            return next;
+        }
+
+        @Override
+        public void setNext(Entry<K, V> next) {
+            this.next = next;
+        }
+
+        @Override
+        public Entry<K, V> bucket() {
+            return head;
+        }
+
+        @Override
+        public void setBucket(Entry<K, V> bucket) {
+            this.head = bucket;
         }
 
-        //getter
         public K getKey() {
             return key;
         }
 
-        public synchronized V getValue() {
+        public V getValue() {
             return value;
         }
 
         @Override
         public String toString() {
-            return String.format("{k=%s,v={%s,%d}}", key, value, counter);
+            return String.format("{k=%s,v={%s,%d}}", key, value, state >>> 1);
         }
     }
 }
@@ -0,0 +1,149 @@
+package org.kin.framework.cache;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * {@link ReferenceCountedCache}配置
+ * 配置了容量上限或者expire after access后, 引用计数减少到0的entry不会马上移除, 而是作为空闲entry保留,
+ * 直到被再次引用, 或者因容量超过上限被驱逐, 或者空闲时间超过expire after access
+ * 引用计数大于0的entry永远不会被驱逐, 故缓存容量有可能短暂超过上限
+ *
+ * @author huangjianqin
+ * @date 2023/7/16
+ */
+public final class ReferenceCountedCacheOptions<K, V> {
+    /** 原子数组bucket数量 */
+    private int bucketSize = 4;
+    /** 缓存最大权重, 即所有entry权重之和上限 */
+    private long maximumWeight = Long.MAX_VALUE;
+    /** entry权重计算, 默认每个entry权重为1, 即最大权重等价于最大entry数量 */
+    private ToIntBiFunction<K, V> weigher;
+    /** 空闲entry过期时间, 单位纳秒, <=0表示不过期 */
+    private long expireAfterAccessNanos;
+    /** 是否使用W-TinyLFU决定空闲entry的驱逐, 否则使用LRU */
+    private boolean tinyLfu = true;
+    /** callback when cache really remove */
+    private RemovalListener<K, V> removalListener;
+
+    private ReferenceCountedCacheOptions() {
+    }
+
+    /**
+     * @return 是否配置了驱逐策略, 即是否保留空闲entry
+     */
+    boolean isEvictionEnabled() {
+        return maximumWeight != Long.MAX_VALUE || expireAfterAccessNanos > 0;
+    }
+
+    //getter
+    public int getBucketSize() {
+        return bucketSize;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public ToIntBiFunction<K, V> getWeigher() {
+        return weigher;
+    }
+
+    public long getExpireAfterAccessNanos() {
+        return expireAfterAccessNanos;
+    }
+
+    public boolean isTinyLfu() {
+        return tinyLfu;
+    }
+
+    public RemovalListener<K, V> getRemovalListener() {
+        return removalListener;
+    }
+
+    @Override
+    public String toString() {
+        return "ReferenceCountedCacheOptions{" +
+                "bucketSize=" + bucketSize +
+                ", maximumWeight=" + maximumWeight +
+                ", expireAfterAccessNanos=" + expireAfterAccessNanos +
+                ", tinyLfu=" + tinyLfu +
+                '}';
+    }
+
+    //------------------------------------------builder
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    /** builder **/
+    public static class Builder<K, V> {
+        private final ReferenceCountedCacheOptions<K, V> options = new ReferenceCountedCacheOptions<>();
+
+        public Builder<K, V> bucketSize(int bucketSize) {
+            Preconditions.checkArgument(bucketSize > 0, "bucketSize must be greater than 0");
+            options.bucketSize = bucketSize;
+            return this;
+        }
+
+        /**
+         * 最大entry数量
+         */
+        public Builder<K, V> maximumSize(long maximumSize) {
+            Preconditions.checkArgument(maximumSize >= 0, "maximumSize must be greater than or equal to 0");
+            Preconditions.checkState(Objects.isNull(options.weigher), "maximumSize can not be combined with weigher");
+            options.maximumWeight = maximumSize;
+            return this;
+        }
+
+        /**
+         * 最大权重
+         *
+         * @param maximumWeight 最大权重
+         * @param weigher       entry权重计算, 结果必须>=0
+         */
+        public Builder<K, V> maximumWeight(long maximumWeight, ToIntBiFunction<K, V> weigher) {
+            Preconditions.checkArgument(maximumWeight >= 0, "maximumWeight must be greater than or equal to 0");
+            Preconditions.checkNotNull(weigher, "weigher");
+            options.maximumWeight = maximumWeight;
+            options.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * 空闲entry过期时间
+         */
+        public Builder<K, V> expireAfterAccess(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration >= 0, "duration must be greater than or equal to 0");
+            options.expireAfterAccessNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * 是否使用W-TinyLFU决定空闲entry的驱逐, 默认true, 否则使用LRU
+         */
+        public Builder<K, V> tinyLfu(boolean tinyLfu) {
+            options.tinyLfu = tinyLfu;
+            return this;
+        }
+
+        public Builder<K, V> removalListener(RemovalListener<K, V> removalListener) {
+            options.removalListener = removalListener;
+            return this;
+        }
+
+        public Builder<K, V> removalListener(BiConsumer<K, V> removalListener) {
+            Preconditions.checkNotNull(removalListener, "removalListener");
+            options.removalListener = (k, v, c) -> removalListener.accept(k, v);
+            return this;
+        }
+
+        public ReferenceCountedCacheOptions<K, V> build() {
+            return options;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.kin.framework.cache;
+
+/**
+ * 缓存entry被移除的原因
+ *
+ * @author huangjianqin
+ * @date 2023/7/16
+ */
+public enum RemovalCause {
+    /** 通过{@link ReferenceCountedCache#remove(Object)}或者{@link ReferenceCountedCache#clear()}手动移除 */
+    EXPLICIT,
+    /** 引用计数减少到0, 并且没有配置保留空闲entry, 直接移除 */
+    RELEASED,
+    /** 空闲(引用计数为0)时间超过expire after access */
+    EXPIRED,
+    /** 缓存容量(entry数量或者权重)超过上限, 空闲entry被驱逐 */
+    SIZE,
+    ;
+
+    /**
+     * @return 是否因为驱逐策略被移除
+     */
+    public boolean wasEvicted() {
+        return this == EXPIRED || this == SIZE;
+    }
+}
@@ -0,0 +1,19 @@
+package org.kin.framework.cache;
+
+/**
+ * 缓存entry被移除时的callback
+ *
+ * @author huangjianqin
+ * @date 2023/7/16
+ */
+@FunctionalInterface
+public interface RemovalListener<K, V> {
+    /**
+     * 缓存entry被移除时触发, 在触发移除的线程上执行
+     *
+     * @param key   缓存key
+     * @param value 缓存value
+     * @param cause 移除原因
+     */
+    void onRemoval(K key, V value, RemovalCause cause);
+}
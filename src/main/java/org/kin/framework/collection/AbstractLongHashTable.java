@@ -0,0 +1,194 @@
+package org.kin.framework.collection;
+
+/**
+ * long key open addressing hash表基础实现
+ * 线性探测, 删除时使用backward shift而不是墓碑, 以保证查询探测长度不会随着删除操作而退化
+ * key=0作为空slot标识, 故key=0单独存储, 由子类处理
+ * <p>
+ * 每个slot第0个long为key, 其余long由子类自定义, 比如value
+ * 非线程安全
+ *
+ * @author huangjianqin
+ * @date 2023/7/19
+ */
+abstract class AbstractLongHashTable implements AutoCloseable {
+    /** 每个slot的long数量 */
+    private final int width;
+    /** 是否使用堆外存储 */
+    private final boolean offHeap;
+    /** slot存储 */
+    protected LongSlots slots;
+    /** slot数量-1 */
+    protected int mask;
+    /** 扩容阈值 */
+    private int resizeThreshold;
+    /** 非0 key数量 */
+    private int size;
+    /** 是否包含key=0 */
+    protected boolean hasZeroKey;
+
+    protected AbstractLongHashTable(int expectedSize, int width, boolean offHeap) {
+        this.width = width;
+        this.offHeap = offHeap;
+        allocate(PrimitiveCollections.capacity(expectedSize));
+    }
+
+    private void allocate(int capacity) {
+        slots = LongSlots.allocate(capacity, width, offHeap);
+        mask = capacity - 1;
+        resizeThreshold = PrimitiveCollections.resizeThreshold(capacity);
+    }
+
+    /**
+     * 查找key所在slot
+     *
+     * @param key 非0 key
+     * @return key所在slot, 不存在则返回-1
+     */
+    protected final int indexOf(long key) {
+        LongSlots slots = this.slots;
+        int mask = this.mask;
+        int index = PrimitiveCollections.hash(key) & mask;
+        long candidate;
+        while ((candidate = slots.get(index, 0)) != 0) {
+            if (candidate == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 查找key所在slot, 不存在则插入key
+     *
+     * @param key 非0 key
+     * @return key已存在则返回所在slot, 否则返回新插入slot取反(~slot)
+     */
+    protected final int insert(long key) {
+        if (size >= resizeThreshold) {
+            rehash(PrimitiveCollections.nextCapacity(slots.capacity()));
+        }
+
+        LongSlots slots = this.slots;
+        int mask = this.mask;
+        int index = PrimitiveCollections.hash(key) & mask;
+        long candidate;
+        while ((candidate = slots.get(index, 0)) != 0) {
+            if (candidate == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        slots.set(index, 0, key);
+        size++;
+        return ~index;
+    }
+
+    /**
+     * 移除指定slot, 并把后续同一探测链上的slot往前移, 填补空缺
+     */
+    protected final void removeAt(int index) {
+        LongSlots slots = this.slots;
+        int mask = this.mask;
+        int gap = index;
+        int next = (gap + 1) & mask;
+        long key;
+        while ((key = slots.get(next, 0)) != 0) {
+            int ideal = PrimitiveCollections.hash(key) & mask;
+            //ideal不在(gap, next]区间内, 说明next可以前移到gap
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                copy(slots, next, slots, gap);
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        for (int i = 0; i < width; i++) {
+            slots.set(gap, i, 0);
+        }
+        size--;
+    }
+
+    /**
+     * 扩容并重新hash所有key
+     */
+    private void rehash(int newCapacity) {
+        LongSlots oldSlots = this.slots;
+        allocate(newCapacity);
+        LongSlots newSlots = this.slots;
+        int mask = this.mask;
+        for (int i = 0; i < oldSlots.capacity(); i++) {
+            long key = oldSlots.get(i, 0);
+            if (key == 0) {
+                continue;
+            }
+            int index = PrimitiveCollections.hash(key) & mask;
+            while (newSlots.get(index, 0) != 0) {
+                index = (index + 1) & mask;
+            }
+            copy(oldSlots, i, newSlots, index);
+        }
+        oldSlots.release();
+    }
+
+    private void copy(LongSlots from, int fromIndex, LongSlots to, int toIndex) {
+        for (int i = 0; i < width; i++) {
+            to.set(toIndex, i, from.get(fromIndex, i));
+        }
+    }
+
+    /**
+     * 移除所有元素, 不会缩容
+     */
+    public void clear() {
+        if (size > 0) {
+            slots.clear();
+            size = 0;
+        }
+        hasZeroKey = false;
+    }
+
+    /**
+     * 释放存储, 堆外存储必须调用, 释放后不能再使用
+     */
+    @Override
+    public void close() {
+        LongSlots slots = this.slots;
+        if (slots != null) {
+            this.slots = null;
+            slots.release();
+        }
+    }
+
+    /**
+     * @return 元素数量
+     */
+    public int size() {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return slot数量
+     */
+    public int capacity() {
+        return slots.capacity();
+    }
+
+    /**
+     * @return 是否使用堆外存储, 如果不支持unsafe, 即使指定堆外存储, 仍返回false
+     */
+    public boolean isOffHeap() {
+        return slots.isOffHeap();
+    }
+
+    /**
+     * @return slot存储占用内存字节数
+     */
+    public long storageBytes() {
+        return slots.bytes();
+    }
+}
@@ -0,0 +1,315 @@
+package org.kin.framework.collection;
+
+import com.google.common.base.Preconditions;
+import org.kin.framework.utils.Maths;
+
+import java.io.File;
+import java.util.NoSuchElementException;
+
+/**
+ * 基础类型{@link SegmentList}基础实现, 仅支持从head或者tail移除元素
+ * 元素直接存储在基础类型数组(堆内), direct buffer(堆外)或者内存映射文件中, 没有装箱成本以及per-element对象
+ * 非线程安全
+ *
+ * @param <A> 基础类型数组类型, 比如long[]
+ * @param <S> segment类型
+ * @author huangjianqin
+ * @date 2023/7/22
+ */
+abstract class AbstractPrimitiveSegmentList<A, S extends PrimitiveSegment<A>> implements AutoCloseable {
+    /** 默认segment容量 */
+    protected static final int DEFAULT_SEGMENT_SIZE = 1024;
+
+    /** 元素类型 */
+    private final PrimitiveSegmentAllocator.ElementType<A, S> elementType;
+    /** segment分配器 */
+    private final PrimitiveSegmentAllocator<S> allocator;
+    /** 用于计算index是落在哪个segment */
+    private final int segmentShift;
+    /** segment容量-1 */
+    protected final int segmentMask;
+    /** segment双向队列 */
+    private final ArrayDeque<S> segments = new ArrayDeque<>();
+    /** 当前大小 */
+    private int size;
+    /** 缓存第一个segment的offset */
+    private int firstOffset;
+    /** 堆外存储时, {@link #forEachSegment0(SegmentArrayVisitor)}使用的临时数组 */
+    private A scratch;
+
+    protected AbstractPrimitiveSegmentList(PrimitiveSegmentAllocator.ElementType<A, S> elementType, int segmentSize,
+                                           boolean offHeap, File mappedFile) {
+        Preconditions.checkArgument(segmentSize >= 2 && segmentSize <= (1 << 24), "segmentSize must be in [2, 2^24]");
+        segmentSize = Maths.round2Power2(segmentSize);
+        this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+        this.segmentMask = segmentSize - 1;
+        this.elementType = elementType;
+        if (mappedFile != null) {
+            this.allocator = PrimitiveSegmentAllocator.mapped(elementType, segmentSize, mappedFile);
+        } else if (offHeap) {
+            this.allocator = PrimitiveSegmentAllocator.offHeap(elementType, segmentSize);
+        } else {
+            this.allocator = PrimitiveSegmentAllocator.heap(elementType, segmentSize);
+        }
+    }
+
+    /**
+     * 检查{@code index}并转换成对齐后的下标
+     */
+    protected final int align(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+        }
+        return index + firstOffset;
+    }
+
+    /**
+     * @param alignedIndex {@link #align(int)}返回的下标
+     * @return 所在segment
+     */
+    protected final S segmentOf(int alignedIndex) {
+        return segments.get(alignedIndex >> segmentShift);
+    }
+
+    /**
+     * @return 可追加元素的tail segment, 如果tail segment已满, 则申请新segment
+     */
+    protected final S appendSegment() {
+        S lastSeg = segments.isEmpty() ? null : segments.peekLast();
+        if (lastSeg == null || lastSeg.isFull()) {
+            lastSeg = allocator.allocate();
+            segments.add(lastSeg);
+        }
+        return lastSeg;
+    }
+
+    /**
+     * 追加元素后更新大小
+     */
+    protected final void appended(int num) {
+        size += num;
+    }
+
+    /**
+     * 添加{@code src}从{@code srcPos}开始的{@code len}个elements
+     */
+    protected final void addAll0(A src, int srcPos, int len) {
+        int end = srcPos + len;
+        while (srcPos < end) {
+            S lastSeg = appendSegment();
+            int n = Math.min(lastSeg.cap(), end - srcPos);
+            lastSeg.addAll(src, srcPos, n);
+            srcPos += n;
+            appended(n);
+        }
+    }
+
+    /**
+     * @return head segment
+     */
+    protected final S firstSegment() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return segments.peekFirst();
+    }
+
+    /**
+     * @return tail segment
+     */
+    protected final S lastSegment() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return segments.peekLast();
+    }
+
+    /**
+     * 按顺序遍历所有segment, 每个segment仅回调一次
+     * 堆内存储直接回调segment底层数组, 堆外存储则先复制到临时数组再回调, 故visitor不能修改或者持有数组
+     */
+    protected final void forEachSegment0(SegmentArrayVisitor<A> visitor) {
+        for (int i = 0; i < segments.size(); i++) {
+            S segment = segments.get(i);
+            if (segment.isEmpty()) {
+                continue;
+            }
+
+            A array = segment.array();
+            if (array == null) {
+                array = scratch;
+                if (array == null) {
+                    scratch = array = elementType.newArray(segmentMask + 1);
+                }
+                segment.copyTo(array, segment.offset, segment.pos);
+            }
+            visitor.visit(array, segment.offset, segment.pos);
+        }
+    }
+
+    /**
+     * @return 所有element
+     */
+    protected final A toArray0() {
+        A array = elementType.newArray(size);
+        int[] index = {0};
+        forEachSegment0((elements, from, to) -> {
+            System.arraycopy(elements, from, array, index[0], to - from);
+            index[0] += to - from;
+        });
+        return array;
+    }
+
+    /**
+     * 从head开始移除, 直到不满足条件
+     */
+    protected final void removeFromFirstWhen0(SlotPredicate<S> predicate) {
+        while (!segments.isEmpty()) {
+            S firstSeg = segments.peekFirst();
+            int removed = 0;
+            for (int i = firstSeg.offset; i < firstSeg.pos && predicate.test(firstSeg, i); i++) {
+                removed++;
+            }
+            if (removed == 0) {
+                break;
+            }
+            firstSeg.offset += removed;
+            size -= removed;
+            firstOffset = firstSeg.offset;
+            if (!firstSeg.isEmpty()) {
+                break;
+            }
+            allocator.free(segments.pollFirst());
+            firstOffset = 0;
+        }
+        if (segments.isEmpty()) {
+            firstOffset = size = 0;
+        }
+    }
+
+    /**
+     * 从tail开始移除, 直到不满足条件
+     */
+    protected final void removeFromLastWhen0(SlotPredicate<S> predicate) {
+        while (!segments.isEmpty()) {
+            S lastSeg = segments.peekLast();
+            int removed = 0;
+            for (int i = lastSeg.pos - 1; i >= lastSeg.offset && predicate.test(lastSeg, i); i--) {
+                removed++;
+            }
+            if (removed == 0) {
+                break;
+            }
+            lastSeg.pos -= removed;
+            size -= removed;
+            if (!lastSeg.isEmpty()) {
+                break;
+            }
+            allocator.free(segments.pollLast());
+        }
+        if (segments.isEmpty()) {
+            firstOffset = size = 0;
+        }
+    }
+
+    /**
+     * 从head开始移除, 直到toIndex(exclusive)
+     */
+    public void removeFromFirst(int toIndex) {
+        if (toIndex <= 0) {
+            return;
+        }
+        if (toIndex >= size) {
+            clear();
+            return;
+        }
+        //真正的index
+        int alignedIndex = toIndex + firstOffset;
+        //对应segment index
+        int toSegmentIndex = alignedIndex >> segmentShift;
+        //对应segment里面的elements index
+        int toIndexInSeg = alignedIndex & segmentMask;
+
+        if (toSegmentIndex > 0) {
+            for (int i = 0; i < toSegmentIndex; i++) {
+                allocator.free(segments.get(i));
+            }
+            segments.removeRange(0, toSegmentIndex);
+            size -= ((toSegmentIndex << segmentShift) - firstOffset);
+        }
+
+        S firstSeg = segments.peekFirst();
+        int removed = Math.max(0, toIndexInSeg - firstSeg.offset);
+        firstSeg.offset += removed;
+        size -= removed;
+        firstOffset = firstSeg.offset;
+    }
+
+    /**
+     * 移除所有元素
+     */
+    public void clear() {
+        while (!segments.isEmpty()) {
+            allocator.free(segments.pollFirst());
+        }
+        size = firstOffset = 0;
+    }
+
+    /**
+     * 移除所有元素并释放存储, 内存映射存储会关闭文件
+     */
+    @Override
+    public void close() {
+        clear();
+        allocator.close();
+    }
+
+    /**
+     * list size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * list segment size
+     */
+    public int getSegmentSize() {
+        return segments.size();
+    }
+
+    /**
+     * list是否empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [segments=" + segments.size() + ", size=" + size + ", firstOffset=" + firstOffset + "]";
+    }
+
+    //-------------------------------------------------------------------------------------------------
+
+    /**
+     * segment元素条件
+     */
+    @FunctionalInterface
+    protected interface SlotPredicate<S> {
+        boolean test(S segment, int index);
+    }
+
+    /**
+     * segment元素数组访问
+     */
+    @FunctionalInterface
+    protected interface SegmentArrayVisitor<A> {
+        /**
+         * @param elements segment元素数组
+         * @param from     第一个元素下标(inclusive)
+         * @param to       最后一个元素下标(exclusive)
+         */
+        void visit(A elements, int from, int to);
+    }
+}
@@ -1,8 +1,6 @@
 package org.kin.framework.collection;
 
 import org.kin.framework.utils.CollectionUtils;
-import org.kin.framework.utils.IllegalFormatException;
-import org.kin.framework.utils.StringUtils;
 
 import javax.annotation.Nullable;
 import java.util.Collections;
@@ -16,19 +14,20 @@ import java.util.function.Function;
  * @date 2023/6/14
  */
 public class AttachmentMap implements AttachmentSupport {
-    /** attachments */
-    private final Map<String, Object> attachments;
+    /** attachments, 一般仅有少量attachment, 故使用紧凑存储 */
+    private final CompactStringMap attachments;
 
     public AttachmentMap() {
         this(Collections.emptyMap());
     }
 
     public AttachmentMap(Map<String, ?> attachments) {
-        this.attachments = new HashMap<>(attachments);
+        this.attachments = new CompactStringMap("attachment");
+        this.attachments.putAll(attachments);
     }
 
     public AttachmentMap(AttachmentMap other) {
-        this.attachments = new HashMap<>(other.attachments);
+        this.attachments = new CompactStringMap(other.attachments);
     }
 
     @Override
@@ -54,6 +53,26 @@ public class AttachmentMap implements AttachmentSupport {
         return (T) attachments.put(key, obj);
     }
 
+    @Override
+    public void attachBool(String key, boolean value) {
+        attachments.putBool(key, value);
+    }
+
+    @Override
+    public void attachInt(String key, int value) {
+        attachments.putInt(key, value);
+    }
+
+    @Override
+    public void attachLong(String key, long value) {
+        attachments.putLong(key, value);
+    }
+
+    @Override
+    public void attachDouble(String key, double value) {
+        attachments.putDouble(key, value);
+    }
+
     /**
      * 是否存在attachment key
      *
@@ -80,119 +99,37 @@ public class AttachmentMap implements AttachmentSupport {
 
     @Override
     public boolean boolAttachment(String key, boolean defaultValue) {
-        Object value = attachment(key);
-        if (Objects.nonNull(value)) {
-            Class<?> valueClass = value.getClass();
-            if (Boolean.class.equals(valueClass)) {
-                return (boolean) value;
-            } else if (String.class.equals(valueClass)) {
-                String valueStr = (String) value;
-                if (StringUtils.isNumeric(valueStr)) {
-                    return Long.parseLong(valueStr) > 0;
-                } else {
-                    return Boolean.parseBoolean(value.toString().trim());
-                }
-            } else {
-                throw new IllegalFormatException(String.format("attachment '%s' is not a boolean", value));
-            }
-        }
-        return defaultValue;
+        return attachments.getBool(key, defaultValue);
     }
 
     @Override
     public byte byteAttachment(String key, byte defaultValue) {
-        Object value = attachment(key);
-        if (Objects.nonNull(value)) {
-            Class<?> valueClass = value.getClass();
-            if (Byte.class.equals(valueClass)) {
-                return (byte) value;
-            } else if (String.class.equals(valueClass)) {
-                return Byte.parseByte(value.toString().trim());
-            } else {
-                throw new IllegalFormatException(String.format("attachment '%s' is not a byte", value));
-            }
-        }
-        return defaultValue;
+        return attachments.getByte(key, defaultValue);
     }
 
     @Override
     public short shortAttachment(String key, short defaultValue) {
-        Object value = attachment(key);
-        if (Objects.nonNull(value)) {
-            Class<?> valueClass = value.getClass();
-            if (Short.class.equals(valueClass)) {
-                return (short) value;
-            } else if (String.class.equals(valueClass)) {
-                return Short.parseShort(value.toString().trim());
-            } else {
-                throw new IllegalFormatException(String.format("attachment '%s' is not a short", value));
-            }
-        }
-        return defaultValue;
+        return attachments.getShort(key, defaultValue);
     }
 
     @Override
     public int intAttachment(String key, int defaultValue) {
-        Object value = attachment(key);
-        if (Objects.nonNull(value)) {
-            Class<?> valueClass = value.getClass();
-            if (Integer.class.equals(valueClass)) {
-                return (int) value;
-            } else if (String.class.equals(valueClass)) {
-                return Integer.parseInt(value.toString().trim());
-            } else {
-                throw new IllegalFormatException(String.format("attachment '%s' is not a integer", value));
-            }
-        }
-        return defaultValue;
+        return attachments.getInt(key, defaultValue);
     }
 
     @Override
     public long longAttachment(String key, long defaultValue) {
-        Object value = attachment(key);
-        if (Objects.nonNull(value)) {
-            Class<?> valueClass = value.getClass();
-            if (Long.class.equals(valueClass)) {
-                return (long) value;
-            } else if (String.class.equals(valueClass)) {
-                return Long.parseLong(value.toString().trim());
-            } else {
-                throw new IllegalFormatException(String.format("attachment '%s' is not a long", value));
-            }
-        }
-        return defaultValue;
+        return attachments.getLong(key, defaultValue);
     }
 
     @Override
     public float floatAttachment(String key, float defaultValue) {
-        Object value = attachment(key);
-        if (Objects.nonNull(value)) {
-            Class<?> valueClass = value.getClass();
-            if (Float.class.equals(valueClass)) {
-                return (float) value;
-            } else if (String.class.equals(valueClass)) {
-                return Float.parseFloat(value.toString().trim());
-            } else {
-                throw new IllegalFormatException(String.format("attachment '%s' is not a float", value));
-            }
-        }
-        return defaultValue;
+        return attachments.getFloat(key, defaultValue);
     }
 
     @Override
     public double doubleAttachment(String key, double defaultValue) {
-        Object value = attachment(key);
-        if (Objects.nonNull(value)) {
-            Class<?> valueClass = value.getClass();
-            if (Double.class.equals(valueClass)) {
-                return (double) value;
-            } else if (String.class.equals(valueClass)) {
-                return Double.parseDouble(value.toString().trim());
-            } else {
-                throw new IllegalFormatException(String.format("attachment '%s' is not a double", value));
-            }
-        }
-        return defaultValue;
+        return attachments.getDouble(key, defaultValue);
     }
 
     @Nullable
@@ -35,6 +35,46 @@ public interface AttachmentSupport {
     @Nullable
     <T> T attach(String key, Object obj);
 
+    /**
+     * attach boolean value, 实现类可以不装箱存储
+     *
+     * @param key   attachment key
+     * @param value attachment boolean value
+     */
+    default void attachBool(String key, boolean value) {
+        attach(key, value);
+    }
+
+    /**
+     * attach int value, 实现类可以不装箱存储
+     *
+     * @param key   attachment key
+     * @param value attachment int value
+     */
+    default void attachInt(String key, int value) {
+        attach(key, value);
+    }
+
+    /**
+     * attach long value, 实现类可以不装箱存储
+     *
+     * @param key   attachment key
+     * @param value attachment long value
+     */
+    default void attachLong(String key, long value) {
+        attach(key, value);
+    }
+
+    /**
+     * attach double value, 实现类可以不装箱存储
+     *
+     * @param key   attachment key
+     * @param value attachment double value
+     */
+    default void attachDouble(String key, double value) {
+        attach(key, value);
+    }
+
     /**
      * 是否存在attachment key
      *
@@ -0,0 +1,751 @@
+package org.kin.framework.collection;
+
+import com.google.common.base.Preconditions;
+import org.kin.framework.utils.Maths;
+import org.kin.framework.utils.PlatformDependent;
+import org.kin.framework.utils.SysUtils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 线程安全且有容量上限的{@link Map}, 可替代{@link LRUMap}, 并且不需要外部加锁
+ * 数据存储在{@link ConcurrentHashMap}, 而访问顺序(淘汰策略)则由eviction lock保护的双向链表维护
+ * <p>
+ * 读操作仅会往有损的分段ring buffer记录一次访问, buffer满了或者有写操作时, 才会try lock批量回放访问记录并调整链表,
+ * 因此读操作在竞争下也是无锁的, 而被丢弃的访问记录仅会影响淘汰的精准度
+ * 写操作(新增, 移除)则会写入无界mpsc队列, 保证不丢失, 同样在try lock成功后批量处理, 故容量上限并非严格实时的
+ * <p>
+ * 支持以下淘汰策略
+ * <ul>
+ *     <li>{@link Policy#LRU}: 最近最少访问</li>
+ *     <li>{@link Policy#SLRU}: 分段LRU, 新元素进入probation段, 再次访问才晋升到protected段, 避免一次性扫描冲刷热点数据</li>
+ *     <li>{@link Policy#TINY_LFU}: W-TinyLFU, 1%的LRU window + SLRU主区, 元素从window淘汰时, 基于{@link FrequencySketch}估算的访问频率与主区淘汰候选比较, 决定是否准入</li>
+ * </ul>
+ * key和value均不允许为null
+ *
+ * @author huangjianqin
+ * @date 2023/7/20
+ */
+@ThreadSafe
+public class BoundedConcurrentMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    /** read buffer分段数量 */
+    private static final int READ_BUFFER_STRIPES = Maths.round2Power2(Math.min(SysUtils.CPU_NUM * 4, 64));
+    /** 每个read buffer可记录的访问次数 */
+    private static final int READ_BUFFER_SIZE = 16;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    /** 待处理写操作超过该值时, 写线程需阻塞等待eviction lock, 以免write buffer无限增长 */
+    private static final int WRITE_BUFFER_MAX = 1024;
+    /** SLRU protected段占比 */
+    private static final double PROTECTED_PERCENT = 0.8;
+    /** W-TinyLFU window段占比 */
+    private static final double WINDOW_PERCENT = 0.01;
+
+    /** 元素所在链表 */
+    private static final byte NONE = 0;
+    private static final byte WINDOW = 1;
+    private static final byte PROBATION = 2;
+    private static final byte PROTECTED = 3;
+
+    /** 淘汰策略 */
+    public enum Policy {
+        /** 最近最少访问 */
+        LRU,
+        /** 分段LRU */
+        SLRU,
+        /** W-TinyLFU */
+        TINY_LFU,
+    }
+
+    /** 数据 */
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+    /** 淘汰策略 */
+    private final Policy policy;
+    /** 最大元素数量 */
+    private final long maximumSize;
+    /** window段最大元素数量, 仅W-TinyLFU有效 */
+    private final long windowMaximum;
+    /** protected段最大元素数量, LRU无效 */
+    private final long protectedMaximum;
+    /** 访问记录 */
+    private final ReadBuffer<K, V>[] readBuffers;
+    /** 新增, 移除操作 */
+    private final Queue<Runnable> writeBuffer = PlatformDependent.newMpscQueue();
+    /** write buffer待处理写操作数量 */
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    /** 保护以下所有链表和计数 */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    /** 访问频率, 仅W-TinyLFU有效 */
+    private final FrequencySketch sketch;
+    private final AccessOrderDeque<K, V> window = new AccessOrderDeque<>();
+    /** LRU策略仅使用probation段 */
+    private final AccessOrderDeque<K, V> probation = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> protectedDeque = new AccessOrderDeque<>();
+    private long windowSize;
+    private long protectedSize;
+    /** 已链接到链表的元素数量 */
+    private long linkedSize;
+
+    public BoundedConcurrentMap(long maximumSize) {
+        this(maximumSize, Policy.TINY_LFU);
+    }
+
+    /**
+     * @param maximumSize 最大元素数量
+     * @param policy      淘汰策略
+     */
+    public BoundedConcurrentMap(long maximumSize, Policy policy) {
+        Preconditions.checkArgument(maximumSize > 0, "maximumSize must be greater than 0");
+        Preconditions.checkNotNull(policy, "policy must be not null");
+        this.data = new ConcurrentHashMap<>((int) Math.min(maximumSize, 1 << 16));
+        this.policy = policy;
+        this.maximumSize = maximumSize;
+        if (policy == Policy.TINY_LFU) {
+            this.windowMaximum = Math.max(1, (long) (maximumSize * WINDOW_PERCENT));
+            this.protectedMaximum = (long) ((maximumSize - windowMaximum) * PROTECTED_PERCENT);
+            this.sketch = new FrequencySketch(maximumSize);
+        } else {
+            this.windowMaximum = 0;
+            this.protectedMaximum = policy == Policy.SLRU ? (long) (maximumSize * PROTECTED_PERCENT) : 0;
+            this.sketch = null;
+        }
+        this.readBuffers = newReadBuffers(READ_BUFFER_STRIPES);
+    }
+
+    /**
+     * 创建read buffer数组, 无法直接创建泛型数组, 故仅此处unchecked cast
+     */
+    private static <K, V> ReadBuffer<K, V>[] newReadBuffers(int size) {
+        @SuppressWarnings("unchecked")
+        ReadBuffer<K, V>[] readBuffers = (ReadBuffer<K, V>[]) new ReadBuffer<?, ?>[size];
+        for (int i = 0; i < readBuffers.length; i++) {
+            readBuffers[i] = new ReadBuffer<>();
+        }
+        return readBuffers;
+    }
+
+    /**
+     * @return 最近最少访问淘汰的map
+     */
+    public static <K, V> BoundedConcurrentMap<K, V> lru(long maximumSize) {
+        return new BoundedConcurrentMap<>(maximumSize, Policy.LRU);
+    }
+
+    /**
+     * @return 分段LRU淘汰的map
+     */
+    public static <K, V> BoundedConcurrentMap<K, V> slru(long maximumSize) {
+        return new BoundedConcurrentMap<>(maximumSize, Policy.SLRU);
+    }
+
+    /**
+     * @return W-TinyLFU淘汰的map
+     */
+    public static <K, V> BoundedConcurrentMap<K, V> tinyLfu(long maximumSize) {
+        return new BoundedConcurrentMap<>(maximumSize, Policy.TINY_LFU);
+    }
+
+    //------------------------------------------------------------------------------------------------------------map
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        V value = node.value;
+        afterRead(node);
+        return value;
+    }
+
+    /**
+     * 不会记录访问
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return data.containsKey(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(@Nonnull K key, V value) {
+        return put(key, value, true);
+    }
+
+    /**
+     * @param onlyIfAbsent true则key已存在时不更新value
+     * @return 旧value
+     */
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        Preconditions.checkNotNull(key, "key must be not null");
+        Preconditions.checkNotNull(value, "value must be not null");
+        Node<K, V> newNode = null;
+        while (true) {
+            Node<K, V> node = data.get(key);
+            if (node == null) {
+                if (newNode == null) {
+                    newNode = new Node<>(key, value);
+                }
+                node = data.putIfAbsent(key, newNode);
+                if (node == null) {
+                    Node<K, V> added = newNode;
+                    afterWrite(() -> onAdd(added));
+                    return null;
+                }
+            }
+
+            V old;
+            synchronized (node) {
+                if (!node.alive) {
+                    //并发移除, 重新查询
+                    continue;
+                }
+                old = node.value;
+                if (!onlyIfAbsent) {
+                    node.value = value;
+                }
+            }
+            afterRead(node);
+            return old;
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        Node<K, V> node = data.remove(key);
+        if (node == null) {
+            return null;
+        }
+        V old;
+        synchronized (node) {
+            old = node.value;
+            node.alive = false;
+        }
+        afterWrite(() -> onRemove(node));
+        return old;
+    }
+
+    @Override
+    public boolean remove(@Nonnull Object key, Object value) {
+        Node<K, V> node = data.get(key);
+        if (node == null || value == null) {
+            return false;
+        }
+        synchronized (node) {
+            if (!node.alive || !node.value.equals(value)) {
+                return false;
+            }
+            node.alive = false;
+            data.remove(key, node);
+        }
+        afterWrite(() -> onRemove(node));
+        return true;
+    }
+
+    @Override
+    public V replace(@Nonnull K key, @Nonnull V value) {
+        Preconditions.checkNotNull(value, "value must be not null");
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        V old;
+        synchronized (node) {
+            if (!node.alive) {
+                return null;
+            }
+            old = node.value;
+            node.value = value;
+        }
+        afterRead(node);
+        return old;
+    }
+
+    @Override
+    public boolean replace(@Nonnull K key, @Nonnull V oldValue, @Nonnull V newValue) {
+        Preconditions.checkNotNull(newValue, "newValue must be not null");
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            return false;
+        }
+        synchronized (node) {
+            if (!node.alive || !node.value.equals(oldValue)) {
+                return false;
+            }
+            node.value = newValue;
+        }
+        afterRead(node);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        for (K key : data.keySet()) {
+            remove(key);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new EntrySet();
+    }
+
+    //------------------------------------------------------------------------------------------------------------buffer
+
+    /**
+     * 记录访问, buffer满了则尝试回放
+     */
+    private void afterRead(Node<K, V> node) {
+        int index = (int) Thread.currentThread().getId() & (READ_BUFFER_STRIPES - 1);
+        ReadBuffer<K, V> buffer = readBuffers[index];
+        if (buffer.offer(node)) {
+            tryMaintenance();
+        }
+    }
+
+    /**
+     * 记录写操作, 并尝试处理
+     */
+    private void afterWrite(Runnable task) {
+        writeBuffer.offer(task);
+        if (pendingWrites.incrementAndGet() > WRITE_BUFFER_MAX) {
+            //写操作过多, 阻塞等待处理, 以免write buffer无限增长
+            evictionLock.lock();
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+            return;
+        }
+        tryMaintenance();
+    }
+
+    /**
+     * try lock成功则处理所有buffer, 并按需淘汰
+     * 释放锁后如果仍有写操作未处理(其他线程try lock失败), 则再次尝试, 保证写操作不会滞留在buffer
+     */
+    private void tryMaintenance() {
+        do {
+            if (!evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        } while (pendingWrites.get() > 0);
+    }
+
+    /**
+     * 处理所有buffer, 并按需淘汰, 调用前需持有eviction lock
+     */
+    private void maintenance() {
+        for (ReadBuffer<K, V> buffer : readBuffers) {
+            buffer.drain(this);
+        }
+
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            pendingWrites.decrementAndGet();
+            task.run();
+        }
+
+        evictEntries();
+    }
+
+    /**
+     * 立即处理所有buffer, 并按需淘汰
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------policy
+
+    /**
+     * 新增元素, 调用前需持有eviction lock
+     */
+    private void onAdd(Node<K, V> node) {
+        if (!node.alive || node.queue != NONE) {
+            //已被移除
+            return;
+        }
+        if (sketch != null) {
+            sketch.increment(node.key);
+        }
+        if (policy == Policy.TINY_LFU) {
+            node.queue = WINDOW;
+            window.addLast(node);
+            windowSize++;
+        } else {
+            node.queue = PROBATION;
+            probation.addLast(node);
+        }
+        linkedSize++;
+    }
+
+    /**
+     * 回放访问记录, 调用前需持有eviction lock
+     */
+    private void onAccess(Node<K, V> node) {
+        if (node.queue == NONE) {
+            //已被移除或者新增操作未处理
+            return;
+        }
+        if (sketch != null) {
+            sketch.increment(node.key);
+        }
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToBack(node);
+                break;
+            case PROBATION:
+                if (policy == Policy.LRU) {
+                    probation.moveToBack(node);
+                } else {
+                    //再次访问, 晋升到protected段
+                    probation.remove(node);
+                    node.queue = PROTECTED;
+                    protectedDeque.addLast(node);
+                    protectedSize++;
+                    demoteFromProtected();
+                }
+                break;
+            case PROTECTED:
+                protectedDeque.moveToBack(node);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * protected段溢出, 最久未访问的元素降级到probation段
+     */
+    private void demoteFromProtected() {
+        while (protectedSize > protectedMaximum) {
+            Node<K, V> demoted = protectedDeque.pollFirst();
+            protectedSize--;
+            demoted.queue = PROBATION;
+            probation.addLast(demoted);
+        }
+    }
+
+    /**
+     * 从链表移除元素, 调用前需持有eviction lock
+     */
+    private void onRemove(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                windowSize--;
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedDeque.remove(node);
+                protectedSize--;
+                break;
+            default:
+                //未链接
+                return;
+        }
+        node.queue = NONE;
+        linkedSize--;
+    }
+
+    /**
+     * 淘汰溢出元素, 调用前需持有eviction lock
+     */
+    private void evictEntries() {
+        if (policy == Policy.TINY_LFU) {
+            //window溢出元素作为候选者, 与主区淘汰候选比较访问频率
+            while (windowSize > windowMaximum) {
+                Node<K, V> candidate = window.pollFirst();
+                windowSize--;
+                candidate.queue = PROBATION;
+                probation.addLast(candidate);
+                if (linkedSize <= maximumSize) {
+                    continue;
+                }
+
+                Node<K, V> victim = probation.peekFirst();
+                if (victim == candidate) {
+                    victim = protectedDeque.peekFirst();
+                }
+                if (victim == null || sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                    evict(candidate);
+                } else {
+                    evict(victim);
+                }
+            }
+        }
+
+        while (linkedSize > maximumSize) {
+            Node<K, V> victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedDeque.peekFirst();
+            }
+            if (victim == null) {
+                victim = window.peekFirst();
+            }
+            evict(victim);
+        }
+    }
+
+    /**
+     * 淘汰元素, 调用前需持有eviction lock
+     */
+    private void evict(Node<K, V> node) {
+        synchronized (node) {
+            if (node.alive) {
+                node.alive = false;
+                data.remove(node.key, node);
+            }
+        }
+        onRemove(node);
+    }
+
+    //getter
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    //------------------------------------------------------------------------------------------------------------inner class
+
+    /**
+     * 元素, 同时也是访问顺序链表节点
+     */
+    static final class Node<K, V> {
+        private final K key;
+        private volatile V value;
+        /** 是否仍在map中, 修改需持有node monitor */
+        private volatile boolean alive = true;
+        /** 所在链表, 以下字段由eviction lock保护 */
+        private byte queue = NONE;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 侵入式双向链表, head为最久未访问元素
+     */
+    private static final class AccessOrderDeque<K, V> {
+        private Node<K, V> head;
+        private Node<K, V> tail;
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void remove(Node<K, V> node) {
+            Node<K, V> prev = node.prev;
+            Node<K, V> next = node.next;
+            if (prev == null) {
+                head = next;
+            } else {
+                prev.next = next;
+            }
+            if (next == null) {
+                tail = prev;
+            } else {
+                next.prev = prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToBack(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        @Nullable
+        Node<K, V> peekFirst() {
+            return head;
+        }
+
+        @Nullable
+        Node<K, V> pollFirst() {
+            Node<K, V> node = head;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+    }
+
+    /**
+     * 有损的访问记录ring buffer, 多生产者, 单消费者(持有eviction lock的线程)
+     * buffer满了或者cas竞争失败, 则直接丢弃访问记录
+     */
+    private static final class ReadBuffer<K, V> {
+        private final AtomicLong writeCounter = new AtomicLong();
+        private final AtomicReferenceArray<Node<K, V>> buffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        /** 仅由持有eviction lock的线程修改 */
+        private volatile long readCounter;
+
+        /**
+         * @return buffer是否已满, 需要回放
+         */
+        boolean offer(Node<K, V> node) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            long size = tail - head;
+            if (size >= READ_BUFFER_SIZE) {
+                return true;
+            }
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) (tail & READ_BUFFER_MASK), node);
+                return size + 1 >= READ_BUFFER_SIZE;
+            }
+            return false;
+        }
+
+        /**
+         * 回放所有访问记录, 调用前需持有eviction lock
+         */
+        void drain(BoundedConcurrentMap<K, V> map) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            for (; head < tail; head++) {
+                int index = (int) (head & READ_BUFFER_MASK);
+                Node<K, V> node = buffer.get(index);
+                if (node == null) {
+                    //生产者cas成功, 但未写入
+                    break;
+                }
+                buffer.lazySet(index, null);
+                map.onAccess(node);
+            }
+            readCounter = head;
+        }
+    }
+
+    /**
+     * entry视图
+     */
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Nonnull
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            Iterator<Node<K, V>> iterator = data.values().iterator();
+            return new Iterator<Entry<K, V>>() {
+                private Node<K, V> current;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Entry<K, V> next() {
+                    current = iterator.next();
+                    return new WriteThroughEntry(current.key, current.value);
+                }
+
+                @Override
+                public void remove() {
+                    Preconditions.checkState(current != null, "next() has not been called");
+                    BoundedConcurrentMap.this.remove(current.key);
+                    current = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return BoundedConcurrentMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            Node<K, V> node = data.get(entry.getKey());
+            return node != null && node.value.equals(entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return BoundedConcurrentMap.this.remove(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void clear() {
+            BoundedConcurrentMap.this.clear();
+        }
+    }
+
+    /**
+     * {@link Entry#setValue(Object)}会更新map
+     */
+    private final class WriteThroughEntry extends SimpleEntry<K, V> {
+        private static final long serialVersionUID = -1403838946226546566L;
+
+        WriteThroughEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
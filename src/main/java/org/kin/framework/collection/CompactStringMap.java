@@ -0,0 +1,636 @@
+package org.kin.framework.collection;
+
+import org.kin.framework.utils.IllegalFormatException;
+import org.kin.framework.utils.StringUtils;
+
+import java.util.*;
+
+/**
+ * 面向少量属性(一般<=8个)的紧凑{@code Map<String, Object>}实现, 用于{@link AttachmentMap}和{@link MapConfigurationProperties}
+ * <p>
+ * key, key hash和value以平铺的并行数组存储, 查找时先比较引用(key一般是常量字符串, 已被jvm intern), 再比较hash和equals,
+ * 相比{@link HashMap}没有table数组和entry节点的开销.
+ * 元素数量超过{@link #PROMOTE_THRESHOLD}后自动升级为{@link HashMap}存储, 直到{@link #clear()}
+ * <p>
+ * 通过{@link #putInt(String, int)}等方法写入的primitive值存储在primitive slot中, 不会装箱,
+ * {@link #getInt(String, int)}等方法读取时也不会装箱, 仅通过{@link Map}接口访问时才装箱
+ * <p>
+ * 与{@link HashMap}一致, 支持null key和null value, 非线程安全
+ *
+ * @author huangjianqin
+ * @date 2023/7/24
+ */
+public final class CompactStringMap extends AbstractMap<String, Object> {
+    /** 超过该数量则升级为{@link HashMap} */
+    public static final int PROMOTE_THRESHOLD = 8;
+
+    //value类型
+    private static final byte TYPE_OBJECT = 0;
+    private static final byte TYPE_BOOL = 1;
+    private static final byte TYPE_BYTE = 2;
+    private static final byte TYPE_SHORT = 3;
+    private static final byte TYPE_INT = 4;
+    private static final byte TYPE_LONG = 5;
+    private static final byte TYPE_FLOAT = 6;
+    private static final byte TYPE_DOUBLE = 7;
+
+    private static final String[] EMPTY_KEYS = new String[0];
+    private static final int[] EMPTY_HASHES = new int[0];
+    private static final Object[] EMPTY_VALUES = new Object[0];
+
+    /** value描述, 用于类型转换失败时的异常信息, 比如attachment, property */
+    private final String valueName;
+    private String[] keys = EMPTY_KEYS;
+    /** key hash */
+    private int[] hashes = EMPTY_HASHES;
+    private Object[] values = EMPTY_VALUES;
+    /** value类型, 写入primitive值时才分配 */
+    private byte[] types;
+    /** primitive值, 写入primitive值时才分配, 浮点数存储的是raw bits */
+    private long[] primitives;
+    private int size;
+    /** 升级后的map, 非null则表示已升级 */
+    private HashMap<String, Object> promoted;
+    private transient Set<Entry<String, Object>> entrySet;
+
+    public CompactStringMap() {
+        this("value");
+    }
+
+    /**
+     * @param valueName value描述, 用于类型转换失败时的异常信息
+     */
+    public CompactStringMap(String valueName) {
+        this.valueName = valueName;
+    }
+
+    /**
+     * copy constructor, primitive slot会原样复制
+     */
+    public CompactStringMap(CompactStringMap other) {
+        this.valueName = other.valueName;
+        putAll(other);
+    }
+
+    //------------------------------------------------------------------------------------------------------------small
+
+    /**
+     * @param hash key hash, null key则为0
+     * @return key所在slot, 不存在则返回-1
+     */
+    private int indexOf(Object key, int hash) {
+        String[] keys = this.keys;
+        int[] hashes = this.hashes;
+        for (int i = 0; i < size; i++) {
+            String k = keys[i];
+            if (k == key || (k != null && hashes[i] == hash && k.equals(key))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(Object key) {
+        if (key == null) {
+            return indexOf(null, 0);
+        }
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        return indexOf(key, key.hashCode());
+    }
+
+    /**
+     * 查找或者追加key所在slot
+     *
+     * @return key所在slot, 如果需要升级则返回-1
+     */
+    private int slotFor(String key) {
+        int hash = Objects.hashCode(key);
+        int index = indexOf(key, hash);
+        if (index >= 0) {
+            return index;
+        }
+        if (size == PROMOTE_THRESHOLD) {
+            promote();
+            return -1;
+        }
+
+        if (size == keys.length) {
+            int newCapacity = size == 0 ? 2 : size << 1;
+            keys = Arrays.copyOf(keys, newCapacity);
+            hashes = Arrays.copyOf(hashes, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+            if (types != null) {
+                types = Arrays.copyOf(types, newCapacity);
+                primitives = Arrays.copyOf(primitives, newCapacity);
+            }
+        }
+        index = size++;
+        keys[index] = key;
+        hashes[index] = hash;
+        return index;
+    }
+
+    /**
+     * @return slot value类型
+     */
+    private byte typeAt(int index) {
+        return types == null ? TYPE_OBJECT : types[index];
+    }
+
+    /**
+     * @return slot value, primitive值会装箱
+     */
+    private Object valueAt(int index) {
+        switch (typeAt(index)) {
+            case TYPE_BOOL:
+                return primitives[index] != 0;
+            case TYPE_BYTE:
+                return (byte) primitives[index];
+            case TYPE_SHORT:
+                return (short) primitives[index];
+            case TYPE_INT:
+                return (int) primitives[index];
+            case TYPE_LONG:
+                return primitives[index];
+            case TYPE_FLOAT:
+                return Float.intBitsToFloat((int) primitives[index]);
+            case TYPE_DOUBLE:
+                return Double.longBitsToDouble(primitives[index]);
+            default:
+                return values[index];
+        }
+    }
+
+    private void setObject(int index, Object value) {
+        values[index] = value;
+        if (types != null) {
+            types[index] = TYPE_OBJECT;
+        }
+    }
+
+    private void setPrimitive(int index, byte type, long bits) {
+        if (types == null) {
+            types = new byte[keys.length];
+            primitives = new long[keys.length];
+        }
+        values[index] = null;
+        types[index] = type;
+        primitives[index] = bits;
+    }
+
+    /**
+     * 写入primitive值
+     */
+    private void putPrimitive(String key, byte type, long bits, Object boxed) {
+        if (promoted == null) {
+            int index = slotFor(key);
+            if (index >= 0) {
+                setPrimitive(index, type, bits);
+                return;
+            }
+        }
+        promoted.put(key, boxed);
+    }
+
+    /**
+     * 移除slot, 最后一个slot移到该位置
+     */
+    private void removeAt(int index) {
+        int last = --size;
+        if (index != last) {
+            keys[index] = keys[last];
+            hashes[index] = hashes[last];
+            values[index] = values[last];
+            if (types != null) {
+                types[index] = types[last];
+                primitives[index] = primitives[last];
+            }
+        }
+        keys[last] = null;
+        values[last] = null;
+        if (types != null) {
+            types[last] = TYPE_OBJECT;
+        }
+    }
+
+    /**
+     * 升级为{@link HashMap}
+     */
+    private void promote() {
+        HashMap<String, Object> map = new HashMap<>(PROMOTE_THRESHOLD * 4);
+        for (int i = 0; i < size; i++) {
+            map.put(keys[i], valueAt(i));
+        }
+        promoted = map;
+        resetSlots();
+    }
+
+    private void resetSlots() {
+        keys = EMPTY_KEYS;
+        hashes = EMPTY_HASHES;
+        values = EMPTY_VALUES;
+        types = null;
+        primitives = null;
+        size = 0;
+    }
+
+    /**
+     * @return 是否已升级为{@link HashMap}存储
+     */
+    public boolean isPromoted() {
+        return promoted != null;
+    }
+
+    //------------------------------------------------------------------------------------------------------------Map
+
+    @Override
+    public int size() {
+        return promoted == null ? size : promoted.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return promoted == null ? indexOf(key) >= 0 : promoted.containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (promoted != null) {
+            return promoted.get(key);
+        }
+        int index = indexOf(key);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        if (promoted != null) {
+            return promoted.getOrDefault(key, defaultValue);
+        }
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : valueAt(index);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (promoted == null) {
+            int index = slotFor(key);
+            if (index >= 0) {
+                Object old = valueAt(index);
+                setObject(index, value);
+                return old;
+            }
+        }
+        return promoted.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> map) {
+        if (!(map instanceof CompactStringMap)) {
+            super.putAll(map);
+            return;
+        }
+
+        CompactStringMap other = (CompactStringMap) map;
+        if (other.promoted != null) {
+            super.putAll(other.promoted);
+            return;
+        }
+        //直接复制primitive slot, 避免装箱
+        for (int i = 0; i < other.size; i++) {
+            byte type = other.typeAt(i);
+            if (type == TYPE_OBJECT) {
+                put(other.keys[i], other.values[i]);
+            } else {
+                putPrimitive(other.keys[i], type, other.primitives[i], other.valueAt(i));
+            }
+        }
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (promoted != null) {
+            return promoted.remove(key);
+        }
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        Object old = valueAt(index);
+        removeAt(index);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        promoted = null;
+        resetSlots();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Set<Entry<String, Object>> entrySet = this.entrySet;
+        if (entrySet == null) {
+            this.entrySet = entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    //------------------------------------------------------------------------------------------------------------primitive put
+
+    public void putBool(String key, boolean value) {
+        putPrimitive(key, TYPE_BOOL, value ? 1 : 0, value);
+    }
+
+    public void putByte(String key, byte value) {
+        putPrimitive(key, TYPE_BYTE, value, value);
+    }
+
+    public void putShort(String key, short value) {
+        putPrimitive(key, TYPE_SHORT, value, value);
+    }
+
+    public void putInt(String key, int value) {
+        putPrimitive(key, TYPE_INT, value, value);
+    }
+
+    public void putLong(String key, long value) {
+        putPrimitive(key, TYPE_LONG, value, value);
+    }
+
+    public void putFloat(String key, float value) {
+        putPrimitive(key, TYPE_FLOAT, Float.floatToRawIntBits(value), value);
+    }
+
+    public void putDouble(String key, double value) {
+        putPrimitive(key, TYPE_DOUBLE, Double.doubleToRawLongBits(value), value);
+    }
+
+    //------------------------------------------------------------------------------------------------------------primitive get
+
+    /**
+     * 返回boolean value, 如果不存在则取{@code defaultValue}
+     * 支持{@link Boolean}和{@link String}(数字>0为true, 否则按true/false解析)
+     */
+    public boolean getBool(String key, boolean defaultValue) {
+        int index = promoted == null ? indexOf(key) : -1;
+        if (index >= 0 && typeAt(index) == TYPE_BOOL) {
+            return primitives[index] != 0;
+        }
+
+        Object value = index >= 0 ? valueAt(index) : promoted == null ? null : promoted.get(key);
+        if (Objects.nonNull(value)) {
+            Class<?> valueClass = value.getClass();
+            if (Boolean.class.equals(valueClass)) {
+                return (boolean) value;
+            } else if (String.class.equals(valueClass)) {
+                String valueStr = (String) value;
+                if (StringUtils.isNumeric(valueStr)) {
+                    return Long.parseLong(valueStr) > 0;
+                } else {
+                    return Boolean.parseBoolean(value.toString().trim());
+                }
+            } else {
+                throw new IllegalFormatException(String.format("%s '%s' is not a boolean", valueName, value));
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 返回byte value, 如果不存在则取{@code defaultValue}
+     * 支持{@link Byte}和{@link String}
+     */
+    public byte getByte(String key, byte defaultValue) {
+        int index = promoted == null ? indexOf(key) : -1;
+        if (index >= 0 && typeAt(index) == TYPE_BYTE) {
+            return (byte) primitives[index];
+        }
+
+        Object value = index >= 0 ? valueAt(index) : promoted == null ? null : promoted.get(key);
+        if (Objects.nonNull(value)) {
+            Class<?> valueClass = value.getClass();
+            if (Byte.class.equals(valueClass)) {
+                return (byte) value;
+            } else if (String.class.equals(valueClass)) {
+                return Byte.parseByte(value.toString().trim());
+            } else {
+                throw new IllegalFormatException(String.format("%s '%s' is not a byte", valueName, value));
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 返回short value, 如果不存在则取{@code defaultValue}
+     * 支持{@link Short}和{@link String}
+     */
+    public short getShort(String key, short defaultValue) {
+        int index = promoted == null ? indexOf(key) : -1;
+        if (index >= 0 && typeAt(index) == TYPE_SHORT) {
+            return (short) primitives[index];
+        }
+
+        Object value = index >= 0 ? valueAt(index) : promoted == null ? null : promoted.get(key);
+        if (Objects.nonNull(value)) {
+            Class<?> valueClass = value.getClass();
+            if (Short.class.equals(valueClass)) {
+                return (short) value;
+            } else if (String.class.equals(valueClass)) {
+                return Short.parseShort(value.toString().trim());
+            } else {
+                throw new IllegalFormatException(String.format("%s '%s' is not a short", valueName, value));
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 返回int value, 如果不存在则取{@code defaultValue}
+     * 支持{@link Integer}和{@link String}
+     */
+    public int getInt(String key, int defaultValue) {
+        int index = promoted == null ? indexOf(key) : -1;
+        if (index >= 0 && typeAt(index) == TYPE_INT) {
+            return (int) primitives[index];
+        }
+
+        Object value = index >= 0 ? valueAt(index) : promoted == null ? null : promoted.get(key);
+        if (Objects.nonNull(value)) {
+            Class<?> valueClass = value.getClass();
+            if (Integer.class.equals(valueClass)) {
+                return (int) value;
+            } else if (String.class.equals(valueClass)) {
+                return Integer.parseInt(value.toString().trim());
+            } else {
+                throw new IllegalFormatException(String.format("%s '%s' is not a integer", valueName, value));
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 返回long value, 如果不存在则取{@code defaultValue}
+     * 支持{@link Long}和{@link String}
+     */
+    public long getLong(String key, long defaultValue) {
+        int index = promoted == null ? indexOf(key) : -1;
+        if (index >= 0 && typeAt(index) == TYPE_LONG) {
+            return primitives[index];
+        }
+
+        Object value = index >= 0 ? valueAt(index) : promoted == null ? null : promoted.get(key);
+        if (Objects.nonNull(value)) {
+            Class<?> valueClass = value.getClass();
+            if (Long.class.equals(valueClass)) {
+                return (long) value;
+            } else if (String.class.equals(valueClass)) {
+                return Long.parseLong(value.toString().trim());
+            } else {
+                throw new IllegalFormatException(String.format("%s '%s' is not a long", valueName, value));
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 返回float value, 如果不存在则取{@code defaultValue}
+     * 支持{@link Float}和{@link String}
+     */
+    public float getFloat(String key, float defaultValue) {
+        int index = promoted == null ? indexOf(key) : -1;
+        if (index >= 0 && typeAt(index) == TYPE_FLOAT) {
+            return Float.intBitsToFloat((int) primitives[index]);
+        }
+
+        Object value = index >= 0 ? valueAt(index) : promoted == null ? null : promoted.get(key);
+        if (Objects.nonNull(value)) {
+            Class<?> valueClass = value.getClass();
+            if (Float.class.equals(valueClass)) {
+                return (float) value;
+            } else if (String.class.equals(valueClass)) {
+                return Float.parseFloat(value.toString().trim());
+            } else {
+                throw new IllegalFormatException(String.format("%s '%s' is not a float", valueName, value));
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 返回double value, 如果不存在则取{@code defaultValue}
+     * 支持{@link Double}和{@link String}
+     */
+    public double getDouble(String key, double defaultValue) {
+        int index = promoted == null ? indexOf(key) : -1;
+        if (index >= 0 && typeAt(index) == TYPE_DOUBLE) {
+            return Double.longBitsToDouble(primitives[index]);
+        }
+
+        Object value = index >= 0 ? valueAt(index) : promoted == null ? null : promoted.get(key);
+        if (Objects.nonNull(value)) {
+            Class<?> valueClass = value.getClass();
+            if (Double.class.equals(valueClass)) {
+                return (double) value;
+            } else if (String.class.equals(valueClass)) {
+                return Double.parseDouble(value.toString().trim());
+            } else {
+                throw new IllegalFormatException(String.format("%s '%s' is not a double", valueName, value));
+            }
+        }
+        return defaultValue;
+    }
+
+    //------------------------------------------------------------------------------------------------------------inner class
+
+    private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            if (promoted != null) {
+                return promoted.entrySet().iterator();
+            }
+            return new SlotIterator();
+        }
+
+        @Override
+        public int size() {
+            return CompactStringMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            CompactStringMap.this.clear();
+        }
+    }
+
+    /**
+     * 遍历平铺数组, 期间升级为{@link HashMap}则抛出{@link ConcurrentModificationException}
+     */
+    private final class SlotIterator implements Iterator<Entry<String, Object>> {
+        private int next;
+        private int last = -1;
+
+        @Override
+        public boolean hasNext() {
+            checkNotPromoted();
+            return next < size;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            checkNotPromoted();
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new SlotEntry(keys[last], valueAt(last));
+        }
+
+        @Override
+        public void remove() {
+            checkNotPromoted();
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            //最后一个slot会移到last, 需重新访问last
+            removeAt(last);
+            next = last;
+            last = -1;
+        }
+
+        private void checkNotPromoted() {
+            if (promoted != null) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * setValue会写回map
+     */
+    private final class SlotEntry extends SimpleEntry<String, Object> {
+        private static final long serialVersionUID = 2618290946398880539L;
+
+        SlotEntry(String key, Object value) {
+            super(key, value);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return promoted == null ? super.toString() : promoted.toString();
+    }
+}
@@ -0,0 +1,252 @@
+package org.kin.framework.collection;
+
+import com.google.common.base.Preconditions;
+import org.kin.framework.utils.Maths;
+import org.kin.framework.utils.SysUtils;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * 线程安全的{@link LongLongMap}实现
+ * 按key hash高位分段, 每段是一个独立的{@link LongLongHashMap}, 并由{@link StampedLock}保护, 不同段的读写互不影响
+ * 支持堆外存储, 此时使用完后必须调用{@link #close()}释放内存
+ *
+ * @author huangjianqin
+ * @date 2023/7/19
+ */
+public class ConcurrentLongLongMap implements LongLongMap, AutoCloseable {
+    /** 分段 */
+    private final Stripe[] stripes;
+    /** 计算分段下标时hash需要右移的位数 */
+    private final int stripeShift;
+    /** 表示key不存在的value */
+    private final long missingValue;
+
+    public ConcurrentLongLongMap() {
+        this(PrimitiveCollections.DEFAULT_EXPECTED_SIZE);
+    }
+
+    public ConcurrentLongLongMap(int expectedSize) {
+        this(expectedSize, SysUtils.CPU_NUM * 4, false);
+    }
+
+    public ConcurrentLongLongMap(int expectedSize, int concurrencyLevel, boolean offHeap) {
+        this(expectedSize, concurrencyLevel, offHeap, 0);
+    }
+
+    /**
+     * @param expectedSize     期望元素数量
+     * @param concurrencyLevel 并发度, 即分段数量, 会向上取2的n次方
+     * @param offHeap          是否使用堆外存储
+     * @param missingValue     表示key不存在的value
+     */
+    public ConcurrentLongLongMap(int expectedSize, int concurrencyLevel, boolean offHeap, long missingValue) {
+        Preconditions.checkArgument(concurrencyLevel > 0 && concurrencyLevel <= (1 << 16), "concurrencyLevel must be in (0, 65536]");
+        int stripeNum = Maths.round2Power2(concurrencyLevel);
+        this.stripes = new Stripe[stripeNum];
+        this.stripeShift = 32 - Integer.numberOfTrailingZeros(stripeNum);
+        this.missingValue = missingValue;
+        int stripeExpectedSize = Math.max(1, expectedSize / stripeNum);
+        for (int i = 0; i < stripeNum; i++) {
+            stripes[i] = new Stripe(new LongLongHashMap(stripeExpectedSize, offHeap, missingValue));
+        }
+    }
+
+    /**
+     * 使用hash高位选择分段, 而分段内部使用hash低位定位slot, 两者互不干扰
+     */
+    private Stripe stripe(long key) {
+        if (stripeShift == 32) {
+            return stripes[0];
+        }
+        return stripes[PrimitiveCollections.hash(key) >>> stripeShift];
+    }
+
+    @Override
+    public long get(long key) {
+        return getOrDefault(key, missingValue);
+    }
+
+    @Override
+    public long getOrDefault(long key, long defaultValue) {
+        Stripe stripe = stripe(key);
+        long stamp = stripe.lock.readLock();
+        try {
+            return stripe.map.getOrDefault(key, defaultValue);
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        Stripe stripe = stripe(key);
+        long stamp = stripe.lock.readLock();
+        try {
+            return stripe.map.containsKey(key);
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long put(long key, long value) {
+        Stripe stripe = stripe(key);
+        long stamp = stripe.lock.writeLock();
+        try {
+            return stripe.map.put(key, value);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public long putIfAbsent(long key, long value) {
+        Stripe stripe = stripe(key);
+        long stamp = stripe.lock.writeLock();
+        try {
+            return stripe.map.putIfAbsent(key, value);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public long addTo(long key, long delta) {
+        Stripe stripe = stripe(key);
+        long stamp = stripe.lock.writeLock();
+        try {
+            return stripe.map.addTo(key, delta);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 先以读锁查询, key不存在才获取写锁, {@code mappingFunction}在写锁内执行, 故应尽可能轻量
+     */
+    @Override
+    public long computeIfAbsent(long key, LongUnaryOperator mappingFunction) {
+        Stripe stripe = stripe(key);
+        StampedLock lock = stripe.lock;
+        long stamp = lock.readLock();
+        try {
+            if (stripe.map.containsKey(key)) {
+                return stripe.map.get(key);
+            }
+            long writeStamp = lock.tryConvertToWriteLock(stamp);
+            if (writeStamp == 0L) {
+                lock.unlockRead(stamp);
+                stamp = lock.writeLock();
+            } else {
+                stamp = writeStamp;
+            }
+            return stripe.map.computeIfAbsent(key, mappingFunction);
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    @Override
+    public long remove(long key) {
+        Stripe stripe = stripe(key);
+        long stamp = stripe.lock.writeLock();
+        try {
+            return stripe.map.remove(key);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 逐段统计, 并发修改时仅是近似值
+     */
+    @Override
+    public int size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                size += stripe.map.size();
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                stripe.map.clear();
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * 逐段遍历, 遍历某一段时持有该段读锁, 故{@code consumer}不能修改map
+     */
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                stripe.map.forEach(consumer);
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    @Override
+    public long missingValue() {
+        return missingValue;
+    }
+
+    @Override
+    public void close() {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                stripe.map.close();
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * @return 所有分段slot存储占用内存字节数
+     */
+    public long storageBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                bytes += stripe.map.storageBytes();
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return bytes;
+    }
+
+    //-------------------------------------------------------------------------------------------------
+
+    /**
+     * 分段
+     */
+    private static final class Stripe {
+        private final StampedLock lock = new StampedLock();
+        private final LongLongHashMap map;
+
+        Stripe(LongLongHashMap map) {
+            this.map = map;
+        }
+    }
+}
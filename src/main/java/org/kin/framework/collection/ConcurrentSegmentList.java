@@ -0,0 +1,331 @@
+package org.kin.framework.collection;
+
+import com.google.common.base.Preconditions;
+import org.kin.framework.pool.AbstractPooledObject;
+import org.kin.framework.pool.ObjectPool;
+import org.kin.framework.pool.Recyclable;
+import org.kin.framework.utils.Maths;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * 单写多读的{@link SegmentList}
+ * 元素使用绝对下标(sequence)访问, 单一writer线程负责追加元素以及从head截断, 多个reader线程可以并发根据下标读取元素
+ * <p>
+ * writer追加元素后才发布tail, 截断时先发布head再回收segment, reader读取元素前后都会校验segment编号与head,
+ * 故即使segment被回收并复用, reader也不会读取到错误的元素, 而是返回null
+ * <p>
+ * segment从全局共享的对象池申请(基于{@link org.kin.framework.pool.Recycler}), 不同实例之间也能复用,
+ * 每条线程可缓存的segment数量有上限, 回收时如果超过上限, 则直接交由gc回收
+ * <p>
+ * 使用场景: 日志复制窗口, 一条append线程写入, 多条replicator线程读取
+ *
+ * @author huangjianqin
+ * @date 2023/7/22
+ */
+public class ConcurrentSegmentList<T> {
+    /** 默认segment容量 */
+    private static final int DEFAULT_SEGMENT_SIZE = 128;
+    /** 每条线程缓存的segment元素总数上限, 即缓存segment数量上限 = 该值 / segment容量 */
+    private static final int MAX_POOLED_ELEMENTS_PER_THREAD = 64 * 1024;
+    /** key -> segment容量, value -> segment对象池 */
+    private static final ConcurrentHashMap<Integer, ObjectPool<Segment<?>>> SEGMENT_POOLS = new ConcurrentHashMap<>();
+
+    /** 用于计算index是落在哪个{@link Segment} */
+    private final int segmentShift;
+    /** segment容量-1 */
+    private final int segmentMask;
+    /** segment对象池, null则表示不复用segment */
+    private final ObjectPool<Segment<?>> segmentPool;
+    /** segment目录, 以segment编号取模定位, 扩容时整体替换 */
+    private volatile AtomicReferenceArray<Segment<T>> directory;
+    /** 第一个元素下标(inclusive) */
+    private volatile long head;
+    /** 最后一个元素下标+1(exclusive) */
+    private volatile long tail;
+    /** writer当前写入的segment, 仅writer线程访问 */
+    private Segment<T> tailSegment;
+
+    public ConcurrentSegmentList() {
+        this(DEFAULT_SEGMENT_SIZE, true);
+    }
+
+    /**
+     * @param segmentSize    segment容量, 会向上取2的n次方
+     * @param recycleSegment 是否复用segment
+     */
+    public ConcurrentSegmentList(int segmentSize, boolean recycleSegment) {
+        this(0, segmentSize, recycleSegment);
+    }
+
+    /**
+     * @param startIndex     第一个元素下标
+     * @param segmentSize    segment容量, 会向上取2的n次方
+     * @param recycleSegment 是否复用segment
+     */
+    public ConcurrentSegmentList(long startIndex, int segmentSize, boolean recycleSegment) {
+        Preconditions.checkArgument(startIndex >= 0, "startIndex must be greater than or equal to 0");
+        Preconditions.checkArgument(segmentSize >= 2 && segmentSize <= (1 << 20), "segmentSize must be in [2, 2^20]");
+        segmentSize = Maths.round2Power2(segmentSize);
+        this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+        this.segmentMask = segmentSize - 1;
+        this.segmentPool = recycleSegment ? segmentPool(segmentSize) : null;
+        this.directory = new AtomicReferenceArray<>(8);
+        this.head = startIndex;
+        this.tail = startIndex;
+    }
+
+    /**
+     * @return 指定容量的segment对象池
+     */
+    private static ObjectPool<Segment<?>> segmentPool(int segmentSize) {
+        return SEGMENT_POOLS.computeIfAbsent(segmentSize,
+                size -> ObjectPool.newPool(Math.max(1, MAX_POOLED_ELEMENTS_PER_THREAD / size), handle -> new Segment<>(size, handle)));
+    }
+
+    //------------------------------------------------------------------------------------------------------------reader
+
+    /**
+     * 取指定下标的元素, 任意线程均可调用
+     *
+     * @param index 绝对下标
+     * @return 元素, 如果下标不在[{@link #firstIndex()}, {@link #lastIndex()}]范围内(包括读取过程中被截断), 则返回null
+     */
+    @Nullable
+    public T get(long index) {
+        //先读tail, 保证tail之前写入的元素和segment目录可见
+        if (index >= tail || index < head) {
+            return null;
+        }
+        long segmentNo = index >>> segmentShift;
+        AtomicReferenceArray<Segment<T>> directory = this.directory;
+        Segment<T> segment = directory.get((int) segmentNo & (directory.length() - 1));
+        if (segment == null || segment.segmentNo != segmentNo) {
+            return null;
+        }
+        T e = segment.elements.get((int) index & segmentMask);
+        //再次校验, 防止读取期间segment被回收复用
+        if (segment.segmentNo != segmentNo || index < head) {
+            return null;
+        }
+        return e;
+    }
+
+    /**
+     * @return 第一个元素
+     */
+    @Nullable
+    public T peekFirst() {
+        return get(head);
+    }
+
+    /**
+     * @return 最后一个元素
+     */
+    @Nullable
+    public T peekLast() {
+        return get(tail - 1);
+    }
+
+    /**
+     * @return 第一个元素下标
+     */
+    public long firstIndex() {
+        return head;
+    }
+
+    /**
+     * @return 最后一个元素下标, 如果为空, 则返回{@link #firstIndex()}-1
+     */
+    public long lastIndex() {
+        return tail - 1;
+    }
+
+    /**
+     * @return 元素数量, 并发修改时仅是近似值
+     */
+    public int size() {
+        long tail = this.tail;
+        long head = this.head;
+        return (int) Math.max(0, Math.min(tail - head, Integer.MAX_VALUE));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    //------------------------------------------------------------------------------------------------------------writer
+
+    /**
+     * 追加元素, 仅允许writer线程调用
+     *
+     * @return 元素下标
+     */
+    public long add(T e) {
+        Preconditions.checkNotNull(e, "element must be not null");
+        long index = tail;
+        Segment<T> segment = tailSegment(index);
+        segment.elements.lazySet((int) index & segmentMask, e);
+        //发布
+        tail = index + 1;
+        return index;
+    }
+
+    /**
+     * 追加{@code collection}全部元素, 仅允许writer线程调用
+     * 所有元素写入后才发布tail, 故reader要么看不到, 要么全部可见
+     */
+    public void addAll(Collection<? extends T> collection) {
+        long index = tail;
+        for (T e : collection) {
+            Preconditions.checkNotNull(e, "element must be not null");
+            Segment<T> segment = tailSegment(index);
+            segment.elements.lazySet((int) index & segmentMask, e);
+            index++;
+        }
+        tail = index;
+    }
+
+    /**
+     * @return 存储{@code index}元素的segment, 不存在则申请新segment
+     */
+    private Segment<T> tailSegment(long index) {
+        long segmentNo = index >>> segmentShift;
+        Segment<T> segment = tailSegment;
+        if (segment != null && segment.segmentNo == segmentNo) {
+            return segment;
+        }
+
+        segment = newSegment();
+        segment.segmentNo = segmentNo;
+        AtomicReferenceArray<Segment<T>> directory = this.directory;
+        long headSegmentNo = head >>> segmentShift;
+        if (segmentNo - headSegmentNo >= directory.length()) {
+            directory = growDirectory(directory, headSegmentNo, segmentNo);
+        }
+        directory.set((int) segmentNo & (directory.length() - 1), segment);
+        tailSegment = segment;
+        return segment;
+    }
+
+    /**
+     * 扩容segment目录, 保证[headSegmentNo, segmentNo]都能放下
+     */
+    private AtomicReferenceArray<Segment<T>> growDirectory(AtomicReferenceArray<Segment<T>> directory, long headSegmentNo, long segmentNo) {
+        int capacity = directory.length();
+        while (segmentNo - headSegmentNo >= capacity) {
+            capacity <<= 1;
+        }
+        AtomicReferenceArray<Segment<T>> newDirectory = new AtomicReferenceArray<>(capacity);
+        int oldMask = directory.length() - 1;
+        int newMask = capacity - 1;
+        for (long no = headSegmentNo; no < segmentNo; no++) {
+            newDirectory.lazySet((int) no & newMask, directory.get((int) no & oldMask));
+        }
+        this.directory = newDirectory;
+        return newDirectory;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Segment<T> newSegment() {
+        if (segmentPool != null) {
+            return (Segment<T>) segmentPool.get();
+        }
+        return new Segment<>(segmentMask + 1, ObjectPool.NOOP_HANDLE);
+    }
+
+    /**
+     * 从head开始移除, 直到toIndex(exclusive), 仅允许writer线程调用
+     */
+    public void removeFromFirst(long toIndex) {
+        long head = this.head;
+        toIndex = Math.min(toIndex, tail);
+        if (toIndex <= head) {
+            return;
+        }
+        //先发布head, 再回收segment
+        this.head = toIndex;
+
+        AtomicReferenceArray<Segment<T>> directory = this.directory;
+        int mask = directory.length() - 1;
+        long fromSegmentNo = head >>> segmentShift;
+        long toSegmentNo = toIndex >>> segmentShift;
+        for (long no = fromSegmentNo; no < toSegmentNo; no++) {
+            int slot = (int) no & mask;
+            Segment<T> segment = directory.get(slot);
+            directory.set(slot, null);
+            if (segment == tailSegment) {
+                tailSegment = null;
+            }
+            Recyclable.recycle(segment);
+        }
+
+        //head所在segment仅清理被移除的元素, 方便gc
+        Segment<T> segment = directory.get((int) toSegmentNo & mask);
+        if (segment != null && segment.segmentNo == toSegmentNo) {
+            int from = fromSegmentNo == toSegmentNo ? (int) head & segmentMask : 0;
+            int to = (int) toIndex & segmentMask;
+            for (int i = from; i < to; i++) {
+                segment.elements.lazySet(i, null);
+            }
+        }
+    }
+
+    /**
+     * 从head开始移除, 直到不满足条件, 仅允许writer线程调用
+     */
+    public void removeFromFirstWhen(Predicate<? super T> predicate) {
+        long index = head;
+        long tail = this.tail;
+        while (index < tail && predicate.test(get(index))) {
+            index++;
+        }
+        removeFromFirst(index);
+    }
+
+    /**
+     * 移除所有元素, 仅允许writer线程调用
+     */
+    public void clear() {
+        removeFromFirst(tail);
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentSegmentList{" +
+                "head=" + head +
+                ", tail=" + tail +
+                ", segmentSize=" + (segmentMask + 1) +
+                '}';
+    }
+
+    //------------------------------------------------------------------------------------------------------------segment
+
+    /**
+     * 可复用的segment, 元素读写使用{@link AtomicReferenceArray}, 以保证reader校验{@link #segmentNo}的顺序语义
+     */
+    private static final class Segment<T> extends AbstractPooledObject {
+        /** 元素 */
+        private final AtomicReferenceArray<T> elements;
+        /** segment编号, 即元素下标 >>> segment shift, 回收后为-1 */
+        private volatile long segmentNo = -1;
+
+        Segment(int size, ObjectPool.Handle handle) {
+            super(handle);
+            this.elements = new AtomicReferenceArray<>(size);
+        }
+
+        @Override
+        protected void beforeRecycle() {
+            //先修改编号, 再清理元素, reader读到被清理的元素后再校验编号必然失败
+            segmentNo = -1;
+            for (int i = 0; i < elements.length(); i++) {
+                elements.lazySet(i, null);
+            }
+        }
+    }
+}
@@ -27,6 +27,46 @@ public interface ConfigurationProperties {
     @Nullable
     Object put(String key, Object obj);
 
+    /**
+     * 添加boolean property, 实现类可以不装箱存储
+     *
+     * @param key   property key
+     * @param value property boolean value
+     */
+    default void putBool(String key, boolean value) {
+        put(key, value);
+    }
+
+    /**
+     * 添加int property, 实现类可以不装箱存储
+     *
+     * @param key   property key
+     * @param value property int value
+     */
+    default void putInt(String key, int value) {
+        put(key, value);
+    }
+
+    /**
+     * 添加long property, 实现类可以不装箱存储
+     *
+     * @param key   property key
+     * @param value property long value
+     */
+    default void putLong(String key, long value) {
+        put(key, value);
+    }
+
+    /**
+     * 添加double property, 实现类可以不装箱存储
+     *
+     * @param key   property key
+     * @param value property double value
+     */
+    default void putDouble(String key, double value) {
+        put(key, value);
+    }
+
     /**
      * 是否存在property key
      *
@@ -2,13 +2,16 @@ package org.kin.framework.collection;
 
 import javax.annotation.Nonnull;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
 /**
+ * 写时复制map, 读操作无锁, 写操作串行
+ * 默认底层使用{@link PersistentHashMap}, 写操作仅复制修改路径上的trie节点, 时间复杂度为O(log32 n)
+ * 如果通过{@link MapFactory}指定其他底层map, 则每次写操作都需全量复制, 时间复杂度为O(n)
+ *
  * @author huangjianqin
  * @date 2022/4/15
  */
@@ -18,7 +21,7 @@ public class CopyOnWriteMap<K, V> implements Map<K, V> {
     private transient volatile Map<K, V> delegate;
 
     public CopyOnWriteMap() {
-        this(HashMap::new);
+        this(PersistentHashMap::empty);
     }
 
     public CopyOnWriteMap(MapFactory<Map<K, V>> mapFactory) {
@@ -26,6 +29,32 @@ public class CopyOnWriteMap<K, V> implements Map<K, V> {
         this.delegate = mapFactory.newMap();
     }
 
+    /**
+     * @return 当前底层map的可修改副本
+     */
+    @SuppressWarnings("unchecked")
+    private Map<K, V> copy() {
+        Map<K, V> delegate = this.delegate;
+        if (delegate instanceof PersistentHashMap) {
+            //结构共享, 无需全量复制
+            return ((PersistentHashMap<K, V>) delegate).edit();
+        }
+        Map<K, V> newDelegate = mapFactory.newMap();
+        newDelegate.putAll(delegate);
+        return newDelegate;
+    }
+
+    /**
+     * 发布修改后的底层map
+     */
+    @SuppressWarnings("unchecked")
+    private void publish(Map<K, V> newDelegate) {
+        if (newDelegate instanceof PersistentHashMap.Editor) {
+            newDelegate = ((PersistentHashMap.Editor<K, V>) newDelegate).toPersistentMap();
+        }
+        this.delegate = newDelegate;
+    }
+
     @Override
     public int size() {
         return delegate.size();
@@ -53,31 +82,28 @@ public class CopyOnWriteMap<K, V> implements Map<K, V> {
 
     @Override
     public synchronized V put(K key, V value) {
-        Map<K, V> newDelegate = mapFactory.newMap();
-        newDelegate.putAll(delegate);
+        Map<K, V> newDelegate = copy();
         V ret = newDelegate.put(key, value);
 
-        this.delegate = newDelegate;
+        publish(newDelegate);
         return ret;
     }
 
     @Override
     public synchronized V remove(Object key) {
-        Map<K, V> newDelegate = mapFactory.newMap();
-        newDelegate.putAll(delegate);
+        Map<K, V> newDelegate = copy();
         V ret = newDelegate.remove(key);
 
-        this.delegate = newDelegate;
+        publish(newDelegate);
         return ret;
     }
 
     @Override
     public synchronized void putAll(@Nonnull Map<? extends K, ? extends V> m) {
-        Map<K, V> newDelegate = mapFactory.newMap();
-        newDelegate.putAll(delegate);
+        Map<K, V> newDelegate = copy();
         newDelegate.putAll(m);
 
-        this.delegate = newDelegate;
+        publish(newDelegate);
     }
 
     @Override
@@ -102,90 +128,81 @@ public class CopyOnWriteMap<K, V> implements Map<K, V> {
 
     @Override
     public synchronized void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
-        Map<K, V> newDelegate = mapFactory.newMap();
-        newDelegate.putAll(delegate);
+        Map<K, V> newDelegate = copy();
         newDelegate.replaceAll(function);
 
-        this.delegate = newDelegate;
+        publish(newDelegate);
     }
 
     @Override
     public synchronized V putIfAbsent(K key, V value) {
-        Map<K, V> newDelegate = mapFactory.newMap();
-        newDelegate.putAll(delegate);
+        Map<K, V> newDelegate = copy();
         V ret = newDelegate.putIfAbsent(key, value);
 
-        this.delegate = newDelegate;
+        publish(newDelegate);
         return ret;
     }
 
     @Override
     public synchronized boolean remove(Object key, Object value) {
-        Map<K, V> newDelegate = mapFactory.newMap();
-        newDelegate.putAll(delegate);
+        Map<K, V> newDelegate = copy();
         boolean ret = newDelegate.remove(key, value);
 
-        this.delegate = newDelegate;
+        publish(newDelegate);
         return ret;
     }
 
     @Override
     public synchronized boolean replace(K key, V oldValue, V newValue) {
-        Map<K, V> newDelegate = mapFactory.newMap();
-        newDelegate.putAll(delegate);
+        Map<K, V> newDelegate = copy();
         boolean ret = newDelegate.replace(key, oldValue, newValue);
 
-        this.delegate = newDelegate;
+        publish(newDelegate);
         return ret;
     }
 
     @Override
     public synchronized V replace(K key, V value) {
-        Map<K, V> newDelegate = mapFactory.newMap();
-        newDelegate.putAll(delegate);
+        Map<K, V> newDelegate = copy();
         V ret = newDelegate.replace(key, value);
 
-        this.delegate = newDelegate;
+        publish(newDelegate);
         return ret;
     }
 
     @Override
     public synchronized V computeIfAbsent(K key, @Nonnull Function<? super K, ? extends V> mappingFunction) {
-        Map<K, V> newDelegate = mapFactory.newMap();
-        newDelegate.putAll(delegate);
+        Map<K, V> newDelegate = copy();
         V ret = newDelegate.computeIfAbsent(key, mappingFunction);
 
-        this.delegate = newDelegate;
+        publish(newDelegate);
         return ret;
     }
 
     @Override
     public synchronized V computeIfPresent(K key, @Nonnull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
-        Map<K, V> newDelegate = mapFactory.newMap();
-        newDelegate.putAll(delegate);
+        Map<K, V> newDelegate = copy();
         V ret = newDelegate.computeIfPresent(key, remappingFunction);
 
-        this.delegate = newDelegate;
+        publish(newDelegate);
         return ret;
     }
 
     @Override
     public synchronized V compute(K key, @Nonnull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
-        Map<K, V> newDelegate = mapFactory.newMap();
-        newDelegate.putAll(delegate);
+        Map<K, V> newDelegate = copy();
         V ret = newDelegate.compute(key, remappingFunction);
 
-        this.delegate = newDelegate;
+        publish(newDelegate);
         return ret;
     }
 
     @Override
     public synchronized V merge(K key, @Nonnull V value, @Nonnull BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
-        Map<K, V> newDelegate = mapFactory.newMap();
-        newDelegate.putAll(delegate);
+        Map<K, V> newDelegate = copy();
         V ret = newDelegate.merge(key, value, remappingFunction);
 
-        this.delegate = newDelegate;
+        publish(newDelegate);
         return ret;
     }
 
@@ -3,13 +3,13 @@ package org.kin.framework.collection;
 import com.google.common.base.Preconditions;
 
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * {@link AttributeMap}默认实现
  * use simple synchronization per bucket to keep the memory overhead as low as possible
  * 算法与{@link java.util.concurrent.ConcurrentHashMap}类似, 但更节省内存消耗
+ * 基于{@link StripedBucketTable}, 初始bucket数量很小, attribute增多后会自动扩容, 查询无锁
  *
  * Forked from <a href="https://github.com/netty/netty">Netty</a>.
  * @author huangjianqin
@@ -17,16 +17,14 @@ import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
  */
 public class DefaultAttributeMap  implements AttributeMap {
     @SuppressWarnings("rawtypes")
-    private static final AtomicReferenceFieldUpdater<DefaultAttributeMap, AtomicReferenceArray> UPDATER =
-            AtomicReferenceFieldUpdater.newUpdater(DefaultAttributeMap.class, AtomicReferenceArray.class, "attributes");
+    private static final AtomicReferenceFieldUpdater<DefaultAttributeMap, AttributeTable> UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultAttributeMap.class, AttributeTable.class, "attributes");
 
-    /** 原子数组bucket数量 */
+    /** 初始bucket数量 */
     private final int bucketSize;
-    /** bucket mask */
-    private final int bucketMask;
-    /** bucket数组, lazy init */
+    /** attribute table, lazy init */
     @SuppressWarnings("UnusedDeclaration")
-    private volatile AtomicReferenceArray<DefaultAttribute<?>> attributes;
+    private volatile AttributeTable attributes;
 
     public DefaultAttributeMap() {
         this(4);
@@ -34,126 +32,103 @@ public class DefaultAttributeMap  implements AttributeMap {
 
     public DefaultAttributeMap(int bucketSize) {
         this.bucketSize = bucketSize;
-        this.bucketMask = this.bucketSize - 1;
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public <T> Attribute<T> attr(AttributeKey<T> key) {
         Preconditions.checkNotNull(key, "key");
-        AtomicReferenceArray<DefaultAttribute<?>> attributes = this.attributes;
+        AttributeTable attributes = this.attributes;
         if (attributes == null) {
             // Not using ConcurrentHashMap due to high memory consumption.
-            attributes = new AtomicReferenceArray<>(bucketSize);
+            attributes = new AttributeTable(bucketSize);
 
             if (!UPDATER.compareAndSet(this, null, attributes)) {
                 attributes = this.attributes;
             }
         }
 
-        int i = index(key);
-        DefaultAttribute<?> head = attributes.get(i);
-        if (head == null) {
-            // No head exists yet which means we may be able to add the attribute without synchronization and just
-            // use compare and set. At worst we need to fallback to synchronization and waste two allocations.
-            head = new DefaultAttribute<>();
-            DefaultAttribute<T> attr = new DefaultAttribute<T>(head, key);
-            head.next = attr;
-            attr.prev = head;
-            if (attributes.compareAndSet(i, null, head)) {
-                // we were able to add it so return the attr right away
-                return attr;
-            } else {
-                head = attributes.get(i);
-            }
-        }
-
-        synchronized (head) {
-            DefaultAttribute<?> curr = head;
-            for (;;) {
-                DefaultAttribute<?> next = curr.next;
-                if (next == null) {
-                    DefaultAttribute<T> attr = new DefaultAttribute<T>(head, key);
-                    curr.next = attr;
-                    attr.prev = curr;
-                    return attr;
-                }
-
-                if (next.key == key && !next.removed) {
-                    return (Attribute<T>) next;
-                }
-                curr = next;
-            }
-        }
+        return (Attribute<T>) attributes.getOrCreate(key);
     }
 
     @Override
     public <T> boolean hasAttr(AttributeKey<T> key) {
         Preconditions.checkNotNull(key, "key");
-        AtomicReferenceArray<DefaultAttribute<?>> attributes = this.attributes;
+        AttributeTable attributes = this.attributes;
         if (attributes == null) {
             // no attribute exists
             return false;
         }
 
-        int i = index(key);
-        DefaultAttribute<?> head = attributes.get(i);
-        if (head == null) {
-            // No attribute exists which point to the bucket in which the head should be located
-            return false;
-        }
-
-        // We need to synchronize on the head.
-        synchronized (head) {
-            // Start with head.next as the head itself does not store an attribute.
-            DefaultAttribute<?> curr = head.next;
-            while (curr != null) {
-                if (curr.key == key && !curr.removed) {
-                    return true;
-                }
-                curr = curr.next;
-            }
-            return false;
-        }
+        return attributes.find(key) != null;
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public <T> T removeAttr(AttributeKey<T> key) {
-        return (T) ((DefaultAttribute<T>)attr(key)).getAndRemove();
+        Preconditions.checkNotNull(key, "key");
+        AttributeTable attributes = this.attributes;
+        if (attributes == null) {
+            return null;
+        }
+
+        DefaultAttribute<T> attr = (DefaultAttribute<T>) attributes.find(key);
+        return attr != null ? attr.getAndRemove(attributes) : null;
     }
 
+    //---------------------------------------------------------------------------------------------------------
+
     /**
-     * 计算bucket数组index
-     * @param key   attribute key
-     * @return  bucket数组index
+     * 基于{@link AttributeKey#id()}寻址的{@link StripedBucketTable}
      */
-    private int index(AttributeKey<?> key) {
-        return key.id() & bucketMask;
+    private static final class AttributeTable extends StripedBucketTable<AttributeKey<?>, DefaultAttribute<?>> {
+        AttributeTable(int initialCapacity) {
+            super(initialCapacity);
+        }
+
+        @Override
+        protected int hash(AttributeKey<?> key) {
+            return key.id();
+        }
+
+        @Override
+        protected boolean matches(DefaultAttribute<?> node, AttributeKey<?> key) {
+            return node.key == key && !node.removed;
+        }
+
+        @Override
+        protected DefaultAttribute<?> newHead() {
+            return new DefaultAttribute<>();
+        }
+
+        @Override
+        protected DefaultAttribute<?> newNode(AttributeKey<?> key) {
+            return new DefaultAttribute<>(key);
+        }
     }
 
-    //---------------------------------------------------------------------------------------------------------
     /**
      * {@link Attribute}默认实现
      * Forked from <a href="https://github.com/netty/netty">Netty</a>.
      * @author huangjianqin
      * @date 2023/6/14
      */
-    private static class DefaultAttribute<T> extends AtomicReference<T> implements Attribute<T> {
-        /** 所在链表head */
-        private final DefaultAttribute<?> head;
+    private static class DefaultAttribute<T> extends AtomicReference<T>
+            implements Attribute<T>, StripedBucketTable.Node<AttributeKey<?>, DefaultAttribute<?>> {
+        /** 所在链表head, null表示已移除 */
+        private volatile DefaultAttribute<?> head;
         /** 关联的attribute key */
         private final AttributeKey<T> key;
 
         /** prev linked list node */
         private DefaultAttribute<?> prev;
         /** next linked list node */
-        private DefaultAttribute<?> next;
+        private volatile DefaultAttribute<?> next;
 
         /** 标识attribute是否已被移除 */
         private volatile boolean removed;
 
-        DefaultAttribute(DefaultAttribute<?> head, AttributeKey<T> key) {
-            this.head = head;
+        DefaultAttribute(AttributeKey<T> key) {
             this.key = key;
         }
 
@@ -190,12 +165,12 @@ public class DefaultAttributeMap  implements AttributeMap {
          * via {@link AttributeMap#attr(AttributeKey)} will still operate on the same instance. That said if now another
          * thread or even the same thread later will call {@link AttributeMap#attr(AttributeKey)} again, a new
          * {@link Attribute} instance is created and so is not the same as the previous one that was removed. Because of
-         * this special caution should be taken when you call {@link #remove()} or {@link #getAndRemove()}.
+         * this special caution should be taken when you call {@link #remove(AttributeTable)} or {@link #getAndRemove(AttributeTable)}.
          */
-        private T getAndRemove() {
+        private T getAndRemove(AttributeTable attributes) {
             removed = true;
             T oldValue = getAndSet(null);
-            remove0();
+            attributes.unlink(this);
             return oldValue;
         }
 
@@ -210,34 +185,45 @@ public class DefaultAttributeMap  implements AttributeMap {
          * via {@link AttributeMap#attr(AttributeKey)} will still operate on the same instance. That said if now another
          * thread or even the same thread later will call {@link AttributeMap#attr(AttributeKey)} again, a new
          * {@link Attribute} instance is created and so is not the same as the previous one that was removed. Because of
-         * this special caution should be taken when you call {@link #remove()} or {@link #getAndRemove()}.
+         * this special caution should be taken when you call {@link #remove(AttributeTable)} or {@link #getAndRemove(AttributeTable)}.
          *
          * @deprecated please consider using {@link #set(Object)} (with value of {@code null}).
          */
-        private void remove() {
+        private void remove(AttributeTable attributes) {
             removed = true;
             set(null);
-            remove0();
+            attributes.unlink(this);
         }
 
-        private void remove0() {
-            synchronized (head) {
-                if (prev == null) {
-                    // Removed before.
-                    return;
-                }
+        //setter && getter
+        @Override
+        public DefaultAttribute<?> prev() {
+            return prev;
+        }
 
-                prev.next = next;
+        @Override
+        public void setPrev(DefaultAttribute<?> prev) {
+            this.prev = prev;
+        }
 
-                if (next != null) {
-                    next.prev = prev;
-                }
+        @Override
+        public DefaultAttribute<?> next() {
+            return next;
+        }
 
-                // Null out prev and next - this will guard against multiple remove0() calls which may corrupt
-                // the linked list for the bucket.
-                prev = null;
-                next = null;
-            }
+        @Override
+        public void setNext(DefaultAttribute<?> next) {
+            this.next = next;
+        }
+
+        @Override
+        public DefaultAttribute<?> bucket() {
+            return head;
+        }
+
+        @Override
+        public void setBucket(DefaultAttribute<?> bucket) {
+            this.head = bucket;
         }
     }
 }
@@ -0,0 +1,90 @@
+package org.kin.framework.collection;
+
+import org.kin.framework.utils.Maths;
+
+/**
+ * 基于count-min sketch的访问频率估算, 用于W-TinyLFU准入判断, 供{@link BoundedConcurrentMap}和{@code ReferenceCountedCache}共用
+ * 每个key使用4个计数器(不同hash), 计数器上限为15, 估算频率取4个计数器的最小值
+ * 当累计访问次数达到sample size时, 所有计数器减半, 以便频率能反映最近的访问情况
+ * <p>
+ * 非线程安全, 并发更新只会导致计数少量偏差, 对准入判断影响不大, 故不加锁
+ *
+ * @author huangjianqin
+ * @date 2023/7/16
+ */
+public final class FrequencySketch {
+    /** 计数器上限 */
+    private static final int MAX_COUNT = 15;
+    /** hash种子 */
+    private static final int[] SEEDS = {0x97cb3127, 0xb7e15163, 0x2f45f8a5, 0x85ebca6b};
+
+    /** 计数器 */
+    private final byte[] table;
+    /** table mask */
+    private final int mask;
+    /** 计数器减半的访问次数阈值 */
+    private final int sampleSize;
+    /** 累计访问次数 */
+    private int size;
+
+    public FrequencySketch(long maximumSize) {
+        int capacity = (int) Math.min(Math.max(maximumSize, 16), 1 << 24);
+        //4个计数器, 容量取4倍, 降低冲突
+        this.table = new byte[Maths.ceil2Power2(capacity << 2)];
+        this.mask = table.length - 1;
+        this.sampleSize = capacity * 10;
+    }
+
+    /**
+     * @return {@code key}的估算访问频率
+     */
+    public int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int seed : SEEDS) {
+            frequency = Math.min(frequency, table[index(hash, seed)]);
+        }
+        return frequency;
+    }
+
+    /**
+     * 记录{@code key}的一次访问
+     */
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int seed : SEEDS) {
+            int index = index(hash, seed);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * 所有计数器减半
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (byte) (table[i] >>> 1);
+        }
+        size = size >>> 1;
+    }
+
+    private int index(int hash, int seed) {
+        int h = hash * seed;
+        h ^= h >>> 17;
+        return h & mask;
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,220 @@
+package org.kin.framework.collection;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * 基于open addressing的{@link IntObjectMap}实现, 线性探测, 删除时使用backward shift
+ * value不允许为null, 故null value即表示空slot, key=0不需要特殊处理
+ * value是对象引用, 故仅支持堆内存储
+ * 非线程安全
+ *
+ * @author huangjianqin
+ * @date 2023/7/19
+ */
+public class IntObjectHashMap<V> implements IntObjectMap<V> {
+    private int[] keys;
+    private V[] values;
+    /** slot数量-1 */
+    private int mask;
+    /** 扩容阈值 */
+    private int resizeThreshold;
+    /** 元素数量 */
+    private int size;
+
+    public IntObjectHashMap() {
+        this(PrimitiveCollections.DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * @param expectedSize 期望元素数量
+     */
+    public IntObjectHashMap(int expectedSize) {
+        allocate(PrimitiveCollections.capacity(expectedSize));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = (V[]) new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = PrimitiveCollections.resizeThreshold(capacity);
+    }
+
+    /**
+     * @return key所在slot, 不存在则返回-1
+     */
+    private int indexOf(int key) {
+        int[] keys = this.keys;
+        V[] values = this.values;
+        int mask = this.mask;
+        int index = PrimitiveCollections.hash(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    @Override
+    public V get(int key) {
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public V put(int key, V value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(int key, V value) {
+        return put(key, value, true);
+    }
+
+    private V put(int key, V value, boolean onlyIfAbsent) {
+        Preconditions.checkNotNull(value, "value must be not null");
+        if (size >= resizeThreshold) {
+            rehash(PrimitiveCollections.nextCapacity(keys.length));
+        }
+
+        int[] keys = this.keys;
+        V[] values = this.values;
+        int mask = this.mask;
+        int index = PrimitiveCollections.hash(key) & mask;
+        V old;
+        while ((old = values[index]) != null) {
+            if (keys[index] == key) {
+                if (!onlyIfAbsent) {
+                    values[index] = value;
+                }
+                return old;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+        return null;
+    }
+
+    @Override
+    public V computeIfAbsent(int key, IntFunction<? extends V> mappingFunction) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            return values[index];
+        }
+        V value = mappingFunction.apply(key);
+        if (value != null) {
+            put(key, value, false);
+        }
+        return value;
+    }
+
+    @Override
+    public V remove(int key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        V old = values[index];
+        removeAt(index);
+        return old;
+    }
+
+    /**
+     * 移除指定slot, 并把后续同一探测链上的slot往前移, 填补空缺
+     */
+    private void removeAt(int index) {
+        int[] keys = this.keys;
+        V[] values = this.values;
+        int mask = this.mask;
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int ideal = PrimitiveCollections.hash(keys[next]) & mask;
+            //ideal不在(gap, next]区间内, 说明next可以前移到gap
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+        size--;
+    }
+
+    /**
+     * 扩容并重新hash所有key
+     */
+    private void rehash(int newCapacity) {
+        int[] oldKeys = this.keys;
+        V[] oldValues = this.values;
+        allocate(newCapacity);
+        int[] keys = this.keys;
+        V[] values = this.values;
+        int mask = this.mask;
+        for (int i = 0; i < oldValues.length; i++) {
+            V value = oldValues[i];
+            if (value == null) {
+                continue;
+            }
+            int key = oldKeys[i];
+            int index = PrimitiveCollections.hash(key) & mask;
+            while (values[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            values[index] = value;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, 0);
+            Arrays.fill(values, null);
+            size = 0;
+        }
+    }
+
+    @Override
+    public void forEach(EntryConsumer<? super V> consumer) {
+        int[] keys = this.keys;
+        V[] values = this.values;
+        for (int i = 0; i < values.length; i++) {
+            V value = values[i];
+            if (value != null) {
+                consumer.accept(keys[i], value);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((k, v) -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(k).append('=').append(v);
+        });
+        return sb.append('}').toString();
+    }
+}
@@ -4,6 +4,9 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
+ * 基于{@link LinkedHashMap}访问顺序实现的LRU map, 非线程安全, 并且get也会修改访问顺序, 故并发场景需外部加锁
+ * 并发场景建议使用{@link BoundedConcurrentMap}
+ *
  * @author huangjianqin
  * @date 2017/10/28
  */
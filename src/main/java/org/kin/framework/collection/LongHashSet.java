@@ -0,0 +1,108 @@
+package org.kin.framework.collection;
+
+import java.util.function.LongConsumer;
+
+/**
+ * 基于open addressing的long set, 避免{@code Set<Long>}的装箱成本以及entry对象内存开销
+ * 支持堆外存储, 此时使用完后必须调用{@link #close()}释放内存
+ * 非线程安全
+ *
+ * @author huangjianqin
+ * @date 2023/7/19
+ */
+public class LongHashSet extends AbstractLongHashTable {
+    public LongHashSet() {
+        this(PrimitiveCollections.DEFAULT_EXPECTED_SIZE);
+    }
+
+    public LongHashSet(int expectedSize) {
+        this(expectedSize, false);
+    }
+
+    /**
+     * @param expectedSize 期望元素数量
+     * @param offHeap      是否使用堆外存储
+     */
+    public LongHashSet(int expectedSize, boolean offHeap) {
+        super(expectedSize, 1, offHeap);
+    }
+
+    /**
+     * @return 是否新增成功, false则表示已存在
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (hasZeroKey) {
+                return false;
+            }
+            hasZeroKey = true;
+            return true;
+        }
+        return insert(value) < 0;
+    }
+
+    /**
+     * @return 是否存在
+     */
+    public boolean contains(long value) {
+        if (value == 0) {
+            return hasZeroKey;
+        }
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * @return 是否移除成功, false则表示不存在
+     */
+    public boolean remove(long value) {
+        if (value == 0) {
+            boolean had = hasZeroKey;
+            hasZeroKey = false;
+            return had;
+        }
+        int index = indexOf(value);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * 遍历所有元素, 遍历过程中不能修改set
+     */
+    public void forEach(LongConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(0);
+        }
+        LongSlots slots = this.slots;
+        for (int i = 0; i < slots.capacity(); i++) {
+            long value = slots.get(i, 0);
+            if (value != 0) {
+                consumer.accept(value);
+            }
+        }
+    }
+
+    /**
+     * @return 所有元素
+     */
+    public long[] toArray() {
+        long[] array = new long[size()];
+        int[] index = {0};
+        forEach(value -> array[index[0]++] = value);
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        forEach(value -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(value);
+        });
+        return sb.append(']').toString();
+    }
+}
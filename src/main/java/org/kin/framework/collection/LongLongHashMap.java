@@ -0,0 +1,183 @@
+package org.kin.framework.collection;
+
+import java.util.function.LongUnaryOperator;
+
+/**
+ * 基于open addressing的{@link LongLongMap}实现, key和value连续存储在同一个slot, 查询仅需访问一次内存
+ * 支持堆外存储, 减少大map对gc的压力, 此时使用完后必须调用{@link #close()}释放内存
+ * 非线程安全, 并发场景可以使用{@link ConcurrentLongLongMap}
+ *
+ * @author huangjianqin
+ * @date 2023/7/19
+ */
+public class LongLongHashMap extends AbstractLongHashTable implements LongLongMap {
+    /** 表示key不存在的value */
+    private final long missingValue;
+    /** key=0对应的value */
+    private long zeroValue;
+
+    public LongLongHashMap() {
+        this(PrimitiveCollections.DEFAULT_EXPECTED_SIZE);
+    }
+
+    public LongLongHashMap(int expectedSize) {
+        this(expectedSize, false);
+    }
+
+    public LongLongHashMap(int expectedSize, boolean offHeap) {
+        this(expectedSize, offHeap, 0);
+    }
+
+    /**
+     * @param expectedSize 期望元素数量
+     * @param offHeap      是否使用堆外存储
+     * @param missingValue 表示key不存在的value
+     */
+    public LongLongHashMap(int expectedSize, boolean offHeap, long missingValue) {
+        super(expectedSize, 2, offHeap);
+        this.missingValue = missingValue;
+    }
+
+    @Override
+    public long get(long key) {
+        return getOrDefault(key, missingValue);
+    }
+
+    @Override
+    public long getOrDefault(long key, long defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : slots.get(index, 1);
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public long put(long key, long value) {
+        if (key == 0) {
+            long old = hasZeroKey ? zeroValue : missingValue;
+            hasZeroKey = true;
+            zeroValue = value;
+            return old;
+        }
+        int index = insert(key);
+        if (index < 0) {
+            slots.set(~index, 1, value);
+            return missingValue;
+        }
+        long old = slots.get(index, 1);
+        slots.set(index, 1, value);
+        return old;
+    }
+
+    @Override
+    public long putIfAbsent(long key, long value) {
+        if (key == 0) {
+            if (hasZeroKey) {
+                return zeroValue;
+            }
+            hasZeroKey = true;
+            zeroValue = value;
+            return missingValue;
+        }
+        int index = insert(key);
+        if (index < 0) {
+            slots.set(~index, 1, value);
+            return missingValue;
+        }
+        return slots.get(index, 1);
+    }
+
+    @Override
+    public long addTo(long key, long delta) {
+        if (key == 0) {
+            zeroValue = hasZeroKey ? zeroValue + delta : delta;
+            hasZeroKey = true;
+            return zeroValue;
+        }
+        int index = insert(key);
+        if (index < 0) {
+            slots.set(~index, 1, delta);
+            return delta;
+        }
+        long value = slots.get(index, 1) + delta;
+        slots.set(index, 1, value);
+        return value;
+    }
+
+    @Override
+    public long computeIfAbsent(long key, LongUnaryOperator mappingFunction) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                zeroValue = mappingFunction.applyAsLong(key);
+                hasZeroKey = true;
+            }
+            return zeroValue;
+        }
+        int index = indexOf(key);
+        if (index >= 0) {
+            return slots.get(index, 1);
+        }
+        //先计算value, 防止mappingFunction异常导致key已插入
+        long value = mappingFunction.applyAsLong(key);
+        slots.set(~insert(key), 1, value);
+        return value;
+    }
+
+    @Override
+    public long remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return missingValue;
+            }
+            hasZeroKey = false;
+            return zeroValue;
+        }
+        int index = indexOf(key);
+        if (index < 0) {
+            return missingValue;
+        }
+        long old = slots.get(index, 1);
+        removeAt(index);
+        return old;
+    }
+
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(0, zeroValue);
+        }
+        LongSlots slots = this.slots;
+        for (int i = 0; i < slots.capacity(); i++) {
+            long key = slots.get(i, 0);
+            if (key != 0) {
+                consumer.accept(key, slots.get(i, 1));
+            }
+        }
+    }
+
+    @Override
+    public long missingValue() {
+        return missingValue;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((k, v) -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(k).append('=').append(v);
+        });
+        return sb.append('}').toString();
+    }
+}
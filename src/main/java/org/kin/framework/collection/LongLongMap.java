@@ -0,0 +1,88 @@
+package org.kin.framework.collection;
+
+import java.util.function.LongUnaryOperator;
+
+/**
+ * key和value都是long的map, 避免{@code Map<Long, Long>}的装箱成本以及entry对象内存开销
+ * 因为value是基础类型, 故使用{@link #missingValue()}表示key不存在
+ *
+ * @author huangjianqin
+ * @date 2023/7/19
+ */
+public interface LongLongMap {
+    /**
+     * @return key对应的value, 不存在则返回{@link #missingValue()}
+     */
+    long get(long key);
+
+    /**
+     * @return key对应的value, 不存在则返回{@code defaultValue}
+     */
+    long getOrDefault(long key, long defaultValue);
+
+    /**
+     * @return 是否包含key
+     */
+    boolean containsKey(long key);
+
+    /**
+     * @return 旧value, 不存在则返回{@link #missingValue()}
+     */
+    long put(long key, long value);
+
+    /**
+     * @return 旧value, 不存在则返回{@link #missingValue()}并插入新value
+     */
+    long putIfAbsent(long key, long value);
+
+    /**
+     * key对应的value加上{@code delta}, key不存在则认为旧value为0
+     *
+     * @return 新value
+     */
+    long addTo(long key, long delta);
+
+    /**
+     * key不存在时, 才计算并插入value
+     *
+     * @return key对应的value
+     */
+    long computeIfAbsent(long key, LongUnaryOperator mappingFunction);
+
+    /**
+     * @return 被移除的value, 不存在则返回{@link #missingValue()}
+     */
+    long remove(long key);
+
+    /**
+     * @return 元素数量
+     */
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 移除所有元素
+     */
+    void clear();
+
+    /**
+     * 遍历所有元素, 遍历过程中不能修改map
+     */
+    void forEach(EntryConsumer consumer);
+
+    /**
+     * @return 表示key不存在的value
+     */
+    long missingValue();
+
+    /**
+     * 遍历{@link LongLongMap}元素的consumer
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long key, long value);
+    }
+}
@@ -0,0 +1,71 @@
+package org.kin.framework.collection;
+
+import java.util.function.LongFunction;
+
+/**
+ * key是long的map, 避免{@code Map<Long, V>}的key装箱成本以及entry对象内存开销
+ * 不允许null value, null表示key不存在
+ *
+ * @author huangjianqin
+ * @date 2023/7/19
+ */
+public interface LongObjectMap<V> {
+    /**
+     * @return key对应的value, 不存在则返回null
+     */
+    V get(long key);
+
+    /**
+     * @return 是否包含key
+     */
+    boolean containsKey(long key);
+
+    /**
+     * @return 旧value, 不存在则返回null
+     */
+    V put(long key, V value);
+
+    /**
+     * @return 旧value, 不存在则返回null并插入新value
+     */
+    V putIfAbsent(long key, V value);
+
+    /**
+     * key不存在时, 才计算并插入value, 如果计算结果为null, 则不插入
+     *
+     * @return key对应的value
+     */
+    V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction);
+
+    /**
+     * @return 被移除的value, 不存在则返回null
+     */
+    V remove(long key);
+
+    /**
+     * @return 元素数量
+     */
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 移除所有元素
+     */
+    void clear();
+
+    /**
+     * 遍历所有元素, 遍历过程中不能修改map
+     */
+    void forEach(EntryConsumer<? super V> consumer);
+
+    /**
+     * 遍历{@link LongObjectMap}元素的consumer
+     */
+    @FunctionalInterface
+    interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+}
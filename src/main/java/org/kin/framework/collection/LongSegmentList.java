@@ -0,0 +1,139 @@
+package org.kin.framework.collection;
+
+import java.io.File;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * long版本的{@link SegmentList}, 元素直接存储在long[], direct buffer或者内存映射文件中, 没有装箱成本
+ * 仅支持从head或者tail移除元素, 非线程安全
+ * 堆外或者内存映射存储使用完后建议调用{@link #close()}
+ *
+ * @author huangjianqin
+ * @date 2023/7/22
+ */
+public class LongSegmentList extends AbstractPrimitiveSegmentList<long[], PrimitiveSegment.LongSegment> {
+    public LongSegmentList() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    public LongSegmentList(int segmentSize) {
+        this(segmentSize, false);
+    }
+
+    /**
+     * @param segmentSize segment容量, 会向上取2的n次方
+     * @param offHeap     是否使用堆外存储
+     */
+    public LongSegmentList(int segmentSize, boolean offHeap) {
+        super(PrimitiveSegmentAllocator.ElementType.LONG, segmentSize, offHeap, null);
+    }
+
+    /**
+     * @param segmentSize segment容量, 会向上取2的n次方
+     * @param mappedFile  内存映射文件, 会清空文件原有内容
+     */
+    public LongSegmentList(int segmentSize, File mappedFile) {
+        super(PrimitiveSegmentAllocator.ElementType.LONG, segmentSize, false, mappedFile);
+    }
+
+    /**
+     * 取指定index的element
+     */
+    public long get(int index) {
+        int alignedIndex = align(index);
+        return segmentOf(alignedIndex).get(alignedIndex & segmentMask);
+    }
+
+    /**
+     * 取第一个element
+     */
+    public long peekFirst() {
+        PrimitiveSegment.LongSegment firstSeg = firstSegment();
+        return firstSeg.get(firstSeg.offset);
+    }
+
+    /**
+     * 取最后一个element
+     */
+    public long peekLast() {
+        PrimitiveSegment.LongSegment lastSeg = lastSegment();
+        return lastSeg.get(lastSeg.pos - 1);
+    }
+
+    /**
+     * add element
+     */
+    public void add(long e) {
+        PrimitiveSegment.LongSegment lastSeg = appendSegment();
+        lastSeg.put(lastSeg.pos++, e);
+        appended(1);
+    }
+
+    /**
+     * 添加{@code src}全部elements
+     */
+    public void addAll(long[] src) {
+        addAll0(src, 0, src.length);
+    }
+
+    /**
+     * 添加{@code src}从{@code srcPos}开始的{@code len}个elements
+     */
+    public void addAll(long[] src, int srcPos, int len) {
+        addAll0(src, srcPos, len);
+    }
+
+    /**
+     * 从head开始移除, 直到不满足条件
+     */
+    public void removeFromFirstWhen(LongPredicate predicate) {
+        removeFromFirstWhen0((segment, index) -> predicate.test(segment.get(index)));
+    }
+
+    /**
+     * 从tail开始移除, 直到不满足条件
+     */
+    public void removeFromLastWhen(LongPredicate predicate) {
+        removeFromLastWhen0((segment, index) -> predicate.test(segment.get(index)));
+    }
+
+    /**
+     * 按顺序遍历所有element
+     */
+    public void forEach(LongConsumer consumer) {
+        forEachSegment((elements, from, to) -> {
+            for (int i = from; i < to; i++) {
+                consumer.accept(elements[i]);
+            }
+        });
+    }
+
+    /**
+     * 按顺序遍历所有segment, 每个segment仅回调一次, 以便consumer对连续数组进行(可被jit向量化的)批量计算
+     * 堆内存储直接回调segment底层数组, 堆外存储则先复制到临时数组再回调, 故consumer不能修改或者持有数组
+     */
+    public void forEachSegment(SegmentConsumer consumer) {
+        forEachSegment0(consumer::accept);
+    }
+
+    /**
+     * @return 所有element
+     */
+    public long[] toArray() {
+        return toArray0();
+    }
+
+    /**
+     * segment遍历回调
+     */
+    @FunctionalInterface
+    public interface SegmentConsumer {
+        /**
+         * @param elements segment元素数组
+         * @param from     第一个元素下标(inclusive)
+         * @param to       最后一个元素下标(exclusive)
+         */
+        void accept(long[] elements, int from, int to);
+    }
+}
@@ -0,0 +1,158 @@
+package org.kin.framework.collection;
+
+import com.google.common.base.Preconditions;
+import org.kin.framework.utils.UnsafeUtil;
+
+/**
+ * long slot存储, 每个slot由{@code width}个long组成, 初始值都为0
+ * 支持堆内(long[])和堆外(direct memory)存储, 堆外存储不受gc管理, 使用完后必须调用{@link #release()}
+ *
+ * @author huangjianqin
+ * @date 2023/7/19
+ */
+abstract class LongSlots {
+    /** slot数量 */
+    protected final int capacity;
+    /** 每个slot的long数量 */
+    protected final int width;
+
+    protected LongSlots(int capacity, int width) {
+        this.capacity = capacity;
+        this.width = width;
+    }
+
+    /**
+     * @param offHeap 是否使用堆外存储, 如果不支持unsafe, 则仍使用堆内存储
+     */
+    static LongSlots allocate(int capacity, int width, boolean offHeap) {
+        if (offHeap && UnsafeUtil.hasUnsafe()) {
+            return new OffHeap(capacity, width);
+        }
+        return new Heap(capacity, width);
+    }
+
+    /**
+     * @return 指定slot的第{@code offset}个long
+     */
+    abstract long get(int slot, int offset);
+
+    /**
+     * 设置指定slot的第{@code offset}个long
+     */
+    abstract void set(int slot, int offset, long value);
+
+    /**
+     * 所有long重置为0
+     */
+    abstract void clear();
+
+    /**
+     * 释放存储
+     */
+    abstract void release();
+
+    /**
+     * @return 是否是堆外存储
+     */
+    abstract boolean isOffHeap();
+
+    /**
+     * @return 占用内存字节数
+     */
+    long bytes() {
+        return (long) capacity * width * Long.BYTES;
+    }
+
+    //getter
+    int capacity() {
+        return capacity;
+    }
+
+    //-------------------------------------------------------------------------------------------------
+
+    /**
+     * 堆内存储
+     */
+    private static final class Heap extends LongSlots {
+        private final long[] array;
+
+        Heap(int capacity, int width) {
+            super(capacity, width);
+            long length = (long) capacity * width;
+            Preconditions.checkArgument(length <= Integer.MAX_VALUE - 8, "capacity is too large for heap storage, " + capacity);
+            this.array = new long[(int) length];
+        }
+
+        @Override
+        long get(int slot, int offset) {
+            return array[slot * width + offset];
+        }
+
+        @Override
+        void set(int slot, int offset, long value) {
+            array[slot * width + offset] = value;
+        }
+
+        @Override
+        void clear() {
+            java.util.Arrays.fill(array, 0L);
+        }
+
+        @Override
+        void release() {
+            //gc回收
+        }
+
+        @Override
+        boolean isOffHeap() {
+            return false;
+        }
+    }
+
+    /**
+     * 堆外存储
+     */
+    private static final class OffHeap extends LongSlots {
+        /** direct memory address */
+        private long address;
+
+        OffHeap(int capacity, int width) {
+            super(capacity, width);
+            long bytes = bytes();
+            this.address = UnsafeUtil.allocateMemory(bytes);
+            UnsafeUtil.setMemory(address, bytes, (byte) 0);
+        }
+
+        private long offset(int slot, int offset) {
+            return address + (((long) slot * width + offset) << 3);
+        }
+
+        @Override
+        long get(int slot, int offset) {
+            return UnsafeUtil.getLong(offset(slot, offset));
+        }
+
+        @Override
+        void set(int slot, int offset, long value) {
+            UnsafeUtil.putLong(offset(slot, offset), value);
+        }
+
+        @Override
+        void clear() {
+            UnsafeUtil.setMemory(address, bytes(), (byte) 0);
+        }
+
+        @Override
+        void release() {
+            if (address != 0) {
+                UnsafeUtil.freeMemory(address);
+                address = 0;
+            }
+        }
+
+        @Override
+        boolean isOffHeap() {
+            return true;
+        }
+    }
+}
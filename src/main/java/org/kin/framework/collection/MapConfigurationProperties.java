@@ -1,8 +1,6 @@
 package org.kin.framework.collection;
 
 import org.kin.framework.utils.CollectionUtils;
-import org.kin.framework.utils.IllegalFormatException;
-import org.kin.framework.utils.StringUtils;
 
 import javax.annotation.Nullable;
 import java.util.*;
@@ -13,15 +11,16 @@ import java.util.function.Function;
  * @date 2023/9/23
  */
 public class MapConfigurationProperties implements ConfigurationProperties, Map<String, Object> {
-    /** properties */
-    private final Map<String, Object> properties;
+    /** properties, 一般仅有少量property, 故使用紧凑存储 */
+    private final CompactStringMap properties;
 
     public MapConfigurationProperties() {
         this(Collections.emptyMap());
     }
 
     public MapConfigurationProperties(Map<String, ?> properties) {
-        this.properties = new HashMap<>(properties);
+        this.properties = new CompactStringMap("property");
+        this.properties.putAll(properties);
     }
 
     @Override
@@ -38,6 +37,26 @@ public class MapConfigurationProperties implements ConfigurationProperties, Map<
         return properties.put(key, obj);
     }
 
+    @Override
+    public void putBool(String key, boolean value) {
+        properties.putBool(key, value);
+    }
+
+    @Override
+    public void putInt(String key, int value) {
+        properties.putInt(key, value);
+    }
+
+    @Override
+    public void putLong(String key, long value) {
+        properties.putLong(key, value);
+    }
+
+    @Override
+    public void putDouble(String key, double value) {
+        properties.putDouble(key, value);
+    }
+
     @Override
     public boolean contains(String key) {
         return properties.containsKey(key);
@@ -58,122 +77,39 @@ public class MapConfigurationProperties implements ConfigurationProperties, Map<
 
     @Override
     public boolean getBool(String key, boolean defaultValue) {
-        Object value = get(key);
-        if (Objects.nonNull(value)) {
-            Class<?> valueClass = value.getClass();
-            if (Boolean.class.equals(valueClass)) {
-                return (boolean) value;
-            } else if (String.class.equals(valueClass)) {
-                String valueStr = (String) value;
-                if (StringUtils.isNumeric(valueStr)) {
-                    return Long.parseLong(valueStr) > 0;
-                } else {
-                    return Boolean.parseBoolean(value.toString().trim());
-                }
-            } else {
-                throw new IllegalFormatException(String.format("property '%s' is not a boolean", value));
-            }
-        }
-        return defaultValue;
+        return properties.getBool(key, defaultValue);
     }
 
     @Override
     public byte getByte(String key, byte defaultValue) {
-        Object value = get(key);
-        if (Objects.nonNull(value)) {
-            Class<?> valueClass = value.getClass();
-            if (Byte.class.equals(valueClass)) {
-                return (byte) value;
-            } else if (String.class.equals(valueClass)) {
-                return Byte.parseByte(value.toString().trim());
-            } else {
-                throw new IllegalFormatException(String.format("property '%s' is not a byte", value));
-            }
-        }
-        return defaultValue;
+        return properties.getByte(key, defaultValue);
     }
 
     @Override
     public short getShort(String key, short defaultValue) {
-        Object value = get(key);
-        if (Objects.nonNull(value)) {
-            Class<?> valueClass = value.getClass();
-            if (Short.class.equals(valueClass)) {
-                return (short) value;
-            } else if (String.class.equals(valueClass)) {
-                return Short.parseShort(value.toString().trim());
-            } else {
-                throw new IllegalFormatException(String.format("property '%s' is not a short", value));
-            }
-        }
-        return defaultValue;
+        return properties.getShort(key, defaultValue);
     }
 
     @Override
     public int getInt(String key, int defaultValue) {
-        Object value = get(key);
-        if (Objects.nonNull(value)) {
-            Class<?> valueClass = value.getClass();
-            if (Integer.class.equals(valueClass)) {
-                return (int) value;
-            } else if (String.class.equals(valueClass)) {
-                return Integer.parseInt(value.toString().trim());
-            } else {
-                throw new IllegalFormatException(String.format("property '%s' is not a integer", value));
-            }
-        }
-        return defaultValue;
+        return properties.getInt(key, defaultValue);
     }
 
     @Override
     public long getLong(String key, long defaultValue) {
-        Object value = get(key);
-        if (Objects.nonNull(value)) {
-            Class<?> valueClass = value.getClass();
-            if (Long.class.equals(valueClass)) {
-                return (long) value;
-            } else if (String.class.equals(valueClass)) {
-                return Long.parseLong(value.toString().trim());
-            } else {
-                throw new IllegalFormatException(String.format("property '%s' is not a long", value));
-            }
-        }
-        return defaultValue;
+        return properties.getLong(key, defaultValue);
     }
 
     @Override
     public float getFloat(String key, float defaultValue) {
-        Object value = get(key);
-        if (Objects.nonNull(value)) {
-            Class<?> valueClass = value.getClass();
-            if (Float.class.equals(valueClass)) {
-                return (float) value;
-            } else if (String.class.equals(valueClass)) {
-                return Float.parseFloat(value.toString().trim());
-            } else {
-                throw new IllegalFormatException(String.format("property '%s' is not a float", value));
-            }
-        }
-        return defaultValue;
+        return properties.getFloat(key, defaultValue);
     }
 
     @Override
     public double getDouble(String key, double defaultValue) {
-        Object value = get(key);
-        if (Objects.nonNull(value)) {
-            Class<?> valueClass = value.getClass();
-            if (Double.class.equals(valueClass)) {
-                return (double) value;
-            } else if (String.class.equals(valueClass)) {
-                return Double.parseDouble(value.toString().trim());
-            } else {
-                throw new IllegalFormatException(String.format("property '%s' is not a double", value));
-            }
-        }
-        return defaultValue;
+        return properties.getDouble(key, defaultValue);
     }
 
-    @Nullable
     @Override
     public <T> T get(String key, Function<Object, T> func) {
         Object value = get(key);
@@ -0,0 +1,391 @@
+package org.kin.framework.collection;
+
+import com.google.common.base.Preconditions;
+
+import java.util.*;
+
+import static org.kin.framework.collection.PriorityQueueNode.INDEX_NOT_IN_QUEUE;
+
+/**
+ * pairing heap实现的{@link PriorityQueue}
+ * offer和meld仅需一次比较, 时间复杂度O(1), poll均摊O(log n), 优先级降低(decrease-key)仅需把子树剪下再与root合并, 均摊o(log n)
+ * 适合offer远多于poll, 或者频繁调整优先级的场景
+ * <p>
+ * 元素包装成树节点, 节点存放在slot数组中并复用, {@link PriorityQueueNode#priorityQueueIndex(PriorityQueue)}存储的是节点slot
+ *
+ * @param <T> The object that is maintained in the queue.
+ * @author huangjianqin
+ * @date 2023/7/23
+ */
+public final class PairingPriorityQueue<T extends PriorityQueueNode> extends AbstractQueue<T>
+        implements PriorityQueue<T> {
+    private final Comparator<T> comparator;
+    /** slot -> 节点 */
+    private Node<T>[] nodes;
+    /** 空闲slot栈 */
+    private int[] freeSlots;
+    private int freeCount;
+    /** 已分配过的slot上限(exclusive) */
+    private int slotLimit;
+    /** 堆顶 */
+    private Node<T> root;
+    private int size;
+    /** two-pass merge的临时栈 */
+    private Node<T>[] mergeStack;
+
+    public PairingPriorityQueue(Comparator<T> comparator, int initialSize) {
+        Preconditions.checkNotNull(comparator, "comparator must be not null");
+        this.comparator = comparator;
+        int capacity = Math.max(initialSize, 2);
+        this.nodes = newNodes(capacity);
+        this.freeSlots = new int[capacity];
+        this.mergeStack = newNodes(16);
+    }
+
+    /**
+     * 创建节点数组, 无法直接创建泛型数组, 故仅此处unchecked cast
+     */
+    private static <T> Node<T>[] newNodes(int size) {
+        @SuppressWarnings("unchecked")
+        Node<T>[] nodes = (Node<T>[]) new Node<?>[size];
+        return nodes;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof PriorityQueueNode)) {
+            return false;
+        }
+        PriorityQueueNode node = (PriorityQueueNode) o;
+        return contains(node, node.priorityQueueIndex(this));
+    }
+
+    @Override
+    public boolean containsTyped(T node) {
+        return contains(node, node.priorityQueueIndex(this));
+    }
+
+    private boolean contains(PriorityQueueNode node, int slot) {
+        return slot >= 0 && slot < slotLimit && node.equals(nodes[slot].value);
+    }
+
+    @Override
+    public boolean offer(T e) {
+        if (e.priorityQueueIndex(this) != INDEX_NOT_IN_QUEUE) {
+            throw new IllegalArgumentException("e.priorityQueueIndex(): " + e.priorityQueueIndex(this) +
+                    " (expected: " + INDEX_NOT_IN_QUEUE + ") + e: " + e);
+        }
+
+        Node<T> node = allocate();
+        node.value = e;
+        e.priorityQueueIndex(this, node.slot);
+        root = root == null ? node : meld(root, node);
+        size++;
+        return true;
+    }
+
+    @Override
+    public T poll() {
+        Node<T> root = this.root;
+        if (root == null) {
+            return null;
+        }
+        T result = root.value;
+        this.root = mergePairs(root.child);
+        release(root);
+        size--;
+        result.priorityQueueIndex(this, INDEX_NOT_IN_QUEUE);
+        return result;
+    }
+
+    @Override
+    public T peek() {
+        return root == null ? null : root.value;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean remove(Object o) {
+        final T node;
+        try {
+            node = (T) o;
+        } catch (ClassCastException e) {
+            return false;
+        }
+        return removeTyped(node);
+    }
+
+    @Override
+    public boolean removeTyped(T e) {
+        int slot = e.priorityQueueIndex(this);
+        if (!contains(e, slot)) {
+            return false;
+        }
+
+        Node<T> node = nodes[slot];
+        if (node == root) {
+            poll();
+            return true;
+        }
+
+        cut(node);
+        Node<T> subHeap = mergePairs(node.child);
+        if (subHeap != null) {
+            root = meld(root, subHeap);
+        }
+        release(node);
+        size--;
+        e.priorityQueueIndex(this, INDEX_NOT_IN_QUEUE);
+        return true;
+    }
+
+    @Override
+    public void priorityChanged(T e) {
+        int slot = e.priorityQueueIndex(this);
+        if (!contains(e, slot)) {
+            return;
+        }
+
+        Node<T> node = nodes[slot];
+        if (node != root) {
+            cut(node);
+            if (lessThanOrEqualToChildren(node)) {
+                //优先级变高(decrease-key), 子树仍满足堆性质, 直接与root合并
+                root = meld(root, node);
+                return;
+            }
+        } else {
+            root = null;
+        }
+
+        //优先级变低, 子节点合并后与当前节点分别重新与root合并
+        Node<T> subHeap = mergePairs(node.child);
+        node.child = null;
+        if (subHeap != null) {
+            root = root == null ? subHeap : meld(root, subHeap);
+        }
+        root = root == null ? node : meld(root, node);
+    }
+
+    /**
+     * @return 节点是否小于等于所有子节点
+     */
+    private boolean lessThanOrEqualToChildren(Node<T> node) {
+        for (Node<T> child = node.child; child != null; child = child.sibling) {
+            if (comparator.compare(child.value, node.value) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < slotLimit; i++) {
+            Node<T> node = nodes[i];
+            if (node.value != null) {
+                node.value.priorityQueueIndex(this, INDEX_NOT_IN_QUEUE);
+                node.value = null;
+            }
+        }
+        clearIgnoringIndexes();
+    }
+
+    @Override
+    public void clearIgnoringIndexes() {
+        root = null;
+        size = 0;
+        slotLimit = 0;
+        freeCount = 0;
+    }
+
+    /**
+     * This iterator does not return elements in any particular order.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new PriorityQueueIterator();
+    }
+
+    //------------------------------------------------------------------------------------------------------------heap
+
+    /**
+     * 合并两个堆, 参数都必须是没有兄弟节点的树根
+     *
+     * @return 新的树根
+     */
+    private Node<T> meld(Node<T> a, Node<T> b) {
+        if (comparator.compare(b.value, a.value) < 0) {
+            Node<T> tmp = a;
+            a = b;
+            b = tmp;
+        }
+        //b成为a的第一个子节点
+        Node<T> firstChild = a.child;
+        b.prev = a;
+        b.sibling = firstChild;
+        if (firstChild != null) {
+            firstChild.prev = b;
+        }
+        a.child = b;
+        return a;
+    }
+
+    /**
+     * two-pass合并兄弟节点链表: 从左到右两两合并, 再从右到左依次合并
+     *
+     * @return 新的树根
+     */
+    private Node<T> mergePairs(Node<T> first) {
+        if (first == null) {
+            return null;
+        }
+
+        int count = 0;
+        Node<T> current = first;
+        while (current != null) {
+            Node<T> a = current;
+            Node<T> b = a.sibling;
+            if (b == null) {
+                a.prev = null;
+                push(count++, a);
+                break;
+            }
+            current = b.sibling;
+            a.prev = a.sibling = null;
+            b.prev = b.sibling = null;
+            push(count++, meld(a, b));
+        }
+
+        Node<T>[] stack = mergeStack;
+        Node<T> result = stack[--count];
+        stack[count] = null;
+        while (count > 0) {
+            result = meld(stack[--count], result);
+            stack[count] = null;
+        }
+        return result;
+    }
+
+    private void push(int index, Node<T> node) {
+        if (index >= mergeStack.length) {
+            mergeStack = Arrays.copyOf(mergeStack, mergeStack.length << 1);
+        }
+        mergeStack[index] = node;
+    }
+
+    /**
+     * 把以{@code node}为根的子树从树中剪下
+     */
+    private void cut(Node<T> node) {
+        Node<T> prev = node.prev;
+        Node<T> sibling = node.sibling;
+        if (prev.child == node) {
+            prev.child = sibling;
+        } else {
+            prev.sibling = sibling;
+        }
+        if (sibling != null) {
+            sibling.prev = prev;
+        }
+        node.prev = node.sibling = null;
+    }
+
+    /**
+     * 申请节点
+     */
+    private Node<T> allocate() {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotLimit == nodes.length) {
+                int newCapacity = nodes.length + (nodes.length < 64 ? nodes.length + 2 : nodes.length >>> 1);
+                nodes = Arrays.copyOf(nodes, newCapacity);
+                freeSlots = Arrays.copyOf(freeSlots, newCapacity);
+            }
+            slot = slotLimit++;
+        }
+
+        Node<T> node = nodes[slot];
+        if (node == null) {
+            nodes[slot] = node = new Node<>(slot);
+        } else {
+            node.child = node.sibling = node.prev = null;
+        }
+        return node;
+    }
+
+    /**
+     * 回收节点
+     */
+    private void release(Node<T> node) {
+        node.value = null;
+        node.child = node.sibling = node.prev = null;
+        freeSlots[freeCount++] = node.slot;
+    }
+
+    //------------------------------------------------------------------------------------------------------------inner class
+
+    /**
+     * 树节点, 左孩子右兄弟表示法
+     */
+    private static final class Node<T> {
+        private final int slot;
+        private T value;
+        /** 第一个子节点 */
+        private Node<T> child;
+        /** 下一个兄弟节点 */
+        private Node<T> sibling;
+        /** 如果是第一个子节点, 则为父节点, 否则为上一个兄弟节点 */
+        private Node<T> prev;
+
+        Node(int slot) {
+            this.slot = slot;
+        }
+    }
+
+    private final class PriorityQueueIterator implements Iterator<T> {
+        private int slot = -1;
+
+        PriorityQueueIterator() {
+            advance();
+        }
+
+        private void advance() {
+            do {
+                slot++;
+            } while (slot < slotLimit && nodes[slot].value == null);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return slot < slotLimit;
+        }
+
+        @Override
+        public T next() {
+            if (slot >= slotLimit) {
+                throw new NoSuchElementException();
+            }
+            T value = nodes[slot].value;
+            advance();
+            return value;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+    }
+}
@@ -0,0 +1,578 @@
+package org.kin.framework.collection;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * 基于hash array mapped trie(HAMT)的不可变map
+ * 每层节点使用32位bitmap + 紧凑数组存储key-value或者子节点, 每次修改仅复制从root到目标节点路径上的节点(O(log32 n)),
+ * 其余节点与旧map共享, 故非常适合作为copy-on-write map的底层存储
+ * <p>
+ * 所有{@link Map}修改方法都会抛出{@link UnsupportedOperationException}, 修改需使用{@link #with(Object, Object)}, {@link #without(Object)}
+ * 返回新map, 或者通过{@link #edit()}批量修改
+ * 支持null key和null value
+ *
+ * @author huangjianqin
+ * @date 2023/7/21
+ */
+@Immutable
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+    @SuppressWarnings("rawtypes")
+    private static final PersistentHashMap EMPTY = new PersistentHashMap<>(0, null, false, null);
+    /** 查询不到key时的返回值 */
+    private static final Object NOT_FOUND = new Object();
+    /** 每层消费的hash位数 */
+    private static final int BITS = 5;
+    /** 节点最大深度, 32位hash在第7层耗尽, 再加上hash冲突节点 */
+    private static final int MAX_DEPTH = 8;
+
+    /** 元素数量 */
+    private final int size;
+    /** 根节点, 空map则为null */
+    private final Node root;
+    /** 是否包含null key */
+    private final boolean hasNull;
+    /** null key对应的value */
+    private final V nullValue;
+    /** lazy init */
+    private transient Set<Entry<K, V>> entrySet;
+
+    private PersistentHashMap(int size, Node root, boolean hasNull, V nullValue) {
+        this.size = size;
+        this.root = root;
+        this.hasNull = hasNull;
+        this.nullValue = nullValue;
+    }
+
+    /**
+     * @return 空map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * @return 包含{@code map}所有元素的map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> of(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentHashMap) {
+            return (PersistentHashMap<K, V>) map;
+        }
+        return PersistentHashMap.<K, V>empty().withAll(map);
+    }
+
+    /**
+     * @return 插入或者更新{@code key}后的新map, 如果value没有变化, 则返回当前map
+     */
+    public PersistentHashMap<K, V> with(K key, V value) {
+        if (key == null) {
+            if (hasNull && nullValue == value) {
+                return this;
+            }
+            return new PersistentHashMap<>(hasNull ? size : size + 1, root, true, value);
+        }
+
+        boolean[] addedLeaf = new boolean[1];
+        Node root = this.root == null ? BitmapIndexedNode.EMPTY : this.root;
+        Node newRoot = root.assoc(0, hash(key), key, value, addedLeaf);
+        if (newRoot == this.root) {
+            return this;
+        }
+        return new PersistentHashMap<>(addedLeaf[0] ? size + 1 : size, newRoot, hasNull, nullValue);
+    }
+
+    /**
+     * @return 插入或者更新{@code map}所有元素后的新map
+     */
+    public PersistentHashMap<K, V> withAll(Map<? extends K, ? extends V> map) {
+        PersistentHashMap<K, V> result = this;
+        for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            result = result.with(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * @return 移除{@code key}后的新map, 如果key不存在, 则返回当前map
+     */
+    public PersistentHashMap<K, V> without(Object key) {
+        if (key == null) {
+            return hasNull ? new PersistentHashMap<>(size - 1, root, false, null) : this;
+        }
+        if (root == null) {
+            return this;
+        }
+        Node newRoot = root.without(0, hash(key), key);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentHashMap<>(size - 1, newRoot, hasNull, nullValue);
+    }
+
+    /**
+     * @return 基于当前map的可修改视图, 修改不会影响当前map
+     */
+    public Editor<K, V> edit() {
+        return new Editor<>(this);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (key == null) {
+            return hasNull;
+        }
+        return root != null && root.find(0, hash(key), key) != NOT_FOUND;
+    }
+
+    @Override
+    public V get(Object key) {
+        return getOrDefault(key, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        if (key == null) {
+            return hasNull ? nullValue : defaultValue;
+        }
+        if (root == null) {
+            return defaultValue;
+        }
+        Object value = root.find(0, hash(key), key);
+        return value == NOT_FOUND ? defaultValue : (V) value;
+    }
+
+    @Nonnull
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> entrySet = this.entrySet;
+        if (entrySet == null) {
+            this.entrySet = entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    //------------------------------------------------------------------------------------------------------------node
+
+    /**
+     * trie节点
+     * {@link #array}按key, value成对存储, key为null则value为子节点
+     */
+    private abstract static class Node {
+        protected final Object[] array;
+
+        protected Node(Object[] array) {
+            this.array = array;
+        }
+
+        /**
+         * @return key对应的value, 不存在则返回{@link #NOT_FOUND}
+         */
+        abstract Object find(int shift, int hash, Object key);
+
+        /**
+         * @param addedLeaf 是否新增了key
+         * @return 插入或者更新后的节点, 如果没有变化, 则返回当前节点
+         */
+        abstract Node assoc(int shift, int hash, Object key, Object value, boolean[] addedLeaf);
+
+        /**
+         * @return 移除key后的节点, 如果key不存在, 则返回当前节点, 如果节点为空, 则返回null
+         */
+        abstract Node without(int shift, int hash, Object key);
+    }
+
+    /**
+     * 普通节点, bitmap第n位为1表示hash在该层的5位值为n的元素(或子节点)存在, 其在数组的位置为bitmap低n位中1的数量
+     */
+    private static final class BitmapIndexedNode extends Node {
+        private static final BitmapIndexedNode EMPTY = new BitmapIndexedNode(0, new Object[0]);
+
+        private final int bitmap;
+
+        BitmapIndexedNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 0x1f);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return NOT_FOUND;
+            }
+            int index = index(bit) << 1;
+            Object k = array[index];
+            Object v = array[index + 1];
+            if (k == null) {
+                return ((Node) v).find(shift + BITS, hash, key);
+            }
+            return key.equals(k) ? v : NOT_FOUND;
+        }
+
+        @Override
+        Node assoc(int shift, int hash, Object key, Object value, boolean[] addedLeaf) {
+            int bit = bit(hash, shift);
+            int index = index(bit) << 1;
+            if ((bitmap & bit) == 0) {
+                //新增
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, index);
+                newArray[index] = key;
+                newArray[index + 1] = value;
+                System.arraycopy(array, index, newArray, index + 2, array.length - index);
+                addedLeaf[0] = true;
+                return new BitmapIndexedNode(bitmap | bit, newArray);
+            }
+
+            Object k = array[index];
+            Object v = array[index + 1];
+            if (k == null) {
+                //子节点
+                Node node = ((Node) v).assoc(shift + BITS, hash, key, value, addedLeaf);
+                if (node == v) {
+                    return this;
+                }
+                return new BitmapIndexedNode(bitmap, cloneAndSet(array, index + 1, node));
+            }
+            if (key.equals(k)) {
+                //更新
+                if (value == v) {
+                    return this;
+                }
+                return new BitmapIndexedNode(bitmap, cloneAndSet(array, index + 1, value));
+            }
+
+            //该层hash冲突, 下沉到子节点
+            addedLeaf[0] = true;
+            Object[] newArray = cloneAndSet(array, index + 1, createNode(shift + BITS, k, v, hash, key, value));
+            newArray[index] = null;
+            return new BitmapIndexedNode(bitmap, newArray);
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = index(bit) << 1;
+            Object k = array[index];
+            Object v = array[index + 1];
+            if (k == null) {
+                Node node = ((Node) v).without(shift + BITS, hash, key);
+                if (node == v) {
+                    return this;
+                }
+                if (node != null) {
+                    return new BitmapIndexedNode(bitmap, cloneAndSet(array, index + 1, node));
+                }
+            } else if (!key.equals(k)) {
+                return this;
+            }
+
+            if (bitmap == bit) {
+                return null;
+            }
+            return new BitmapIndexedNode(bitmap ^ bit, removePair(array, index));
+        }
+
+        /**
+         * 两个key在上一层hash冲突, 创建子节点存储
+         */
+        private static Node createNode(int shift, Object key1, Object value1, int key2Hash, Object key2, Object value2) {
+            int key1Hash = hash(key1);
+            if (key1Hash == key2Hash) {
+                return new HashCollisionNode(key1Hash, new Object[]{key1, value1, key2, value2});
+            }
+            boolean[] addedLeaf = new boolean[1];
+            return EMPTY.assoc(shift, key1Hash, key1, value1, addedLeaf)
+                    .assoc(shift, key2Hash, key2, value2, addedLeaf);
+        }
+    }
+
+    /**
+     * 存储hash完全相同的key
+     */
+    private static final class HashCollisionNode extends Node {
+        private final int hash;
+
+        HashCollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            if (hash != this.hash) {
+                return NOT_FOUND;
+            }
+            int index = indexOf(key);
+            return index < 0 ? NOT_FOUND : array[index + 1];
+        }
+
+        @Override
+        Node assoc(int shift, int hash, Object key, Object value, boolean[] addedLeaf) {
+            if (hash != this.hash) {
+                //hash不同, 以bitmap节点包装当前节点再插入
+                return new BitmapIndexedNode(BitmapIndexedNode.bit(this.hash, shift), new Object[]{null, this})
+                        .assoc(shift, hash, key, value, addedLeaf);
+            }
+
+            int index = indexOf(key);
+            if (index >= 0) {
+                if (array[index + 1] == value) {
+                    return this;
+                }
+                return new HashCollisionNode(hash, cloneAndSet(array, index + 1, value));
+            }
+
+            Object[] newArray = Arrays.copyOf(array, array.length + 2);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            addedLeaf[0] = true;
+            return new HashCollisionNode(hash, newArray);
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+            int index = indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            return new HashCollisionNode(hash, removePair(array, index));
+        }
+    }
+
+    private static Object[] cloneAndSet(Object[] array, int index, Object value) {
+        Object[] newArray = array.clone();
+        newArray[index] = value;
+        return newArray;
+    }
+
+    /**
+     * 移除{@code index}开始的key-value
+     */
+    private static Object[] removePair(Object[] array, int index) {
+        Object[] newArray = new Object[array.length - 2];
+        System.arraycopy(array, 0, newArray, 0, index);
+        System.arraycopy(array, index + 2, newArray, index, newArray.length - index);
+        return newArray;
+    }
+
+    //------------------------------------------------------------------------------------------------------------view
+
+    /**
+     * entry视图, 不支持修改
+     */
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Nonnull
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new EntryIterator<>(PersistentHashMap.this);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            Object key = entry.getKey();
+            return containsKey(key) && Objects.equals(get(key), entry.getValue());
+        }
+    }
+
+    /**
+     * 深度优先遍历trie, 栈深度不超过{@link #MAX_DEPTH}
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] indexes = new int[MAX_DEPTH];
+        private int depth = -1;
+        /** 是否仍需返回null key */
+        private boolean pendingNull;
+        private final V nullValue;
+        private Entry<K, V> next;
+
+        EntryIterator(PersistentHashMap<K, V> map) {
+            this.pendingNull = map.hasNull;
+            this.nullValue = map.nullValue;
+            if (map.root != null) {
+                depth = 0;
+                arrays[0] = map.root.array;
+            }
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            if (pendingNull) {
+                pendingNull = false;
+                next = new SimpleImmutableEntry<>(null, nullValue);
+                return;
+            }
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int index = indexes[depth];
+                if (index >= array.length) {
+                    arrays[depth] = null;
+                    indexes[depth] = 0;
+                    depth--;
+                    continue;
+                }
+                indexes[depth] = index + 2;
+                Object key = array[index];
+                Object value = array[index + 1];
+                if (key == null) {
+                    depth++;
+                    arrays[depth] = ((Node) value).array;
+                    indexes[depth] = 0;
+                    continue;
+                }
+                next = new SimpleImmutableEntry<>((K) key, (V) value);
+                return;
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            Entry<K, V> next = this.next;
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return next;
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------editor
+
+    /**
+     * 基于{@link PersistentHashMap}的可修改map, 每次修改都会生成新的{@link PersistentHashMap}, 但与修改前共享绝大部分节点,
+     * 修改完成后可通过{@link #toPersistentMap()}获取最终结果
+     * 非线程安全, 并且{@link #entrySet()}是调用时的快照, 不支持通过其修改
+     */
+    public static final class Editor<K, V> extends AbstractMap<K, V> {
+        private PersistentHashMap<K, V> current;
+
+        private Editor(PersistentHashMap<K, V> current) {
+            this.current = current;
+        }
+
+        @Override
+        public int size() {
+            return current.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return current.containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            return current.get(key);
+        }
+
+        @Override
+        public V getOrDefault(Object key, V defaultValue) {
+            return current.getOrDefault(key, defaultValue);
+        }
+
+        @Override
+        public V put(K key, V value) {
+            V old = current.get(key);
+            current = current.with(key, value);
+            return old;
+        }
+
+        @Override
+        public V remove(Object key) {
+            V old = current.get(key);
+            current = current.without(key);
+            return old;
+        }
+
+        @Override
+        public void putAll(@Nonnull Map<? extends K, ? extends V> m) {
+            current = current.withAll(m);
+        }
+
+        @Override
+        public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+            PersistentHashMap<K, V> snapshot = current;
+            for (Entry<K, V> entry : snapshot.entrySet()) {
+                current = current.with(entry.getKey(), function.apply(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        @Override
+        public void clear() {
+            current = empty();
+        }
+
+        @Nonnull
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return current.entrySet();
+        }
+
+        /**
+         * @return 当前修改结果
+         */
+        public PersistentHashMap<K, V> toPersistentMap() {
+            return current;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.kin.framework.collection;
+
+import org.kin.framework.utils.Maths;
+
+/**
+ * 基础类型open addressing hash表工具方法
+ *
+ * @author huangjianqin
+ * @date 2023/7/19
+ */
+final class PrimitiveCollections {
+    /** 默认负载因子 */
+    static final float DEFAULT_LOAD_FACTOR = 0.7F;
+    /** 默认期望元素数量 */
+    static final int DEFAULT_EXPECTED_SIZE = 16;
+    /** hash表最大slot数量 */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private PrimitiveCollections() {
+    }
+
+    /**
+     * murmur3 fmix64, 保证连续id也能均匀分布
+     */
+    static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * murmur3 fmix32
+     */
+    static int hash(int key) {
+        key ^= key >>> 16;
+        key *= 0x85ebca6b;
+        key ^= key >>> 13;
+        key *= 0xc2b2ae35;
+        key ^= key >>> 16;
+        return key;
+    }
+
+    /**
+     * 根据期望元素数量计算hash表slot数量
+     */
+    static int capacity(int expectedSize) {
+        long capacity = Math.max(2, (long) Math.ceil(Math.max(expectedSize, 1) / DEFAULT_LOAD_FACTOR));
+        if (capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("expected size is too large, " + expectedSize);
+        }
+        return Maths.round2Power2((int) capacity);
+    }
+
+    /**
+     * 计算扩容阈值
+     */
+    static int resizeThreshold(int capacity) {
+        return (int) (capacity * DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * 计算扩容后的slot数量
+     */
+    static int nextCapacity(int capacity) {
+        if (capacity >= MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("hash table is full, capacity: " + capacity);
+        }
+        return capacity << 1;
+    }
+}
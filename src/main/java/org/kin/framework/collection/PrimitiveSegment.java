@@ -0,0 +1,347 @@
+package org.kin.framework.collection;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 基础类型segment, 仅支持从head或者tail移除元素
+ * 堆内存储直接使用基础类型数组, 堆外和内存映射存储则使用{@link ByteBuffer}
+ * 元素读写由{@link LongSegment}, {@link IntSegment}, {@link DoubleSegment}定义, 这里仅维护segment边界
+ *
+ * @param <A> 基础类型数组类型, 比如long[]
+ * @author huangjianqin
+ * @date 2023/7/22
+ */
+abstract class PrimitiveSegment<A> {
+    /** segment容量 */
+    protected final int capacity;
+    /** start offset(inclusive) */
+    int offset;
+    /** end offset(exclusive) */
+    int pos;
+
+    protected PrimitiveSegment(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * 批量写入, 从{@link #pos}开始
+     */
+    abstract void addAll(A src, int srcPos, int len);
+
+    /**
+     * 将[from, to)的元素复制到{@code dst}相同下标
+     */
+    abstract void copyTo(A dst, int from, int to);
+
+    /**
+     * @return 堆内存储的基础类型数组, 堆外存储则返回null
+     */
+    A array() {
+        return null;
+    }
+
+    /**
+     * 重置, 以便复用
+     */
+    void reset() {
+        offset = pos = 0;
+    }
+
+    /**
+     * 剩余容量
+     */
+    int cap() {
+        return capacity - pos;
+    }
+
+    boolean isFull() {
+        return pos == capacity;
+    }
+
+    boolean isEmpty() {
+        return pos == offset;
+    }
+
+    int size() {
+        return pos - offset;
+    }
+
+    /**
+     * 检查下标
+     */
+    void checkIndex(int index) {
+        if (index >= pos || index < offset) {
+            throw new IndexOutOfBoundsException("index=" + index + ", offset=" + offset + ", pos=" + pos);
+        }
+    }
+
+    //-------------------------------------------------------------------------------------------------
+
+    /**
+     * long segment
+     */
+    abstract static class LongSegment extends PrimitiveSegment<long[]> {
+        protected LongSegment(int capacity) {
+            super(capacity);
+        }
+
+        abstract long get(int index);
+
+        abstract void put(int index, long value);
+
+        @Override
+        void addAll(long[] src, int srcPos, int len) {
+            for (int i = 0; i < len; i++) {
+                put(pos + i, src[srcPos + i]);
+            }
+            pos += len;
+        }
+
+        @Override
+        void copyTo(long[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = get(i);
+            }
+        }
+    }
+
+    /**
+     * long[]存储
+     */
+    static final class LongArraySegment extends LongSegment {
+        private final long[] elements;
+
+        LongArraySegment(int capacity) {
+            super(capacity);
+            this.elements = new long[capacity];
+        }
+
+        @Override
+        long get(int index) {
+            return elements[index];
+        }
+
+        @Override
+        void put(int index, long value) {
+            elements[index] = value;
+        }
+
+        @Override
+        void addAll(long[] src, int srcPos, int len) {
+            System.arraycopy(src, srcPos, elements, pos, len);
+            pos += len;
+        }
+
+        @Override
+        void copyTo(long[] dst, int from, int to) {
+            System.arraycopy(elements, from, dst, from, to - from);
+        }
+
+        @Override
+        long[] array() {
+            return elements;
+        }
+    }
+
+    /**
+     * {@link ByteBuffer}存储, 用于堆外或者内存映射, 使用absolute get/put, 不会修改buffer position
+     */
+    static final class LongBufferSegment extends LongSegment {
+        private final ByteBuffer buffer;
+
+        LongBufferSegment(int capacity, ByteBuffer buffer) {
+            super(capacity);
+            this.buffer = buffer;
+        }
+
+        @Override
+        long get(int index) {
+            return buffer.getLong(index << 3);
+        }
+
+        @Override
+        void put(int index, long value) {
+            buffer.putLong(index << 3, value);
+        }
+    }
+
+    //-------------------------------------------------------------------------------------------------
+
+    /**
+     * int segment
+     */
+    abstract static class IntSegment extends PrimitiveSegment<int[]> {
+        protected IntSegment(int capacity) {
+            super(capacity);
+        }
+
+        abstract int get(int index);
+
+        abstract void put(int index, int value);
+
+        @Override
+        void addAll(int[] src, int srcPos, int len) {
+            for (int i = 0; i < len; i++) {
+                put(pos + i, src[srcPos + i]);
+            }
+            pos += len;
+        }
+
+        @Override
+        void copyTo(int[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = get(i);
+            }
+        }
+    }
+
+    /**
+     * int[]存储
+     */
+    static final class IntArraySegment extends IntSegment {
+        private final int[] elements;
+
+        IntArraySegment(int capacity) {
+            super(capacity);
+            this.elements = new int[capacity];
+        }
+
+        @Override
+        int get(int index) {
+            return elements[index];
+        }
+
+        @Override
+        void put(int index, int value) {
+            elements[index] = value;
+        }
+
+        @Override
+        void addAll(int[] src, int srcPos, int len) {
+            System.arraycopy(src, srcPos, elements, pos, len);
+            pos += len;
+        }
+
+        @Override
+        void copyTo(int[] dst, int from, int to) {
+            System.arraycopy(elements, from, dst, from, to - from);
+        }
+
+        @Override
+        int[] array() {
+            return elements;
+        }
+    }
+
+    /**
+     * {@link ByteBuffer}存储, 用于堆外或者内存映射, 使用absolute get/put, 不会修改buffer position
+     */
+    static final class IntBufferSegment extends IntSegment {
+        private final ByteBuffer buffer;
+
+        IntBufferSegment(int capacity, ByteBuffer buffer) {
+            super(capacity);
+            this.buffer = buffer;
+        }
+
+        @Override
+        int get(int index) {
+            return buffer.getInt(index << 2);
+        }
+
+        @Override
+        void put(int index, int value) {
+            buffer.putInt(index << 2, value);
+        }
+    }
+
+    //-------------------------------------------------------------------------------------------------
+
+    /**
+     * double segment
+     */
+    abstract static class DoubleSegment extends PrimitiveSegment<double[]> {
+        protected DoubleSegment(int capacity) {
+            super(capacity);
+        }
+
+        abstract double get(int index);
+
+        abstract void put(int index, double value);
+
+        @Override
+        void addAll(double[] src, int srcPos, int len) {
+            for (int i = 0; i < len; i++) {
+                put(pos + i, src[srcPos + i]);
+            }
+            pos += len;
+        }
+
+        @Override
+        void copyTo(double[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = get(i);
+            }
+        }
+    }
+
+    /**
+     * double[]存储
+     */
+    static final class DoubleArraySegment extends DoubleSegment {
+        private final double[] elements;
+
+        DoubleArraySegment(int capacity) {
+            super(capacity);
+            this.elements = new double[capacity];
+        }
+
+        @Override
+        double get(int index) {
+            return elements[index];
+        }
+
+        @Override
+        void put(int index, double value) {
+            elements[index] = value;
+        }
+
+        @Override
+        void addAll(double[] src, int srcPos, int len) {
+            System.arraycopy(src, srcPos, elements, pos, len);
+            pos += len;
+        }
+
+        @Override
+        void copyTo(double[] dst, int from, int to) {
+            System.arraycopy(elements, from, dst, from, to - from);
+        }
+
+        @Override
+        double[] array() {
+            return elements;
+        }
+    }
+
+    /**
+     * {@link ByteBuffer}存储, 用于堆外或者内存映射, 使用absolute get/put, 不会修改buffer position
+     */
+    static final class DoubleBufferSegment extends DoubleSegment {
+        private final ByteBuffer buffer;
+
+        DoubleBufferSegment(int capacity, ByteBuffer buffer) {
+            super(capacity);
+            this.buffer = buffer;
+        }
+
+        @Override
+        double get(int index) {
+            return buffer.getDouble(index << 3);
+        }
+
+        @Override
+        void put(int index, double value) {
+            buffer.putDouble(index << 3, value);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package org.kin.framework.collection;
+
+import com.google.common.base.Preconditions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * 基础类型segment分配器, 同时缓存少量空闲segment, 以便滑动窗口场景下反复复用
+ * 非线程安全, 与所属segment list一致
+ *
+ * @param <S> segment类型
+ *
+ * @author huangjianqin
+ * @date 2023/7/22
+ */
+abstract class PrimitiveSegmentAllocator<S extends PrimitiveSegment<?>> implements AutoCloseable {
+    /** 堆内和堆外存储最多缓存的空闲segment数量 */
+    private static final int MAX_FREE_SEGMENTS = 4;
+
+    /** 元素类型 */
+    protected final ElementType<?, S> elementType;
+    /** segment容量 */
+    protected final int segmentSize;
+    /** 空闲segment */
+    private final List<S> freeSegments = new ArrayList<>();
+
+    protected PrimitiveSegmentAllocator(ElementType<?, S> elementType, int segmentSize) {
+        this.elementType = elementType;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 堆内存储
+     */
+    static <S extends PrimitiveSegment<?>> PrimitiveSegmentAllocator<S> heap(ElementType<?, S> elementType, int segmentSize) {
+        return new PrimitiveSegmentAllocator<S>(elementType, segmentSize) {
+            @Override
+            protected S newSegment() {
+                return elementType.arraySegmentFactory.apply(segmentSize);
+            }
+        };
+    }
+
+    /**
+     * 堆外存储, 使用direct {@link ByteBuffer}, 被gc回收时才会释放堆外内存
+     */
+    static <S extends PrimitiveSegment<?>> PrimitiveSegmentAllocator<S> offHeap(ElementType<?, S> elementType, int segmentSize) {
+        return new PrimitiveSegmentAllocator<S>(elementType, segmentSize) {
+            @Override
+            protected S newSegment() {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(segmentSize * elementType.bytes).order(ByteOrder.nativeOrder());
+                return elementType.bufferSegmentFactory.create(segmentSize, buffer);
+            }
+        };
+    }
+
+    /**
+     * 内存映射存储
+     */
+    static <S extends PrimitiveSegment<?>> PrimitiveSegmentAllocator<S> mapped(ElementType<?, S> elementType, int segmentSize, File file) {
+        return new MappedAllocator<>(elementType, segmentSize, file);
+    }
+
+    /**
+     * 申请segment
+     */
+    S allocate() {
+        int size = freeSegments.size();
+        if (size > 0) {
+            return freeSegments.remove(size - 1);
+        }
+        return newSegment();
+    }
+
+    /**
+     * 释放segment
+     */
+    void free(S segment) {
+        if (freeSegments.size() < maxFreeSegments()) {
+            segment.reset();
+            freeSegments.add(segment);
+        }
+    }
+
+    /**
+     * @return 最多缓存的空闲segment数量
+     */
+    protected int maxFreeSegments() {
+        return MAX_FREE_SEGMENTS;
+    }
+
+    /**
+     * 创建新segment
+     */
+    protected abstract S newSegment();
+
+    @Override
+    public void close() {
+        freeSegments.clear();
+    }
+
+    //-------------------------------------------------------------------------------------------------
+
+    /**
+     * 元素类型, 定义元素字节数以及如何创建对应类型的segment和数组
+     *
+     * @param <A> 基础类型数组类型
+     * @param <S> segment类型
+     */
+    static final class ElementType<A, S extends PrimitiveSegment<A>> {
+        static final ElementType<long[], PrimitiveSegment.LongSegment> LONG =
+                new ElementType<>(Long.BYTES, PrimitiveSegment.LongArraySegment::new, PrimitiveSegment.LongBufferSegment::new, long[]::new);
+        static final ElementType<int[], PrimitiveSegment.IntSegment> INT =
+                new ElementType<>(Integer.BYTES, PrimitiveSegment.IntArraySegment::new, PrimitiveSegment.IntBufferSegment::new, int[]::new);
+        static final ElementType<double[], PrimitiveSegment.DoubleSegment> DOUBLE =
+                new ElementType<>(Double.BYTES, PrimitiveSegment.DoubleArraySegment::new, PrimitiveSegment.DoubleBufferSegment::new, double[]::new);
+
+        /** 元素字节数 */
+        private final int bytes;
+        /** 堆内segment构造 */
+        private final IntFunction<S> arraySegmentFactory;
+        /** {@link ByteBuffer} segment构造 */
+        private final BufferSegmentFactory<S> bufferSegmentFactory;
+        /** 基础类型数组构造 */
+        private final IntFunction<A> arrayFactory;
+
+        private ElementType(int bytes, IntFunction<S> arraySegmentFactory,
+                            BufferSegmentFactory<S> bufferSegmentFactory, IntFunction<A> arrayFactory) {
+            this.bytes = bytes;
+            this.arraySegmentFactory = arraySegmentFactory;
+            this.bufferSegmentFactory = bufferSegmentFactory;
+            this.arrayFactory = arrayFactory;
+        }
+
+        /**
+         * 创建基础类型数组
+         */
+        A newArray(int length) {
+            return arrayFactory.apply(length);
+        }
+    }
+
+    /**
+     * {@link ByteBuffer} segment构造
+     */
+    @FunctionalInterface
+    private interface BufferSegmentFactory<S> {
+        S create(int capacity, ByteBuffer buffer);
+    }
+
+    /**
+     * 内存映射存储, 每个segment映射文件中一段固定区域
+     * 被释放的segment全部缓存复用, 故文件大小仅取决于segment数量峰值
+     */
+    private static final class MappedAllocator<S extends PrimitiveSegment<?>> extends PrimitiveSegmentAllocator<S> {
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        /** 下一个segment映射区域的起始位置 */
+        private long nextRegion;
+
+        MappedAllocator(ElementType<?, S> elementType, int segmentSize, File file) {
+            super(elementType, segmentSize);
+            Preconditions.checkNotNull(file, "mapped file must be not null");
+            try {
+                this.file = new RandomAccessFile(file, "rw");
+                this.file.setLength(0);
+                this.channel = this.file.getChannel();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        protected S newSegment() {
+            long bytes = (long) segmentSize * elementType.bytes;
+            try {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, nextRegion, bytes).order(ByteOrder.nativeOrder());
+                nextRegion += bytes;
+                return elementType.bufferSegmentFactory.create(segmentSize, buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        protected int maxFreeSegments() {
+            return Integer.MAX_VALUE;
+        }
+
+        /**
+         * 关闭文件, 已映射的内存在被gc回收时才会解除映射
+         */
+        @Override
+        public void close() {
+            super.close();
+            try {
+                channel.close();
+                file.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -38,7 +38,7 @@ public interface PriorityQueue<T> extends Queue<T> {
 
     /**
      * Removes all of the elements from this {@link PriorityQueue} without calling
-     * {@link PriorityQueueNode#priorityQueueIndex(DefaultPriorityQueue)} or explicitly removing references to them to
+     * {@link PriorityQueueNode#priorityQueueIndex(PriorityQueue)} or explicitly removing references to them to
      * allow them to be garbage collected. This should only be used when it is certain that the nodes will not be
      * re-inserted into this or any other {@link PriorityQueue} and it is known that the {@link PriorityQueue} itself
      * will be garbage collected after this call.
@@ -16,30 +16,32 @@
 package org.kin.framework.collection;
 
 /**
- * Provides methods for {@link DefaultPriorityQueue} to maintain internal state. These methods should generally not be
- * used outside the scope of {@link DefaultPriorityQueue}.
+ * Provides methods for {@link PriorityQueue} implementations to maintain internal state. These methods should generally
+ * not be used outside the scope of {@link PriorityQueue} implementations.
+ * <p>
+ * {@link DefaultPriorityQueue}和{@link DaryPriorityQueue}存储的是元素在堆数组中的下标, {@link PairingPriorityQueue}存储的是元素所在节点的slot
  */
 public interface PriorityQueueNode {
     /**
-     * This should be used to initialize the storage returned by {@link #priorityQueueIndex(DefaultPriorityQueue)}.
+     * This should be used to initialize the storage returned by {@link #priorityQueueIndex(PriorityQueue)}.
      */
     int INDEX_NOT_IN_QUEUE = -1;
 
     /**
-     * Get the last value set by {@link #priorityQueueIndex(DefaultPriorityQueue, int)} for the value corresponding to
+     * Get the last value set by {@link #priorityQueueIndex(PriorityQueue, int)} for the value corresponding to
      * {@code queue}.
      * <p>
      * Throwing exceptions from this method will result in undefined behavior.
      */
-    int priorityQueueIndex(DefaultPriorityQueue<?> queue);
+    int priorityQueueIndex(PriorityQueue<?> queue);
 
     /**
-     * Used by {@link DefaultPriorityQueue} to maintain state for an element in the queue.
+     * Used by {@link PriorityQueue} implementations to maintain state for an element in the queue.
      * <p>
      * Throwing exceptions from this method will result in undefined behavior.
      *
      * @param queue The queue for which the index is being set.
-     * @param i     The index as used by {@link DefaultPriorityQueue}.
+     * @param i     The index as used by the {@link PriorityQueue} implementation.
      */
-    void priorityQueueIndex(DefaultPriorityQueue<?> queue, int i);
+    void priorityQueueIndex(PriorityQueue<?> queue, int i);
 }
@@ -0,0 +1,60 @@
+package org.kin.framework.collection;
+
+import java.util.Comparator;
+
+/**
+ * {@link PriorityQueue}实现类型
+ *
+ * @author huangjianqin
+ * @date 2023/7/23
+ */
+public enum PriorityQueueType {
+    /** 二叉堆, {@link DefaultPriorityQueue} */
+    BINARY {
+        @Override
+        public <T extends PriorityQueueNode> PriorityQueue<T> newQueue(Comparator<T> comparator, int initialSize) {
+            return new DefaultPriorityQueue<>(comparator, initialSize);
+        }
+    },
+    /** 4叉堆, {@link DaryPriorityQueue} */
+    DARY {
+        @Override
+        public <T extends PriorityQueueNode> PriorityQueue<T> newQueue(Comparator<T> comparator, int initialSize) {
+            return new DaryPriorityQueue<>(comparator, initialSize);
+        }
+    },
+    /** pairing heap, {@link PairingPriorityQueue} */
+    PAIRING {
+        @Override
+        public <T extends PriorityQueueNode> PriorityQueue<T> newQueue(Comparator<T> comparator, int initialSize) {
+            return new PairingPriorityQueue<>(comparator, initialSize);
+        }
+    },
+    ;
+
+    /**
+     * 创建{@link PriorityQueue}实例
+     *
+     * @param comparator  元素比较器
+     * @param initialSize 初始容量
+     */
+    public abstract <T extends PriorityQueueNode> PriorityQueue<T> newQueue(Comparator<T> comparator, int initialSize);
+
+    /**
+     * 根据名字(忽略大小写)获取{@link PriorityQueueType}
+     *
+     * @param name 名字
+     * @param def  找不到时返回的默认值
+     */
+    public static PriorityQueueType getByName(String name, PriorityQueueType def) {
+        if (name == null) {
+            return def;
+        }
+        for (PriorityQueueType type : values()) {
+            if (type.name().equalsIgnoreCase(name.trim())) {
+                return type;
+            }
+        }
+        return def;
+    }
+}
@@ -0,0 +1,544 @@
+package org.kin.framework.collection;
+
+import org.kin.framework.utils.Maths;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * 支持并发扩容的bucket数组 + linked list实现, 适合node实例本身就是对外暴露对象(比如{@link Attribute}), 不能像{@link java.util.concurrent.ConcurrentHashMap}那样复制node的场景
+ * 1. 每个bucket链表有一个head哨兵node, 写操作基于head对象锁, 读操作无锁, 仅依赖node的volatile next
+ * 2. 元素数量超过bucket数量 * {@link #LOAD_FACTOR}时扩容为2倍, 扩容类似{@link java.util.concurrent.ConcurrentHashMap}的transfer,
+ * 每条线程每次领取{@link #TRANSFER_STRIDE}个bucket进行迁移, 其余线程写操作遇到已迁移的bucket会协助迁移
+ * 3. bucket迁移时, 原bucket会被替换为forwarding标识, 新bucket会先被替换为pending标识, 迁移完成才发布新bucket,
+ * 无锁读遇到forwarding标识会到新bucket数组查询, 遇到pending标识则等待迁移完成;
+ * 无锁读查询失败时, 会检查原bucket是否已被替换, 以避免因迁移过程中修改node next导致漏读
+ * 4. node移除时仅断开prev, 保留next, 保证正在遍历该node的无锁读仍能访问后续node
+ * <p>
+ * 初始bucket数组可以很小, 降低每个实例的内存消耗, 元素增多后仍然能保持O(1)查询
+ *
+ * @author huangjianqin
+ * @date 2023/7/17
+ */
+@ThreadSafe
+public abstract class StripedBucketTable<K, N extends StripedBucketTable.Node<K, N>> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<StripedBucketTable, AtomicReferenceArray> TABLE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(StripedBucketTable.class, AtomicReferenceArray.class, "table");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<StripedBucketTable, Resize> RESIZE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(StripedBucketTable.class, Resize.class, "resize");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<StripedBucketTable> COUNT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(StripedBucketTable.class, "count");
+
+    /** bucket数组最大容量 */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    /** 平均链表长度超过该值则扩容 */
+    private static final int LOAD_FACTOR = 2;
+    /** 每次领取迁移的bucket数量 */
+    private static final int TRANSFER_STRIDE = 16;
+
+    /** 初始bucket数量 */
+    private final int initialCapacity;
+    /** bucket数组, 元素为head node, {@link Resize}(forwarding)或者{@link Pending}, lazy init */
+    private volatile AtomicReferenceArray<Object> table;
+    /** 当前正在进行的扩容, null表示没有扩容 */
+    private volatile Resize resize;
+    /** 元素数量 */
+    private volatile int count;
+
+    protected StripedBucketTable(int initialCapacity) {
+        this.initialCapacity = Maths.round2Power2(Math.max(2, initialCapacity));
+    }
+
+    /**
+     * @return key hash
+     */
+    protected abstract int hash(K key);
+
+    /**
+     * @return {@code node}是否匹配{@code key}
+     */
+    protected abstract boolean matches(N node, K key);
+
+    /**
+     * @return 新链表head哨兵node
+     */
+    protected abstract N newHead();
+
+    /**
+     * @return 新node
+     */
+    protected abstract N newNode(K key);
+
+    /**
+     * 返回bucket数组, 如果未初始化, 则初始化
+     */
+    @SuppressWarnings("unchecked")
+    private AtomicReferenceArray<Object> initTable() {
+        AtomicReferenceArray<Object> tab = this.table;
+        if (tab == null) {
+            tab = new AtomicReferenceArray<>(initialCapacity);
+            if (!TABLE_UPDATER.compareAndSet(this, null, tab)) {
+                //原子更新失败, 说明其他线程初始化了, 重新获取
+                tab = this.table;
+            }
+        }
+        return tab;
+    }
+
+    /**
+     * 无锁查询
+     *
+     * @param key key
+     * @return 匹配的node, 不存在则返回null
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public final N find(K key) {
+        AtomicReferenceArray<Object> tab = this.table;
+        if (tab == null) {
+            return null;
+        }
+
+        int h = hash(key);
+        for (; ; ) {
+            int i = h & (tab.length() - 1);
+            Object bin = tab.get(i);
+            if (bin == null) {
+                return null;
+            }
+            if (bin instanceof Resize) {
+                //已迁移, 去新bucket数组查询
+                tab = ((Resize) bin).nextTable;
+                continue;
+            }
+            if (bin instanceof Pending) {
+                //正在迁移, 等待迁移完成
+                ((Pending) bin).await();
+                continue;
+            }
+
+            N head = (N) bin;
+            for (N node = head.next(); node != null; node = node.next()) {
+                if (node.bucket() != null && matches(node, key)) {
+                    return node;
+                }
+            }
+
+            if (tab.get(i) == head) {
+                //遍历期间该bucket没有被迁移, 结果可信
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 查询, 如果不存在, 则创建node并添加
+     *
+     * @param key key
+     * @return 匹配的node或者新创建的node
+     */
+    @SuppressWarnings("unchecked")
+    public final N getOrCreate(K key) {
+        AtomicReferenceArray<Object> tab = initTable();
+        int h = hash(key);
+        for (; ; ) {
+            int i = h & (tab.length() - 1);
+            Object bin = tab.get(i);
+            if (bin == null) {
+                //lazy init linked list head, 并尝试直接使用cas添加node
+                N head = newHead();
+                N node = newNode(key);
+                node.setPrev(head);
+                node.setBucket(head);
+                head.setNext(node);
+                if (tab.compareAndSet(i, null, head)) {
+                    addCount(tab);
+                    return node;
+                }
+                continue;
+            }
+            if (bin instanceof Resize) {
+                //协助迁移, 然后去新bucket数组添加
+                Resize resize = (Resize) bin;
+                transfer(resize);
+                tab = resize.nextTable;
+                continue;
+            }
+            if (bin instanceof Pending) {
+                ((Pending) bin).await();
+                continue;
+            }
+
+            N head = (N) bin;
+            N node = null;
+            synchronized (head) {
+                if (tab.get(i) == head) {
+                    N curr = head;
+                    for (; ; ) {
+                        N next = curr.next();
+                        if (next == null) {
+                            //缺省则创建node, 先初始化node再发布
+                            node = newNode(key);
+                            node.setPrev(curr);
+                            node.setBucket(head);
+                            curr.setNext(node);
+                            break;
+                        }
+
+                        if (matches(next, key)) {
+                            return next;
+                        }
+                        curr = next;
+                    }
+                }
+            }
+
+            if (node != null) {
+                addCount(tab);
+                return node;
+            }
+            //等待锁期间bucket已被迁移, 重试
+        }
+    }
+
+    /**
+     * 将{@code node}从所在链表移除
+     *
+     * @param node node
+     * @return true表示本次调用移除了node, false表示node之前已被移除
+     */
+    public final boolean unlink(N node) {
+        for (; ; ) {
+            N head = node.bucket();
+            if (head == null) {
+                //removed before
+                return false;
+            }
+
+            synchronized (head) {
+                if (node.bucket() != head) {
+                    //等待锁期间node已被迁移到新链表, 重试
+                    continue;
+                }
+
+                N prev = node.prev();
+                N next = node.next();
+                prev.setNext(next);
+                if (next != null) {
+                    next.setPrev(prev);
+                }
+
+                //保留next, 保证正在遍历该node的无锁读仍能访问后续node
+                node.setPrev(null);
+                node.setBucket(null);
+            }
+            COUNT_UPDATER.decrementAndGet(this);
+            return true;
+        }
+    }
+
+    /**
+     * 无锁遍历所有node, 不保证遍历期间的修改可见
+     */
+    public final void forEach(Consumer<N> action) {
+        AtomicReferenceArray<Object> tab = this.table;
+        if (tab == null) {
+            return;
+        }
+
+        for (int i = 0; i < tab.length(); i++) {
+            forEach(tab, i, action);
+        }
+    }
+
+    /**
+     * 无锁遍历指定bucket
+     */
+    @SuppressWarnings("unchecked")
+    private void forEach(AtomicReferenceArray<Object> tab, int i, Consumer<N> action) {
+        for (; ; ) {
+            Object bin = tab.get(i);
+            if (bin == null) {
+                return;
+            }
+            if (bin instanceof Resize) {
+                //扩容为2倍, 原bucket i的node分布在新bucket i和i+n
+                AtomicReferenceArray<Object> nextTable = ((Resize) bin).nextTable;
+                forEach(nextTable, i, action);
+                forEach(nextTable, i + tab.length(), action);
+                return;
+            }
+            if (bin instanceof Pending) {
+                ((Pending) bin).await();
+                continue;
+            }
+
+            N head = (N) bin;
+            List<N> nodes = new ArrayList<>();
+            for (N node = head.next(); node != null; node = node.next()) {
+                if (node.bucket() != null) {
+                    nodes.add(node);
+                }
+            }
+            if (tab.get(i) == head) {
+                nodes.forEach(action);
+                return;
+            }
+            //遍历期间该bucket被迁移, 重试
+        }
+    }
+
+    /**
+     * 移除所有node
+     *
+     * @return 本次调用移除的node
+     */
+    public final List<N> clear() {
+        List<N> nodes = new ArrayList<>();
+        forEach(nodes::add);
+        nodes.removeIf(node -> !unlink(node));
+        return nodes;
+    }
+
+    /**
+     * @return 元素数量
+     */
+    public final int size() {
+        return count;
+    }
+
+    /**
+     * @return 当前bucket数量, 未初始化则返回0
+     */
+    public final int capacity() {
+        AtomicReferenceArray<Object> tab = this.table;
+        return tab == null ? 0 : tab.length();
+    }
+
+    //-----------------------------------------------------------------------------------------------resize
+
+    /**
+     * 元素数量+1, 并按需扩容
+     */
+    private void addCount(AtomicReferenceArray<Object> tab) {
+        int count = COUNT_UPDATER.incrementAndGet(this);
+        int n = tab.length();
+        if (count > n * LOAD_FACTOR && n < MAXIMUM_CAPACITY) {
+            tryResize(tab);
+        }
+    }
+
+    /**
+     * 尝试发起扩容, 如果已有扩容正在进行, 则协助迁移
+     */
+    private void tryResize(AtomicReferenceArray<Object> tab) {
+        if (table != tab) {
+            //已扩容
+            return;
+        }
+
+        Resize current = this.resize;
+        if (current != null) {
+            transfer(current);
+            return;
+        }
+
+        Resize resize = new Resize(tab);
+        if (!RESIZE_UPDATER.compareAndSet(this, null, resize)) {
+            return;
+        }
+        if (table != tab) {
+            //发起扩容前, 其他线程刚好完成了扩容
+            this.resize = null;
+            return;
+        }
+        transfer(resize);
+    }
+
+    /**
+     * 领取bucket并迁移, 直到没有bucket可以领取
+     */
+    private void transfer(Resize resize) {
+        AtomicReferenceArray<Object> tab = resize.table;
+        for (; ; ) {
+            int index = resize.transferIndex;
+            if (index <= 0) {
+                return;
+            }
+
+            int bound = Math.max(0, index - TRANSFER_STRIDE);
+            if (!Resize.TRANSFER_INDEX_UPDATER.compareAndSet(resize, index, bound)) {
+                continue;
+            }
+
+            for (int i = index - 1; i >= bound; i--) {
+                transferBin(resize, i);
+            }
+
+            if (Resize.REMAINING_UPDATER.addAndGet(resize, -(index - bound)) == 0) {
+                //所有bucket迁移完成, 发布新bucket数组
+                table = resize.nextTable;
+                this.resize = null;
+            }
+        }
+    }
+
+    /**
+     * 迁移指定bucket
+     */
+    @SuppressWarnings("unchecked")
+    private void transferBin(Resize resize, int i) {
+        AtomicReferenceArray<Object> tab = resize.table;
+        AtomicReferenceArray<Object> nextTable = resize.nextTable;
+        int n = tab.length();
+        for (; ; ) {
+            Object bin = tab.get(i);
+            if (bin == null) {
+                if (tab.compareAndSet(i, null, resize)) {
+                    return;
+                }
+                continue;
+            }
+
+            N head = (N) bin;
+            synchronized (head) {
+                //先标识新bucket正在迁移, 再将原bucket替换为forwarding, 最后才修改node next
+                Pending pending = new Pending(head);
+                nextTable.set(i, pending);
+                nextTable.set(i + n, pending);
+                tab.set(i, resize);
+
+                N loHead = newHead();
+                N hiHead = newHead();
+                N loTail = loHead;
+                N hiTail = hiHead;
+                N curr = head.next();
+                //仅修改prev和next, node bucket仍为原head, 故并发unlink会阻塞在原head对象锁上
+                while (curr != null) {
+                    N next = curr.next();
+                    if ((hash(curr.key()) & n) == 0) {
+                        curr.setPrev(loTail);
+                        loTail.setNext(curr);
+                        loTail = curr;
+                    } else {
+                        curr.setPrev(hiTail);
+                        hiTail.setNext(curr);
+                        hiTail = curr;
+                    }
+                    curr = next;
+                }
+                loTail.setNext(null);
+                hiTail.setNext(null);
+
+                //新链表完整链接后, 持有新head对象锁再修改node bucket并发布新bucket,
+                //等待原head对象锁的unlink重试时, 会阻塞在新head对象锁上, 直到新链表发布
+                synchronized (loHead) {
+                    synchronized (hiHead) {
+                        for (curr = loHead.next(); curr != null; curr = curr.next()) {
+                            curr.setBucket(loHead);
+                        }
+                        for (curr = hiHead.next(); curr != null; curr = curr.next()) {
+                            curr.setBucket(hiHead);
+                        }
+
+                        //空链表则不需要head, 节省内存
+                        nextTable.set(i, loHead.next() != null ? loHead : null);
+                        nextTable.set(i + n, hiHead.next() != null ? hiHead : null);
+                    }
+                }
+            }
+            return;
+        }
+    }
+
+    //-----------------------------------------------------------------------------------------------
+
+    /**
+     * 链表node, 由于node实例一般需要继承其他类, 故以接口定义
+     * 实现类需保证{@link #next()}和{@link #bucket()}对应字段是volatile, {@link #prev()}则仅在head对象锁内访问
+     */
+    public interface Node<K, N extends Node<K, N>> {
+        /**
+         * @return key, head哨兵node返回null
+         */
+        K key();
+
+        /**
+         * @return prev linked list node
+         */
+        N prev();
+
+        void setPrev(N prev);
+
+        /**
+         * @return next linked list node
+         */
+        N next();
+
+        void setNext(N next);
+
+        /**
+         * @return 所在链表head, null表示已移除
+         */
+        N bucket();
+
+        void setBucket(N bucket);
+    }
+
+    /**
+     * 扩容状态, 同时作为原bucket已迁移的forwarding标识
+     */
+    private static final class Resize {
+        private static final AtomicIntegerFieldUpdater<Resize> TRANSFER_INDEX_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(Resize.class, "transferIndex");
+        private static final AtomicIntegerFieldUpdater<Resize> REMAINING_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(Resize.class, "remaining");
+
+        /** 原bucket数组 */
+        private final AtomicReferenceArray<Object> table;
+        /** 新bucket数组 */
+        private final AtomicReferenceArray<Object> nextTable;
+        /** 下次领取迁移bucket的上界(不包含) */
+        private volatile int transferIndex;
+        /** 剩余未迁移bucket数量 */
+        private volatile int remaining;
+
+        Resize(AtomicReferenceArray<Object> table) {
+            this.table = table;
+            this.nextTable = new AtomicReferenceArray<>(table.length() << 1);
+            this.transferIndex = table.length();
+            this.remaining = table.length();
+        }
+    }
+
+    /**
+     * 新bucket正在迁移标识
+     */
+    private static final class Pending {
+        /** 原bucket链表head, 迁移期间持有其对象锁 */
+        private final Object head;
+
+        Pending(Object head) {
+            this.head = head;
+        }
+
+        /**
+         * 等待迁移完成
+         */
+        @SuppressWarnings("EmptySynchronizedStatement")
+        void await() {
+            synchronized (head) {
+                //迁移完成后才会释放head对象锁
+            }
+        }
+    }
+}
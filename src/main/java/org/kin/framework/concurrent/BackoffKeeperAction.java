@@ -0,0 +1,46 @@
+package org.kin.framework.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支持退避的{@link KeeperAction}, 适用于轮询类逻辑(比如队列消费, 文件tail)
+ * 每次执行完需返回是否处理了work, 如果没有, keeper会按指数增长的时间park当前线程, 直到{@link #maxIdleParkNanos()},
+ * 处理到work后, park时间重置为{@link #minIdleParkNanos()}
+ * <p>
+ * 有新work时, 可以通过{@link Keeper.KeeperStopper#wakeup()}立即唤醒keeper线程, 不需要等待park超时
+ *
+ * @author huangjianqin
+ * @date 2023/7/15
+ */
+public interface BackoffKeeperAction extends KeeperAction {
+    /** 默认最小park时间 */
+    long DEFAULT_MIN_IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    /** 默认最大park时间 */
+    long DEFAULT_MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * 执行keeper逻辑
+     *
+     * @return 是否处理了work, false则keeper进入退避
+     */
+    boolean tryAction();
+
+    @Override
+    default void action() {
+        tryAction();
+    }
+
+    /**
+     * @return 首次退避的park时间
+     */
+    default long minIdleParkNanos() {
+        return DEFAULT_MIN_IDLE_PARK_NANOS;
+    }
+
+    /**
+     * @return 退避的最大park时间
+     */
+    default long maxIdleParkNanos() {
+        return DEFAULT_MAX_IDLE_PARK_NANOS;
+    }
+}
@@ -0,0 +1,308 @@
+package org.kin.framework.concurrent;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.MapMaker;
+import org.kin.framework.utils.PlatformDependent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link ThreadLessExecutor}的批量版本, 同样不管理任何线程, 但可以同时等待多个future
+ * 使用场景: scatter-gather调用, 所有请求的callback task都提交到同一个executor, caller thread仅需一次等待,
+ * 在等待期间会不断执行到达的callback task, 直到所有(或任意一个)future完成或者超时
+ * <p>
+ * 与{@link ThreadLessExecutor}不同的是, task queue使用无锁mpsc队列, 等待使用{@link LockSupport#park(Object)}/{@link LockSupport#unpark(Thread)},
+ * 并且executor可以重复等待, 直到调用{@link #finish()}后, 提交的task才会直接在提交线程执行
+ * <p>
+ * 每个future仅注册一次完成回调, 回调将future放入完成队列并唤醒当前正在等待的线程, 故重复或者超时的等待不会在future上堆积回调
+ *
+ * @author huangjianqin
+ * @date 2023/7/14
+ */
+public final class BatchThreadLessExecutor implements Executor {
+    private static final Logger log = LoggerFactory.getLogger(BatchThreadLessExecutor.class);
+    private static final AtomicReferenceFieldUpdater<BatchThreadLessExecutor, Thread> WAITING_THREAD_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(BatchThreadLessExecutor.class, Thread.class, "waitingThread");
+    /** waitAll等待成功时的返回值 */
+    private static final CompletableFuture<?> ALL_DONE = CompletableFuture.completedFuture(null);
+
+    /** task queue, 所有消费者均需持有其对象锁 */
+    private final Queue<Runnable> queue = PlatformDependent.newMpscQueue();
+    /** 已完成的future, 由future完成回调入队, 仅等待线程消费 */
+    private final Queue<CompletableFuture<?>> completedFutures = PlatformDependent.newMpscQueue();
+    /** 已注册完成回调的future, weak key并且以identity比较, 仅等待线程访问 */
+    private final Set<CompletableFuture<?>> hookedFutures = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
+    /** 等待callback task的线程, 同一时间仅允许一条线程等待 */
+    private volatile Thread waitingThread;
+    /** 是否已结束等待, 结束后提交的task会直接执行 */
+    private volatile boolean finished;
+
+    /**
+     * 等待所有future完成, 等待期间会执行所有提交的callback task
+     *
+     * @param futures 等待的future
+     */
+    public void waitAll(@Nonnull Collection<? extends CompletableFuture<?>> futures) throws InterruptedException {
+        await(futures, futures.size(), 0);
+    }
+
+    /**
+     * 等待所有future完成, 等待期间会执行所有提交的callback task
+     *
+     * @param futures 等待的future
+     * @param timeout 超时时间
+     * @param unit    超时时间单位
+     * @return 是否所有future都已完成, false则表示超时
+     */
+    public boolean waitAll(@Nonnull Collection<? extends CompletableFuture<?>> futures, long timeout, TimeUnit unit) throws InterruptedException {
+        return await(futures, futures.size(), deadline(timeout, unit)) != null;
+    }
+
+    /**
+     * 等待任意一个future完成, 等待期间会执行所有提交的callback task
+     *
+     * @param futures 等待的future
+     * @return 第一个完成的future
+     */
+    public CompletableFuture<?> waitAny(@Nonnull Collection<? extends CompletableFuture<?>> futures) throws InterruptedException {
+        Preconditions.checkArgument(!futures.isEmpty(), "futures must not be empty");
+        return await(futures, 1, 0);
+    }
+
+    /**
+     * 等待任意一个future完成, 等待期间会执行所有提交的callback task
+     *
+     * @param futures 等待的future
+     * @param timeout 超时时间
+     * @param unit    超时时间单位
+     * @return 第一个完成的future, 超时则返回null
+     */
+    @Nullable
+    public CompletableFuture<?> waitAny(@Nonnull Collection<? extends CompletableFuture<?>> futures, long timeout, TimeUnit unit) throws InterruptedException {
+        Preconditions.checkArgument(!futures.isEmpty(), "futures must not be empty");
+        return await(futures, 1, deadline(timeout, unit));
+    }
+
+    /**
+     * 计算deadline, 0表示无超时
+     */
+    private static long deadline(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        //规避deadline刚好为0
+        return deadline == 0 ? 1 : deadline;
+    }
+
+    /**
+     * 等待直到指定数量的future完成或者超时, 期间不断执行queue中的task
+     *
+     * @param futures  等待的future
+     * @param expected 需要等待完成的future数量, 1即waitAny, 否则waitAll
+     * @param deadline 超时deadline, 0表示无超时
+     * @return 超时则返回null, 否则waitAny返回第一个完成的future, waitAll返回{@link #ALL_DONE}
+     */
+    @Nullable
+    private CompletableFuture<?> await(Collection<? extends CompletableFuture<?>> futures, int expected, long deadline) throws InterruptedException {
+        Thread currentThread = Thread.currentThread();
+        if (!WAITING_THREAD_UPDATER.compareAndSet(this, null, currentThread)) {
+            throw new IllegalStateException("just allow one thread to wait and drain");
+        }
+
+        try {
+            //丢弃之前等待遗留的已完成future, 之后完成的future由回调入队
+            completedFutures.clear();
+            for (CompletableFuture<?> future : futures) {
+                if (!future.isDone() && hookedFutures.add(future)) {
+                    future.whenComplete((r, t) -> onFutureComplete(future));
+                }
+            }
+
+            //waitAll下仍未完成的future, 所有future按顺序检查, 故每个future仅需检查到完成一次
+            Iterator<? extends CompletableFuture<?>> iterator = futures.iterator();
+            CompletableFuture<?> pending = null;
+            boolean firstPass = true;
+            while (true) {
+                drain();
+
+                if (expected == 1) {
+                    CompletableFuture<?> done = firstDone(futures, firstPass);
+                    firstPass = false;
+                    if (done != null) {
+                        return done;
+                    }
+                } else {
+                    completedFutures.clear();
+                    while (pending != null || iterator.hasNext()) {
+                        if (pending == null) {
+                            pending = iterator.next();
+                        }
+                        if (!pending.isDone()) {
+                            break;
+                        }
+                        pending = null;
+                    }
+                    if (pending == null) {
+                        return ALL_DONE;
+                    }
+                }
+
+                if (deadline == 0) {
+                    LockSupport.park(this);
+                } else {
+                    long remainNanos = deadline - System.nanoTime();
+                    if (remainNanos <= 0) {
+                        //超时前最后执行一次已到达的task
+                        drain();
+                        if (expected == 1) {
+                            return firstDone(futures, false);
+                        }
+                        return pending.isDone() && allDone(iterator) ? ALL_DONE : null;
+                    }
+                    LockSupport.parkNanos(this, remainNanos);
+                }
+
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waitingThread = null;
+        }
+    }
+
+    /**
+     * future完成回调, 唤醒正在等待的线程
+     */
+    private void onFutureComplete(CompletableFuture<?> future) {
+        completedFutures.offer(future);
+        Thread waitingThread = this.waitingThread;
+        //仅当future在其他线程完成时才需要唤醒
+        if (waitingThread != null && waitingThread != Thread.currentThread()) {
+            LockSupport.unpark(waitingThread);
+        }
+    }
+
+    /**
+     * @param scan 是否遍历检查future是否完成, 仅需在第一次检查时遍历, 之后完成的future都会进入完成队列
+     * @return waitAny等待的第一个完成的future, 不存在则返回null
+     */
+    @Nullable
+    private CompletableFuture<?> firstDone(Collection<? extends CompletableFuture<?>> futures, boolean scan) {
+        CompletableFuture<?> completed;
+        while ((completed = completedFutures.poll()) != null) {
+            //完成队列中可能包含其他等待注册的future
+            for (CompletableFuture<?> future : futures) {
+                if (future == completed) {
+                    return future;
+                }
+            }
+        }
+        if (!scan) {
+            return null;
+        }
+        //等待前已完成的future不会入队
+        for (CompletableFuture<?> future : futures) {
+            if (future.isDone()) {
+                return future;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 剩余future是否都已完成
+     */
+    private static boolean allDone(Iterator<? extends CompletableFuture<?>> iterator) {
+        while (iterator.hasNext()) {
+            if (!iterator.next().isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 执行queue中所有已到达的task, 不会阻塞
+     * queue是mpsc队列, 故持有其对象锁消费, 保证与{@link #finish()}以及结束等待后的{@link #execute(Runnable)}互斥
+     *
+     * @return 执行的task数量
+     */
+    public int drain() {
+        synchronized (queue) {
+            int count = 0;
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                runSafely(task);
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 结束等待, 执行queue中剩余的task, 之后提交的task会直接在提交线程执行
+     */
+    public void finish() {
+        finished = true;
+        drain();
+        completedFutures.clear();
+    }
+
+    /**
+     * 提交callback task, 如果有线程正在等待, 则唤醒该线程执行
+     *
+     * @param task callback
+     */
+    @Override
+    public void execute(@Nonnull Runnable task) {
+        if (finished) {
+            //已结束等待, 直接执行
+            runSafely(task);
+            return;
+        }
+
+        queue.offer(task);
+        if (finished) {
+            //finish()并发执行, 有可能task已入队但没有被执行
+            drain();
+            return;
+        }
+
+        Thread waitingThread = this.waitingThread;
+        if (waitingThread != null && waitingThread != Thread.currentThread()) {
+            LockSupport.unpark(waitingThread);
+        }
+    }
+
+    /**
+     * 执行task, 异常仅log打印
+     */
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            log.error("", t);
+        }
+    }
+
+    //getter
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public boolean isWaiting() {
+        return waitingThread != null;
+    }
+}
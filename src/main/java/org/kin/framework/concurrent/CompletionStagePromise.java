@@ -0,0 +1,603 @@
+package org.kin.framework.concurrent;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 同时是{@link CompletionStage}的{@link Promise}实现, 可直接作为{@link CompletionStage}传递给jdk异步api, 不需要额外转换
+ * 所有{@link CompletionStage}操作都直接基于Promise listener机制实现, 每个stage仅注册一个listener, 不需要经过{@link #toCompletableFuture()}中转,
+ * 后续stage同样是{@link CompletionStagePromise}实例
+ * <p>
+ * 未指定executor的async方法默认使用该Promise的executor执行, 而不是{@link java.util.concurrent.ForkJoinPool#commonPool()}
+ * 如果开启{@code inlineInEventLoop}, 当executor是{@link EventExecutor}并且当前线程就是其event loop线程时, 直接执行, 节省一次task提交
+ * <p>
+ * 与{@link CompletableFuture}不同, stage链路上传递的异常不会被{@link CompletionException}包装
+ * <p>
+ * 另外, 还适配了jdk9+新增的{@link CompletionStage}和{@link CompletableFuture}方法, 比如exceptionallyAsync, exceptionallyCompose,
+ * {@link #orTimeout(long, TimeUnit)}和{@link #completeOnTimeout(Object, long, TimeUnit)}.
+ * 因为需要兼容jdk8编译, 所以这些方法没有标注{@link Override}, 但在jdk12+运行时, 仍然会覆盖{@link CompletionStage}对应的default方法
+ *
+ * @author huangjianqin
+ * @date 2023/7/10
+ * @see Promises#inlineExecutor(Executor)
+ */
+public class CompletionStagePromise<V> extends DefaultPromise<V> implements CompletionStage<V> {
+    /** 是否当前线程就是executor event loop线程时直接执行async stage */
+    private final boolean inlineInEventLoop;
+    /** 未指定executor的async方法默认使用的executor */
+    private final Executor asyncExecutor;
+
+    public CompletionStagePromise() {
+        super();
+        this.inlineInEventLoop = false;
+        this.asyncExecutor = executor();
+    }
+
+    public CompletionStagePromise(Executor executor) {
+        this(executor, false);
+    }
+
+    /**
+     * @param executor          执行listener和async stage的executor
+     * @param inlineInEventLoop 是否当前线程就是executor event loop线程时直接执行async stage
+     */
+    public CompletionStagePromise(Executor executor, boolean inlineInEventLoop) {
+        super(executor);
+        this.inlineInEventLoop = inlineInEventLoop;
+        this.asyncExecutor = inlineInEventLoop ? Promises.inlineExecutor(executor) : executor;
+    }
+
+    @Override
+    public <U> CompletionStage<U> thenApply(Function<? super V, ? extends U> fn) {
+        return thenApply0(null, fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> thenApplyAsync(Function<? super V, ? extends U> fn) {
+        return thenApply0(asyncExecutor, fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> thenApplyAsync(Function<? super V, ? extends U> fn, Executor executor) {
+        return thenApply0(Preconditions.checkNotNull(executor), fn);
+    }
+
+    @Override
+    public CompletionStage<Void> thenAccept(Consumer<? super V> action) {
+        return thenAccept0(null, action);
+    }
+
+    @Override
+    public CompletionStage<Void> thenAcceptAsync(Consumer<? super V> action) {
+        return thenAccept0(asyncExecutor, action);
+    }
+
+    @Override
+    public CompletionStage<Void> thenAcceptAsync(Consumer<? super V> action, Executor executor) {
+        return thenAccept0(Preconditions.checkNotNull(executor), action);
+    }
+
+    @Override
+    public CompletionStage<Void> thenRun(Runnable action) {
+        return thenRun0(null, action);
+    }
+
+    @Override
+    public CompletionStage<Void> thenRunAsync(Runnable action) {
+        return thenRun0(asyncExecutor, action);
+    }
+
+    @Override
+    public CompletionStage<Void> thenRunAsync(Runnable action, Executor executor) {
+        return thenRun0(Preconditions.checkNotNull(executor), action);
+    }
+
+    @Override
+    public <U, R> CompletionStage<R> thenCombine(CompletionStage<? extends U> other, BiFunction<? super V, ? super U, ? extends R> fn) {
+        return thenCombine0(null, other, fn);
+    }
+
+    @Override
+    public <U, R> CompletionStage<R> thenCombineAsync(CompletionStage<? extends U> other, BiFunction<? super V, ? super U, ? extends R> fn) {
+        return thenCombine0(asyncExecutor, other, fn);
+    }
+
+    @Override
+    public <U, R> CompletionStage<R> thenCombineAsync(CompletionStage<? extends U> other, BiFunction<? super V, ? super U, ? extends R> fn, Executor executor) {
+        return thenCombine0(Preconditions.checkNotNull(executor), other, fn);
+    }
+
+    @Override
+    public <U> CompletionStage<Void> thenAcceptBoth(CompletionStage<? extends U> other, BiConsumer<? super V, ? super U> action) {
+        return thenAcceptBoth0(null, other, action);
+    }
+
+    @Override
+    public <U> CompletionStage<Void> thenAcceptBothAsync(CompletionStage<? extends U> other, BiConsumer<? super V, ? super U> action) {
+        return thenAcceptBoth0(asyncExecutor, other, action);
+    }
+
+    @Override
+    public <U> CompletionStage<Void> thenAcceptBothAsync(CompletionStage<? extends U> other, BiConsumer<? super V, ? super U> action, Executor executor) {
+        return thenAcceptBoth0(Preconditions.checkNotNull(executor), other, action);
+    }
+
+    @Override
+    public CompletionStage<Void> runAfterBoth(CompletionStage<?> other, Runnable action) {
+        return runAfterBoth0(null, other, action);
+    }
+
+    @Override
+    public CompletionStage<Void> runAfterBothAsync(CompletionStage<?> other, Runnable action) {
+        return runAfterBoth0(asyncExecutor, other, action);
+    }
+
+    @Override
+    public CompletionStage<Void> runAfterBothAsync(CompletionStage<?> other, Runnable action, Executor executor) {
+        return runAfterBoth0(Preconditions.checkNotNull(executor), other, action);
+    }
+
+    @Override
+    public <U> CompletionStage<U> applyToEither(CompletionStage<? extends V> other, Function<? super V, U> fn) {
+        return applyToEither0(null, other, fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> applyToEitherAsync(CompletionStage<? extends V> other, Function<? super V, U> fn) {
+        return applyToEither0(asyncExecutor, other, fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> applyToEitherAsync(CompletionStage<? extends V> other, Function<? super V, U> fn, Executor executor) {
+        return applyToEither0(Preconditions.checkNotNull(executor), other, fn);
+    }
+
+    @Override
+    public CompletionStage<Void> acceptEither(CompletionStage<? extends V> other, Consumer<? super V> action) {
+        return acceptEither0(null, other, action);
+    }
+
+    @Override
+    public CompletionStage<Void> acceptEitherAsync(CompletionStage<? extends V> other, Consumer<? super V> action) {
+        return acceptEither0(asyncExecutor, other, action);
+    }
+
+    @Override
+    public CompletionStage<Void> acceptEitherAsync(CompletionStage<? extends V> other, Consumer<? super V> action, Executor executor) {
+        return acceptEither0(Preconditions.checkNotNull(executor), other, action);
+    }
+
+    @Override
+    public CompletionStage<Void> runAfterEither(CompletionStage<?> other, Runnable action) {
+        return runAfterEither0(null, other, action);
+    }
+
+    @Override
+    public CompletionStage<Void> runAfterEitherAsync(CompletionStage<?> other, Runnable action) {
+        return runAfterEither0(asyncExecutor, other, action);
+    }
+
+    @Override
+    public CompletionStage<Void> runAfterEitherAsync(CompletionStage<?> other, Runnable action, Executor executor) {
+        return runAfterEither0(Preconditions.checkNotNull(executor), other, action);
+    }
+
+    @Override
+    public <U> CompletionStage<U> thenCompose(Function<? super V, ? extends CompletionStage<U>> fn) {
+        return thenCompose0(null, fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> thenComposeAsync(Function<? super V, ? extends CompletionStage<U>> fn) {
+        return thenCompose0(asyncExecutor, fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> thenComposeAsync(Function<? super V, ? extends CompletionStage<U>> fn, Executor executor) {
+        return thenCompose0(Preconditions.checkNotNull(executor), fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> handle(BiFunction<? super V, Throwable, ? extends U> fn) {
+        return handle0(null, fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> handleAsync(BiFunction<? super V, Throwable, ? extends U> fn) {
+        return handle0(asyncExecutor, fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> handleAsync(BiFunction<? super V, Throwable, ? extends U> fn, Executor executor) {
+        return handle0(Preconditions.checkNotNull(executor), fn);
+    }
+
+    @Override
+    public CompletionStage<V> whenComplete(BiConsumer<? super V, ? super Throwable> action) {
+        return whenComplete0(null, action);
+    }
+
+    @Override
+    public CompletionStage<V> whenCompleteAsync(BiConsumer<? super V, ? super Throwable> action) {
+        return whenComplete0(asyncExecutor, action);
+    }
+
+    @Override
+    public CompletionStage<V> whenCompleteAsync(BiConsumer<? super V, ? super Throwable> action, Executor executor) {
+        return whenComplete0(Preconditions.checkNotNull(executor), action);
+    }
+
+    @Override
+    public CompletionStage<V> exceptionally(Function<Throwable, ? extends V> fn) {
+        return exceptionally0(null, fn);
+    }
+
+    /**
+     * jdk12+ {@code CompletionStage#exceptionallyAsync(Function)}
+     */
+    public CompletionStage<V> exceptionallyAsync(Function<Throwable, ? extends V> fn) {
+        return exceptionally0(asyncExecutor, fn);
+    }
+
+    /**
+     * jdk12+ {@code CompletionStage#exceptionallyAsync(Function, Executor)}
+     */
+    public CompletionStage<V> exceptionallyAsync(Function<Throwable, ? extends V> fn, Executor executor) {
+        return exceptionally0(Preconditions.checkNotNull(executor), fn);
+    }
+
+    /**
+     * jdk12+ {@code CompletionStage#exceptionallyCompose(Function)}
+     */
+    public CompletionStage<V> exceptionallyCompose(Function<Throwable, ? extends CompletionStage<V>> fn) {
+        return exceptionallyCompose0(null, fn);
+    }
+
+    /**
+     * jdk12+ {@code CompletionStage#exceptionallyComposeAsync(Function)}
+     */
+    public CompletionStage<V> exceptionallyComposeAsync(Function<Throwable, ? extends CompletionStage<V>> fn) {
+        return exceptionallyCompose0(asyncExecutor, fn);
+    }
+
+    /**
+     * jdk12+ {@code CompletionStage#exceptionallyComposeAsync(Function, Executor)}
+     */
+    public CompletionStage<V> exceptionallyComposeAsync(Function<Throwable, ? extends CompletionStage<V>> fn, Executor executor) {
+        return exceptionallyCompose0(Preconditions.checkNotNull(executor), fn);
+    }
+
+    /**
+     * jdk9+ {@code CompletableFuture#orTimeout(long, TimeUnit)}
+     * 如果在{@code timeout}内没有complete, 则以{@link TimeoutException} failure
+     * 如果executor是{@link ScheduledExecutorService}, 则使用其调度超时检查, 否则使用内置的单线程调度器
+     *
+     * @return this
+     */
+    public CompletionStagePromise<V> orTimeout(long timeout, TimeUnit unit) {
+        Preconditions.checkNotNull(unit);
+        if (!isDone()) {
+            timeout(() -> tryFailure(new TimeoutException()), timeout, unit);
+        }
+        return this;
+    }
+
+    /**
+     * jdk9+ {@code CompletableFuture#completeOnTimeout(Object, long, TimeUnit)}
+     * 如果在{@code timeout}内没有complete, 则以{@code value} success
+     *
+     * @return this
+     * @see #orTimeout(long, TimeUnit)
+     */
+    public CompletionStagePromise<V> completeOnTimeout(V value, long timeout, TimeUnit unit) {
+        Preconditions.checkNotNull(unit);
+        if (!isDone()) {
+            timeout(() -> trySuccess(value), timeout, unit);
+        }
+        return this;
+    }
+
+    //-------------------------------------------------------------------------------------------------------------
+
+    /**
+     * 创建后续stage, 使stage链路上的async方法仍然默认使用该Promise的executor
+     */
+    private <U> CompletionStagePromise<U> newStage() {
+        return new CompletionStagePromise<>(executor(), inlineInEventLoop);
+    }
+
+    /**
+     * 往当前Promise注册listener, complete后回调{@code callback}
+     */
+    private void onComplete(BiConsumer<? super V, ? super Throwable> callback) {
+        addListener((PromiseListener<Promise<V>>) p -> callback.accept(p.getNow(), p.cause()));
+    }
+
+    /**
+     * 监听{@code stage}结果
+     * 如果{@code stage}是{@link Promise}, 则直接注册listener, 否则往{@code stage}注册一个callback
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void listen(CompletionStage<T> stage, BiConsumer<? super T, ? super Throwable> callback) {
+        if (stage instanceof Promise) {
+            ((Promise<T>) stage).addListener((PromiseListener<Promise<T>>) p -> callback.accept(p.getNow(), p.cause()));
+        } else {
+            stage.whenComplete((r, t) -> {
+                if (t instanceof CompletionException && t.getCause() != null) {
+                    //jdk内部会对stage链路上的异常进行封装, 此处还原
+                    t = t.getCause();
+                }
+                callback.accept(r, t);
+            });
+        }
+    }
+
+    /**
+     * 同步stage结果
+     */
+    private static <T> void complete(Promise<T> promise, T result, Throwable cause) {
+        if (cause == null) {
+            promise.trySuccess(result);
+        } else {
+            promise.tryFailure(cause);
+        }
+    }
+
+    /**
+     * 在{@code executor}上执行stage逻辑, {@code executor}为null则直接在当前线程执行
+     * stage逻辑抛出异常或者提交task失败, 都会令{@code next} failure
+     */
+    private static void fire(@Nullable Executor executor, Promise<?> next, StageTask task) {
+        if (executor == null) {
+            run(next, task);
+            return;
+        }
+
+        try {
+            executor.execute(() -> run(next, task));
+        } catch (Throwable t) {
+            next.tryFailure(t);
+        }
+    }
+
+    /**
+     * 执行stage逻辑, 异常则令{@code next} failure
+     */
+    private static void run(Promise<?> next, StageTask task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            next.tryFailure(t);
+        }
+    }
+
+    private <U> CompletionStagePromise<U> thenApply0(@Nullable Executor executor, Function<? super V, ? extends U> fn) {
+        Preconditions.checkNotNull(fn);
+        CompletionStagePromise<U> next = newStage();
+        onComplete((r, t) -> {
+            if (t != null) {
+                next.tryFailure(t);
+                return;
+            }
+            fire(executor, next, () -> next.trySuccess(fn.apply(r)));
+        });
+        return next;
+    }
+
+    private CompletionStagePromise<Void> thenAccept0(@Nullable Executor executor, Consumer<? super V> action) {
+        Preconditions.checkNotNull(action);
+        return thenApply0(executor, r -> {
+            action.accept(r);
+            return null;
+        });
+    }
+
+    private CompletionStagePromise<Void> thenRun0(@Nullable Executor executor, Runnable action) {
+        Preconditions.checkNotNull(action);
+        return thenApply0(executor, r -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * 当前Promise success后再监听{@code other}, 两者都success才执行{@code fn}, 任意一个failure则直接failure
+     */
+    private <U, R> CompletionStagePromise<R> thenCombine0(@Nullable Executor executor, CompletionStage<? extends U> other,
+                                                          BiFunction<? super V, ? super U, ? extends R> fn) {
+        Preconditions.checkNotNull(other);
+        Preconditions.checkNotNull(fn);
+        CompletionStagePromise<R> next = newStage();
+        onComplete((r, t) -> {
+            if (t != null) {
+                next.tryFailure(t);
+                return;
+            }
+            listen(other, (u, ot) -> {
+                if (ot != null) {
+                    next.tryFailure(ot);
+                    return;
+                }
+                fire(executor, next, () -> next.trySuccess(fn.apply(r, u)));
+            });
+        });
+        return next;
+    }
+
+    private <U> CompletionStagePromise<Void> thenAcceptBoth0(@Nullable Executor executor, CompletionStage<? extends U> other,
+                                                             BiConsumer<? super V, ? super U> action) {
+        Preconditions.checkNotNull(action);
+        return thenCombine0(executor, other, (r, u) -> {
+            action.accept(r, u);
+            return null;
+        });
+    }
+
+    private CompletionStagePromise<Void> runAfterBoth0(@Nullable Executor executor, CompletionStage<?> other, Runnable action) {
+        Preconditions.checkNotNull(action);
+        return thenCombine0(executor, other, (r, u) -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * 当前Promise和{@code other}任意一个complete, 即以其结果执行{@code fn}
+     */
+    private <U> CompletionStagePromise<U> applyToEither0(@Nullable Executor executor, CompletionStage<? extends V> other,
+                                                         Function<? super V, U> fn) {
+        Preconditions.checkNotNull(other);
+        Preconditions.checkNotNull(fn);
+        CompletionStagePromise<U> next = newStage();
+        AtomicBoolean fired = new AtomicBoolean();
+        BiConsumer<V, Throwable> callback = (r, t) -> {
+            if (!fired.compareAndSet(false, true)) {
+                //另外一个已complete
+                return;
+            }
+            if (t != null) {
+                next.tryFailure(t);
+                return;
+            }
+            fire(executor, next, () -> next.trySuccess(fn.apply(r)));
+        };
+        onComplete(callback);
+        listen(other, callback);
+        return next;
+    }
+
+    private CompletionStagePromise<Void> acceptEither0(@Nullable Executor executor, CompletionStage<? extends V> other,
+                                                       Consumer<? super V> action) {
+        Preconditions.checkNotNull(action);
+        return applyToEither0(executor, other, r -> {
+            action.accept(r);
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletionStagePromise<Void> runAfterEither0(@Nullable Executor executor, CompletionStage<?> other, Runnable action) {
+        Preconditions.checkNotNull(action);
+        //只关心是否complete, 不关心结果类型
+        return applyToEither0(executor, (CompletionStage<? extends V>) other, r -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private <U> CompletionStagePromise<U> thenCompose0(@Nullable Executor executor, Function<? super V, ? extends CompletionStage<U>> fn) {
+        Preconditions.checkNotNull(fn);
+        CompletionStagePromise<U> next = newStage();
+        onComplete((r, t) -> {
+            if (t != null) {
+                next.tryFailure(t);
+                return;
+            }
+            fire(executor, next, () -> {
+                CompletionStage<U> stage = Preconditions.checkNotNull(fn.apply(r));
+                listen(stage, (u, st) -> complete(next, u, st));
+            });
+        });
+        return next;
+    }
+
+    private <U> CompletionStagePromise<U> handle0(@Nullable Executor executor, BiFunction<? super V, Throwable, ? extends U> fn) {
+        Preconditions.checkNotNull(fn);
+        CompletionStagePromise<U> next = newStage();
+        onComplete((r, t) -> fire(executor, next, () -> next.trySuccess(fn.apply(r, t))));
+        return next;
+    }
+
+    private CompletionStagePromise<V> whenComplete0(@Nullable Executor executor, BiConsumer<? super V, ? super Throwable> action) {
+        Preconditions.checkNotNull(action);
+        CompletionStagePromise<V> next = newStage();
+        onComplete((r, t) -> fire(executor, next, () -> {
+            try {
+                action.accept(r, t);
+            } catch (Throwable e) {
+                if (t == null) {
+                    next.tryFailure(e);
+                    return;
+                }
+                if (t != e) {
+                    //与jdk9+ CompletableFuture一致, 保留原异常
+                    t.addSuppressed(e);
+                }
+            }
+            complete(next, r, t);
+        }));
+        return next;
+    }
+
+    private CompletionStagePromise<V> exceptionally0(@Nullable Executor executor, Function<Throwable, ? extends V> fn) {
+        Preconditions.checkNotNull(fn);
+        CompletionStagePromise<V> next = newStage();
+        onComplete((r, t) -> {
+            if (t == null) {
+                next.trySuccess(r);
+                return;
+            }
+            fire(executor, next, () -> next.trySuccess(fn.apply(t)));
+        });
+        return next;
+    }
+
+    private CompletionStagePromise<V> exceptionallyCompose0(@Nullable Executor executor, Function<Throwable, ? extends CompletionStage<V>> fn) {
+        Preconditions.checkNotNull(fn);
+        CompletionStagePromise<V> next = newStage();
+        onComplete((r, t) -> {
+            if (t == null) {
+                next.trySuccess(r);
+                return;
+            }
+            fire(executor, next, () -> {
+                CompletionStage<V> stage = Preconditions.checkNotNull(fn.apply(t));
+                listen(stage, (u, st) -> complete(next, u, st));
+            });
+        });
+        return next;
+    }
+
+    /**
+     * 调度超时task, 当前Promise complete后取消
+     */
+    private void timeout(Runnable task, long timeout, TimeUnit unit) {
+        Executor executor = executor();
+        ScheduledExecutorService scheduler = executor instanceof ScheduledExecutorService ?
+                (ScheduledExecutorService) executor : Delayer.SCHEDULER;
+        ScheduledFuture<?> future = scheduler.schedule(task, timeout, unit);
+        addListener(p -> future.cancel(false));
+    }
+
+    //-------------------------------------------------------------------------------------------------------------
+
+    /**
+     * stage逻辑
+     */
+    @FunctionalInterface
+    private interface StageTask {
+        /**
+         * 执行stage逻辑
+         */
+        void run() throws Throwable;
+    }
+
+    /**
+     * 当executor不支持调度时, 用于超时检查的单线程调度器, 懒加载
+     */
+    private static final class Delayer {
+        static final ScheduledThreadPoolExecutor SCHEDULER;
+
+        static {
+            SCHEDULER = new ScheduledThreadPoolExecutor(1, new SimpleThreadFactory("completionStagePromise-delayer", true));
+            SCHEDULER.setRemoveOnCancelPolicy(true);
+        }
+    }
+}
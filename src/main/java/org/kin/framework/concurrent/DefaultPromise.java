@@ -35,13 +35,17 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
  */
 public class DefaultPromise<V> implements Promise<V> {
     private static final Logger log = LoggerFactory.getLogger(DefaultPromise.class);
-    private static final int MAX_LISTENER_STACK_DEPTH = Math.min(8,
+    static final int MAX_LISTENER_STACK_DEPTH = Math.min(8,
             SysUtils.getIntSysProperty("kin.defaultPromise.maxListenerStackDepth", 8));
 
     /** 原子更新{@link #result} */
     @SuppressWarnings("rawtypes")
     private static final AtomicReferenceFieldUpdater<DefaultPromise, Object> RESULT_UPDATER =
             AtomicReferenceFieldUpdater.newUpdater(DefaultPromise.class, Object.class, "result");
+    /** 原子更新{@link #stage} */
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<DefaultPromise, CompletableFuture> STAGE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultPromise.class, CompletableFuture.class, "stage");
     /** 当{@link #success(Object)}参数为null时, 用来标识该Promise成功的唯一对象 */
     private static final Object SUCCESS = new Object();
     /** 只要{@link #result}为null, {@link #cancel(boolean)}就可以执行成功, 将{@link #result}set为这个对象就是用来阻止{@link #cancel(boolean)}执行成功 */
@@ -56,6 +60,11 @@ public class DefaultPromise<V> implements Promise<V> {
     private volatile Object result;
     /** 执行触发listener逻辑的{@link Executor} */
     private final Executor executor;
+    /**
+     * 与该Promise结果同步的{@link CompletableFuture}, 懒创建
+     * Promise complete时直接在complete线程上完成它, 不需要注册listener, 也不需要经过{@link #executor}中转
+     */
+    private volatile CompletableFuture<V> stage;
     /**
      * One or more listeners. Can be a {@link PromiseListener} or a {@link DefaultPromiseListeners}.
      * If {@code null}, it means either 1) no listeners were added yet or 2) all listeners were notified.
@@ -365,6 +374,7 @@ public class DefaultPromise<V> implements Promise<V> {
     @Override
     public boolean cancel(boolean mayInterruptIfRunning) {
         if (RESULT_UPDATER.compareAndSet(this, null, CANCELLATION_CAUSE_HOLDER)) {
+            completeStage();
             if (checkNotifyWaiters()) {
                 notifyListeners();
             }
@@ -397,6 +407,26 @@ public class DefaultPromise<V> implements Promise<V> {
         return this;
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public CompletableFuture<V> toCompletableFuture() {
+        CompletableFuture<V> stage = this.stage;
+        if (stage != null) {
+            return stage;
+        }
+
+        stage = new CompletableFuture<>();
+        if (!STAGE_UPDATER.compareAndSet(this, null, stage)) {
+            //其他线程已创建
+            return this.stage;
+        }
+        if (isDone()) {
+            //创建前已complete, 此时setValue0可能看不到stage, 需要自己同步结果
+            completeStage();
+        }
+        return stage;
+    }
+
     @Override
     public String toString() {
         return toStringBuilder().toString();
@@ -563,6 +593,7 @@ public class DefaultPromise<V> implements Promise<V> {
                 RESULT_UPDATER.compareAndSet(this, UNCANCELLABLE, objResult)) {
             //null和UNCANCELLABLE实例下, 都是允许更新result值的
             //
+            completeStage();
             if (checkNotifyWaiters()) {
                 notifyListeners();
             }
@@ -571,6 +602,24 @@ public class DefaultPromise<V> implements Promise<V> {
         return false;
     }
 
+    /**
+     * 如果已创建{@link #stage}, 则同步Promise结果
+     * 可能会与{@link #toCompletableFuture()}并发执行, 但{@link CompletableFuture}仅允许complete一次, 所以无影响
+     */
+    private void completeStage() {
+        CompletableFuture<V> stage = this.stage;
+        if (stage == null) {
+            return;
+        }
+
+        Throwable cause = cause();
+        if (cause == null) {
+            stage.complete(getNow());
+        } else {
+            stage.completeExceptionally(cause);
+        }
+    }
+
     /**
      * Check if there are any waiters and if so notify these.
      *
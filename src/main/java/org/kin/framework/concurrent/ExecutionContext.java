@@ -63,6 +63,9 @@ public class ExecutionContext implements ScheduledExecutorService {
         return forkJoin(parallelism, workerNamePrefix, null, scheduleParallelism);
     }
 
+    /**
+     * 工作线程是{@link SimpleForkJoinWorkerThread}, 支持{@link FastThreadLocal}快速访问
+     */
     public static ExecutionContext forkJoin(int parallelism, String workerNamePrefix, Thread.UncaughtExceptionHandler handler, int scheduleParallelism) {
         ForkJoinPool forkJoinPool = ThreadPoolUtils.forkJoinThreadPoolBuilder()
                 .metric()
@@ -15,10 +15,12 @@
  */
 package org.kin.framework.concurrent;
 
+import com.google.common.collect.MapMaker;
 import org.kin.framework.utils.ExceptionUtils;
 
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
 import java.util.Collections;
-import java.util.IdentityHashMap;
 import java.util.Set;
 
 /**
@@ -38,6 +40,13 @@ import java.util.Set;
  * Note that the fast path is only possible on threads that extend {@link FastThreadLocalThread}, because it requires
  * a special field to store the necessary state.  An access by any other kind of thread falls back to a regular
  * {@link ThreadLocal}.
+ * </p><p>
+ * {@link FastThreadLocal}实例被gc后, 其index会被回收并重新分配, 各线程的thread local value数组也会清理过期value并缩容,
+ * 避免不断创建短生命周期的{@link FastThreadLocal}(比如{@link org.kin.framework.pool.Recycler})导致每个线程的数组无限增长.
+ * 注意, 与{@link ThreadLocal}一样, 如果value强引用了{@link FastThreadLocal}实例, 则该实例无法被gc, 其index也无法回收.
+ * 被回收的{@link FastThreadLocal}实例的value不会触发{@link #onRemoval(Object)}.
+ * 过期value在线程新增thread local value时顺便清理; 使用被回收index的{@link FastThreadLocal}访问前,
+ * 仅比较非volatile的清理进度, 确保不会读到index前任owner的过期value, 故{@link #get()}热点路径没有额外volatile读.
  * </p>
  *
  * Forked from <a href="https://github.com/netty/netty">Netty</a>.
@@ -46,8 +55,8 @@ import java.util.Set;
  * @see ThreadLocal
  */
 public class FastThreadLocal<V> {
-    /** 该index对应的value是当前线程拥有的FastThreadLocal实例缓存 */
-    private static final int variablesToRemoveIndex = InternalThreadLocalMap.nextVariableIndex();
+    /** 该index对应的value是当前线程拥有的FastThreadLocal实例缓存(弱引用) */
+    static final int variablesToRemoveIndex = InternalThreadLocalMap.nextVariableIndex();
 
     /**
      * Removes all {@link FastThreadLocal} variables bound to the current thread.  This operation is useful when you
@@ -106,13 +115,16 @@ public class FastThreadLocal<V> {
         Object v = threadLocalMap.indexedVariable(variablesToRemoveIndex);
         Set<FastThreadLocal<?>> variablesToRemove;
         if (v == InternalThreadLocalMap.UNSET || v == null) {
-            variablesToRemove = Collections.newSetFromMap(new IdentityHashMap<>());
+            //弱引用并且identity语义, 不阻止FastThreadLocal实例被gc
+            variablesToRemove = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
             threadLocalMap.setIndexedVariable(variablesToRemoveIndex, variablesToRemove);
         } else {
             variablesToRemove = (Set<FastThreadLocal<?>>) v;
         }
 
         variablesToRemove.add(variable);
+        //新增thread local value, 非热点路径, 顺便清理已回收index的过期value
+        threadLocalMap.expungeStaleVariablesIfNecessary();
     }
 
     /**
@@ -134,9 +146,30 @@ public class FastThreadLocal<V> {
 
     /** 全局唯一index */
     private final int index;
+    /**
+     * {@link InternalThreadLocalMap#expungedIndexCount}小于该值时, 当前线程{@link #index}可能残留前任owner的过期value, 需先清理
+     * index未曾被分配过则为0
+     */
+    private final int expungeThreshold;
 
     public FastThreadLocal() {
-        index = InternalThreadLocalMap.nextVariableIndex();
+        IndexReference indexReference = InternalThreadLocalMap.nextVariableIndex(this);
+        index = indexReference.index();
+        expungeThreshold = indexReference.expungeThreshold();
+    }
+
+    /**
+     * @return 该{@link FastThreadLocal}实例的index
+     */
+    final int index() {
+        return index;
+    }
+
+    /**
+     * @return 该{@link FastThreadLocal}实例的expunge threshold
+     */
+    final int expungeThreshold() {
+        return expungeThreshold;
     }
 
     /**
@@ -152,6 +185,7 @@ public class FastThreadLocal<V> {
      */
     @SuppressWarnings("unchecked")
     public final V get(InternalThreadLocalMap threadLocalMap) {
+        expungeStaleIfNecessary(threadLocalMap);
         Object v = threadLocalMap.indexedVariable(index);
         if (v != InternalThreadLocalMap.UNSET) {
             return (V) v;
@@ -160,6 +194,16 @@ public class FastThreadLocal<V> {
         return initialize(threadLocalMap);
     }
 
+    /**
+     * 如果当前线程可能残留{@link #index}前任owner的过期value, 则先清理
+     * 仅比较非volatile字段, 绝大部分{@link FastThreadLocal}的{@link #expungeThreshold}为0, 永远不会触发清理
+     */
+    private void expungeStaleIfNecessary(InternalThreadLocalMap threadLocalMap) {
+        if (threadLocalMap.expungedIndexCount - expungeThreshold < 0) {
+            threadLocalMap.expungeStaleVariables();
+        }
+    }
+
     private V initialize(InternalThreadLocalMap threadLocalMap) {
         V v = null;
         try {
@@ -189,6 +233,7 @@ public class FastThreadLocal<V> {
      */
     public final void set(InternalThreadLocalMap threadLocalMap, V value) {
         if (value != InternalThreadLocalMap.UNSET) {
+            expungeStaleIfNecessary(threadLocalMap);
             if (threadLocalMap.setIndexedVariable(index, value)) {
                 addToVariablesToRemove(threadLocalMap, this);
             }
@@ -209,7 +254,11 @@ public class FastThreadLocal<V> {
      * The specified thread local map must be for the current thread.
      */
     public final boolean isSet(InternalThreadLocalMap threadLocalMap) {
-        return threadLocalMap != null && threadLocalMap.isIndexedVariableSet(index);
+        if (threadLocalMap == null) {
+            return false;
+        }
+        expungeStaleIfNecessary(threadLocalMap);
+        return threadLocalMap.isIndexedVariableSet(index);
     }
 
     /**
@@ -230,6 +279,7 @@ public class FastThreadLocal<V> {
             return;
         }
 
+        expungeStaleIfNecessary(threadLocalMap);
         Object v = threadLocalMap.removeIndexedVariable(index);
         removeFromVariablesToRemove(threadLocalMap, this);
 
@@ -254,4 +304,31 @@ public class FastThreadLocal<V> {
      */
     protected void onRemoval(@SuppressWarnings("UnusedParameters") V value) throws Exception {
     }
+
+    //--------------------------------------------------------------------------------------------------------------
+
+    /**
+     * 当{@link FastThreadLocal}实例被gc后, 用于回收其index
+     */
+    static final class IndexReference extends PhantomReference<FastThreadLocal<?>> {
+        /** {@link FastThreadLocal}实例的index */
+        private final int index;
+        /** {@link FastThreadLocal#expungeThreshold} */
+        private final int expungeThreshold;
+
+        IndexReference(FastThreadLocal<?> referent, int index, int expungeThreshold, ReferenceQueue<? super FastThreadLocal<?>> queue) {
+            super(referent, queue);
+            this.index = index;
+            this.expungeThreshold = expungeThreshold;
+        }
+
+        //getter
+        int index() {
+            return index;
+        }
+
+        int expungeThreshold() {
+            return expungeThreshold;
+        }
+    }
 }
@@ -0,0 +1,21 @@
+package org.kin.framework.concurrent;
+
+/**
+ * 支持{@link FastThreadLocal}快速访问(数组下标访问)的线程需实现该接口
+ * 主要用于无法继承{@link FastThreadLocalThread}的线程, 比如{@link java.util.concurrent.ForkJoinWorkerThread}
+ *
+ * @author huangjianqin
+ * @date 2023/7/13
+ * @see SimpleForkJoinWorkerThread
+ */
+interface FastThreadLocalAccess {
+    /**
+     * Returns the internal data structure that keeps the thread-local variables bound to this thread.
+     */
+    InternalThreadLocalMap threadLocalMap();
+
+    /**
+     * Sets the internal data structure that keeps the thread-local variables bound to this thread.
+     */
+    void setThreadLocalMap(InternalThreadLocalMap threadLocalMap);
+}
@@ -22,7 +22,7 @@ package org.kin.framework.concurrent;
  * <p>
  * Forked from <a href="https://github.com/netty/netty">Netty</a>.
  */
-public class FastThreadLocalThread extends Thread {
+public class FastThreadLocalThread extends Thread implements FastThreadLocalAccess {
 
     private InternalThreadLocalMap threadLocalMap;
 
@@ -61,6 +61,7 @@ public class FastThreadLocalThread extends Thread {
      * Returns the internal data structure that keeps the thread-local variables bound to this thread.
      * Note that this method is for internal use only, and thus is subject to change at any time.
      */
+    @Override
     public final InternalThreadLocalMap threadLocalMap() {
         return threadLocalMap;
     }
@@ -69,6 +70,7 @@ public class FastThreadLocalThread extends Thread {
      * Sets the internal data structure that keeps the thread-local variables bound to this thread.
      * Note that this method is for internal use only, and thus is subject to change at any time.
      */
+    @Override
     public final void setThreadLocalMap(InternalThreadLocalMap threadLocalMap) {
         this.threadLocalMap = threadLocalMap;
     }
@@ -15,7 +15,10 @@
  */
 package org.kin.framework.concurrent;
 
+import java.lang.ref.Reference;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Set;
 
 /**
  * The internal data structure that stores the thread-local variables for Netty and all {@link FastThreadLocal}s.
@@ -27,25 +30,35 @@ import java.util.Arrays;
 final class InternalThreadLocalMap extends UnpaddedInternalThreadLocalMap {
     /** 数组空占位 */
     public static final Object UNSET = new Object();
+    /** thread local value数组初始(最小)长度 */
+    private static final int INDEXED_VARIABLE_TABLE_INITIAL_SIZE = 32;
 
     public static InternalThreadLocalMap getIfSet() {
         Thread thread = Thread.currentThread();
+        InternalThreadLocalMap threadLocalMap;
         if (thread instanceof FastThreadLocalThread) {
-            return ((FastThreadLocalThread) thread).threadLocalMap();
+            threadLocalMap = ((FastThreadLocalThread) thread).threadLocalMap();
+        } else if (thread instanceof FastThreadLocalAccess) {
+            threadLocalMap = ((FastThreadLocalAccess) thread).threadLocalMap();
+        } else {
+            threadLocalMap = slowThreadLocalMap.get();
         }
-        return slowThreadLocalMap.get();
+        return threadLocalMap;
     }
 
     public static InternalThreadLocalMap get() {
         Thread thread = Thread.currentThread();
         if (thread instanceof FastThreadLocalThread) {
             return fastGet((FastThreadLocalThread) thread);
+        } else if (thread instanceof FastThreadLocalAccess) {
+            //比如ForkJoinWorkerThread
+            return fastGet((FastThreadLocalAccess) thread);
         } else {
             return slowGet();
         }
     }
 
-    private static InternalThreadLocalMap fastGet(FastThreadLocalThread thread) {
+    private static InternalThreadLocalMap fastGet(FastThreadLocalAccess thread) {
         InternalThreadLocalMap threadLocalMap = thread.threadLocalMap();
         if (threadLocalMap == null) {
             thread.setThreadLocalMap(threadLocalMap = new InternalThreadLocalMap());
@@ -65,8 +78,8 @@ final class InternalThreadLocalMap extends UnpaddedInternalThreadLocalMap {
 
     public static void remove() {
         Thread thread = Thread.currentThread();
-        if (thread instanceof FastThreadLocalThread) {
-            ((FastThreadLocalThread) thread).setThreadLocalMap(null);
+        if (thread instanceof FastThreadLocalAccess) {
+            ((FastThreadLocalAccess) thread).setThreadLocalMap(null);
         } else {
             slowThreadLocalMap.remove();
         }
@@ -77,17 +90,64 @@ final class InternalThreadLocalMap extends UnpaddedInternalThreadLocalMap {
     }
 
     /**
-     * 生成{@link FastThreadLocal}唯一index
+     * 生成{@link FastThreadLocal}唯一index, 该index永远不会被回收
      */
     public static int nextVariableIndex() {
-        int index = nextIndex.getAndIncrement();
-        if (index < 0) {
-            nextIndex.decrementAndGet();
+        synchronized (usedIndices) {
+            return allocateIndex();
+        }
+    }
+
+    /**
+     * 生成{@link FastThreadLocal}唯一index, 当{@code owner}被gc后, 该index会被回收并重新分配
+     * 顺便回收已被gc的{@link FastThreadLocal}的index, 即回收成本分摊到{@link FastThreadLocal}的创建上
+     *
+     * @return 持有index以及expunge threshold的{@link FastThreadLocal.IndexReference}
+     */
+    static FastThreadLocal.IndexReference nextVariableIndex(FastThreadLocal<?> owner) {
+        reclaimIndices();
+        int index;
+        int expungeThreshold;
+        synchronized (usedIndices) {
+            //index曾经被分配过, 则各线程可能残留前任owner的过期value, 线程需先清理到当前回收进度才能访问该index
+            expungeThreshold = usedIndices.nextClearBit(0) < indexHighWaterMark ? reclaimedIndexCount : 0;
+            index = allocateIndex();
+        }
+        FastThreadLocal.IndexReference indexReference = new FastThreadLocal.IndexReference(owner, index, expungeThreshold, reclaimQueue);
+        indexReferences.add(indexReference);
+        return indexReference;
+    }
+
+    /**
+     * 分配最小的可用index
+     * 在{@link #usedIndices}锁内操作
+     */
+    private static int allocateIndex() {
+        int index = usedIndices.nextClearBit(0);
+        if (index < 0 || index == Integer.MAX_VALUE) {
             throw new IllegalStateException("too many thread-local indexed variables");
         }
+        usedIndices.set(index);
+        indexHighWaterMark = Math.max(indexHighWaterMark, index + 1);
         return index;
     }
 
+    /**
+     * 回收已被gc的{@link FastThreadLocal}的index
+     * 先累加{@link #reclaimedIndexCount}再释放index, 保证index被重新分配后, 各线程访问前会先清理该index的过期value
+     */
+    static void reclaimIndices() {
+        Reference<? extends FastThreadLocal<?>> ref;
+        while ((ref = reclaimQueue.poll()) != null) {
+            FastThreadLocal.IndexReference indexReference = (FastThreadLocal.IndexReference) ref;
+            indexReferences.remove(indexReference);
+            synchronized (usedIndices) {
+                reclaimedIndexCount++;
+                usedIndices.clear(indexReference.index());
+            }
+        }
+    }
+
     //  保证FastThreadLocal的实体对象大小超过128byte，以避免伪共享发生
     //  如果资源能够避免伪共享，则FastThreadLocal的实体对象能够部分缓存至L1缓存，通过提高缓存命中率加快查询速度(查询L1缓存的速度要远快于查询主存速度)
     //  Cache line padding (must be public)
@@ -96,17 +156,81 @@ final class InternalThreadLocalMap extends UnpaddedInternalThreadLocalMap {
 
     private InternalThreadLocalMap() {
         super(newIndexedVariableTable());
+        //新map不存在过期value
+        expungedIndexCount = reclaimedIndexCount;
     }
 
     /**
      * 初始化thread local value数组, 并使用同一实例填充, 以表示空
      */
     private static Object[] newIndexedVariableTable() {
-        Object[] array = new Object[32];
+        Object[] array = new Object[INDEXED_VARIABLE_TABLE_INITIAL_SIZE];
         Arrays.fill(array, UNSET);
         return array;
     }
 
+    /**
+     * 如果期间有index被回收, 则清理过期value
+     * 需读取volatile变量, 仅在新增thread local value等非热点路径调用
+     */
+    void expungeStaleVariablesIfNecessary() {
+        int reclaimed = reclaimedIndexCount;
+        if (expungedIndexCount != reclaimed) {
+            expungeStaleVariables(reclaimed);
+        }
+    }
+
+    /**
+     * 清理已回收index的过期value
+     */
+    void expungeStaleVariables() {
+        expungeStaleVariables(reclaimedIndexCount);
+    }
+
+    /**
+     * 清理已回收index的过期value, 并压缩thread local value数组
+     * 当前线程仍然可达的{@link FastThreadLocal}实例都缓存在{@link FastThreadLocal#variablesToRemoveIndex}对应的value(弱引用)中,
+     * 不属于这些{@link FastThreadLocal}实例的value都视为过期
+     */
+    private void expungeStaleVariables(int reclaimed) {
+        Object[] lookup = indexedVariables;
+        int variablesToRemoveIndex = FastThreadLocal.variablesToRemoveIndex;
+
+        BitSet liveIndices = new BitSet(lookup.length);
+        liveIndices.set(variablesToRemoveIndex);
+        Object v = indexedVariable(variablesToRemoveIndex);
+        if (v != UNSET && v != null) {
+            @SuppressWarnings("unchecked")
+            Set<FastThreadLocal<?>> variablesToRemove = (Set<FastThreadLocal<?>>) v;
+            for (FastThreadLocal<?> variable : variablesToRemove) {
+                liveIndices.set(variable.index());
+            }
+        }
+
+        int maxLiveIndex = -1;
+        for (int i = 0; i < lookup.length; i++) {
+            if (lookup[i] == UNSET) {
+                continue;
+            }
+            if (liveIndices.get(i)) {
+                maxLiveIndex = i;
+            } else {
+                lookup[i] = UNSET;
+            }
+        }
+
+        //因为index总是优先分配最小值, 回收后, 存活的index会集中在数组前部, 此时可以缩容
+        int required = maxLiveIndex + 1;
+        if (lookup.length > INDEXED_VARIABLE_TABLE_INITIAL_SIZE && required <= lookup.length >>> 2) {
+            int newCapacity = Math.max(INDEXED_VARIABLE_TABLE_INITIAL_SIZE, Integer.highestOneBit(Math.max(required, 1)) << 1);
+            if (newCapacity < lookup.length) {
+                indexedVariables = Arrays.copyOf(lookup, newCapacity);
+            }
+        }
+
+        expungedIndexCount = reclaimed;
+    }
+
     /**
      * @return thread local value数量
      */
@@ -4,11 +4,18 @@ import org.kin.framework.JvmCloseCleaner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.locks.LockSupport;
 
 /**
+ * 常驻线程, 不断执行{@link KeeperAction}, 直到stop
+ * 如果是{@link BackoffKeeperAction}, 没有work时会指数退避park, 可以通过{@link KeeperStopper#wakeup()}立即唤醒
+ *
  * @author huangjianqin
  * @date 2019/7/10
  */
@@ -16,6 +23,8 @@ public class Keeper {
     private static final Logger log = LoggerFactory.getLogger(Keeper.class);
     private static final ExecutionContext EXECUTION_CONTEXT = ExecutionContext.cache("keeper");
     private static final Set<RunnableKeeperAction> RUNNABLE_KEEPER_ACTIONS = new CopyOnWriteArraySet<>();
+    /** 启动virtual thread的method handle, 即Thread.ofVirtual().start(Runnable), 当前jvm不支持virtual thread(jdk21以下或者jdk19/20未开启preview)时为null */
+    private static final MethodHandle START_VIRTUAL_THREAD;
 
     static {
         JvmCloseCleaner.instance().add(() -> {
@@ -25,24 +34,60 @@ public class Keeper {
             }
             RUNNABLE_KEEPER_ACTIONS.clear();
         });
+
+        MethodHandle startVirtualThread = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            MethodHandle ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(Class.forName("java.lang.Thread$Builder$OfVirtual")));
+            MethodHandle start = lookup.findVirtual(builderClass, "start", MethodType.methodType(Thread.class, Runnable.class));
+            //(Runnable)Thread, 每次都创建新的builder, 因为builder非线程安全
+            startVirtualThread = MethodHandles.foldArguments(start, ofVirtual.asType(MethodType.methodType(builderClass)));
+            //jdk19/20未开启preview时, Thread.ofVirtual()可以resolve, 但start会抛UnsupportedOperationException, 故真正启动一次探测
+            Runnable probe = () -> {
+            };
+            startVirtualThread.invoke(probe);
+        } catch (Throwable e) {
+            //jdk21以下或者未开启preview, 不支持virtual thread
+            startVirtualThread = null;
+            log.debug("virtual thread: unavailable");
+        }
+        START_VIRTUAL_THREAD = startVirtualThread;
     }
 
-    private static class RunnableKeeperAction implements Runnable {
+    private static class RunnableKeeperAction implements Runnable, KeeperStopper {
         private volatile boolean isStopped;
-        private KeeperAction target;
-        private Thread bindThread;
+        /** 是否已被唤醒, 用于避免唤醒信号在park前到达时丢失 */
+        private volatile boolean wakeup;
+        private final KeeperAction target;
+        private volatile Thread bindThread;
 
         public RunnableKeeperAction(KeeperAction target) {
             this.target = target;
         }
 
+        @Override
         public void stop() {
             isStopped = true;
+            //唤醒退避中的线程, 及时退出
+            wakeup();
         }
 
         public void stopInterruptly() {
-            stop();
-            bindThread.interrupt();
+            isStopped = true;
+            Thread bindThread = this.bindThread;
+            if (Objects.nonNull(bindThread)) {
+                bindThread.interrupt();
+            }
+        }
+
+        @Override
+        public void wakeup() {
+            wakeup = true;
+            Thread bindThread = this.bindThread;
+            if (Objects.nonNull(bindThread)) {
+                LockSupport.unpark(bindThread);
+            }
         }
 
         @Override
@@ -50,15 +95,71 @@ public class Keeper {
             bindThread = Thread.currentThread();
             target.preAction();
             try {
-                while (!isStopped && !Thread.currentThread().isInterrupted()) {
-                    try {
-                        target.action();
-                    } catch (Exception e) {
-                        log.error("", e);
+                if (target instanceof BackoffKeeperAction) {
+                    runWithBackoff((BackoffKeeperAction) target);
+                } else {
+                    while (!isStopped && !Thread.currentThread().isInterrupted()) {
+                        try {
+                            target.action();
+                        } catch (Exception e) {
+                            log.error("", e);
+                        }
                     }
                 }
             } finally {
                 target.postAction();
+                RUNNABLE_KEEPER_ACTIONS.remove(this);
+            }
+        }
+
+        /**
+         * 执行{@link BackoffKeeperAction}, 没有work时指数退避park
+         */
+        private void runWithBackoff(BackoffKeeperAction action) {
+            long minParkNanos = Math.max(1, action.minIdleParkNanos());
+            long maxParkNanos = Math.max(minParkNanos, action.maxIdleParkNanos());
+            long parkNanos = minParkNanos;
+            while (!isStopped && !Thread.currentThread().isInterrupted()) {
+                //先清除唤醒标识, 再执行action, 保证执行期间到达的唤醒信号不会丢失
+                wakeup = false;
+                boolean worked;
+                try {
+                    worked = action.tryAction();
+                } catch (Exception e) {
+                    log.error("", e);
+                    worked = false;
+                }
+
+                if (worked) {
+                    parkNanos = minParkNanos;
+                    continue;
+                }
+
+                park(parkNanos);
+                if (wakeup) {
+                    //被唤醒, 说明大概率有work, 重置park时间
+                    parkNanos = minParkNanos;
+                } else {
+                    parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+                }
+            }
+        }
+
+        /**
+         * park {@code parkNanos}, 直到超时, 被唤醒或者stop
+         * action执行期间到达的唤醒会残留unpark permit, 导致park立即返回, 因此每次返回都重新检查状态, 未到时间则继续park剩余时间
+         */
+        private void park(long parkNanos) {
+            long deadline = System.nanoTime() + parkNanos;
+            for (; ; ) {
+                if (wakeup || isStopped || Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                long remainNanos = deadline - System.nanoTime();
+                if (remainNanos <= 0) {
+                    return;
+                }
+                LockSupport.parkNanos(this, remainNanos);
             }
         }
 
@@ -86,20 +187,51 @@ public class Keeper {
          * 停止KeeperAction
          */
         void stop();
+
+        /**
+         * 唤醒正在退避park的keeper线程, 仅对{@link BackoffKeeperAction}有效
+         */
+        default void wakeup() {
+            //default do nothing
+        }
+    }
+
+    /**
+     * 当前jvm是否支持virtual thread
+     */
+    public static boolean isVirtualThreadAvailable() {
+        return Objects.nonNull(START_VIRTUAL_THREAD);
     }
 
     //--------------------------------------------api-----------------------------------------------------------
 
     public static KeeperStopper keep(KeeperAction keeperAction) {
+        return keep(keeperAction, false);
+    }
+
+    /**
+     * @param keeperAction  keeper逻辑
+     * @param virtualThread 是否使用virtual thread执行, 如果当前jvm不支持virtual thread, 则仍然使用普通线程
+     */
+    public static KeeperStopper keep(KeeperAction keeperAction, boolean virtualThread) {
         RunnableKeeperAction runnableKeeperAction = new RunnableKeeperAction(keeperAction);
-        EXECUTION_CONTEXT.execute(runnableKeeperAction);
         RUNNABLE_KEEPER_ACTIONS.add(runnableKeeperAction);
+        if (virtualThread && isVirtualThreadAvailable()) {
+            try {
+                START_VIRTUAL_THREAD.invoke(runnableKeeperAction);
+                return runnableKeeperAction;
+            } catch (Throwable e) {
+                //启动virtual thread失败, 降级使用普通线程
+                log.warn("start virtual thread error, fallback to platform thread", e);
+            }
+        }
+        EXECUTION_CONTEXT.execute(runnableKeeperAction);
 
-        return runnableKeeperAction::stop;
+        return runnableKeeperAction;
     }
 
     public static KeeperStopper keep(Runnable runnable) {
-        RunnableKeeperAction runnableKeeperAction = new RunnableKeeperAction(new KeeperAction() {
+        return keep(new KeeperAction() {
             @Override
             public void preAction() {
 
@@ -115,9 +247,5 @@ public class Keeper {
 
             }
         });
-        EXECUTION_CONTEXT.execute(runnableKeeperAction);
-        RUNNABLE_KEEPER_ACTIONS.add(runnableKeeperAction);
-
-        return runnableKeeperAction::stop;
     }
 }
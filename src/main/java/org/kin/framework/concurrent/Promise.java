@@ -15,6 +15,7 @@
  */
 package org.kin.framework.concurrent;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -244,4 +245,11 @@ public interface Promise<V> extends Future<V> {
      * 马上获取Promise complete结果, 如果Promise未 complete, 则返回null.
      */
     V getNow();
+
+    /**
+     * 返回与该Promise结果同步的{@link CompletableFuture}, 多次调用返回同一实例
+     * Promise complete时会直接在complete线程上完成该{@link CompletableFuture}, 不需要额外注册listener和executor中转
+     * 注意, 反向complete返回的{@link CompletableFuture}并不会影响该Promise
+     */
+    CompletableFuture<V> toCompletableFuture();
 }
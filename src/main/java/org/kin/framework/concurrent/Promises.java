@@ -0,0 +1,129 @@
+package org.kin.framework.concurrent;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link Promise}与{@link CompletionStage}互相转换工具类
+ *
+ * @author huangjianqin
+ * @date 2023/7/10
+ */
+public final class Promises {
+    private Promises() {
+    }
+
+    /**
+     * {@link CompletionStage}转换成{@link Promise}, 默认使用{@link java.util.concurrent.ForkJoinPool#commonPool()}触发listener
+     *
+     * @see #toPromise(CompletionStage, Executor)
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> Promise<V> toPromise(CompletionStage<V> stage) {
+        if (stage instanceof Promise) {
+            //本来就是Promise, 直接返回
+            return (Promise<V>) stage;
+        }
+        return bind(stage, new DefaultPromise<>());
+    }
+
+    /**
+     * {@link CompletionStage}转换成{@link Promise}, 仅仅往{@code stage}注册一个callback
+     * 如果{@code stage}已complete, 则直接同步结果, 不注册callback
+     *
+     * @param stage    {@link CompletionStage}实例
+     * @param executor 执行触发listener逻辑的{@link Executor}
+     */
+    public static <V> Promise<V> toPromise(CompletionStage<V> stage, Executor executor) {
+        return bind(stage, new DefaultPromise<>(executor));
+    }
+
+    /**
+     * 将{@code stage}结果同步到{@code promise}
+     */
+    @SuppressWarnings("unchecked")
+    static <V> Promise<V> bind(CompletionStage<V> stage, Promise<V> promise) {
+        Preconditions.checkNotNull(stage);
+        if (stage instanceof CompletableFuture) {
+            CompletableFuture<V> future = (CompletableFuture<V>) stage;
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                //已成功complete, 直接取结果
+                promise.trySuccess(future.getNow(null));
+                return promise;
+            }
+        }
+
+        stage.whenComplete((r, t) -> {
+            if (t == null) {
+                promise.trySuccess(r);
+            } else {
+                if (t instanceof CompletionException && t.getCause() != null) {
+                    //jdk内部会对stage链路上的异常进行封装, 此处还原
+                    t = t.getCause();
+                }
+                promise.tryFailure(t);
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * {@link Promise}转换成{@link CompletableFuture}
+     *
+     * @see Promise#toCompletableFuture()
+     */
+    public static <V> CompletableFuture<V> toCompletableFuture(Promise<V> promise) {
+        return promise.toCompletableFuture();
+    }
+
+    /**
+     * 返回包装{@code executor}的{@link Executor}
+     * 如果{@code executor}是{@link EventExecutor}并且当前线程就是其event loop线程, 则直接执行task, 否则才提交task
+     * 为了防止stage链路过长导致{@link StackOverflowError}, 直接执行的调用深度与{@link DefaultPromise}触发listener一致
+     */
+    public static Executor inlineExecutor(Executor executor) {
+        Preconditions.checkNotNull(executor);
+        if (executor instanceof InlineExecutor || !(executor instanceof EventExecutor)) {
+            //非EventExecutor, 无法判断当前线程是否属于executor
+            return executor;
+        }
+        return new InlineExecutor((EventExecutor) executor);
+    }
+
+    //-------------------------------------------------------------------------------------------------------------
+
+    /**
+     * 当前线程属于{@link EventExecutor}则直接执行的{@link Executor}实现
+     */
+    private static final class InlineExecutor implements Executor {
+        private final EventExecutor executor;
+
+        InlineExecutor(EventExecutor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (executor.isInEventLoop()) {
+                //检查调用栈深度
+                InternalThreadLocalMap threadLocals = InternalThreadLocalMap.get();
+                int stackDepth = threadLocals.promiseListenerStackDepth;
+                if (stackDepth < DefaultPromise.MAX_LISTENER_STACK_DEPTH) {
+                    threadLocals.promiseListenerStackDepth = stackDepth + 1;
+                    try {
+                        command.run();
+                    } finally {
+                        threadLocals.promiseListenerStackDepth = stackDepth;
+                    }
+                    return;
+                }
+            }
+
+            executor.execute(command);
+        }
+    }
+}
@@ -4,10 +4,17 @@ import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinWorkerThread;
 
 /**
+ * 支持{@link FastThreadLocal}快速访问的{@link ForkJoinWorkerThread}
+ * {@link ForkJoinWorkerThread}无法继承{@link FastThreadLocalThread}, 故通过{@link FastThreadLocalAccess}持有thread local map,
+ * 使得{@link FastThreadLocal}在fork join线程上同样是数组下标访问, 而不是回退到{@link ThreadLocal}
+ *
  * @author huangjianqin
  * @date 2020-03-16
  */
-public class SimpleForkJoinWorkerThread extends ForkJoinWorkerThread {
+public class SimpleForkJoinWorkerThread extends ForkJoinWorkerThread implements FastThreadLocalAccess {
+    /** thread local map */
+    private InternalThreadLocalMap threadLocalMap;
+
     /**
      * Creates a ForkJoinWorkerThread operating in the given pool.
      *
@@ -17,4 +24,24 @@ public class SimpleForkJoinWorkerThread extends ForkJoinWorkerThread {
     protected SimpleForkJoinWorkerThread(ForkJoinPool pool) {
         super(pool);
     }
+
+    @Override
+    protected void onTermination(Throwable exception) {
+        try {
+            //与FastThreadLocalThreadFactory一致, 线程结束时移除所有FastThreadLocal
+            FastThreadLocal.removeAll();
+        } finally {
+            super.onTermination(exception);
+        }
+    }
+
+    @Override
+    public final InternalThreadLocalMap threadLocalMap() {
+        return threadLocalMap;
+    }
+
+    @Override
+    public final void setThreadLocalMap(InternalThreadLocalMap threadLocalMap) {
+        this.threadLocalMap = threadLocalMap;
+    }
 }
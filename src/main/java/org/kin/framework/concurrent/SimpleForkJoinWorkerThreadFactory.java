@@ -5,6 +5,11 @@ import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * 创建{@link SimpleForkJoinWorkerThread}, 即支持{@link FastThreadLocal}快速访问的fork join线程
+ * <p>
+ * 也可以通过{@code -Djava.util.concurrent.ForkJoinPool.common.threadFactory=org.kin.framework.concurrent.SimpleForkJoinWorkerThreadFactory}
+ * 让{@link ForkJoinPool#commonPool()}使用该线程工厂
+ *
  * @author huangjianqin
  * @date 2020-03-16
  */
@@ -13,6 +18,13 @@ public class SimpleForkJoinWorkerThreadFactory implements ForkJoinPool.ForkJoinW
     private final String namePrefix;
 
 
+    /**
+     * 供{@link ForkJoinPool#commonPool()}反射实例化
+     */
+    public SimpleForkJoinWorkerThreadFactory() {
+        this("commonPool");
+    }
+
     public SimpleForkJoinWorkerThreadFactory(String namePrefix) {
         this.namePrefix = namePrefix;
         this.counter = new AtomicInteger(1);
@@ -1,10 +1,11 @@
 package org.kin.framework.concurrent;
 
 import com.google.common.base.Preconditions;
-import org.kin.framework.collection.DefaultPriorityQueue;
 import org.kin.framework.collection.PriorityQueue;
 import org.kin.framework.collection.PriorityQueueNode;
+import org.kin.framework.collection.PriorityQueueType;
 import org.kin.framework.utils.CollectionUtils;
+import org.kin.framework.utils.SysUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +45,12 @@ public class SingleThreadEventExecutor implements EventExecutor {
     /** 调度task 通用Comparator */
     private static final Comparator<ScheduledFutureTask<?>>
             SCHEDULED_FUTURE_TASK_COMPARATOR = ScheduledFutureTask::compareTo;
+    /**
+     * 调度任务队列实现, 默认二叉堆
+     * 大量调度任务并且取消频繁的场景, 可以通过{@code -Dkin.framework.eventExecutor.scheduledQueue=dary|pairing}切换
+     */
+    private static final PriorityQueueType SCHEDULED_QUEUE_TYPE =
+            PriorityQueueType.getByName(SysUtils.getSysProperty("kin.framework.eventExecutor.scheduledQueue"), PriorityQueueType.BINARY);
 
     /** 实例创建时间 */
     private final long createTime = now();
@@ -60,7 +67,7 @@ public class SingleThreadEventExecutor implements EventExecutor {
     /** 任务队列 */
     private final BlockingQueue<Runnable> taskQueue = new MemorySafeLinkedBlockingQueue<>();
     /** 调度任务队列 */
-    private final PriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue = new DefaultPriorityQueue<>(SCHEDULED_FUTURE_TASK_COMPARATOR, 11);
+    private final PriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue = SCHEDULED_QUEUE_TYPE.newQueue(SCHEDULED_FUTURE_TASK_COMPARATOR, 11);
     /** 所属线程池 */
     private final Executor executor;
     /** 绑定线程是否已interrupted */
@@ -751,12 +758,12 @@ public class SingleThreadEventExecutor implements EventExecutor {
         }
 
         @Override
-        public int priorityQueueIndex(DefaultPriorityQueue<?> queue) {
+        public int priorityQueueIndex(PriorityQueue<?> queue) {
             return queueIndex;
         }
 
         @Override
-        public void priorityQueueIndex(DefaultPriorityQueue<?> queue, int i) {
+        public void priorityQueueIndex(PriorityQueue<?> queue, int i) {
             queueIndex = i;
         }
     }
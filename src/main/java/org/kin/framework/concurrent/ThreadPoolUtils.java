@@ -82,7 +82,14 @@ public final class ThreadPoolUtils {
 
     public static ForkJoinPool newForkJoinPool(String poolName, boolean enableMetric,
                                                int parallelism, Thread.UncaughtExceptionHandler handler, boolean asyncMode) {
-        return newForkJoinPool(poolName, enableMetric, parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, handler, asyncMode);
+        return newForkJoinPool(poolName, enableMetric, parallelism, defaultForkJoinWorkerThreadFactory(poolName), handler, asyncMode);
+    }
+
+    /**
+     * 默认使用{@link SimpleForkJoinWorkerThreadFactory}, 即fork join线程支持{@link FastThreadLocal}快速访问
+     */
+    private static ForkJoinPool.ForkJoinWorkerThreadFactory defaultForkJoinWorkerThreadFactory(String poolName) {
+        return new SimpleForkJoinWorkerThreadFactory(StringUtils.isNotBlank(poolName) ? poolName : "forkJoinPool");
     }
 
     public static ForkJoinPool newForkJoinPool(String poolName, boolean enableMetric,
@@ -348,7 +355,7 @@ public final class ThreadPoolUtils {
 
         public ForkJoinPool build() {
             if (Objects.isNull(factory)) {
-                factory = ForkJoinPool.defaultForkJoinWorkerThreadFactory;
+                factory = defaultForkJoinWorkerThreadFactory(poolName);
             }
             return ThreadPoolUtils.newForkJoinPool(this.poolName, this.enableMetric, this.parallelism,
                     this.factory, this.handler, this.asyncMode);
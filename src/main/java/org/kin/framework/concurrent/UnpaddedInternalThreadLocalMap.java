@@ -16,7 +16,10 @@
 
 package org.kin.framework.concurrent;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.lang.ref.ReferenceQueue;
+import java.util.BitSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The internal data structure that stores the thread-local variables for Netty and all {@link FastThreadLocal}s.
@@ -28,8 +31,25 @@ import java.util.concurrent.atomic.AtomicInteger;
 class UnpaddedInternalThreadLocalMap {
     /** 支持回退至获取java原生支持的ThreadLocal */
     static final ThreadLocal<InternalThreadLocalMap> slowThreadLocalMap = new ThreadLocal<InternalThreadLocalMap>();
-    /** {@link FastThreadLocal}唯一index生成器 */
-    static final AtomicInteger nextIndex = new AtomicInteger();
+    /**
+     * 已分配的{@link FastThreadLocal} index, 分配时总是取最小的可用index, 以保证index尽可能紧凑
+     * 对其加锁访问
+     */
+    static final BitSet usedIndices = new BitSet();
+    /** {@link FastThreadLocal}实例被gc后, 其{@link FastThreadLocal.IndexReference}会进入该队列 */
+    static final ReferenceQueue<FastThreadLocal<?>> reclaimQueue = new ReferenceQueue<>();
+    /** 强引用{@link FastThreadLocal.IndexReference}, 保证其在{@link FastThreadLocal}实例gc前不会被回收 */
+    static final Set<FastThreadLocal.IndexReference> indexReferences = ConcurrentHashMap.newKeySet();
+    /**
+     * 累计回收index数量, 每个线程的{@link InternalThreadLocalMap}都会与其比较, 不一致则需要清理已回收index的过期value
+     * 在{@link #usedIndices}锁内更新
+     */
+    static volatile int reclaimedIndexCount;
+    /**
+     * 曾经分配过的最大index + 1, 小于该值的index再次分配时, 各线程可能残留其前任owner的过期value
+     * 在{@link #usedIndices}锁内更新
+     */
+    static int indexHighWaterMark;
 
     /** Used by {@link FastThreadLocal}, FastThreadLocal value */
     Object[] indexedVariables;
@@ -42,6 +62,12 @@ class UnpaddedInternalThreadLocalMap {
      */
     int promiseListenerStackDepth;
 
+    /**
+     * 最近一次清理过期value时的{@link #reclaimedIndexCount}
+     * {@link FastThreadLocal}访问前与其expunge threshold比较, 非volatile, 不影响热点路径
+     */
+    int expungedIndexCount;
+
     UnpaddedInternalThreadLocalMap(Object[] indexedVariables) {
         this.indexedVariables = indexedVariables;
     }
@@ -4,7 +4,10 @@ import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 计数器
- * 内部统计需保证一致性
+ * <p>
+ * 内部累计计数从不重置, 重置或者上报时仅记录当前累计计数作为下一周期的起点, 周期计数即两次记录的差值.
+ * 故与重置或者上报并发的递增要么计入当前周期, 要么计入下一周期, 不会丢失.
+ * 递增仅写入{@link LongAdder}的分段cell, 不会汇总计数
  *
  * @author huangjianqin
  * @date 2020/9/2
@@ -12,8 +15,10 @@ import java.util.concurrent.atomic.LongAdder;
 public class Counter implements Reporter {
     /** uuid */
     private final String uuid;
-    /** count */
+    /** 累计计数, 从不重置 */
     private final LongAdder count;
+    /** 上次重置或上报时的累计计数 */
+    private volatile long mark;
 
     Counter(String uuid) {
         this.uuid = uuid;
@@ -22,43 +27,52 @@ public class Counter implements Reporter {
 
     /**
      * 递增
-     *
-     * @return 当前计数值
      */
-    public long increment() {
-        return increment(1L);
+    public void increment() {
+        count.increment();
     }
 
     /**
      * 增加{@code value}
-     *
-     * @return 当前计数值
      */
-    public long increment(long value) {
+    public void increment(long value) {
         count.add(value);
-        return count();
     }
 
     /**
      * 重置计数器
      *
-     * @return 当前计数值
+     * @return 重置前的计数值
      */
-    public long reset() {
-        return count.sumThenReset();
+    public synchronized long reset() {
+        long total = count.sum();
+        long value = total - mark;
+        mark = total;
+        return value;
     }
 
     /**
-     * @return 当前计数值
+     * @return 当前计数值, 即上次重置或上报后的计数
      */
     public long count() {
+        return count.sum() - mark;
+    }
+
+    /**
+     * @return 创建以来的累计计数值
+     */
+    public long total() {
         return count.sum();
     }
 
+    //getter
+    public String getUuid() {
+        return uuid;
+    }
+
     @Override
     public String report() {
         //上报后会重置
-        long count = this.count.sumThenReset();
-        return uuid.concat("-").concat(String.valueOf(count));
+        return uuid.concat("-").concat(String.valueOf(reset()));
     }
 }
@@ -13,7 +13,11 @@ import java.util.concurrent.ConcurrentHashMap;
 public class CounterGroup {
     private final String group;
     /** counters */
-    private volatile Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    /** histograms */
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    /** timers */
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
 
     public CounterGroup(String group) {
         this.group = group;
@@ -21,18 +25,52 @@ public class CounterGroup {
 
     /**
      * 不存在, 则创建新的
+     * 返回的counter可缓存复用, 避免每次递增都查找
      *
      * @return 指定counter
      */
     public Counter counter(String uuid) {
-        return counters.computeIfAbsent(uuid, k -> new Counter(uuid));
+        //先get, 已存在时避免computeIfAbsent加锁
+        Counter counter = counters.get(uuid);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(uuid, Counter::new);
+        }
+        return counter;
     }
 
     /**
-     * 重置counter
+     * 不存在, 则以默认精度创建新的
+     *
+     * @return 指定histogram
+     */
+    public Histogram histogram(String uuid) {
+        Histogram histogram = histograms.get(uuid);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(uuid, Histogram::new);
+        }
+        return histogram;
+    }
+
+    /**
+     * 不存在, 则创建新的
+     *
+     * @return 指定timer
+     */
+    public Timer timer(String uuid) {
+        Timer timer = timers.get(uuid);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(uuid, Timer::new);
+        }
+        return timer;
+    }
+
+    /**
+     * 重置counter, histogram以及timer
      */
     public void reset() {
         counters.values().forEach(Counter::reset);
+        histograms.values().forEach(Histogram::reset);
+        timers.values().forEach(Timer::reset);
     }
 
     //getter
@@ -40,7 +78,15 @@ public class CounterGroup {
         return group;
     }
 
-    public synchronized Collection<Counter> getCounters() {
+    public Collection<Counter> getCounters() {
         return counters.values();
     }
+
+    public Collection<Histogram> getHistograms() {
+        return histograms.values();
+    }
+
+    public Collection<Timer> getTimers() {
+        return timers.values();
+    }
 }
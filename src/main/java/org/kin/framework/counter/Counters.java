@@ -6,13 +6,15 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * counter 对外api
+ * <p>
+ * 高频计数场景, 应通过{@link #counter(String, String)}获取并缓存{@link Counter}, 而不是每次调用{@link #increment(String, String)}
  *
  * @author huangjianqin
  * @date 2020/9/2
  */
 public class Counters {
     /** counter groups */
-    private static volatile Map<String, CounterGroup> counterGroups = new ConcurrentHashMap<>();
+    private static final Map<String, CounterGroup> counterGroups = new ConcurrentHashMap<>();
 
     /**
      * 不存在, 则创建新的
@@ -20,7 +22,39 @@ public class Counters {
      * @return 指定counter group
      */
     public static CounterGroup counterGroup(String group) {
-        return counterGroups.computeIfAbsent(group, k -> new CounterGroup(group));
+        //先get, 已存在时避免computeIfAbsent加锁
+        CounterGroup counterGroup = counterGroups.get(group);
+        if (counterGroup == null) {
+            counterGroup = counterGroups.computeIfAbsent(group, CounterGroup::new);
+        }
+        return counterGroup;
+    }
+
+    /**
+     * 不存在, 则创建新的
+     *
+     * @return 指定counter, 可缓存复用
+     */
+    public static Counter counter(String group, String counter) {
+        return counterGroup(group).counter(counter);
+    }
+
+    /**
+     * 不存在, 则创建新的
+     *
+     * @return 指定histogram, 可缓存复用
+     */
+    public static Histogram histogram(String group, String histogram) {
+        return counterGroup(group).histogram(histogram);
+    }
+
+    /**
+     * 不存在, 则创建新的
+     *
+     * @return 指定timer, 可缓存复用
+     */
+    public static Timer timer(String group, String timer) {
+        return counterGroup(group).timer(timer);
     }
 
     /**
@@ -34,20 +68,20 @@ public class Counters {
      * 计数器增量
      */
     public static void increment(String group, String counter, long amount) {
-        counterGroup(group).counter(counter).increment(amount);
+        counter(group, counter).increment(amount);
     }
 
     /**
      * 重置counter
      */
-    public static synchronized void reset() {
+    public static void reset() {
         counterGroups.values().forEach(CounterGroup::reset);
     }
 
     /**
      * 获取所有counter group
      */
-    public static synchronized Collection<CounterGroup> getAllGroup() {
+    public static Collection<CounterGroup> getAllGroup() {
         return counterGroups.values();
     }
 }
@@ -0,0 +1,151 @@
+package org.kin.framework.counter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 直方图, 基于HDR风格的对数-线性bucket统计非负数值的分布
+ * <p>
+ * 每个2的幂区间[2^n, 2^(n+1))被线性划分为2^(precision - 1)个bucket, 小于2^precision的数值每个数值一个bucket,
+ * 故任意数值的相对误差不超过1/2^(precision - 1), bucket数量仅与精度有关, 与数值范围无关.
+ * 比如默认精度5, 相对误差不超过约6%, 覆盖[0, Long.MAX_VALUE]共960个bucket.
+ * <p>
+ * 与{@link Counter}一致, bucket计数从不重置, {@link #snapshot()}以与上次快照的差值作为周期统计, 并发记录不会丢失
+ *
+ * @author huangjianqin
+ * @date 2023/7/31
+ */
+public class Histogram implements Reporter {
+    /** 默认精度 */
+    public static final int DEFAULT_PRECISION = 5;
+    /** 最大精度 */
+    private static final int MAX_PRECISION = 12;
+
+    /** uuid */
+    private final String uuid;
+    /** 精度, 即2^precision以内的数值精确统计 */
+    private final int precision;
+    /** 每个2的幂区间的bucket数量, 即2^(precision - 1) */
+    private final int subBucketHalfCount;
+    /** 累计bucket计数, 从不重置 */
+    private final AtomicLongArray counts;
+    /** 累计数值总和, 从不重置 */
+    private final LongAdder sum = new LongAdder();
+    /** 上次快照时的累计bucket计数 */
+    private final long[] markCounts;
+    /** 上次快照时的累计数值总和 */
+    private long markSum;
+
+    Histogram(String uuid) {
+        this(uuid, DEFAULT_PRECISION);
+    }
+
+    Histogram(String uuid, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be in [1, " + MAX_PRECISION + "]");
+        }
+        this.uuid = uuid;
+        this.precision = precision;
+        this.subBucketHalfCount = 1 << (precision - 1);
+        int bucketNum = bucketNum(precision);
+        this.counts = new AtomicLongArray(bucketNum);
+        this.markCounts = new long[bucketNum];
+    }
+
+    /**
+     * @return 指定精度下覆盖[0, Long.MAX_VALUE]的bucket数量
+     */
+    static int bucketNum(int precision) {
+        return (65 - precision) << (precision - 1);
+    }
+
+    /**
+     * @return {@code value}所在bucket下标
+     */
+    static int bucketIndex(long value, int precision) {
+        if (value < (1L << precision)) {
+            return (int) value;
+        }
+        //保留最高的precision位
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (precision - 1);
+        return (shift << (precision - 1)) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return bucket包含的最小数值
+     */
+    static long lowerBound(int index, int precision) {
+        int subBucketHalfCount = 1 << (precision - 1);
+        if (index < subBucketHalfCount << 1) {
+            return index;
+        }
+        int shift = index / subBucketHalfCount - 1;
+        return (long) (index - (shift << (precision - 1))) << shift;
+    }
+
+    /**
+     * @return bucket包含的最大数值
+     */
+    static long upperBound(int index, int precision) {
+        int subBucketHalfCount = 1 << (precision - 1);
+        if (index < subBucketHalfCount << 1) {
+            return index;
+        }
+        int shift = index / subBucketHalfCount - 1;
+        return lowerBound(index, precision) + (1L << shift) - 1;
+    }
+
+    /**
+     * 记录数值
+     *
+     * @param value 非负数值
+     */
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value must be greater than or equal to 0");
+        }
+        counts.incrementAndGet(bucketIndex(value, precision));
+        sum.add(value);
+    }
+
+    /**
+     * 获取上次快照以来的统计, 并以此作为下一周期的起点
+     */
+    public synchronized HistogramSnapshot snapshot() {
+        long[] bucketCounts = new long[markCounts.length];
+        long count = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            long total = counts.get(i);
+            long value = total - markCounts[i];
+            markCounts[i] = total;
+            bucketCounts[i] = value;
+            count += value;
+        }
+        long totalSum = sum.sum();
+        long periodSum = totalSum - markSum;
+        markSum = totalSum;
+        return new HistogramSnapshot(precision, bucketCounts, count, periodSum);
+    }
+
+    /**
+     * 重置直方图
+     */
+    public void reset() {
+        snapshot();
+    }
+
+    //getter
+    public String getUuid() {
+        return uuid;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    @Override
+    public String report() {
+        //上报后会重置
+        return uuid.concat("-").concat(snapshot().toString());
+    }
+}
@@ -0,0 +1,101 @@
+package org.kin.framework.counter;
+
+/**
+ * {@link Histogram}周期统计快照, 不可变
+ * <p>
+ * 分位数, 最小值以及最大值均为所在bucket的边界值, 误差取决于{@link Histogram}精度.
+ * 数值总和与bucket计数分别读取, 与记录并发时可能存在少量偏差, 偏差会计入下一周期
+ *
+ * @author huangjianqin
+ * @date 2023/7/31
+ */
+public final class HistogramSnapshot {
+    /** 精度 */
+    private final int precision;
+    /** bucket计数 */
+    private final long[] bucketCounts;
+    /** 数值数量 */
+    private final long count;
+    /** 数值总和 */
+    private final long sum;
+
+    HistogramSnapshot(int precision, long[] bucketCounts, long count, long sum) {
+        this.precision = precision;
+        this.bucketCounts = bucketCounts;
+        this.count = count;
+        this.sum = sum;
+    }
+
+    /**
+     * @param percentile 百分位, [0, 100]
+     * @return 不小于{@code percentile}%数值的最小bucket上界, 没有数值则返回0
+     */
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be in [0, 100]");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long accumulated = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            accumulated += bucketCounts[i];
+            if (accumulated >= rank) {
+                return Histogram.upperBound(i, precision);
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * @return 平均值, 没有数值则返回0
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @return 最小值所在bucket的下界, 没有数值则返回0
+     */
+    public long getMin() {
+        for (int i = 0; i < bucketCounts.length; i++) {
+            if (bucketCounts[i] > 0) {
+                return Histogram.lowerBound(i, precision);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return 最大值所在bucket的上界, 没有数值则返回0
+     */
+    public long getMax() {
+        for (int i = bucketCounts.length - 1; i >= 0; i--) {
+            if (bucketCounts[i] > 0) {
+                return Histogram.upperBound(i, precision);
+            }
+        }
+        return 0;
+    }
+
+    //getter
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count +
+                ", mean=" + String.format("%.2f", getMean()) +
+                ", min=" + getMin() +
+                ", p50=" + valueAtPercentile(50) +
+                ", p90=" + valueAtPercentile(90) +
+                ", p99=" + valueAtPercentile(99) +
+                ", max=" + getMax();
+    }
+}
@@ -6,7 +6,7 @@ package org.kin.framework.counter;
  */
 public class Reporters {
     /**
-     * 生成指定的report
+     * 生成指定的report, 上报后所有counter, histogram以及timer会开始新的统计周期
      */
     public static String report() {
         StringBuilder out = new StringBuilder();
@@ -14,11 +14,17 @@ public class Reporters {
         out.append(System.lineSeparator());
         for (CounterGroup group : Counters.getAllGroup()) {
             out.append(String.format("----------------------group: %s----------------------", group.getGroup())).append(System.lineSeparator());
-            for (Counter counter : group.getCounters()) {
-                out.append(counter.report()).append(System.lineSeparator());
-            }
+            append(out, group.getCounters());
+            append(out, group.getHistograms());
+            append(out, group.getTimers());
         }
         out.append("----------------------------------------------------------------------------");
         return out.toString();
     }
+
+    private static void append(StringBuilder out, Iterable<? extends Reporter> reporters) {
+        for (Reporter reporter : reporters) {
+            out.append(reporter.report()).append(System.lineSeparator());
+        }
+    }
 }
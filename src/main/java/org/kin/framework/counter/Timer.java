@@ -0,0 +1,78 @@
+package org.kin.framework.counter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 耗时统计, 以纳秒记录到{@link Histogram}
+ *
+ * @author huangjianqin
+ * @date 2023/7/31
+ */
+public class Timer implements Reporter {
+    /** uuid */
+    private final String uuid;
+    /** 耗时(纳秒)分布 */
+    private final Histogram histogram;
+
+    Timer(String uuid) {
+        this.uuid = uuid;
+        this.histogram = new Histogram(uuid);
+    }
+
+    /**
+     * 记录耗时, 负数视为0
+     */
+    public void record(long duration, TimeUnit unit) {
+        histogram.record(Math.max(0, unit.toNanos(duration)));
+    }
+
+    /**
+     * 执行并记录耗时
+     */
+    public void record(Runnable runnable) {
+        long startTime = System.nanoTime();
+        try {
+            runnable.run();
+        } finally {
+            record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 执行并记录耗时
+     */
+    public <T> T record(Supplier<T> supplier) {
+        long startTime = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 获取上次快照以来的耗时(纳秒)统计, 并以此作为下一周期的起点
+     */
+    public HistogramSnapshot snapshot() {
+        return histogram.snapshot();
+    }
+
+    /**
+     * 重置耗时统计
+     */
+    public void reset() {
+        histogram.reset();
+    }
+
+    //getter
+    public String getUuid() {
+        return uuid;
+    }
+
+    @Override
+    public String report() {
+        //上报后会重置, 单位纳秒
+        return uuid.concat("(ns)-").concat(snapshot().toString());
+    }
+}
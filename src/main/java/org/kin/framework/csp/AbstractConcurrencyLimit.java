@@ -0,0 +1,87 @@
+package org.kin.framework.csp;
+
+/**
+ * 自适应并发限制算法, 根据rtt样本调整并发限制
+ * <p>
+ * 样本按窗口聚合, 每{@link #windowSize}个样本以平均rtt, 最大并发数更新一次并发限制, 窗口内存在丢弃样本则视为丢弃,
+ * 避免单个样本抖动导致并发限制频繁变化.
+ * 样本更新串行执行, 读取并发限制无锁.
+ * 内部以浮点数估算并发限制, 避免平滑后的小幅调整因取整丢失
+ *
+ * @author huangjianqin
+ * @date 2023/7/28
+ */
+abstract class AbstractConcurrencyLimit {
+    /** 最小并发限制 */
+    protected final int minLimit;
+    /** 最大并发限制 */
+    protected final int maxLimit;
+    /** 每个窗口的样本数 */
+    private final int windowSize;
+    /** 估算的并发限制 */
+    private double estimatedLimit;
+    /** 当前并发限制, 即{@link #estimatedLimit}取整 */
+    private volatile int limit;
+
+    //当前窗口聚合的样本
+    /** 样本数 */
+    private int sampleCount;
+    /** rtt总和(纳秒) */
+    private long rttSum;
+    /** 最大并发数 */
+    private int maxInFlight;
+    /** 是否存在丢弃样本 */
+    private boolean dropped;
+
+    protected AbstractConcurrencyLimit(ConcurrencyLimitOptions options) {
+        this.minLimit = options.getMinLimit();
+        this.maxLimit = options.getMaxLimit();
+        this.windowSize = options.getWindowSize();
+        this.estimatedLimit = options.getInitialLimit();
+        this.limit = options.getInitialLimit();
+    }
+
+    /**
+     * 接收rtt样本, 更新并发限制
+     *
+     * @param rttNanos rtt(纳秒)
+     * @param inFlight 样本请求完成前的并发数
+     * @param dropped  请求是否被丢弃(失败或者超时)
+     */
+    final synchronized void onSample(long rttNanos, int inFlight, boolean dropped) {
+        sampleCount++;
+        rttSum += rttNanos;
+        maxInFlight = Math.max(maxInFlight, inFlight);
+        this.dropped |= dropped;
+        if (sampleCount < windowSize) {
+            return;
+        }
+
+        double newLimit = update(estimatedLimit, rttSum / sampleCount, maxInFlight, this.dropped);
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+
+        sampleCount = 0;
+        rttSum = 0;
+        maxInFlight = 0;
+        this.dropped = false;
+    }
+
+    /**
+     * 计算新的并发限制
+     *
+     * @param limit    当前估算的并发限制
+     * @param rttNanos 窗口内平均rtt(纳秒)
+     * @param inFlight 窗口内最大并发数
+     * @param dropped  窗口内是否存在被丢弃(失败或者超时)的请求
+     * @return 新的并发限制, 会被限定在[{@link #minLimit}, {@link #maxLimit}]
+     */
+    protected abstract double update(double limit, long rttNanos, int inFlight, boolean dropped);
+
+    /**
+     * @return 当前并发限制
+     */
+    final int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,32 @@
+package org.kin.framework.csp;
+
+/**
+ * 加性增乘性减(additive increase multiplicative decrease)
+ * 请求被丢弃或者rtt超时时, 并发限制乘以缩减比例; 否则当并发数达到并发限制一半以上时, 并发限制+1
+ *
+ * @author huangjianqin
+ * @date 2023/7/28
+ */
+final class AimdConcurrencyLimit extends AbstractConcurrencyLimit {
+    /** 请求超时(纳秒) */
+    private final long timeoutNanos;
+    /** 缩减比例 */
+    private final double backoffRatio;
+
+    AimdConcurrencyLimit(ConcurrencyLimitOptions options) {
+        super(options);
+        this.timeoutNanos = options.getTimeoutNanos();
+        this.backoffRatio = options.getBackoffRatio();
+    }
+
+    @Override
+    protected double update(double limit, long rttNanos, int inFlight, boolean dropped) {
+        if (dropped || rttNanos > timeoutNanos) {
+            return limit * backoffRatio;
+        }
+        if (inFlight * 2 >= limit) {
+            return limit + 1;
+        }
+        return limit;
+    }
+}
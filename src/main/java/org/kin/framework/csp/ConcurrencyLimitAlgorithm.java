@@ -0,0 +1,49 @@
+package org.kin.framework.csp;
+
+/**
+ * 自适应并发限制调整算法
+ *
+ * @author huangjianqin
+ * @date 2023/7/28
+ */
+public enum ConcurrencyLimitAlgorithm {
+    /** 加性增乘性减, 仅根据是否丢弃(超时)调整 */
+    AIMD("加性增乘性减") {
+        @Override
+        AbstractConcurrencyLimit newLimit(ConcurrencyLimitOptions options) {
+            return new AimdConcurrencyLimit(options);
+        }
+    },
+    /** 基于排队长度估算(TCP Vegas), 排队长度 = limit * (1 - 无负载rtt / rtt) */
+    VEGAS("排队长度估算") {
+        @Override
+        AbstractConcurrencyLimit newLimit(ConcurrencyLimitOptions options) {
+            return new VegasConcurrencyLimit(options);
+        }
+    },
+    /** 基于长期rtt与短期rtt的比值(梯度)调整 */
+    GRADIENT2("rtt梯度") {
+        @Override
+        AbstractConcurrencyLimit newLimit(ConcurrencyLimitOptions options) {
+            return new Gradient2ConcurrencyLimit(options);
+        }
+    },
+    ;
+
+    /** 描述 */
+    private final String desc;
+
+    ConcurrencyLimitAlgorithm(String desc) {
+        this.desc = desc;
+    }
+
+    /**
+     * 创建并发限制算法实例
+     */
+    abstract AbstractConcurrencyLimit newLimit(ConcurrencyLimitOptions options);
+
+    //getter
+    public String getDesc() {
+        return desc;
+    }
+}
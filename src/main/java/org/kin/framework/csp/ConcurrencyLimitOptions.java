@@ -0,0 +1,174 @@
+package org.kin.framework.csp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应并发限制配置
+ *
+ * @author huangjianqin
+ * @date 2023/7/28
+ */
+public final class ConcurrencyLimitOptions {
+    /** 并发限制调整算法 */
+    private ConcurrencyLimitAlgorithm algorithm = ConcurrencyLimitAlgorithm.GRADIENT2;
+    /** 初始并发限制 */
+    private int initialLimit = 20;
+    /** 最小并发限制 */
+    private int minLimit = 1;
+    /** 最大并发限制 */
+    private int maxLimit = 1000;
+    /** 每个窗口的样本数, 每个窗口更新一次并发限制 */
+    private int windowSize = 10;
+    /** 平滑系数, (0, 1], 越小并发限制变化越平缓, vegas和gradient2使用 */
+    private double smoothing = 0.2;
+    /** 请求超时(纳秒), rtt超过该值视为丢弃, aimd使用 */
+    private long timeoutNanos = TimeUnit.SECONDS.toNanos(5);
+    /** 丢弃时并发限制的缩减比例, aimd使用 */
+    private double backoffRatio = 0.9;
+    /** 长期rtt可容忍的放大倍数, 长期rtt * 该值 < 短期rtt才会缩减并发限制, gradient2使用 */
+    private double rttTolerance = 1.5;
+    /** 长期rtt的时间窗口(毫秒), gradient2使用 */
+    private long longWindowMillis = 10_000;
+
+    private ConcurrencyLimitOptions() {
+    }
+
+    //getter
+    public ConcurrencyLimitAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    public long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public double getRttTolerance() {
+        return rttTolerance;
+    }
+
+    public long getLongWindowMillis() {
+        return longWindowMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimitOptions{" +
+                "algorithm=" + algorithm +
+                ", initialLimit=" + initialLimit +
+                ", minLimit=" + minLimit +
+                ", maxLimit=" + maxLimit +
+                ", windowSize=" + windowSize +
+                ", smoothing=" + smoothing +
+                ", timeoutNanos=" + timeoutNanos +
+                ", backoffRatio=" + backoffRatio +
+                ", rttTolerance=" + rttTolerance +
+                ", longWindowMillis=" + longWindowMillis +
+                '}';
+    }
+
+    //------------------------------------------builder
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** builder **/
+    public static class Builder {
+        private final ConcurrencyLimitOptions options = new ConcurrencyLimitOptions();
+
+        public Builder algorithm(ConcurrencyLimitAlgorithm algorithm) {
+            options.algorithm = algorithm;
+            return this;
+        }
+
+        public Builder initialLimit(int initialLimit) {
+            options.initialLimit = initialLimit;
+            return this;
+        }
+
+        public Builder minLimit(int minLimit) {
+            options.minLimit = minLimit;
+            return this;
+        }
+
+        public Builder maxLimit(int maxLimit) {
+            options.maxLimit = maxLimit;
+            return this;
+        }
+
+        public Builder windowSize(int windowSize) {
+            options.windowSize = windowSize;
+            return this;
+        }
+
+        public Builder smoothing(double smoothing) {
+            options.smoothing = smoothing;
+            return this;
+        }
+
+        public Builder timeout(long timeout, TimeUnit unit) {
+            options.timeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        public Builder backoffRatio(double backoffRatio) {
+            options.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        public Builder rttTolerance(double rttTolerance) {
+            options.rttTolerance = rttTolerance;
+            return this;
+        }
+
+        public Builder longWindow(long longWindow, TimeUnit unit) {
+            options.longWindowMillis = unit.toMillis(longWindow);
+            return this;
+        }
+
+        public ConcurrencyLimitOptions build() {
+            if (options.minLimit <= 0 || options.minLimit > options.maxLimit) {
+                throw new IllegalArgumentException("minLimit must be in (0, maxLimit]");
+            }
+            if (options.initialLimit < options.minLimit || options.initialLimit > options.maxLimit) {
+                throw new IllegalArgumentException("initialLimit must be in [minLimit, maxLimit]");
+            }
+            if (options.windowSize <= 0) {
+                throw new IllegalArgumentException("windowSize must be greater than 0");
+            }
+            if (options.smoothing <= 0 || options.smoothing > 1) {
+                throw new IllegalArgumentException("smoothing must be in (0, 1]");
+            }
+            if (options.backoffRatio <= 0 || options.backoffRatio >= 1) {
+                throw new IllegalArgumentException("backoffRatio must be in (0, 1)");
+            }
+            if (options.rttTolerance < 1) {
+                throw new IllegalArgumentException("rttTolerance must be greater than or equal to 1");
+            }
+            return options;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.kin.framework.csp;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 自适应并发限制器
+ * <p>
+ * 与{@link TpsRuleManager}的静态tps上限不同, 并发限制根据调用方上报的rtt样本自动调整, 无需根据下游延迟人工调优.
+ * 请求开始前调用{@link #acquire()}, 成功后必须在请求结束时调用{@link #release(long)}, {@link #releaseDropped(long)}
+ * 或{@link #releaseIgnored()}其中之一归还.
+ * <p>
+ * {@link #acquire()}仅CAS并发数, 无锁; rtt样本更新并发限制时串行执行
+ *
+ * <pre>{@code
+ * ConcurrencyLimiter limiter = ConcurrencyLimiter.create(ConcurrencyLimitOptions.builder().build());
+ * if (!limiter.acquire()) {
+ *     //reject
+ *     return;
+ * }
+ * long startTime = System.nanoTime();
+ * try {
+ *     doSomething();
+ *     limiter.release(System.nanoTime() - startTime);
+ * } catch (Exception e) {
+ *     limiter.releaseDropped(System.nanoTime() - startTime);
+ * }
+ * }</pre>
+ *
+ * @author huangjianqin
+ * @date 2023/7/28
+ */
+public final class ConcurrencyLimiter {
+    /** 配置 */
+    private final ConcurrencyLimitOptions options;
+    /** 并发限制算法 */
+    private final AbstractConcurrencyLimit limit;
+    /** 当前并发数 */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private ConcurrencyLimiter(ConcurrencyLimitOptions options) {
+        this.options = options;
+        this.limit = options.getAlgorithm().newLimit(options);
+    }
+
+    public static ConcurrencyLimiter create(ConcurrencyLimitOptions options) {
+        return new ConcurrencyLimiter(options);
+    }
+
+    /**
+     * 使用默认配置创建
+     */
+    public static ConcurrencyLimiter create(ConcurrencyLimitAlgorithm algorithm) {
+        return new ConcurrencyLimiter(ConcurrencyLimitOptions.builder().algorithm(algorithm).build());
+    }
+
+    /**
+     * 尝试获取并发许可, 不等待
+     *
+     * @return true表示获取成功, 请求结束时必须归还
+     */
+    public boolean acquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 请求成功结束, 归还并发许可, 并以{@code rttNanos}为样本调整并发限制
+     *
+     * @param rttNanos 请求耗时(纳秒)
+     */
+    public void release(long rttNanos) {
+        release(rttNanos, false);
+    }
+
+    /**
+     * 请求失败或者超时, 归还并发许可, 并缩减并发限制
+     *
+     * @param rttNanos 请求耗时(纳秒)
+     */
+    public void releaseDropped(long rttNanos) {
+        release(rttNanos, true);
+    }
+
+    /**
+     * 归还并发许可, 但不作为样本, 比如请求被取消或者业务异常与负载无关
+     */
+    public void releaseIgnored() {
+        inFlight.decrementAndGet();
+    }
+
+    private void release(long rttNanos, boolean dropped) {
+        //样本需反映请求执行期间的并发数, 故取归还前的值
+        int current = inFlight.getAndDecrement();
+        limit.onSample(rttNanos, current, dropped);
+    }
+
+    //getter
+    public ConcurrencyLimitOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @return 当前并发限制
+     */
+    public int getLimit() {
+        return limit.getLimit();
+    }
+
+    /**
+     * @return 当前并发数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimiter{" +
+                "algorithm=" + options.getAlgorithm() +
+                ", limit=" + getLimit() +
+                ", inFlight=" + getInFlight() +
+                '}';
+    }
+}
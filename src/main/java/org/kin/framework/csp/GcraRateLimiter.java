@@ -0,0 +1,201 @@
+package org.kin.framework.csp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * 基于GCRA(generic cell rate algorithm)的限流器, 等价于令牌桶/漏桶
+ * <p>
+ * 仅使用一个{@link AtomicLong}存储理论到达时间(theoretical arrival time, TAT), 每个permit使TAT后移一个发放间隔,
+ * 请求到达时若新TAT与当前时间的差值不超过容忍时长(burst * 发放间隔), 则放行. 无竞争时获取permit仅需一次CAS.
+ * <p>
+ * burst > 1时即为令牌桶, 最多允许瞬间通过burst个permit; burst = 1时即为漏桶, 严格按发放间隔匀速放行.
+ * 相比固定窗口计数, 不存在窗口边界处的2倍突发
+ *
+ * @author huangjianqin
+ * @date 2023/7/27
+ */
+public final class GcraRateLimiter {
+    /** 发放间隔(纳秒) */
+    private final long emissionIntervalNanos;
+    /** 容忍时长(纳秒), 即TAT最多领先当前时间多久 */
+    private final long toleranceNanos;
+    /** burst */
+    private final long burst;
+    /** 理论到达时间(纳秒) */
+    private final AtomicLong tat;
+    /** 纳秒时钟 */
+    private final LongSupplier nanoClock;
+
+    /**
+     * @param permits 每{@code unit}时间内发放的permit数量
+     * @param unit    时间单位
+     * @param burst   最多允许瞬间通过的permit数量
+     */
+    public GcraRateLimiter(long permits, TimeUnit unit, long burst) {
+        this(permits, unit, burst, System::nanoTime);
+    }
+
+    GcraRateLimiter(long permits, TimeUnit unit, long burst, LongSupplier nanoClock) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be greater than 0");
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("burst must be greater than 0");
+        }
+        this.emissionIntervalNanos = Math.max(1, unit.toNanos(1) / permits);
+        this.burst = burst;
+        this.toleranceNanos = burst * emissionIntervalNanos;
+        this.nanoClock = nanoClock;
+        this.tat = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * 创建令牌桶限流器
+     *
+     * @param permits 每{@code unit}时间内发放的permit数量
+     * @param unit    时间单位
+     * @param burst   桶容量
+     */
+    public static GcraRateLimiter tokenBucket(long permits, TimeUnit unit, long burst) {
+        return new GcraRateLimiter(permits, unit, burst);
+    }
+
+    /**
+     * 创建漏桶限流器, 严格按发放间隔匀速放行
+     *
+     * @param permits 每{@code unit}时间内发放的permit数量
+     * @param unit    时间单位
+     */
+    public static GcraRateLimiter leakyBucket(long permits, TimeUnit unit) {
+        return new GcraRateLimiter(permits, unit, 1);
+    }
+
+    /**
+     * 尝试获取1个permit, 不等待
+     *
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * 尝试获取{@code permits}个permit, 不等待
+     *
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(int permits) {
+        return reserve(permits, 0) == 0;
+    }
+
+    /**
+     * 尝试获取{@code permits}个permit, 如果需要等待的时间不超过{@code timeout}, 则预留permit并阻塞等待
+     *
+     * @return 是否获取成功, 获取失败时不会等待
+     */
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) {
+        long waitNanos = reserve(permits, Math.max(0, unit.toNanos(timeout)));
+        if (waitNanos < 0) {
+            return false;
+        }
+        if (waitNanos > 0) {
+            sleepUninterruptibly(waitNanos);
+        }
+        return true;
+    }
+
+    /**
+     * 归还已获取的{@code permits}个permit, 用于获取permit后请求最终被其他规则拦截的场景
+     * TAT最多回退到当前时间, 故不会积累超过burst个permit
+     */
+    public void refund(int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be greater than 0");
+        }
+        long decrement = permits * emissionIntervalNanos;
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long tat = this.tat.get();
+            if (tat - now <= 0) {
+                //已发放的permit均已恢复
+                return;
+            }
+            long newTat = Math.max(now, tat - decrement);
+            if (this.tat.compareAndSet(tat, newTat)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 预留permit
+     *
+     * @param permits      permit数量
+     * @param maxWaitNanos 最大等待时长
+     * @return 需要等待的时长, -1表示预留失败
+     */
+    private long reserve(int permits, long maxWaitNanos) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be greater than 0");
+        }
+        long increment = permits * emissionIntervalNanos;
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long tat = this.tat.get();
+            //TAT落后于当前时间, 则从当前时间开始计算, 即最多积累burst个permit
+            long newTat = (tat - now < 0 ? now : tat) + increment;
+            long waitNanos = newTat - now - toleranceNanos;
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            if (this.tat.compareAndSet(tat, newTat)) {
+                return Math.max(0, waitNanos);
+            }
+        }
+    }
+
+    /**
+     * 阻塞等待, 期间线程被中断则等待结束后恢复中断标识
+     */
+    private static void sleepUninterruptibly(long nanos) {
+        boolean interrupted = false;
+        long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                interrupted = true;
+            }
+            remaining = deadline - System.nanoTime();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return 当前可立即获取的permit数量, 近似值
+     */
+    public long availablePermits() {
+        long now = nanoClock.getAsLong();
+        long tat = this.tat.get();
+        long consumed = tat - now <= 0 ? 0 : tat - now;
+        return Math.max(0, (toleranceNanos - consumed) / emissionIntervalNanos);
+    }
+
+    //getter
+    public long getBurst() {
+        return burst;
+    }
+
+    @Override
+    public String toString() {
+        return "GcraRateLimiter{" +
+                "emissionIntervalNanos=" + emissionIntervalNanos +
+                ", burst=" + burst +
+                '}';
+    }
+}
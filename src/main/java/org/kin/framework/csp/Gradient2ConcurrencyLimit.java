@@ -0,0 +1,55 @@
+package org.kin.framework.csp;
+
+import org.kin.framework.utils.PeakEWMA;
+
+/**
+ * 基于rtt梯度的并发限制
+ * 梯度 = rtt容忍倍数 * 长期rtt / 短期rtt, 限定在[0.5, 1], 新并发限制 = limit * 梯度 + sqrt(limit)
+ * 即rtt稳定时并发限制按sqrt(limit)增长, rtt变大时按比例缩减.
+ * 长期rtt远大于短期rtt时(比如负载下降后), 长期rtt会快速回落, 以免并发限制在负载再次上升时无法缩减
+ *
+ * @author huangjianqin
+ * @date 2023/7/28
+ */
+final class Gradient2ConcurrencyLimit extends AbstractConcurrencyLimit {
+    /** 平滑系数 */
+    private final double smoothing;
+    /** rtt容忍倍数 */
+    private final double rttTolerance;
+    /** 长期rtt时间窗口(毫秒) */
+    private final long longWindowMillis;
+    /** 长期rtt, 收到第一个样本时创建 */
+    private PeakEWMA longRtt;
+
+    Gradient2ConcurrencyLimit(ConcurrencyLimitOptions options) {
+        super(options);
+        this.smoothing = options.getSmoothing();
+        this.rttTolerance = options.getRttTolerance();
+        this.longWindowMillis = options.getLongWindowMillis();
+    }
+
+    @Override
+    protected double update(double limit, long rttNanos, int inFlight, boolean dropped) {
+        double shortRtt = Math.max(1, rttNanos);
+        if (longRtt == null) {
+            longRtt = new PeakEWMA(longWindowMillis, shortRtt);
+        } else {
+            longRtt.observe(shortRtt);
+        }
+
+        double longRttValue = longRtt.getEwma();
+        if (longRttValue / shortRtt > 2) {
+            //长期rtt回落
+            longRtt.reset(longRttValue * 0.95);
+        }
+
+        if (inFlight * 2 < limit) {
+            //并发数远未达到并发限制, 样本无法反映排队情况
+            return limit;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRttValue / shortRtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        return limit * (1 - smoothing) + newLimit * smoothing;
+    }
+}
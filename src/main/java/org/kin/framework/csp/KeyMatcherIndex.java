@@ -0,0 +1,227 @@
+package org.kin.framework.csp;
+
+import org.kin.framework.collection.BoundedConcurrentMap;
+import org.kin.framework.utils.StringUtils;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 预编译的key pattern索引, 匹配语义与{@link StringUtils#match(String, String)}一致
+ * <p>
+ * pattern在构建时编译一次:
+ * 1. 无通配符的pattern, 存储于hash map, 精确匹配
+ * 2. "A*"存储于前缀trie, "*A"存储于后缀trie, "A*B"存储于前缀trie并附带后缀条件
+ * 3. "*"匹配所有key
+ * <p>
+ * 包含通配符pattern时, key -> 匹配结果会缓存于有界map, 重复key仅需一次查找
+ * 实例不可变, pattern变化时需重新构建
+ *
+ * @author huangjianqin
+ * @date 2023/7/25
+ */
+final class KeyMatcherIndex<V> {
+    /** 默认匹配结果缓存数量上限 */
+    static final int DEFAULT_CACHE_SIZE = 1024;
+    /** 通配符 */
+    private static final char WILDCARD = '*';
+
+    /** 精确匹配的pattern -> values */
+    private final Map<String, List<V>> exactMap = new HashMap<>();
+    /** 匹配所有key的values */
+    private final List<V> matchAllValues = new ArrayList<>();
+    /** 前缀trie */
+    private final TrieNode<V> prefixRoot = new TrieNode<>();
+    /** 后缀trie, 以逆序字符构建 */
+    private final TrieNode<V> suffixRoot = new TrieNode<>();
+    /** 是否包含通配符pattern */
+    private boolean hasWildcard;
+    /** key -> 匹配结果缓存, 仅包含通配符pattern时才创建 */
+    private final Map<String, List<V>> cache;
+
+    /**
+     * @param values      pattern values
+     * @param patternFunc 从value中提取pattern
+     */
+    KeyMatcherIndex(Collection<? extends V> values, Function<? super V, String> patternFunc) {
+        this(values, patternFunc, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param values      pattern values
+     * @param patternFunc 从value中提取pattern
+     * @param cacheSize   匹配结果缓存数量上限
+     */
+    KeyMatcherIndex(Collection<? extends V> values, Function<? super V, String> patternFunc, int cacheSize) {
+        for (V value : values) {
+            compile(patternFunc.apply(value), value);
+        }
+        this.cache = hasWildcard ? BoundedConcurrentMap.lru(cacheSize) : null;
+    }
+
+    /**
+     * 编译pattern, 规则与{@link StringUtils#match(String, String)}保持一致
+     */
+    private void compile(String pattern, V value) {
+        pattern = pattern.trim();
+        if (pattern.indexOf(WILDCARD) < 0) {
+            //"AB"
+            exactMap.computeIfAbsent(pattern, k -> new ArrayList<>(1)).add(value);
+            return;
+        }
+
+        hasWildcard = true;
+        if (pattern.length() == 1) {
+            //"*", match all
+            matchAllValues.add(value);
+            return;
+        }
+
+        String[] split = pattern.split("\\" + WILDCARD);
+        if (split.length == 1) {
+            //"A*", prefix match.
+            prefixRoot.getOrCreate(split[0], false).addValue(value);
+        } else if (split.length == 2) {
+            if (StringUtils.isBlank(split[0])) {
+                //"*A", postfix match.
+                suffixRoot.getOrCreate(split[1], true).addValue(value);
+            } else {
+                //"A*B", prefix and postfix match.
+                prefixRoot.getOrCreate(split[0], false).addConditionalValue(split[1], value);
+            }
+        }
+        //其余pattern永远不匹配
+    }
+
+    /**
+     * @return 匹配{@code key}的values, 不可修改
+     */
+    List<V> match(String key) {
+        key = key.trim();
+        if (!hasWildcard) {
+            List<V> values = exactMap.get(key);
+            return values == null ? Collections.emptyList() : values;
+        }
+
+        List<V> values = cache.get(key);
+        if (values == null) {
+            values = resolve(key);
+            cache.put(key, values);
+        }
+        return values;
+    }
+
+    /**
+     * 遍历所有索引, 解析匹配{@code key}的values
+     */
+    private List<V> resolve(String key) {
+        List<V> result = new ArrayList<>();
+        List<V> exactValues = exactMap.get(key);
+        if (exactValues != null) {
+            result.addAll(exactValues);
+        }
+        result.addAll(matchAllValues);
+
+        //前缀, 沿key正序遍历, 经过的节点都是key的前缀
+        TrieNode<V> node = prefixRoot;
+        node.collect(key, result);
+        for (int i = 0; i < key.length() && (node = node.child(key.charAt(i))) != null; i++) {
+            node.collect(key, result);
+        }
+
+        //后缀, 沿key逆序遍历, 经过的节点都是key的后缀
+        node = suffixRoot;
+        node.collect(key, result);
+        for (int i = key.length() - 1; i >= 0 && (node = node.child(key.charAt(i))) != null; i--) {
+            node.collect(key, result);
+        }
+
+        if (result.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    //------------------------------------------------------------------------------------------------------------inner class
+
+    /**
+     * trie节点, 子节点数量一般很少, 故使用数组线性查找
+     */
+    private static final class TrieNode<V> {
+        private static final char[] EMPTY_CHARS = new char[0];
+
+        private char[] chars = EMPTY_CHARS;
+        @SuppressWarnings("rawtypes")
+        private TrieNode[] children = new TrieNode[0];
+        /** 到达该节点即匹配的values */
+        private List<V> values;
+        /** 到达该节点后还需匹配后缀的values */
+        private List<String> conditionSuffixes;
+        private List<V> conditionValues;
+
+        @SuppressWarnings("unchecked")
+        TrieNode<V> child(char c) {
+            char[] chars = this.chars;
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param reverse 是否逆序构建
+         */
+        TrieNode<V> getOrCreate(String s, boolean reverse) {
+            TrieNode<V> node = this;
+            int len = s.length();
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(reverse ? len - 1 - i : i);
+                TrieNode<V> child = node.child(c);
+                if (child == null) {
+                    child = new TrieNode<>();
+                    int size = node.chars.length;
+                    node.chars = Arrays.copyOf(node.chars, size + 1);
+                    node.children = Arrays.copyOf(node.children, size + 1);
+                    node.chars[size] = c;
+                    node.children[size] = child;
+                }
+                node = child;
+            }
+            return node;
+        }
+
+        void addValue(V value) {
+            if (values == null) {
+                values = new ArrayList<>(1);
+            }
+            values.add(value);
+        }
+
+        void addConditionalValue(String suffix, V value) {
+            if (conditionValues == null) {
+                conditionSuffixes = new ArrayList<>(1);
+                conditionValues = new ArrayList<>(1);
+            }
+            conditionSuffixes.add(suffix);
+            conditionValues.add(value);
+        }
+
+        /**
+         * 收集该节点匹配{@code key}的values
+         */
+        void collect(String key, List<V> result) {
+            if (values != null) {
+                result.addAll(values);
+            }
+            if (conditionValues != null) {
+                for (int i = 0; i < conditionValues.size(); i++) {
+                    if (key.endsWith(conditionSuffixes.get(i))) {
+                        result.add(conditionValues.get(i));
+                    }
+                }
+            }
+        }
+    }
+}
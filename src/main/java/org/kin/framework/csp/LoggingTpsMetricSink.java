@@ -0,0 +1,51 @@
+package org.kin.framework.csp;
+
+import org.kin.framework.utils.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 以debug日志打印tps监控统计, 每行格式如下:
+ * group级别: {group name}|group|time unit|window time|count|intercepted count
+ * child级别: {group name}|key|time unit|window time|[proto key|]count|intercepted count
+ * <p>
+ * 日志级别非debug时不做任何字符串拼接
+ *
+ * @author huangjianqin
+ * @date 2023/7/30
+ */
+public final class LoggingTpsMetricSink implements TpsMetricSink {
+    private static final Logger log = LoggerFactory.getLogger(TpsRuleManager.class);
+    /** 分隔符 */
+    private static final char SEPARATOR = '|';
+
+    @Override
+    public void report(TpsSnapshot snapshot) {
+        if (!log.isDebugEnabled()) {
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < snapshot.size(); i++) {
+            String key = snapshot.getKey(i);
+            String protoKey = snapshot.getProtoKey(i);
+            String time = TimeUtils.formatDateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(snapshot.getWindowStart(i)), ZoneId.systemDefault()));
+            sb.append(snapshot.getGroup(i)).append(SEPARATOR)
+                    .append(key == null ? "group" : key).append(SEPARATOR)
+                    .append(snapshot.getUnit(i)).append(SEPARATOR)
+                    .append(time).append(SEPARATOR);
+            if (protoKey != null) {
+                sb.append(protoKey).append(SEPARATOR);
+            }
+            sb.append(snapshot.getCount(i)).append(SEPARATOR)
+                    .append(snapshot.getInterceptedCount(i)).append(System.lineSeparator());
+        }
+        if (sb.length() > 0) {
+            log.debug("tps reporting... ".concat(System.lineSeparator()).concat(sb.toString()));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.kin.framework.csp;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 将tps监控统计发布到micrometer
+ * <p>
+ * 每个计数器对应以下meter, tag为group, key(group级别为'group'), {@code tagProtoKey}为true时还包含精准模式的protoKey:
+ * 1. {@value #PASSED_NAME}, counter, 累计通过次数
+ * 2. {@value #INTERCEPTED_NAME}, counter, 累计拦截次数
+ * 3. {@value #WINDOW_COUNT_NAME}, gauge, 最近一个有计数的窗口的通过次数
+ * <p>
+ * 精准模式下key数量可能非常多, 故默认不以精准模式的key作为tag, 即同一child rule下所有key合并.
+ * 超过{@value #EXPIRE_WINDOWS}个窗口(至少1分钟)没有计数的meter会从registry移除, 再次有计数时重新注册, 避免动态key导致meter数量无限增长
+ *
+ * @author huangjianqin
+ * @date 2023/7/30
+ */
+public final class MicrometerTpsMetricSink implements TpsMetricSink {
+    static final String PASSED_NAME = "kin.tps.passed";
+    static final String INTERCEPTED_NAME = "kin.tps.intercepted";
+    static final String WINDOW_COUNT_NAME = "kin.tps.window.count";
+    /** meter超过多少个窗口没有计数则移除 */
+    private static final int EXPIRE_WINDOWS = 3;
+    /** meter最短过期时间(毫秒) */
+    private static final long MIN_EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    /** 检查meter过期的间隔(毫秒) */
+    private static final long EXPIRE_CHECK_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /** meter registry */
+    private final MeterRegistry registry;
+    /** 是否以精准模式的key作为tag */
+    private final boolean tagProtoKey;
+    /** 已注册的meter, 仅reporter线程访问 */
+    private final Map<MeterKey, Meters> metersMap = new HashMap<>();
+    /** 用于查找{@link #metersMap}, 避免每行都创建key */
+    private final MeterKey lookupKey = new MeterKey();
+    /** 上次检查meter过期的时间 */
+    private long lastExpireCheckTime;
+
+    public MicrometerTpsMetricSink() {
+        this(Metrics.globalRegistry);
+    }
+
+    public MicrometerTpsMetricSink(MeterRegistry registry) {
+        this(registry, false);
+    }
+
+    public MicrometerTpsMetricSink(MeterRegistry registry, boolean tagProtoKey) {
+        this.registry = registry;
+        this.tagProtoKey = tagProtoKey;
+    }
+
+    @Override
+    public void report(TpsSnapshot snapshot) {
+        for (int i = 0; i < snapshot.size(); i++) {
+            String key = snapshot.getKey(i);
+            String protoKey = tagProtoKey ? snapshot.getProtoKey(i) : null;
+            Meters meters = meters(snapshot.getGroup(i), key == null ? "group" : key, protoKey);
+            meters.expireMillis = Math.max(MIN_EXPIRE_MILLIS, snapshot.getUnit(i).toMillis(EXPIRE_WINDOWS));
+
+            long count = snapshot.getCount(i);
+            long interceptedCount = snapshot.getInterceptedCount(i);
+            if (count > 0) {
+                meters.passed.increment(count);
+            }
+            if (interceptedCount > 0) {
+                meters.intercepted.increment(interceptedCount);
+            }
+            if (meters.lastReportTime != snapshot.getTimestamp()) {
+                meters.lastReportTime = snapshot.getTimestamp();
+                meters.windowCount.set(count);
+            } else {
+                //未以精准模式key作为tag时, 同一快照内多行对应同一meter
+                meters.windowCount.addAndGet(count);
+            }
+        }
+
+        expire(snapshot.getTimestamp());
+    }
+
+    /**
+     * 移除长时间没有计数的meter
+     */
+    private void expire(long now) {
+        if (now - lastExpireCheckTime < EXPIRE_CHECK_INTERVAL_MILLIS) {
+            return;
+        }
+        lastExpireCheckTime = now;
+
+        Iterator<Meters> iterator = metersMap.values().iterator();
+        while (iterator.hasNext()) {
+            Meters meters = iterator.next();
+            if (now - meters.lastReportTime > meters.expireMillis) {
+                registry.remove(meters.passed);
+                registry.remove(meters.intercepted);
+                registry.remove(meters.windowCountGauge);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 获取meter, 不存在则注册
+     */
+    private Meters meters(String group, String key, String protoKey) {
+        lookupKey.set(group, key, protoKey);
+        Meters meters = metersMap.get(lookupKey);
+        if (meters == null) {
+            Tags tags = Tags.of("group", group, "key", key);
+            if (protoKey != null) {
+                tags = tags.and("protoKey", protoKey);
+            }
+            AtomicLong windowCount = new AtomicLong();
+            meters = new Meters(
+                    Counter.builder(PASSED_NAME).description("tps passed count").tags(tags).register(registry),
+                    Counter.builder(INTERCEPTED_NAME).description("tps intercepted count").tags(tags).register(registry),
+                    windowCount,
+                    Gauge.builder(WINDOW_COUNT_NAME, windowCount, AtomicLong::get).description("tps window count").tags(tags).register(registry));
+            MeterKey meterKey = new MeterKey();
+            meterKey.set(group, key, protoKey);
+            metersMap.put(meterKey, meters);
+        }
+        return meters;
+    }
+
+    //------------------------------------------------------------------------------------------------------------inner class
+
+    /**
+     * 计数器对应的meter
+     */
+    private static final class Meters {
+        private final Counter passed;
+        private final Counter intercepted;
+        private final AtomicLong windowCount;
+        private final Gauge windowCountGauge;
+        /** 上次输出的快照时间 */
+        private long lastReportTime;
+        /** 过期时间(毫秒) */
+        private long expireMillis = MIN_EXPIRE_MILLIS;
+
+        Meters(Counter passed, Counter intercepted, AtomicLong windowCount, Gauge windowCountGauge) {
+            this.passed = passed;
+            this.intercepted = intercepted;
+            this.windowCount = windowCount;
+            this.windowCountGauge = windowCountGauge;
+        }
+    }
+
+    /**
+     * meter key
+     */
+    private static final class MeterKey {
+        private String group;
+        private String key;
+        private String protoKey;
+
+        void set(String group, String key, String protoKey) {
+            this.group = group;
+            this.key = key;
+            this.protoKey = protoKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MeterKey)) {
+                return false;
+            }
+            MeterKey that = (MeterKey) o;
+            return group.equals(that.group) && key.equals(that.key) && Objects.equals(protoKey, that.protoKey);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = group.hashCode();
+            result = 31 * result + key.hashCode();
+            result = 31 * result + (protoKey != null ? protoKey.hashCode() : 0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.kin.framework.csp;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于环形bucket的无锁滑动窗口计数器
+ * <p>
+ * 一个窗口由{@code bucketNum}个子窗口(bucket)组成, 比如1s窗口默认由10个100ms bucket组成.
+ * 环中保留两个窗口的bucket, 当前窗口用于计算滑动计数, 上一个窗口用于统计上报.
+ * <p>
+ * bucket过期时通过CAS替换为新bucket, 并发调用者不会重复重置, 正在计数的调用者也不会因为重置丢失计数
+ * (除非调用者取得bucket后停顿超过两个窗口时长).
+ * 新bucket创建时会汇总滑动窗口内其余bucket的计数, 故{@link #rollingCount(long)}仅需读取当前bucket, 时间复杂度O(1).
+ * bucket被替换后, 少量仍持有旧bucket的并发调用者的计数不会计入滑动计数, 故滑动计数是近似值
+ *
+ * @author huangjianqin
+ * @date 2023/7/26
+ */
+final class SlidingWindowCounter {
+    /** 默认一个窗口的bucket数量 */
+    static final int DEFAULT_BUCKET_NUM = 10;
+
+    /** 窗口时长(毫秒) */
+    private final long windowMillis;
+    /** bucket时长(毫秒) */
+    private final long bucketMillis;
+    /** 一个窗口的bucket数量 */
+    private final int bucketNum;
+    /** 环形bucket, 保留两个窗口 */
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    SlidingWindowCounter(long windowMillis) {
+        this(windowMillis, DEFAULT_BUCKET_NUM);
+    }
+
+    /**
+     * @param windowMillis 窗口时长(毫秒)
+     * @param bucketNum    一个窗口的bucket数量
+     */
+    SlidingWindowCounter(long windowMillis, int bucketNum) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("windowMillis must be greater than 0");
+        }
+        if (bucketNum <= 0) {
+            throw new IllegalArgumentException("bucketNum must be greater than 0");
+        }
+        this.windowMillis = windowMillis;
+        //bucket最小1ms
+        this.bucketMillis = Math.max(1, windowMillis / bucketNum);
+        this.bucketNum = (int) (windowMillis / bucketMillis);
+        this.buckets = new AtomicReferenceArray<>(this.bucketNum * 2);
+    }
+
+    /**
+     * 获取{@code timestamp}所在的bucket, 如果槽位中的bucket已过期, 则CAS替换为新bucket
+     *
+     * @param timestamp 时间戳
+     * @return bucket
+     */
+    Bucket currentBucket(long timestamp) {
+        long bucketNo = timestamp / bucketMillis;
+        long bucketStart = bucketNo * bucketMillis;
+        int slot = (int) (bucketNo % buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(slot);
+            if (bucket != null && bucket.start >= bucketStart) {
+                //bucket.start > bucketStart, 即时间戳已落后于当前bucket(时钟回拨或者调用者时间戳较旧), 计入较新的bucket
+                return bucket;
+            }
+
+            Bucket newBucket = new Bucket(bucketStart, sum(bucketStart - windowMillis + bucketMillis, bucketStart, false));
+            if (buckets.compareAndSet(slot, bucket, newBucket)) {
+                return newBucket;
+            }
+            //其他线程已替换, 重新读取
+        }
+    }
+
+    /**
+     * 通过计数+1
+     *
+     * @param timestamp 时间戳
+     */
+    void pass(long timestamp) {
+        currentBucket(timestamp).count.increment();
+    }
+
+    /**
+     * 拦截计数+1
+     *
+     * @param timestamp 时间戳
+     */
+    void intercept(long timestamp) {
+        currentBucket(timestamp).interceptedCount.increment();
+    }
+
+    /**
+     * @param timestamp 时间戳
+     * @return 以{@code timestamp}为终点的滑动窗口内通过计数
+     */
+    long rollingCount(long timestamp) {
+        Bucket bucket = currentBucket(timestamp);
+        return bucket.previousCount + bucket.count.sum();
+    }
+
+    /**
+     * 汇总[from, to)内bucket计数
+     *
+     * @param intercepted true则汇总拦截计数, 否则汇总通过计数
+     */
+    private long sum(long from, long to, boolean intercepted) {
+        long sum = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.start >= from && bucket.start < to) {
+                sum += intercepted ? bucket.interceptedCount.sum() : bucket.count.sum();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 统计[windowStart, windowStart + 窗口时长)内的计数, 仅支持当前窗口和上一个窗口
+     *
+     * @param windowStart 窗口起始时间
+     * @return 窗口统计, 窗口内没有任何计数则返回{@link WindowStat#EMPTY}
+     */
+    WindowStat windowStat(long windowStart) {
+        long windowEnd = windowStart + windowMillis;
+        long count = sum(windowStart, windowEnd, false);
+        long interceptedCount = sum(windowStart, windowEnd, true);
+        if (count == 0 && interceptedCount == 0) {
+            return WindowStat.EMPTY;
+        }
+        return new WindowStat(count, interceptedCount);
+    }
+
+    /**
+     * @param timestamp 时间戳
+     * @return 环中是否已没有未过期的bucket, 即两个窗口时长内没有任何计数
+     */
+    boolean isIdle(long timestamp) {
+        long expireTime = timestamp - windowMillis * 2;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.start > expireTime) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //getter
+    long getWindowMillis() {
+        return windowMillis;
+    }
+
+    int getBucketNum() {
+        return bucketNum;
+    }
+
+    //--------------------------------------------------------------------------------
+
+    /**
+     * 子窗口
+     */
+    static final class Bucket {
+        /** bucket起始时间 */
+        final long start;
+        /** bucket创建时, 滑动窗口内其余bucket的通过计数 */
+        final long previousCount;
+        /** 通过计数 */
+        final LongAdder count = new LongAdder();
+        /** 拦截计数 */
+        final LongAdder interceptedCount = new LongAdder();
+
+        Bucket(long start, long previousCount) {
+            this.start = start;
+            this.previousCount = previousCount;
+        }
+    }
+
+    /**
+     * 窗口统计
+     */
+    static final class WindowStat {
+        static final WindowStat EMPTY = new WindowStat(0, 0);
+
+        /** 通过计数 */
+        final long count;
+        /** 拦截计数 */
+        final long interceptedCount;
+
+        WindowStat(long count, long interceptedCount) {
+            this.count = count;
+            this.interceptedCount = interceptedCount;
+        }
+
+        boolean isEmpty() {
+            return count == 0 && interceptedCount == 0;
+        }
+
+        @Override
+        public String toString() {
+            return "{" + count + "|" + interceptedCount + '}';
+        }
+    }
+}
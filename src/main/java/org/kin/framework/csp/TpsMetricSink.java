@@ -0,0 +1,19 @@
+package org.kin.framework.csp;
+
+/**
+ * tps监控统计输出, 通过{@link TpsRuleManager#addMetricSink(TpsMetricSink)}注册
+ * <p>
+ * 由reporter单线程周期性调用, 实现不应阻塞
+ *
+ * @author huangjianqin
+ * @date 2023/7/30
+ */
+@FunctionalInterface
+public interface TpsMetricSink {
+    /**
+     * 输出tps监控统计
+     *
+     * @param snapshot 上一个窗口内有计数变化的计数器统计, 仅在调用期间有效
+     */
+    void report(TpsSnapshot snapshot);
+}
@@ -10,6 +10,10 @@ public enum TpsModel {
     FUZZY("模糊"),
     /** 精准模式 */
     PROTO("精准"),
+    /** 令牌桶, 不区分key, 允许突发, 突发容量见{@link TpsRuleOptions#getBurst()} */
+    TOKEN_BUCKET("令牌桶"),
+    /** 漏桶, 不区分key, 严格按发放间隔匀速放行 */
+    LEAKY_BUCKET("漏桶"),
     ;
 
     /** 描述 */
@@ -19,6 +23,13 @@ public enum TpsModel {
         this.desc = desc;
     }
 
+    /**
+     * @return 是否基于{@link GcraRateLimiter}限流
+     */
+    public boolean isRateLimiter() {
+        return this == TOKEN_BUCKET || this == LEAKY_BUCKET;
+    }
+
     //getter
     public String getDesc() {
         return desc;
@@ -1,40 +1,66 @@
 package org.kin.framework.csp;
 
-import org.kin.framework.collection.CopyOnWriteMap;
 import org.kin.framework.utils.TimeUtils;
 
-import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 监控tps计数统计
+ * <p>
+ * 基于{@link SlidingWindowCounter}滑动窗口计数, 窗口时长为一个{@link #unit}, 由若干个子窗口组成.
+ * {@link TpsModel#isRateLimiter()}模式下基于{@link GcraRateLimiter}限流, 滑动窗口仅用于统计
  *
  * @author huangjianqin
  * @date 2022/4/13
  */
 final class TpsMonitor {
+    private static final SlidingWindowCounter[] EMPTY_COUNTERS = new SlidingWindowCounter[0];
+
     /** 与{@link TpsRule#startTime}一致, 即{@link TpsRule}注册时间 */
     private final long startTime;
     /** tps window时间单位 */
     private final TimeUnit unit;
-    /** item -> window内tps计数统计 */
-    private final List<TpsSlot> slotList;
+    /** 窗口时长(毫秒) */
+    private final long windowMillis;
+    /** 一个窗口的子窗口数量 */
+    private final int bucketNum;
+    /** 不区分key的计数器, 模糊模式使用 */
+    private final SlidingWindowCounter counter;
+    /** key -> 计数器, 精准模式使用 */
+    private final Map<String, SlidingWindowCounter> counterMap;
+    /**
+     * key id -> 计数器, 精准模式使用, 与{@link #counterMap}共享计数器实例, 供{@link TpsRuleHandle}无需hash查找
+     * 长度不超过{@link TpsRule#MAX_KEY_ID_NUM}
+     */
+    private volatile SlidingWindowCounter[] indexedCounters = EMPTY_COUNTERS;
     /** window内tps计数最大上线 */
-    private long maxTps = -1;
+    private volatile long maxTps = -1;
+    /** {@link TpsModel#TOKEN_BUCKET}模式下最多允许瞬间通过的请求数, 小于等于0则取{@link #maxTps} */
+    private final long burst;
+    /** 限流器, 仅{@link TpsModel#isRateLimiter()}并且{@link #maxTps}大于0时才存在 */
+    private volatile GcraRateLimiter rateLimiter;
     /** tps模式 */
-    private TpsModel model;
+    private final TpsModel model;
     /** tps监控类型 */
-    private TpsMonitorType monitorType = TpsMonitorType.MONITOR;
+    private volatile TpsMonitorType monitorType = TpsMonitorType.MONITOR;
+    /** 上次上报的窗口起始时间, 仅reporter线程访问 */
+    private long lastReportWindowStart = Long.MIN_VALUE;
 
     TpsMonitor(long startTime, TpsRuleOptions options) {
-        this(startTime, options.getUnit(), options.getModel(), options.getMonitorType(), options.getMaxTps());
+        this(startTime, options.getUnit(), options.getModel(), options.getMonitorType(), options.getMaxTps(),
+                options.getBucketNum(), options.getBurst());
     }
 
     TpsMonitor(long startTime, TimeUnit unit, TpsModel model, TpsMonitorType monitorType, long maxTps) {
+        this(startTime, unit, model, monitorType, maxTps, SlidingWindowCounter.DEFAULT_BUCKET_NUM, -1);
+    }
+
+    TpsMonitor(long startTime, TimeUnit unit, TpsModel model, TpsMonitorType monitorType, long maxTps,
+               int bucketNum, long burst) {
         if (unit.equals(TimeUnit.MINUTES)) {
             this.startTime = TimeUtils.trimMillsOfMinute(startTime);
         } else if (unit.equals(TimeUnit.HOURS)) {
@@ -43,72 +69,162 @@ final class TpsMonitor {
             this.startTime = startTime;
         }
         this.unit = unit;
-        this.maxTps = maxTps;
+        this.windowMillis = Math.max(1, unit.toMillis(1));
+        this.bucketNum = bucketNum;
+        this.burst = burst;
         this.model = model;
         this.monitorType = monitorType;
+        updateMaxTps(maxTps);
 
-        int slotSize = 11;
-        List<TpsSlot> slotList = new ArrayList<>(slotSize);
-        for (int i = 0; i < slotSize; i++) {
-            slotList.add(isProtoModel() ? new MultiTpsSlot() : new SingleTpsSlot());
+        if (isProtoModel()) {
+            this.counter = null;
+            this.counterMap = new ConcurrentHashMap<>();
+        } else {
+            this.counter = new SlidingWindowCounter(windowMillis, bucketNum);
+            this.counterMap = Collections.emptyMap();
         }
-        this.slotList = slotList;
     }
 
     /**
-     * 获取{@link TpsSlot}实例, 如果窗口时间已过期, 则{@link TpsSlot#reset(long)}
+     * 更新tps上限, 限流器模式下重新创建限流器
+     */
+    private void updateMaxTps(long maxTps) {
+        if (model.isRateLimiter() && maxTps > 0 && maxTps != this.maxTps) {
+            this.rateLimiter = TpsModel.TOKEN_BUCKET.equals(model) ?
+                    GcraRateLimiter.tokenBucket(maxTps, unit, burst > 0 ? burst : maxTps) :
+                    GcraRateLimiter.leakyBucket(maxTps, unit);
+        }
+        this.maxTps = maxTps;
+    }
+
+    /**
+     * 判断是否tps溢出, 限流器模式下未溢出则会消耗permit
      *
+     * @param counter   {@link #getCounter(String)}返回的计数器
      * @param timestamp 时间戳
-     * @return tps slot
+     * @return true表示tps溢出
+     */
+    boolean isOverLimit(SlidingWindowCounter counter, long timestamp) {
+        long maxTps = this.maxTps;
+        if (maxTps < 0) {
+            //不限制
+            return false;
+        }
+        GcraRateLimiter rateLimiter = this.rateLimiter;
+        if (maxTps > 0 && rateLimiter != null) {
+            return !rateLimiter.tryAcquire();
+        }
+        return counter.rollingCount(timestamp) >= maxTps;
+    }
+
+    /**
+     * 归还{@link #isOverLimit(SlidingWindowCounter, long)}消耗的permit, 仅限流器模式下生效
+     * 用于未溢出但请求最终被其他monitor拦截的场景, 避免被拦截的请求消耗burst
+     */
+    void refund() {
+        GcraRateLimiter rateLimiter = this.rateLimiter;
+        if (maxTps > 0 && rateLimiter != null) {
+            rateLimiter.refund(1);
+        }
+    }
+
+    /**
+     * 获取计数器, 模糊模式下所有key共用一个计数器
+     *
+     * @param key 监控key
+     * @return 计数器
      */
-    TpsSlot getAndResetTpsSlot(long timestamp) {
-        //时间间隔
-        long distance = timestamp - startTime;
-        //window槽位总数
-        int slotSize = slotList.size();
-        //单个window时间
-        long singleWindowTime = unit.toMillis(1);
-        //经历过多少个window
-        long windowNum = (distance < 0 ? distance + singleWindowTime * slotSize : distance) / singleWindowTime;
-        //当前window的起始时间
-        long curWindowTime = startTime + windowNum * singleWindowTime;
-        //取槽位index
-        int slotIndex = (int) windowNum % slotSize;
-        //槽位
-        TpsSlot tpsSlot = slotList.get(slotIndex);
-        if (tpsSlot.windowTime != curWindowTime) {
-            //如果该槽位对应的窗口时间已过期, 则reset
-            tpsSlot.reset(curWindowTime);
+    SlidingWindowCounter getCounter(String key) {
+        if (counter != null) {
+            return counter;
         }
-        return tpsSlot;
+        SlidingWindowCounter counter = counterMap.get(key);
+        if (counter == null) {
+            counter = counterMap.computeIfAbsent(key, k -> new SlidingWindowCounter(windowMillis, bucketNum));
+        }
+        return counter;
     }
 
     /**
-     * 获取{@link TpsSlot}实例
+     * 获取计数器, 精准模式下以{@code keyId}索引数组, 不存在时才回退到{@link #getCounter(String)}
      *
+     * @param keyId {@link TpsRule#keyId(String)}, {@link TpsRule#NO_KEY_ID}则直接使用{@link #getCounter(String)}
+     * @param key   监控key
+     * @return 计数器
+     */
+    SlidingWindowCounter getCounter(int keyId, String key) {
+        if (counter != null) {
+            return counter;
+        }
+        if (keyId < 0) {
+            //未分配key id
+            return getCounter(key);
+        }
+        SlidingWindowCounter[] counters = this.indexedCounters;
+        SlidingWindowCounter counter;
+        if (keyId < counters.length && (counter = counters[keyId]) != null) {
+            return counter;
+        }
+        return indexCounter(keyId, key);
+    }
+
+    /**
+     * 将{@code key}计数器存储于{@link #indexedCounters}
+     */
+    private synchronized SlidingWindowCounter indexCounter(int keyId, String key) {
+        SlidingWindowCounter counter = getCounter(key);
+        SlidingWindowCounter[] counters = this.indexedCounters;
+        if (keyId >= counters.length) {
+            counters = Arrays.copyOf(counters, Math.min(Math.max(keyId + 1, counters.length * 2), TpsRule.MAX_KEY_ID_NUM));
+        }
+        counters[keyId] = counter;
+        //volatile写, 发布数组元素
+        this.indexedCounters = counters;
+        return counter;
+    }
+
+    /**
      * @param timestamp 时间戳
-     * @return tps slot
+     * @return {@code timestamp}所在窗口的起始时间, 即以{@link #startTime}为起点, 按{@link #unit}对齐
+     */
+    long windowStart(long timestamp) {
+        return startTime + Math.floorDiv(timestamp - startTime, windowMillis) * windowMillis;
+    }
+
+    /**
+     * 标记{@code windowStart}窗口已上报, 避免reporter重复上报同一窗口
+     *
+     * @param windowStart 窗口起始时间
+     * @return true表示该窗口此前未上报
      */
-    @Nullable
-    TpsSlot getTpsSlot(long timestamp) {
-        //时间间隔
-        long distance = timestamp - startTime;
-        //window槽位总数
-        int slotSize = slotList.size();
-        //单个window时间
-        long singleWindowTime = unit.toMillis(1);
-        //经历过多少个window
-        long windowNum = (distance < 0 ? distance + singleWindowTime * slotSize : distance) / singleWindowTime;
-        //当前window的起始时间
-        long curWindowTime = startTime + windowNum * singleWindowTime;
-        //取槽位index
-        int slotIndex = (int) windowNum % slotSize;
-        //槽位
-        TpsSlot tpsSlot = slotList.get(slotIndex);
-        if (tpsSlot.windowTime != curWindowTime) {
-            return null;
+    boolean markReported(long windowStart) {
+        if (lastReportWindowStart == windowStart) {
+            return false;
         }
-        return tpsSlot;
+        lastReportWindowStart = windowStart;
+        return true;
+    }
+
+    /**
+     * 移除精准模式下长时间没有流量的key计数器
+     *
+     * @param timestamp 时间戳
+     */
+    synchronized void expire(long timestamp) {
+        if (counterMap.isEmpty()) {
+            return;
+        }
+        //先移除数组中的计数器, 同一时间戳下非idle的计数器不会变为idle, 故数组中保留的计数器必定仍在map中
+        SlidingWindowCounter[] counters = this.indexedCounters;
+        for (int i = 0; i < counters.length; i++) {
+            SlidingWindowCounter counter = counters[i];
+            if (counter != null && counter.isIdle(timestamp)) {
+                counters[i] = null;
+            }
+        }
+        this.indexedCounters = counters;
+
+        counterMap.values().removeIf(c -> c.isIdle(timestamp));
     }
 
     /**
@@ -116,7 +232,7 @@ final class TpsMonitor {
      */
     void clear() {
         this.monitorType = TpsMonitorType.MONITOR;
-        this.maxTps = -1;
+        updateMaxTps(-1);
     }
 
     /**
@@ -124,7 +240,7 @@ final class TpsMonitor {
      */
     void updateMonitorConfig(TpsMonitorType monitorType, long maxTps) {
         this.monitorType = monitorType;
-        this.maxTps = maxTps;
+        updateMaxTps(maxTps);
     }
 
     /**
@@ -142,8 +258,12 @@ final class TpsMonitor {
     }
 
     //getter
-    List<TpsSlot> getSlotList() {
-        return slotList;
+
+    /**
+     * @return 精准模式下key -> 计数器, 模糊模式下为空
+     */
+    Map<String, SlidingWindowCounter> getCounterMap() {
+        return counterMap;
     }
 
     TpsModel getModel() {
@@ -162,99 +282,11 @@ final class TpsMonitor {
         return unit;
     }
 
-    //--------------------------------------------------------------------------------
-
-    /**
-     * 窗口槽位
-     */
-    static abstract class TpsSlot {
-        /** 窗口起始时间 */
-        protected long windowTime = 0L;
-
-        /**
-         * 获取tps计数器
-         */
-        abstract SlotCounter getCounter(String key);
-
-        /**
-         * 重置tps计数器
-         */
-        abstract void reset(long windowTime);
+    int getBucketNum() {
+        return bucketNum;
     }
 
-    /**
-     * 不区分key, 所有流入都计数,
-     */
-    static final class SingleTpsSlot extends TpsSlot {
-        /** 计数器 */
-        SlotCounter counter = new SlotCounter();
-
-        @Override
-        SlotCounter getCounter(String key) {
-            return counter;
-        }
-
-        @Override
-        synchronized void reset(long windowTime) {
-            if (this.windowTime == windowTime) {
-                return;
-            }
-            this.windowTime = windowTime;
-            counter.count.set(0L);
-            counter.interceptedCount.set(0);
-        }
-
-        @Override
-        public String toString() {
-            return "SingleTpsSlot{" +
-                    "windowTime=" + windowTime +
-                    ", counter=" + counter +
-                    "} " + super.toString();
-        }
-    }
-
-    static final class MultiTpsSlot extends TpsSlot {
-        /** 计数器 */
-        Map<String, SlotCounter> counterMap = new CopyOnWriteMap<>();
-
-        @Override
-        SlotCounter getCounter(String key) {
-            if (!counterMap.containsKey(key)) {
-                counterMap.putIfAbsent(key, new SlotCounter());
-            }
-            return counterMap.get(key);
-        }
-
-        @Override
-        synchronized void reset(long windowTime) {
-            if (this.windowTime == windowTime) {
-                return;
-            }
-            this.windowTime = windowTime;
-            counterMap = new CopyOnWriteMap<>();
-        }
-
-        @Override
-        public String toString() {
-            return "MultiTpsSlot{" +
-                    "windowTime=" + windowTime +
-                    ", counterMap=" + counterMap +
-                    "} " + super.toString();
-        }
-    }
-
-    /**
-     * tps计数器
-     */
-    static final class SlotCounter {
-        /** tps统计次数 */
-        final AtomicLong count = new AtomicLong();
-        /** tps limit拦截次数 */
-        final AtomicLong interceptedCount = new AtomicLong();
-
-        @Override
-        public String toString() {
-            return "{" + count + "|" + interceptedCount + '}';
-        }
+    long getBurst() {
+        return burst;
     }
 }
@@ -2,6 +2,7 @@ package org.kin.framework.csp;
 
 import org.kin.framework.utils.CollectionUtils;
 import org.kin.framework.utils.StringUtils;
+import org.kin.framework.utils.SysUtils;
 import org.kin.framework.utils.TimeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,15 +16,32 @@ import java.util.concurrent.TimeUnit;
  */
 final class TpsRule {
     private static final Logger log = LoggerFactory.getLogger(TpsRule.class);
+    /**
+     * 每个tps rule最多分配的key id数量, 即精准模式下以数组索引的计数器数量上限
+     * 超过上限的key不分配key id, 回退到以key hash查找计数器
+     */
+    static final int MAX_KEY_ID_NUM = SysUtils.getIntSysProperty("kin.tps.maxKeyIdNum", 1024);
+    /** 未分配key id */
+    static final int NO_KEY_ID = -1;
 
     /** tps rule开始生效时间 */
     private final long startTime;
     /** tps rule group name */
     private String group;
-    /** group级别的tps rule monitor */
-    private TpsMonitor tpsMonitor;
+    /** group级别的tps rule monitor, 时间单位, 模式, 子窗口数量或者burst变化时重新创建 */
+    private volatile TpsMonitor tpsMonitor;
     /** key -> 比group更细粒度的监控key, value -> tps monitor */
     private volatile Map<String, TpsMonitor> childMonitorMap = new HashMap<>();
+    /** 基于{@link #childMonitorMap}预编译的key匹配索引, 与{@link #childMonitorMap}同时更新 */
+    private volatile KeyMatcherIndex<Map.Entry<String, TpsMonitor>> childMonitorIndex = newChildMonitorIndex(childMonitorMap);
+    /** 配置版本, 每次应用配置后+1, {@link TpsRuleHandle}据此判断是否需要重新解析 */
+    private volatile int version;
+    /**
+     * key -> key id, 供{@link TpsMonitor#getCounter(int, String)}以数组索引计数器
+     * key id仅在创建{@link TpsRuleHandle}时分配, 最多{@link #MAX_KEY_ID_NUM}个, 不回收
+     * 对keyIdMap加锁访问
+     */
+    private final Map<String, Integer> keyIdMap = new HashMap<>();
 
     public TpsRule(TpsRuleGroupOptions groupOptions) {
         this.startTime = TimeUtils.trimMillsOfSecond(System.currentTimeMillis());
@@ -37,7 +55,22 @@ final class TpsRule {
      * stop所有细粒度的tps监控
      */
     private synchronized void stopAllChildMonitors() {
-        childMonitorMap = new HashMap<>(4);
+        updateChildMonitors(new HashMap<>(4));
+    }
+
+    /**
+     * 更新child monitor并重新构建key匹配索引
+     */
+    private void updateChildMonitors(Map<String, TpsMonitor> childMonitorMap) {
+        this.childMonitorIndex = newChildMonitorIndex(childMonitorMap);
+        this.childMonitorMap = childMonitorMap;
+    }
+
+    /**
+     * 构建child monitor key匹配索引
+     */
+    private static KeyMatcherIndex<Map.Entry<String, TpsMonitor>> newChildMonitorIndex(Map<String, TpsMonitor> childMonitorMap) {
+        return new KeyMatcherIndex<>(childMonitorMap.entrySet(), Map.Entry::getKey);
     }
 
     /**
@@ -45,73 +78,222 @@ final class TpsRule {
      */
     public boolean checkTps(List<String> keys) {
         long now = System.currentTimeMillis();
-        //获取group级别的window slot
-        TpsMonitor.TpsSlot tpsSlot = tpsMonitor.getAndResetTpsSlot(now);
+        //group级别的monitor和计数器
+        TpsMonitor groupMonitor = this.tpsMonitor;
+        SlidingWindowCounter groupCounter = groupMonitor.getCounter(group);
 
         //1. check keys
-        //通过tps的window slot
-        List<TpsMonitor.SlotCounter> passedSlots = new ArrayList<>();
+        //通过tps的计数器以及对应的child monitor
+        List<SlidingWindowCounter> passedCounters = new ArrayList<>();
+        List<TpsMonitor> passedMonitors = new ArrayList<>();
+        KeyMatcherIndex<Map.Entry<String, TpsMonitor>> childMonitorIndex = this.childMonitorIndex;
         for (String key : keys) {
-            //遍历所有child monitor
-            for (Map.Entry<String, TpsMonitor> entry : childMonitorMap.entrySet()) {
-                if (!StringUtils.match(entry.getKey(), key)) {
-                    //key匹配
-                    continue;
-                }
-
+            //遍历key匹配的child monitor
+            for (Map.Entry<String, TpsMonitor> entry : childMonitorIndex.match(key)) {
                 TpsMonitor tpsMonitor = entry.getValue();
-                //获取child monitor window slot
-                TpsMonitor.TpsSlot currentTps = tpsMonitor.getAndResetTpsSlot(now);
-                //child max tps
-                long maxTps = tpsMonitor.getMaxTps();
-                //tps count
-                TpsMonitor.SlotCounter counter = currentTps.getCounter(key);
+                //child monitor计数器
+                SlidingWindowCounter counter = tpsMonitor.getCounter(key);
                 //是否tps溢出
-                boolean overLimit = maxTps >= 0 && counter.count.longValue() >= maxTps;
+                boolean overLimit = tpsMonitor.isOverLimit(counter, now);
                 if (overLimit) {
-                    log.warn("tps over limit, group=`{}`, barrier=`{}`，monitorType=`{}`, maxTps=`{}`",
-                            group, entry.getKey(), tpsMonitor.getMonitorType(), maxTps + "/" + tpsMonitor.getUnit());
+                    logOverLimit(entry.getKey(), tpsMonitor);
                     if (tpsMonitor.isInterceptMode()) {
                         //child monitor若是intercept mode, 则直接返回false, 中断请求
-                        currentTps.getCounter(key).interceptedCount.incrementAndGet();
-                        tpsSlot.getCounter(key).interceptedCount.incrementAndGet();
+                        counter.intercept(now);
+                        groupCounter.intercept(now);
+                        refund(passedMonitors);
                         return false;
                     }
                 } else {
-                    passedSlots.add(counter);
+                    passedCounters.add(counter);
+                    passedMonitors.add(tpsMonitor);
                 }
             }
         }
 
         //2. check total tps
-        //group max tps
-        long maxTps = tpsMonitor.getMaxTps();
         //group级别是否tps溢出
-        boolean overLimit = maxTps >= 0 && tpsSlot.getCounter(group).count.longValue() >= maxTps;
+        boolean overLimit = groupMonitor.isOverLimit(groupCounter, now);
         if (overLimit) {
-            log.warn("tps over limit, group=`{}`, barrier=`{}`，monitorType=`{}`, maxTps=`{}`",
-                    group, "groupRule", tpsMonitor.getMonitorType(), maxTps + "/" + tpsMonitor.getUnit());
-            if (tpsMonitor.isInterceptMode()) {
+            logOverLimit("groupRule", groupMonitor);
+            if (groupMonitor.isInterceptMode()) {
                 //group monitor若是intercept mode, 则直接返回false, 中断请求
-                tpsSlot.getCounter(group).interceptedCount.incrementAndGet();
+                groupCounter.intercept(now);
+                refund(passedMonitors);
                 return false;
             }
         }
 
         //统计tps pass次数
-        tpsSlot.getCounter(group).count.incrementAndGet();
-        for (TpsMonitor.SlotCounter passedTpsSlot : passedSlots) {
-            passedTpsSlot.count.incrementAndGet();
+        groupCounter.pass(now);
+        for (SlidingWindowCounter passedCounter : passedCounters) {
+            passedCounter.pass(now);
         }
 
         //3. check pass
         return true;
     }
 
+    /**
+     * @return 每个key对应的key id
+     */
+    int[] keyIds(String[] keys) {
+        int[] keyIds = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keyIds[i] = keyId(keys[i]);
+        }
+        return keyIds;
+    }
+
+    /**
+     * @return {@code key}对应的key id, 不存在则分配, 已达到{@link #MAX_KEY_ID_NUM}上限则返回{@link #NO_KEY_ID}
+     */
+    int keyId(String key) {
+        synchronized (keyIdMap) {
+            Integer keyId = keyIdMap.get(key);
+            if (keyId != null) {
+                return keyId;
+            }
+            int size = keyIdMap.size();
+            if (size >= MAX_KEY_ID_NUM) {
+                return NO_KEY_ID;
+            }
+            keyIdMap.put(key, size);
+            return size;
+        }
+    }
+
+    /**
+     * 打印tps溢出日志, 避免warn日志未开启时仍然拼接参数
+     */
+    private void logOverLimit(String barrier, TpsMonitor tpsMonitor) {
+        if (log.isWarnEnabled()) {
+            log.warn("tps over limit, group=`{}`, barrier=`{}`，monitorType=`{}`, maxTps=`{}/{}`",
+                    group, barrier, tpsMonitor.getMonitorType(), tpsMonitor.getMaxTps(), tpsMonitor.getUnit());
+        }
+    }
+
+    /**
+     * 解析{@code keys}匹配的child monitor
+     */
+    ResolvedMonitors resolve(String[] keys) {
+        //先读取版本, 解析期间若配置变化, 下次调用会再次解析
+        int version = this.version;
+        KeyMatcherIndex<Map.Entry<String, TpsMonitor>> childMonitorIndex = this.childMonitorIndex;
+        List<TpsMonitor> monitors = new ArrayList<>();
+        List<String> barriers = new ArrayList<>();
+        List<Integer> keyIndexes = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            for (Map.Entry<String, TpsMonitor> entry : childMonitorIndex.match(keys[i])) {
+                monitors.add(entry.getValue());
+                barriers.add(entry.getKey());
+                keyIndexes.add(i);
+            }
+        }
+        return new ResolvedMonitors(version, monitors.toArray(new TpsMonitor[0]), barriers.toArray(new String[0]),
+                keyIndexes.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * 基于预解析的child monitor校验tps limit, 与{@link #checkTps(List)}逻辑一致, 但稳定状态下不分配对象
+     *
+     * @param keys   监控key
+     * @param keyIds 与{@code keys}一一对应的key id
+     */
+    boolean checkTps(ResolvedMonitors resolved, String[] keys, int[] keyIds) {
+        long now = System.currentTimeMillis();
+        //group级别的monitor和计数器
+        TpsMonitor groupMonitor = this.tpsMonitor;
+        SlidingWindowCounter groupCounter = groupMonitor.getCounter(group);
+
+        //1. check keys
+        TpsMonitor[] monitors = resolved.monitors;
+        int[] keyIndexes = resolved.keyIndexes;
+        //tps溢出的child monitor, 绝大部分场景匹配的child monitor不超过64个, 以bit标识, 否则才分配数组
+        long overLimitMask = 0;
+        boolean[] overLimitFlags = monitors.length > Long.SIZE ? new boolean[monitors.length] : null;
+        for (int i = 0; i < monitors.length; i++) {
+            TpsMonitor tpsMonitor = monitors[i];
+            int keyIndex = keyIndexes[i];
+            SlidingWindowCounter counter = tpsMonitor.getCounter(keyIds[keyIndex], keys[keyIndex]);
+            if (tpsMonitor.isOverLimit(counter, now)) {
+                logOverLimit(resolved.barriers[i], tpsMonitor);
+                if (tpsMonitor.isInterceptMode()) {
+                    //child monitor若是intercept mode, 则直接返回false, 中断请求
+                    counter.intercept(now);
+                    groupCounter.intercept(now);
+                    refund(monitors, i, overLimitMask, overLimitFlags);
+                    return false;
+                }
+                if (overLimitFlags == null) {
+                    overLimitMask |= 1L << i;
+                } else {
+                    overLimitFlags[i] = true;
+                }
+            }
+        }
+
+        //2. check total tps
+        if (groupMonitor.isOverLimit(groupCounter, now)) {
+            logOverLimit("groupRule", groupMonitor);
+            if (groupMonitor.isInterceptMode()) {
+                //group monitor若是intercept mode, 则直接返回false, 中断请求
+                groupCounter.intercept(now);
+                refund(monitors, monitors.length, overLimitMask, overLimitFlags);
+                return false;
+            }
+        }
+
+        //统计tps pass次数
+        groupCounter.pass(now);
+        for (int i = 0; i < monitors.length; i++) {
+            boolean overLimit = overLimitFlags == null ? (overLimitMask & (1L << i)) != 0 : overLimitFlags[i];
+            if (!overLimit) {
+                int keyIndex = keyIndexes[i];
+                monitors[i].getCounter(keyIds[keyIndex], keys[keyIndex]).pass(now);
+            }
+        }
+
+        //3. check pass
+        return true;
+    }
+
+    /**
+     * 请求被拦截, 归还已通过的child monitor消耗的permit
+     */
+    private static void refund(List<TpsMonitor> passedMonitors) {
+        for (TpsMonitor passedMonitor : passedMonitors) {
+            passedMonitor.refund();
+        }
+    }
+
+    /**
+     * 请求被拦截, 归还前{@code num}个未溢出的child monitor消耗的permit
+     */
+    private static void refund(TpsMonitor[] monitors, int num, long overLimitMask, boolean[] overLimitFlags) {
+        for (int i = 0; i < num; i++) {
+            boolean overLimit = overLimitFlags == null ? (overLimitMask & (1L << i)) != 0 : overLimitFlags[i];
+            if (!overLimit) {
+                monitors[i].refund();
+            }
+        }
+    }
+
     /**
      * 应用tps配置
      */
     public synchronized void applyOptions(TpsRuleGroupOptions groupOptions) {
+        try {
+            doApplyOptions(groupOptions);
+        } finally {
+            version++;
+        }
+    }
+
+    /**
+     * 应用tps配置
+     */
+    private void doApplyOptions(TpsRuleGroupOptions groupOptions) {
         //1. reset all tps monitor if null
         if (groupOptions == null) {
             log.debug("clear all tps monitor for group '{}'", group);
@@ -141,7 +323,7 @@ final class TpsRule {
             this.tpsMonitor.clear();
         } else {
             log.debug("update group tps monitor for group '{}', '{}'", group, groupRule);
-            this.tpsMonitor.updateMonitorConfig(groupRule.getMonitorType(), groupRule.getMaxTps());
+            this.tpsMonitor = updateMonitor(this.tpsMonitor, groupRule);
         }
 
         //4. check rest child rules
@@ -158,15 +340,8 @@ final class TpsRule {
                 TpsMonitor tpsMonitor;
                 if (this.childMonitorMap.containsKey(key)) {
                     //update rule
-                    tpsMonitor = this.childMonitorMap.get(key);
                     log.debug("update child tps monitor for group '{}' key '{}', '{}'", group, key, options);
-
-                    if (!Objects.equals(tpsMonitor.getUnit(), options.getUnit()) ||
-                            !Objects.equals(tpsMonitor.getModel(), options.getModel())) {
-                        tpsMonitor = new TpsMonitor(startTime, options);
-                    } else {
-                        tpsMonitor.updateMonitorConfig(options.getMonitorType(), options.getMaxTps());
-                    }
+                    tpsMonitor = updateMonitor(this.childMonitorMap.get(key), options);
                 } else {
                     //add rule
                     log.debug("add child tps monitor for group '{}' key '{}', '{}'", group, key, options);
@@ -183,11 +358,32 @@ final class TpsRule {
                 log.debug("delete child tps monitor for group '{}' key '{}'", group, key);
             }
 
-            this.childMonitorMap = newChildMonitorMap;
+            updateChildMonitors(newChildMonitorMap);
+        }
+    }
+
+    /**
+     * 应用{@code options}到{@code tpsMonitor}
+     * 时间单位, 模式, 子窗口数量或者burst变化时, 需重新创建monitor, 否则仅更新监控类型和tps上限
+     *
+     * @return 应用配置后的monitor
+     */
+    private TpsMonitor updateMonitor(TpsMonitor tpsMonitor, TpsRuleOptions options) {
+        if (!Objects.equals(tpsMonitor.getUnit(), options.getUnit()) ||
+                !Objects.equals(tpsMonitor.getModel(), options.getModel()) ||
+                tpsMonitor.getBucketNum() != options.getBucketNum() ||
+                tpsMonitor.getBurst() != options.getBurst()) {
+            return new TpsMonitor(startTime, options);
         }
+        tpsMonitor.updateMonitorConfig(options.getMonitorType(), options.getMaxTps());
+        return tpsMonitor;
     }
 
     //getter
+    int getVersion() {
+        return version;
+    }
+
     TpsMonitor getTpsMonitor() {
         return tpsMonitor;
     }
@@ -195,4 +391,32 @@ final class TpsRule {
     Map<String, TpsMonitor> getChildMonitorMap() {
         return childMonitorMap;
     }
+
+    //------------------------------------------------------------------------------------------------------------inner class
+
+    /**
+     * {@link TpsRuleHandle}预解析的child monitor
+     */
+    static final class ResolvedMonitors {
+        /** 解析时的配置版本 */
+        private final int version;
+        /** keys匹配的child monitor */
+        private final TpsMonitor[] monitors;
+        /** child monitor对应的key pattern, 仅用于日志 */
+        private final String[] barriers;
+        /** child monitor对应的key下标 */
+        private final int[] keyIndexes;
+
+        ResolvedMonitors(int version, TpsMonitor[] monitors, String[] barriers, int[] keyIndexes) {
+            this.version = version;
+            this.monitors = monitors;
+            this.barriers = barriers;
+            this.keyIndexes = keyIndexes;
+        }
+
+        //getter
+        int getVersion() {
+            return version;
+        }
+    }
 }
@@ -0,0 +1,85 @@
+package org.kin.framework.csp;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 预解析的tps rule入口, 通过{@link TpsRuleManager#handle(String, String...)}创建
+ * <p>
+ * 创建时一次性解析group对应的{@link TpsRule}以及keys匹配的child monitor, 并为每个key分配key id,
+ * 精准模式下的key计数器以key id索引数组存储. 故{@link #tryEntry()}无需匹配key pattern, 也无需hash查找计数器,
+ * 稳定状态下不分配任何对象.
+ * tps rule配置变化后, 首次调用{@link #tryEntry()}会重新解析.
+ * <p>
+ * 实例线程安全, 应缓存并复用, 而不是每次请求都创建.
+ * handle适用于固定, 预先声明的key集合(比如接口名), 不适用于用户id等动态key. key id分配后不回收,
+ * 每个group最多分配{@code kin.tps.maxKeyIdNum}(默认1024)个key id, 超过上限的key回退到以key hash查找计数器,
+ * 动态key应直接使用{@link TpsRuleManager#entry(String, List)}
+ *
+ * @author huangjianqin
+ * @date 2023/7/29
+ */
+public final class TpsRuleHandle {
+    /** tps rule管理 */
+    private final TpsRuleManager manager;
+    /** tps rule group name */
+    private final String group;
+    /** 监控key */
+    private final String[] keys;
+    /** key id, 与{@link #keys}一一对应, 解析到{@link TpsRule}后才赋值 */
+    private volatile int[] keyIds;
+    /** 解析到的tps rule */
+    private volatile TpsRule rule;
+    /** 解析结果 */
+    private volatile TpsRule.ResolvedMonitors resolved;
+
+    TpsRuleHandle(TpsRuleManager manager, String group, String[] keys) {
+        this.manager = manager;
+        this.group = group;
+        this.keys = keys;
+    }
+
+    /**
+     * check tps
+     *
+     * @return true表示通过
+     */
+    public boolean tryEntry() {
+        TpsRule rule = this.rule;
+        if (rule == null) {
+            //group未注册tps rule
+            rule = manager.getRule(group);
+            if (rule == null) {
+                return true;
+            }
+            this.keyIds = rule.keyIds(keys);
+            this.rule = rule;
+        }
+
+        TpsRule.ResolvedMonitors resolved = this.resolved;
+        if (resolved == null || resolved.getVersion() != rule.getVersion()) {
+            //首次调用或者配置已变化
+            resolved = rule.resolve(keys);
+            this.resolved = resolved;
+        }
+        return rule.checkTps(resolved, keys, keyIds);
+    }
+
+    //getter
+    public String getGroup() {
+        return group;
+    }
+
+    public List<String> getKeys() {
+        return Collections.unmodifiableList(Arrays.asList(keys));
+    }
+
+    @Override
+    public String toString() {
+        return "TpsRuleHandle{" +
+                "group='" + group + '\'' +
+                ", keys=" + Arrays.toString(keys) +
+                '}';
+    }
+}
@@ -4,14 +4,12 @@ import org.kin.framework.Closeable;
 import org.kin.framework.collection.CopyOnWriteMap;
 import org.kin.framework.concurrent.SimpleThreadFactory;
 import org.kin.framework.concurrent.ThreadPoolUtils;
-import org.kin.framework.utils.TimeUtils;
+import org.kin.framework.utils.SysUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -36,6 +34,8 @@ public final class TpsRuleManager implements Closeable {
 
     /** key -> group , value -> tps rule 定义  */
     public Map<String, TpsRule> ruleMap = new CopyOnWriteMap<>();
+    /** tps监控统计输出 */
+    private final List<TpsMetricSink> sinks = new CopyOnWriteArrayList<>();
 
     private TpsRuleManager() {
         scheduler = ThreadPoolUtils.scheduledThreadPoolBuilder()
@@ -44,9 +44,26 @@ public final class TpsRuleManager implements Closeable {
                 .metric()
                 .threadFactory(new SimpleThreadFactory("tpsRuleManager-scheduler", true))
                 .build();
+        if (SysUtils.getBoolSysProperty("kin.framework.tps.report.log", true)) {
+            sinks.add(new LoggingTpsMetricSink());
+        }
         scheduler.scheduleWithFixedDelay(new TpsMonitorReporter(), 900, 900, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * 注册tps监控统计输出
+     */
+    public void addMetricSink(TpsMetricSink sink) {
+        sinks.add(sink);
+    }
+
+    /**
+     * 移除tps监控统计输出
+     */
+    public void removeMetricSink(TpsMetricSink sink) {
+        sinks.remove(sink);
+    }
+
     /**
      * 创建新的tsp rule
      */
@@ -78,6 +95,24 @@ public final class TpsRuleManager implements Closeable {
         return true;
     }
 
+    /**
+     * 创建预解析的tps rule入口, 应缓存并复用
+     * 仅适用于固定, 预先声明的key集合, 详见{@link TpsRuleHandle}
+     *
+     * @param group tps rule group name
+     * @param keys  监控key
+     */
+    public TpsRuleHandle handle(String group, String... keys) {
+        return new TpsRuleHandle(this, group, keys.clone());
+    }
+
+    /**
+     * @return group对应的tps rule
+     */
+    TpsRule getRule(String group) {
+        return ruleMap.get(group);
+    }
+
     @Override
     public void close() {
         scheduler.shutdown();
@@ -85,111 +120,92 @@ public final class TpsRuleManager implements Closeable {
 
     //--------------------------------------------------------------------
     /**
-     * 打印tps rule信息
+     * 收集tps rule上一个窗口的统计, 并输出到{@link #sinks}
      */
     private final class TpsMonitorReporter implements Runnable {
-        /** 上次打印秒钟数 */
-        private long lastReportSecond = 0L;
-        /** 上次打印分钟数 */
-        private long lastReportMinutes = 0L;
+        /** 复用的快照 */
+        private final TpsSnapshot snapshot = new TpsSnapshot();
 
         @Override
         public void run() {
             try {
-                StringBuilder stringBuilder = new StringBuilder();
-
                 long now = System.currentTimeMillis();
-                Set<Map.Entry<String, TpsRule>> entries = ruleMap.entrySet();
-
-                long tempSecond = 0L;
-                long tempMinutes = 0L;
-
-                //遍历所有tps rule
-                for (Map.Entry<String, TpsRule> ruleEntry : entries) {
-                    TpsRule rule = ruleEntry.getValue();
-                    //获取上一秒window
-                    TpsMonitor groupTpsMonitor = rule.getTpsMonitor();
-                    TpsMonitor.TpsSlot slot = groupTpsMonitor.getTpsSlot(now - 1000L);
-                    if (slot == null) {
-                        continue;
+                //移除长时间没有流量的key计数器, 没有sink也需执行
+                for (TpsRule rule : ruleMap.values()) {
+                    for (TpsMonitor monitor : rule.getChildMonitorMap().values()) {
+                        monitor.expire(now);
+                    }
+                }
+
+                if (sinks.isEmpty()) {
+                    return;
+                }
+
+                snapshot.reset(now);
+                collect(now);
+                if (snapshot.isEmpty()) {
+                    return;
+                }
+
+                for (TpsMetricSink sink : sinks) {
+                    try {
+                        sink.report(snapshot);
+                    } catch (Throwable throwable) {
+                        log.debug("tps metric sink '{}' report error", sink, throwable);
                     }
+                }
+            } catch (Throwable throwable) {
+                log.debug("tps report error", throwable);
+            }
+        }
 
-                    if (lastReportSecond != 0L && lastReportSecond == slot.windowTime) {
+        /**
+         * 收集上一个窗口内有计数的计数器统计, 每个{@link TpsMonitor}的每个窗口仅收集一次
+         */
+        private void collect(long now) {
+            //遍历所有tps rule
+            for (Map.Entry<String, TpsRule> ruleEntry : ruleMap.entrySet()) {
+                TpsRule rule = ruleEntry.getValue();
+                String group = ruleEntry.getKey();
+                //获取上一window
+                TpsMonitor groupTpsMonitor = rule.getTpsMonitor();
+                long windowTime = groupTpsMonitor.windowStart(now - groupTpsMonitor.getUnit().toMillis(1));
+                if (groupTpsMonitor.markReported(windowTime)) {
+                    SlidingWindowCounter.WindowStat stat = groupTpsMonitor.getCounter(group).windowStat(windowTime);
+                    if (!stat.isEmpty()) {
+                        snapshot.add(group, null, null, groupTpsMonitor.getUnit(), windowTime, stat);
+                    }
+                }
+
+                //遍历其所有child tps rule
+                for (Map.Entry<String, TpsMonitor> childEntry : rule.getChildMonitorMap().entrySet()) {
+                    String key = childEntry.getKey();
+                    TpsMonitor monitor = childEntry.getValue();
+
+                    //获取上一window
+                    long childWindowTime = monitor.windowStart(now - monitor.getUnit().toMillis(1));
+                    if (!monitor.markReported(childWindowTime)) {
                         //已经打印过了
                         continue;
                     }
 
-                    String group = ruleEntry.getKey();
-                    tempSecond = slot.windowTime;
-
-                    //{group name}|group|time unit|last second window time|count|intercepted count
-                    String separator = "|";
-                    String timeFormatOfSecond = TimeUtils.formatDateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(now - 1000L), ZoneId.systemDefault()));
-                    stringBuilder.append(group).append(separator).append("group").append(separator).append(groupTpsMonitor.getUnit())
-                            .append(separator).append(timeFormatOfSecond).append(separator)
-                            .append(slot.getCounter(group).count.get()).append(separator)
-                            .append(slot.getCounter(group).interceptedCount.get()).append(System.lineSeparator());
-
-                    //遍历其所有child tps rule
-                    for (Map.Entry<String, TpsMonitor> childEntry : rule.getChildMonitorMap().entrySet()) {
-                        String key = childEntry.getKey();
-                        TpsMonitor monitor = childEntry.getValue();
-
-                        //获取上一window
-                        TpsMonitor.TpsSlot tpsSlot = monitor.getTpsSlot(now - monitor.getUnit().toMillis(1));
-                        if (tpsSlot == null) {
-                            continue;
-                        }
-
-                        if (monitor.getUnit() == TimeUnit.SECONDS) {
-                            if (lastReportSecond != 0L && lastReportSecond == tpsSlot.windowTime) {
-                                //已经打印过了
-                                continue;
-                            }
-                        }
-                        if (monitor.getUnit() == TimeUnit.MINUTES) {
-                            if (lastReportMinutes != 0L && lastReportMinutes == tpsSlot.windowTime) {
-                                //已经打印过了
+                    if (monitor.isProtoModel()) {
+                        //精准模式, 每一个key的tps信息
+                        for (Map.Entry<String, SlidingWindowCounter> counterEntry : monitor.getCounterMap().entrySet()) {
+                            SlidingWindowCounter.WindowStat childStat = counterEntry.getValue().windowStat(childWindowTime);
+                            if (childStat.isEmpty()) {
                                 continue;
                             }
+                            snapshot.add(group, key, counterEntry.getKey(), monitor.getUnit(), childWindowTime, childStat);
                         }
-
-                        //{group name}|key|time unit|child window time|count|intercepted count
-                        timeFormatOfSecond = TimeUtils.formatDateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(tpsSlot.windowTime), ZoneId.systemDefault()));
-                        tempMinutes = tpsSlot.windowTime;
-                        if (monitor.isProtoModel()) {
-                            //精准模式, 打印每一个key的tps信息
-                            Map<String, TpsMonitor.SlotCounter> childTpsSlots = ((TpsMonitor.MultiTpsSlot) tpsSlot).counterMap;
-                            for (Map.Entry<String, TpsMonitor.SlotCounter> counterEntry : childTpsSlots.entrySet()) {
-                                stringBuilder.append(group).append(separator).append(key).append(separator)
-                                        .append(monitor.getUnit()).append(separator).append(timeFormatOfSecond).append(separator)
-                                        .append(counterEntry.getKey()).append(separator)
-                                        .append(counterEntry.getValue().count).append(separator)
-                                        .append(counterEntry.getValue().interceptedCount).append(System.lineSeparator());
-                            }
-                        } else {
-                            stringBuilder.append(group).append(separator).append(key).append(separator)
-                                    .append(monitor.getUnit()).append(separator).append(timeFormatOfSecond).append(separator)
-                                    .append(tpsSlot.getCounter(group).count.get()).append(separator)
-                                    .append(tpsSlot.getCounter(group).interceptedCount.get()).append(System.lineSeparator());
+                    } else {
+                        SlidingWindowCounter.WindowStat childStat = monitor.getCounter(group).windowStat(childWindowTime);
+                        if (childStat.isEmpty()) {
+                            continue;
                         }
+                        snapshot.add(group, key, null, monitor.getUnit(), childWindowTime, childStat);
                     }
                 }
-
-                //更新打印时间
-                if (tempSecond > 0) {
-                    lastReportSecond = tempSecond;
-                }
-
-                if (tempMinutes > 0) {
-                    lastReportMinutes = tempMinutes;
-                }
-
-                if (stringBuilder.length() > 0) {
-                    log.debug("tps reporting... ".concat(System.lineSeparator()).concat(stringBuilder.toString()));
-                }
-            } catch (Throwable throwable) {
-                log.debug("tps report error", throwable);
             }
         }
     }
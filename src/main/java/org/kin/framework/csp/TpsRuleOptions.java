@@ -16,6 +16,10 @@ public final class TpsRuleOptions {
     private  TpsModel model = TpsModel.FUZZY;
     /** tps rule 监控模式 */
     private TpsMonitorType monitorType = TpsMonitorType.MONITOR;
+    /** 滑动窗口的子窗口数量, 比如时间单位为秒, 子窗口数量为10, 则每个子窗口为100ms */
+    private int bucketNum = SlidingWindowCounter.DEFAULT_BUCKET_NUM;
+    /** {@link TpsModel#TOKEN_BUCKET}模式下最多允许瞬间通过的请求数, 小于等于0则取{@link #maxTps} */
+    private long burst = -1;
 
     private TpsRuleOptions() {
     }
@@ -37,6 +41,14 @@ public final class TpsRuleOptions {
         return monitorType;
     }
 
+    public int getBucketNum() {
+        return bucketNum;
+    }
+
+    public long getBurst() {
+        return burst;
+    }
+
     @Override
     public String toString() {
         return "TpsRuleOptions{" +
@@ -44,6 +56,8 @@ public final class TpsRuleOptions {
                 ", unit=" + unit +
                 ", model=" + model +
                 ", monitorType=" + monitorType +
+                ", bucketNum=" + bucketNum +
+                ", burst=" + burst +
                 '}';
     }
 
@@ -76,6 +90,19 @@ public final class TpsRuleOptions {
             return this;
         }
 
+        public Builder bucketNum(int bucketNum) {
+            if (bucketNum <= 0) {
+                throw new IllegalArgumentException("bucketNum must be greater than 0");
+            }
+            tpsRuleOptions.bucketNum = bucketNum;
+            return this;
+        }
+
+        public Builder burst(long burst) {
+            tpsRuleOptions.burst = burst;
+            return this;
+        }
+
         public TpsRuleOptions build() {
             return tpsRuleOptions;
         }
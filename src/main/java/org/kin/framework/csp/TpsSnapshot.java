@@ -0,0 +1,144 @@
+package org.kin.framework.csp;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * tps监控统计快照, 以列式存储, 每一行对应一个计数器在上一个窗口的统计
+ * <p>
+ * 仅包含上一个窗口内有计数变化的计数器.
+ * 实例由reporter复用, 仅在{@link TpsMetricSink#report(TpsSnapshot)}调用期间有效, sink不应持有
+ *
+ * @author huangjianqin
+ * @date 2023/7/30
+ */
+public final class TpsSnapshot {
+    /** 初始容量 */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** 快照时间 */
+    private long timestamp;
+    /** 行数 */
+    private int size;
+    /** tps rule group name */
+    private String[] groups = new String[INITIAL_CAPACITY];
+    /** child rule key pattern, group级别为null */
+    private String[] keys = new String[INITIAL_CAPACITY];
+    /** 精准模式下的监控key, 否则为null */
+    private String[] protoKeys = new String[INITIAL_CAPACITY];
+    /** tps window时间单位 */
+    private TimeUnit[] units = new TimeUnit[INITIAL_CAPACITY];
+    /** 窗口起始时间 */
+    private long[] windowStarts = new long[INITIAL_CAPACITY];
+    /** 通过计数 */
+    private long[] counts = new long[INITIAL_CAPACITY];
+    /** 拦截计数 */
+    private long[] interceptedCounts = new long[INITIAL_CAPACITY];
+
+    TpsSnapshot() {
+    }
+
+    /**
+     * 重置快照, 复用已分配的列
+     */
+    void reset(long timestamp) {
+        //释放引用
+        Arrays.fill(groups, 0, size, null);
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(protoKeys, 0, size, null);
+        Arrays.fill(units, 0, size, null);
+        this.timestamp = timestamp;
+        this.size = 0;
+    }
+
+    /**
+     * 添加一行
+     */
+    void add(String group, String key, String protoKey, TimeUnit unit, long windowStart,
+             SlidingWindowCounter.WindowStat stat) {
+        if (size == groups.length) {
+            int newCapacity = size << 1;
+            groups = Arrays.copyOf(groups, newCapacity);
+            keys = Arrays.copyOf(keys, newCapacity);
+            protoKeys = Arrays.copyOf(protoKeys, newCapacity);
+            units = Arrays.copyOf(units, newCapacity);
+            windowStarts = Arrays.copyOf(windowStarts, newCapacity);
+            counts = Arrays.copyOf(counts, newCapacity);
+            interceptedCounts = Arrays.copyOf(interceptedCounts, newCapacity);
+        }
+        groups[size] = group;
+        keys[size] = key;
+        protoKeys[size] = protoKey;
+        units[size] = unit;
+        windowStarts[size] = windowStart;
+        counts[size] = stat.count;
+        interceptedCounts[size] = stat.interceptedCount;
+        size++;
+    }
+
+    /**
+     * @return 是否没有任何行
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return 行数
+     */
+    public int size() {
+        return size;
+    }
+
+    //getter
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getGroup(int row) {
+        checkRow(row);
+        return groups[row];
+    }
+
+    /**
+     * @return child rule key pattern, group级别为null
+     */
+    public String getKey(int row) {
+        checkRow(row);
+        return keys[row];
+    }
+
+    /**
+     * @return 精准模式下的监控key, 否则为null
+     */
+    public String getProtoKey(int row) {
+        checkRow(row);
+        return protoKeys[row];
+    }
+
+    public TimeUnit getUnit(int row) {
+        checkRow(row);
+        return units[row];
+    }
+
+    public long getWindowStart(int row) {
+        checkRow(row);
+        return windowStarts[row];
+    }
+
+    public long getCount(int row) {
+        checkRow(row);
+        return counts[row];
+    }
+
+    public long getInterceptedCount(int row) {
+        checkRow(row);
+        return interceptedCounts[row];
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row: " + row + ", size: " + size);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.kin.framework.csp;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 基于TCP Vegas的并发限制
+ * 以最小rtt作为无负载rtt, 估算排队长度 = limit * (1 - 无负载rtt / rtt),
+ * 排队长度较小时快速增长, 较大时缩减, 阈值均为log10(limit)的倍数.
+ * <p>
+ * 最小rtt只降不升, 持续过载时所有样本都偏大, 无法据此判断下游延迟是否整体变化,
+ * 故每隔若干窗口探测一次: 将并发限制降至较小值, 并以之后低负载下的rtt重新确定无负载rtt
+ *
+ * @author huangjianqin
+ * @date 2023/7/28
+ */
+final class VegasConcurrencyLimit extends AbstractConcurrencyLimit {
+    /** 探测间隔倍数, 即每{@code PROBE_MULTIPLIER * limit}个窗口探测一次 */
+    private static final int PROBE_MULTIPLIER = 30;
+
+    /** 平滑系数 */
+    private final double smoothing;
+    /** 无负载rtt(纳秒), 即最小rtt */
+    private long noLoadRtt = Long.MAX_VALUE;
+    /** 距离下次探测的窗口数 */
+    private long probeCountdown;
+
+    VegasConcurrencyLimit(ConcurrencyLimitOptions options) {
+        super(options);
+        this.smoothing = options.getSmoothing();
+        this.probeCountdown = nextProbeCountdown(options.getInitialLimit());
+    }
+
+    /**
+     * 下次探测前的窗口数, 带随机抖动, 避免多个实例同时探测
+     */
+    private static long nextProbeCountdown(double limit) {
+        return (long) (PROBE_MULTIPLIER * limit * (1 + ThreadLocalRandom.current().nextDouble() * 0.5));
+    }
+
+    @Override
+    protected double update(double limit, long rttNanos, int inFlight, boolean dropped) {
+        rttNanos = Math.max(1, rttNanos);
+        int log10 = Math.max(1, (int) Math.log10(limit));
+        if (--probeCountdown <= 0) {
+            //探测, 以下一窗口rtt为准重新确定无负载rtt
+            probeCountdown = nextProbeCountdown(limit);
+            noLoadRtt = Long.MAX_VALUE;
+            return Math.max(minLimit, 3 * log10);
+        }
+        if (rttNanos < noLoadRtt) {
+            noLoadRtt = rttNanos;
+            return limit;
+        }
+
+        double newLimit;
+        if (dropped) {
+            newLimit = limit - log10;
+        } else if (inFlight * 2 < limit) {
+            //并发数远未达到并发限制, 样本无法反映排队情况
+            return limit;
+        } else {
+            double queueSize = Math.ceil(limit * (1 - (double) noLoadRtt / rttNanos));
+            if (queueSize <= log10) {
+                newLimit = limit + 6 * log10;
+            } else if (queueSize < 3 * log10) {
+                newLimit = limit + log10;
+            } else if (queueSize > 6 * log10) {
+                newLimit = limit - log10;
+            } else {
+                return limit;
+            }
+        }
+
+        newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        return (1 - smoothing) * limit + smoothing * newLimit;
+    }
+}
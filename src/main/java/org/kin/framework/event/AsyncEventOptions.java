@@ -0,0 +1,91 @@
+package org.kin.framework.event;
+
+/**
+ * {@link DefaultEventBus}异步投递配置
+ *
+ * @author huangjianqin
+ * @date 2023/8/2
+ */
+public final class AsyncEventOptions {
+    /** 投递模式 */
+    private EventDeliveryMode mode = EventDeliveryMode.PER_EVENT_TYPE;
+    /** 每个队列的容量 */
+    private int queueCapacity = 65536;
+    /** worker每次从队列最多处理的事件数, 处理完后让出worker, 避免其余队列饥饿 */
+    private int batchSize = 256;
+    /** 队列已满时的处理策略 */
+    private BackpressureStrategy backpressure = BackpressureStrategy.BLOCK;
+
+    private AsyncEventOptions() {
+    }
+
+    //getter
+    public EventDeliveryMode getMode() {
+        return mode;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public BackpressureStrategy getBackpressure() {
+        return backpressure;
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncEventOptions{" +
+                "mode=" + mode +
+                ", queueCapacity=" + queueCapacity +
+                ", batchSize=" + batchSize +
+                ", backpressure=" + backpressure +
+                '}';
+    }
+
+    //------------------------------------------builder
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** builder **/
+    public static class Builder {
+        private final AsyncEventOptions options = new AsyncEventOptions();
+
+        public Builder mode(EventDeliveryMode mode) {
+            options.mode = mode;
+            return this;
+        }
+
+        public Builder queueCapacity(int queueCapacity) {
+            options.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            options.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder backpressure(BackpressureStrategy backpressure) {
+            options.backpressure = backpressure;
+            return this;
+        }
+
+        public AsyncEventOptions build() {
+            if (!options.mode.isAsync()) {
+                throw new IllegalArgumentException("mode must be async");
+            }
+            if (options.queueCapacity <= 0) {
+                throw new IllegalArgumentException("queueCapacity must be greater than 0");
+            }
+            if (options.batchSize <= 0) {
+                throw new IllegalArgumentException("batchSize must be greater than 0");
+            }
+            return options;
+        }
+    }
+}
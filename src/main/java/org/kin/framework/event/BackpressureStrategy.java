@@ -0,0 +1,16 @@
+package org.kin.framework.event;
+
+/**
+ * 异步投递模式下, 事件队列已满时的处理策略
+ *
+ * @author huangjianqin
+ * @date 2023/8/2
+ */
+public enum BackpressureStrategy {
+    /** 阻塞投递线程直到队列有空闲位置, 若投递线程正是该队列的消费线程, 则退化为{@link #CALLER_RUNS} */
+    BLOCK,
+    /** 丢弃事件 */
+    DROP,
+    /** 在投递线程直接处理事件, 该事件与队列中的事件不保证顺序 */
+    CALLER_RUNS,
+}
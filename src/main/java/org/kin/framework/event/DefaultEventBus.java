@@ -7,6 +7,7 @@ import org.kin.framework.proxy.MethodDefinition;
 import org.kin.framework.proxy.ProxyInvoker;
 import org.kin.framework.proxy.Proxys;
 import org.kin.framework.utils.ClassUtils;
+import org.kin.framework.utils.OrderedUtils;
 import org.kin.framework.utils.SysUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,17 +15,25 @@ import org.slf4j.LoggerFactory;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.Collection;
-import java.util.Map;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * 事件总线
  * 不保证事件注册的实时性
  * <p>
  * 事件类, 目前事件类最好比较native, 也就是不带泛型的, 也最好不是集合类, 数组等等
+ * <p>
+ * 支持多态分派, 即注册到父类或者接口的{@link EventHandler}也会处理子类事件.
+ * 每个事件类只会遍历一次类层次结构, 匹配的{@link EventHandler}按{@link org.kin.framework.common.Ordered}排序后缓存于{@link ClassValue},
+ * 注册新的{@link EventHandler}后缓存失效
+ * <p>
+ * 默认同步投递, 即在{@link #post(Object)}调用线程执行{@link EventHandler}.
+ * 通过{@link #createAsync(AsyncEventOptions)}创建的实例异步投递, {@link #post(Object)}仅将事件放入{@link EventMailbox}即返回,
+ * 由worker线程批量处理, 详见{@link EventDeliveryMode}和{@link BackpressureStrategy}
  *
  * @author 健勤
  * @date 2017/8/8
@@ -34,11 +43,19 @@ public final class DefaultEventBus implements EventBus {
     private static final Logger log = LoggerFactory.getLogger(DefaultEventBus.class);
     /** 默认worker name */
     private static final String DEFAULT_WORKER_NAME = "defaultEventBus";
+    /** 异步投递模式下, shutdown等待worker处理完已提交任务的超时时间 */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
 
     /** key -> event class, value -> event handler */
     private final Map<Class<?>, EventHandler<?>> event2Handler = new NonBlockingHashMap<>();
+    /** 事件类 -> 该事件类及其父类, 接口注册的event handler, 注册新的event handler时整体替换 */
+    private volatile ClassValue<EventHandler[]> dispatchCache = newDispatchCache();
     /** 调度线程 */
     private final ExecutionContext scheduler;
+    /** 异步投递配置, 同步投递则为null */
+    private final AsyncEventOptions asyncOptions;
+    /** key -> event class或者event handler, value -> 异步投递的事件队列 */
+    private final Map<Object, EventMailbox> mailboxes = new ConcurrentHashMap<>();
     /** event bus是否已stopped */
     private volatile boolean stopped;
 
@@ -62,8 +79,35 @@ public final class DefaultEventBus implements EventBus {
         return new DefaultEventBus(ExecutionContext.fix(parallelism, workerName, scheduleParallelism));
     }
 
+    /**
+     * 创建异步投递的event bus
+     */
+    public static DefaultEventBus createAsync(AsyncEventOptions options) {
+        return createAsync(SysUtils.CPU_NUM, options);
+    }
+
+    /**
+     * 创建异步投递的event bus
+     */
+    public static DefaultEventBus createAsync(int parallelism, AsyncEventOptions options) {
+        return createAsync(parallelism, 0, DEFAULT_WORKER_NAME, options);
+    }
+
+    /**
+     * 创建异步投递的event bus
+     */
+    public static DefaultEventBus createAsync(int parallelism, int scheduleParallelism, String workerName, AsyncEventOptions options) {
+        Preconditions.checkNotNull(options, "async options must be not null");
+        return new DefaultEventBus(ExecutionContext.fix(parallelism, workerName, scheduleParallelism), options);
+    }
+
     private DefaultEventBus(ExecutionContext scheduler) {
+        this(scheduler, null);
+    }
+
+    private DefaultEventBus(ExecutionContext scheduler, AsyncEventOptions asyncOptions) {
         this.scheduler = scheduler;
+        this.asyncOptions = asyncOptions;
     }
 
     @Override
@@ -118,6 +162,18 @@ public final class DefaultEventBus implements EventBus {
      * 注册event class及其对应的{@link EventHandler}实现
      */
     private void registerEventHandler(Class<?> eventType, EventHandler eventHandler) {
+        try {
+            doRegisterEventHandler(eventType, eventHandler);
+        } finally {
+            //缓存失效
+            dispatchCache = newDispatchCache();
+        }
+    }
+
+    /**
+     * 注册event class及其对应的{@link EventHandler}实现
+     */
+    private synchronized void doRegisterEventHandler(Class<?> eventType, EventHandler eventHandler) {
         EventHandler<?> registered = event2Handler.get(eventType);
         if (registered == null) {
             event2Handler.put(eventType, eventHandler);
@@ -224,6 +280,58 @@ public final class DefaultEventBus implements EventBus {
         return Proxys.adaptive().enhanceMethod(new MethodDefinition<>(obj, method));
     }
 
+    /**
+     * 创建事件类 -> event handler缓存
+     */
+    private ClassValue<EventHandler[]> newDispatchCache() {
+        return new ClassValue<EventHandler[]>() {
+            @Override
+            protected EventHandler[] computeValue(Class<?> type) {
+                return resolveEventHandlers(type);
+            }
+        };
+    }
+
+    /**
+     * 遍历事件类的类层次结构, 解析所有匹配的event handler
+     *
+     * @param eventType 事件类型
+     * @return 按{@link org.kin.framework.common.Ordered}排序的event handler, order相同时, 越具体的事件类型越靠前
+     */
+    private EventHandler[] resolveEventHandlers(Class<?> eventType) {
+        List<EventHandler<?>> eventHandlers = new ArrayList<>();
+        for (Class<?> type : flattenHierarchy(eventType)) {
+            EventHandler<?> eventHandler = event2Handler.get(type);
+            if (eventHandler instanceof MultiEventHandlers) {
+                eventHandlers.addAll(((MultiEventHandlers<?>) eventHandler).getHandlers());
+            } else if (eventHandler != null) {
+                eventHandlers.add(eventHandler);
+            }
+        }
+        //稳定排序
+        OrderedUtils.sort(eventHandlers);
+        return eventHandlers.toArray(new EventHandler[0]);
+    }
+
+    /**
+     * @return 事件类及其所有父类和接口, 先父类链, 再按广度优先遍历接口
+     */
+    private static Set<Class<?>> flattenHierarchy(Class<?> eventType) {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        for (Class<?> type = eventType; type != null; type = type.getSuperclass()) {
+            types.add(type);
+        }
+        Deque<Class<?>> queue = new ArrayDeque<>(types);
+        while (!queue.isEmpty()) {
+            for (Class<?> interfaceType : queue.poll().getInterfaces()) {
+                if (types.add(interfaceType)) {
+                    queue.add(interfaceType);
+                }
+            }
+        }
+        return types;
+    }
+
     /**
      * 分派事件逻辑
      *
@@ -231,18 +339,71 @@ public final class DefaultEventBus implements EventBus {
      * @param event     事件实例
      */
     private void doPost(Class<?> eventType, Object event) {
-        EventHandler eventHandler = event2Handler.get(eventType);
-        if (eventHandler != null) {
+        EventHandler[] eventHandlers = getEventHandlers(eventType);
+        if (asyncOptions == null) {
+            dispatch(eventHandlers, event);
+        } else if (EventDeliveryMode.PER_EVENT_TYPE.equals(asyncOptions.getMode())) {
+            mailbox(eventType).offer(event);
+        } else {
+            for (EventHandler eventHandler : eventHandlers) {
+                mailbox(eventHandler).offer(event);
+            }
+        }
+    }
+
+    /**
+     * @return 处理{@code eventType}的所有event handler
+     */
+    private EventHandler[] getEventHandlers(Class<?> eventType) {
+        EventHandler[] eventHandlers = dispatchCache.get(eventType);
+        if (eventHandlers.length == 0) {
+            throw new IllegalStateException("can not find event handler to handle event " + eventType);
+        }
+        return eventHandlers;
+    }
+
+    /**
+     * 在当前线程执行event handler
+     */
+    private void dispatch(EventHandler[] eventHandlers, Object event) {
+        for (EventHandler eventHandler : eventHandlers) {
             try {
                 EventHandler.handleEvent(eventHandler, this, event);
             } catch (Exception e) {
-                log.error("", e);
+                log.error("event handler handle event '{}' error", event, e);
             }
-        } else {
-            throw new IllegalStateException("can not find event handler to handle event " + eventType);
         }
     }
 
+    /**
+     * 获取异步投递的事件队列, 不存在则创建
+     *
+     * @param key event class或者event handler
+     */
+    private EventMailbox mailbox(Object key) {
+        //先get, 已存在时避免computeIfAbsent加锁以及创建lambda
+        EventMailbox mailbox = mailboxes.get(key);
+        if (mailbox == null) {
+            mailbox = mailboxes.computeIfAbsent(key, k -> new EventMailbox(newMailboxConsumer(k), scheduler, asyncOptions));
+        }
+        return mailbox;
+    }
+
+    /**
+     * 创建事件队列的事件处理逻辑, 每个事件队列仅创建一次
+     *
+     * @param key event class或者event handler
+     */
+    @SuppressWarnings("unchecked")
+    private Consumer<Object> newMailboxConsumer(Object key) {
+        if (key instanceof EventHandler) {
+            EventHandler<Object> eventHandler = (EventHandler<Object>) key;
+            return e -> EventHandler.handleEvent(eventHandler, this, e);
+        }
+        //处理时才解析event handler, 以便投递后注册的event handler也能处理
+        return e -> dispatch(dispatchCache.get(e.getClass()), e);
+    }
+
     @Override
     public void post(Object event) {
         if (isStopped()) {
@@ -307,10 +468,25 @@ public final class DefaultEventBus implements EventBus {
         }
 
         stopped = true;
+        if (asyncOptions != null) {
+            //异步投递, 等待worker处理完已提交的任务后, 再处理剩余事件, 最后才关闭event handler
+            scheduler.shutdown();
+            try {
+                if (!scheduler.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("event bus worker does not terminate in {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (EventMailbox mailbox : mailboxes.values()) {
+                mailbox.drainAll();
+            }
+        }
         for (EventHandler<?> eventHandler : event2Handler.values()) {
             eventHandler.close();
         }
         event2Handler.clear();
+        dispatchCache = newDispatchCache();
         scheduler.shutdown();
     }
 
@@ -324,6 +500,17 @@ public final class DefaultEventBus implements EventBus {
         return stopped;
     }
 
+    /**
+     * @return 异步投递模式下, 队列已满而被丢弃的事件数
+     */
+    public long getDroppedEventCount() {
+        long dropped = 0;
+        for (EventMailbox mailbox : mailboxes.values()) {
+            dropped += mailbox.getDropped();
+        }
+        return dropped;
+    }
+
     ExecutionContext getScheduler() {
         return scheduler;
     }
@@ -0,0 +1,24 @@
+package org.kin.framework.event;
+
+/**
+ * {@link DefaultEventBus}事件投递模式
+ *
+ * @author huangjianqin
+ * @date 2023/8/2
+ */
+public enum EventDeliveryMode {
+    /** 同步, 在{@link EventBus#post(Object)}调用线程直接执行{@link EventHandler} */
+    SYNC,
+    /** 异步, 每个事件类一个队列, 同一事件类的事件按投递顺序被所有匹配的{@link EventHandler}处理 */
+    PER_EVENT_TYPE,
+    /** 异步, 每个{@link EventHandler}一个队列, 同一{@link EventHandler}按投递顺序处理事件, 不同{@link EventHandler}之间互不阻塞 */
+    PER_HANDLER,
+    ;
+
+    /**
+     * @return 是否异步投递
+     */
+    public boolean isAsync() {
+        return !SYNC.equals(this);
+    }
+}
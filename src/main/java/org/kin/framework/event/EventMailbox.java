@@ -0,0 +1,225 @@
+package org.kin.framework.event;
+
+import org.kin.framework.utils.PlatformDependent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 异步投递的事件队列, 同一时刻最多只有一个worker处理, 故队列内事件按投递顺序处理
+ * <p>
+ * {@link #pending}用于限制队列容量, {@link #scheduled}标识是否已提交worker任务: 成功将其从false设置为true的投递者负责提交worker任务,
+ * worker每次最多处理{@link #batchSize}个事件, 处理完后若队列仍有事件则重新提交, 让出worker. 提交被拒绝时重置{@link #scheduled}, 由下一次投递重新提交.
+ * 投递者先增加{@link #pending}再入队, 入队后总会尝试提交, 故已计数但未入队的事件由投递者负责提交, worker不会为其空转
+ * <p>
+ * {@link BackpressureStrategy#BLOCK}下, 队列已满时投递者阻塞在{@link #notFull}上, worker处理完事件后唤醒
+ *
+ * @author huangjianqin
+ * @date 2023/8/2
+ */
+final class EventMailbox implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(EventMailbox.class);
+    /** worker任务提交被拒绝时, 阻塞的投递者重新尝试提交的间隔 */
+    private static final long REJECTED_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /** 事件队列, 多生产者单消费者 */
+    private final Queue<Object> queue = PlatformDependent.newMpscQueue();
+    /** 已投递未处理的事件数 */
+    private final AtomicInteger pending = new AtomicInteger();
+    /** 是否已提交worker任务 */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    /** 阻塞等待队列有空位的投递者数 */
+    private final AtomicInteger blockedProducers = new AtomicInteger();
+    /** {@link #notFull}的锁 */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** 队列有空位的条件 */
+    private final Condition notFull = lock.newCondition();
+    /** 丢弃的事件数 */
+    private final AtomicLong dropped = new AtomicLong();
+    /** 事件处理逻辑 */
+    private final Consumer<Object> consumer;
+    /** worker */
+    private final Executor worker;
+    /** 队列容量 */
+    private final int capacity;
+    /** 每次最多处理的事件数 */
+    private final int batchSize;
+    /** 队列已满时的处理策略 */
+    private final BackpressureStrategy backpressure;
+    /** 当前处理队列的线程 */
+    private volatile Thread drainer;
+
+    EventMailbox(Consumer<Object> consumer, Executor worker, AsyncEventOptions options) {
+        this.consumer = consumer;
+        this.worker = worker;
+        this.capacity = options.getQueueCapacity();
+        this.batchSize = options.getBatchSize();
+        this.backpressure = options.getBackpressure();
+    }
+
+    /**
+     * 投递事件
+     */
+    void offer(Object event) {
+        int n;
+        while (true) {
+            n = pending.get();
+            if (n < capacity) {
+                if (pending.compareAndSet(n, n + 1)) {
+                    break;
+                }
+                continue;
+            }
+
+            //队列已满
+            if (BackpressureStrategy.DROP.equals(backpressure)) {
+                dropped.incrementAndGet();
+                log.warn("event mailbox is full, drop event '{}'", event);
+                return;
+            }
+            if (BackpressureStrategy.CALLER_RUNS.equals(backpressure) || Thread.currentThread() == drainer) {
+                consume(event);
+                return;
+            }
+            //BLOCK
+            awaitNotFull();
+        }
+
+        queue.offer(event);
+        trySchedule();
+    }
+
+    /**
+     * 阻塞直到队列有空位
+     */
+    private void awaitNotFull() {
+        boolean interrupted = false;
+        //先登记再检查pending, 保证worker扣减pending后能看到登记并唤醒
+        blockedProducers.incrementAndGet();
+        lock.lock();
+        try {
+            while (pending.get() >= capacity) {
+                //之前的提交被拒绝, 则重新提交, 避免队列无人处理
+                if (trySchedule()) {
+                    notFull.awaitUninterruptibly();
+                    continue;
+                }
+                //提交仍被拒绝, 则定时重试
+                try {
+                    notFull.awaitNanos(REJECTED_RETRY_NANOS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+            blockedProducers.decrementAndGet();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 唤醒阻塞的投递者
+     */
+    private void signalNotFull() {
+        if (blockedProducers.get() == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 如果未提交worker任务, 则提交
+     *
+     * @return false表示本次调用提交worker任务但被拒绝
+     */
+    private boolean trySchedule() {
+        if (scheduled.get() || !scheduled.compareAndSet(false, true)) {
+            return true;
+        }
+        try {
+            worker.execute(this);
+            return true;
+        } catch (RejectedExecutionException e) {
+            //重置调度状态, 由下一次投递重新提交; worker已关闭时, 则由event bus shutdown时处理剩余事件
+            scheduled.set(false);
+            log.warn("event mailbox schedule rejected, {} events pending", pending.get());
+            return false;
+        }
+    }
+
+    @Override
+    public void run() {
+        drainer = Thread.currentThread();
+        int processed = 0;
+        try {
+            Object event;
+            while (processed < batchSize && (event = queue.poll()) != null) {
+                processed++;
+                consume(event);
+            }
+        } finally {
+            drainer = null;
+            //投递者可能已增加pending但还未入队, 故仅扣减实际处理的事件数
+            if (processed > 0) {
+                pending.addAndGet(-processed);
+                signalNotFull();
+            }
+            //先重置调度状态再检查队列, 保证并发入队的事件要么由投递者提交, 要么在此重新提交;
+            //已增加pending但还未入队的事件, 由投递者入队后提交, 避免worker反复空转提交
+            scheduled.set(false);
+            if (!queue.isEmpty()) {
+                trySchedule();
+            }
+        }
+    }
+
+    /**
+     * 处理事件
+     */
+    private void consume(Object event) {
+        try {
+            consumer.accept(event);
+        } catch (Exception e) {
+            log.error("event mailbox handle event '{}' error", event, e);
+        }
+    }
+
+    /**
+     * 在当前线程处理队列剩余事件, event bus shutdown时调用, 调用前worker需已关闭
+     */
+    void drainAll() {
+        Object event;
+        while ((event = queue.poll()) != null) {
+            pending.decrementAndGet();
+            signalNotFull();
+            consume(event);
+        }
+    }
+
+    //getter
+    int getPending() {
+        return pending.get();
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+}
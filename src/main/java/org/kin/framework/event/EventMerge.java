@@ -27,4 +27,10 @@ public @interface EventMerge {
      * @return 单个窗口的事件数量限制, 仅适用于{@link  MergeType#DEBOUNCE}
      */
     int maxSize() default Integer.MAX_VALUE;
+
+    /**
+     * @return 是否按{@link KeyedEvent#mergeKey()}合并, 同一窗口内相同key的事件仅保留最新的, 事件类必须实现{@link KeyedEvent}.
+     * 合并后事件集合不保证投递顺序
+     */
+    boolean latestByKey() default false;
 }
@@ -0,0 +1,14 @@
+package org.kin.framework.event;
+
+/**
+ * 带合并key的事件, {@link EventMerge#latestByKey()}为true时, 同一窗口内相同key的事件仅保留最新的
+ *
+ * @author huangjianqin
+ * @date 2023/8/3
+ */
+public interface KeyedEvent {
+    /**
+     * @return 合并key, 需正确实现{@link Object#hashCode()}和{@link Object#equals(Object)}
+     */
+    Object mergeKey();
+}
@@ -1,17 +1,25 @@
 package org.kin.framework.event;
 
-import org.kin.framework.utils.CollectionUtils;
+import org.kin.framework.utils.PlatformDependent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 支持事件合并的{@link EventHandler}实现
+ * <p>
+ * 事件无锁写入当前窗口的mpsc队列(或者{@link EventMerge#latestByKey()}时的key -> 最新事件map).
+ * 分发时以CAS将当前窗口切换为备用窗口, 等待正在写入旧窗口的线程完成后取出事件, 旧窗口清空后作为下一次的备用窗口, 故窗口切换不分配对象.
+ * <p>
+ * {@link MergeType#DEBOUNCE}每个事件仅刷新截止时间, 由同一个定时任务检查截止时间, 未到期则按剩余时间重新调度, 不会取消任务
  *
  * @author huangjianqin
  * @date 2022/4/9
@@ -21,19 +29,40 @@ class MergedEventHandler<T> implements EventHandler<T> {
 
     /** 委托的event handler */
     private final EventHandler<Collection<T>> delegate;
-    /** 缓存窗口时间的事件 */
-    private List<T> pendingEvents = new ArrayList<>();
     /** 事件合并参数 */
     private final EventMerge eventMerge;
     /** 绑定的{@link DefaultEventBus} */
     private final DefaultEventBus eventBus;
-    /** 事件延迟处理future */
-    private Future<?> future;
+    /** 窗口时间(纳秒) */
+    private final long windowNanos;
+    /** 当前接收事件的窗口 */
+    private final AtomicReference<Window<T>> current;
+    /** 备用窗口, 仅分发线程访问 */
+    private Window<T> spare;
+    /** 是否正在分发 */
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    /** {@link MergeType#WINDOW}下表示定时任务是否已启动, {@link MergeType#DEBOUNCE}下表示定时任务是否已调度 */
+    private final AtomicBoolean timerScheduled = new AtomicBoolean();
+    /** {@link MergeType#DEBOUNCE}分发截止时间(纳秒) */
+    private volatile long deadline;
+    /** {@link MergeType#DEBOUNCE}检查截止时间的定时任务 */
+    private final Runnable debounceTask = this::checkDeadline;
+    /** {@link MergeType#WINDOW}定时任务future */
+    private volatile Future<?> windowFuture;
+    /** 是否已关闭 */
+    private volatile boolean closed;
 
     MergedEventHandler(EventHandler<Collection<T>> delegate, EventMerge eventMerge, DefaultEventBus eventBus) {
+        MergeType type = eventMerge.type();
+        if (!MergeType.WINDOW.equals(type) && !MergeType.DEBOUNCE.equals(type)) {
+            throw new UnsupportedOperationException(String.format("doesn't support merge type '%s'", type));
+        }
         this.delegate = delegate;
         this.eventMerge = eventMerge;
         this.eventBus = eventBus;
+        this.windowNanos = eventMerge.unit().toNanos(eventMerge.window());
+        this.current = new AtomicReference<>(new Window<>(eventMerge.latestByKey()));
+        this.spare = new Window<>(eventMerge.latestByKey());
     }
 
     @Override
@@ -42,90 +71,239 @@ class MergedEventHandler<T> implements EventHandler<T> {
             throw new IllegalStateException("event bus is illegal");
         }
 
-        mergeEvent(event);
+        Window<T> window = add(event);
+        if (MergeType.WINDOW.equals(eventMerge.type())) {
+            startWindowTimer();
+        } else {
+            //刷新截止时间
+            deadline = System.nanoTime() + windowNanos;
+            scheduleDebounceTimer(windowNanos);
+            if (window.size() >= eventMerge.maxSize()) {
+                //最大窗口大小
+                flush();
+            }
+        }
     }
 
     /**
-     * 事件合并
+     * 将事件写入当前窗口
+     *
+     * @return 事件写入的窗口
      */
-    private synchronized void mergeEvent(T event) {
-        MergeType type = eventMerge.type();
-        if (MergeType.WINDOW.equals(type)) {
-            mergeWindowEvent(event);
-        } else if (MergeType.DEBOUNCE.equals(type)) {
-            mergeDebounceEvent(event);
-        } else {
-            throw new UnsupportedOperationException(String.format("doesn't support merge type '%s'", type));
+    private Window<T> add(T event) {
+        while (true) {
+            Window<T> window = current.get();
+            window.writers.incrementAndGet();
+            try {
+                //标记写入后再次确认窗口未切换, 否则分发线程可能已经取出旧窗口的事件
+                if (current.get() == window) {
+                    window.add(event);
+                    return window;
+                }
+            } finally {
+                window.writers.decrementAndGet();
+            }
         }
     }
 
     /**
-     * 分发合并后事件集合
+     * 根据窗口规则(一直调度), 启动定时分发
      */
-    private void triggerMergedEvents() {
-        future = null;
-        //合并后事件集合
-        List<T> pendingEvents;
-        synchronized (this) {
-            //合并后事件集合
-            pendingEvents = this.pendingEvents;
-            //reset
-            this.pendingEvents = new ArrayList<>();
+    private void startWindowTimer() {
+        if (timerScheduled.get() || !timerScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        if (closed) {
+            timerScheduled.set(false);
+            return;
         }
+        try {
+            Future<?> windowFuture = eventBus.getScheduler().scheduleAtFixedRate(this::flush, windowNanos, windowNanos, TimeUnit.NANOSECONDS);
+            this.windowFuture = windowFuture;
+            //先发布future再检查closed, 与close()先标识closed再读取future对应, 保证并发close时future必定被取消
+            if (closed) {
+                windowFuture.cancel(false);
+            }
+        } catch (RejectedExecutionException e) {
+            //event bus已关闭, 剩余事件在close时分发
+            timerScheduled.set(false);
+        }
+    }
 
-        if (CollectionUtils.isEmpty(pendingEvents)) {
+    /**
+     * 根据抖动规则(有event进入队列才触发调度), 调度截止时间检查
+     */
+    private void scheduleDebounceTimer(long delayNanos) {
+        if (timerScheduled.get() || !timerScheduled.compareAndSet(false, true)) {
             return;
         }
+        scheduleDebounceTask(delayNanos);
+    }
 
-        EventHandler.handleEvent(delegate, eventBus, pendingEvents);
+    private void scheduleDebounceTask(long delayNanos) {
+        if (closed) {
+            timerScheduled.set(false);
+            return;
+        }
+        try {
+            eventBus.getScheduler().schedule(debounceTask, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            //event bus已关闭, 剩余事件在close时分发
+            timerScheduled.set(false);
+        }
     }
 
     /**
-     * 根据窗口规则(一直调度), 合并事件
+     * 检查截止时间, 到期则分发, 否则按剩余时间重新调度
      */
-    private void mergeWindowEvent(T event) {
-        //启动window
-        if (Objects.isNull(future)) {
-            future = eventBus.getScheduler().scheduleAtFixedRate(this::triggerMergedEvents, eventMerge.window(), eventMerge.window(), eventMerge.unit());
+    private void checkDeadline() {
+        long remaining = deadline - System.nanoTime();
+        if (remaining > 0) {
+            //期间有新事件, 截止时间已延后
+            scheduleDebounceTask(remaining);
+            return;
         }
 
-        pendingEvents.add(event);
+        timerScheduled.set(false);
+        flush();
+        if (!current.get().isEmpty()) {
+            //分发期间有新事件写入, 且其写入线程未能调度定时任务; 或者其他线程正在分发, 则下一窗口再检查
+            long delayNanos = deadline - System.nanoTime();
+            scheduleDebounceTimer(delayNanos > 0 ? delayNanos : windowNanos);
+        }
     }
 
     /**
-     * 根据抖动规则(有event进入队列才触发调度), 合并事件
+     * 切换窗口并分发合并后事件集合, 其他线程正在分发则直接返回, 剩余事件由下一次分发处理
      */
-    private void mergeDebounceEvent(T event) {
-        //启动debounce
-        if (Objects.isNull(future)) {
-            //重置
-            future = eventBus.getScheduler().schedule(this::triggerMergedEvents, eventMerge.window(), eventMerge.unit());
+    private void flush() {
+        if (flushing.compareAndSet(false, true)) {
+            doFlush();
         }
+    }
+
+    /**
+     * 切换窗口并分发合并后事件集合, 调用前需已获取{@link #flushing}.
+     * 分发完成后才释放, 故合并后事件集合按窗口顺序分发
+     */
+    private void doFlush() {
+        try {
+            Window<T> window = current.get();
+            if (window.isEmpty()) {
+                return;
+            }
+            //仅分发线程切换窗口
+            current.set(spare);
+            window.awaitWriters();
+            //合并后事件集合
+            List<T> events = window.drain();
+            spare = window;
 
-        pendingEvents.add(event);
-        if (pendingEvents.size() >= eventMerge.maxSize()) {
-            //最大窗口大小
-            future.cancel(true);
-            triggerMergedEvents();
+            if (!events.isEmpty()) {
+                EventHandler.handleEvent(delegate, eventBus, events);
+            }
+        } catch (Exception e) {
+            log.error("merged event handler handle events error", e);
+        } finally {
+            flushing.set(false);
         }
     }
 
     @Override
-    public synchronized void close() {
+    public void close() {
+        closed = true;
         //尝试cancel future
-        if (Objects.nonNull(future)) {
-            //重置
-            future.cancel(true);
+        Future<?> windowFuture = this.windowFuture;
+        if (Objects.nonNull(windowFuture)) {
+            windowFuture.cancel(false);
         }
         //help gc
-        future = null;
+        this.windowFuture = null;
         try {
-            //trigger merged event now
-            triggerMergedEvents();
+            //等待其他线程分发完成, trigger merged event now
+            while (!flushing.compareAndSet(false, true)) {
+                Thread.yield();
+            }
+            doFlush();
 
             EventHandler.closeHandler(delegate);
         } catch (Exception e) {
             log.error("", e);
         }
     }
+
+    //------------------------------------------------------------------------------------------------------------inner class
+
+    /**
+     * 事件窗口
+     */
+    private static final class Window<T> {
+        /** 事件队列, 多生产者单消费者, 非key合并时使用 */
+        private final Queue<T> queue;
+        /** key -> 最新事件, key合并时使用 */
+        private final Map<Object, T> latestEvents;
+        /** 事件数量, key合并时为key数量 */
+        private final AtomicInteger size = new AtomicInteger();
+        /** 正在写入的线程数 */
+        private final AtomicInteger writers = new AtomicInteger();
+
+        Window(boolean latestByKey) {
+            if (latestByKey) {
+                this.queue = null;
+                this.latestEvents = new ConcurrentHashMap<>();
+            } else {
+                this.queue = PlatformDependent.newMpscQueue();
+                this.latestEvents = null;
+            }
+        }
+
+        void add(T event) {
+            if (latestEvents != null) {
+                if (!(event instanceof KeyedEvent)) {
+                    throw new IllegalArgumentException(String.format("event '%s' must implement %s", event, KeyedEvent.class.getSimpleName()));
+                }
+                if (latestEvents.put(((KeyedEvent) event).mergeKey(), event) == null) {
+                    size.incrementAndGet();
+                }
+            } else {
+                queue.offer(event);
+                size.incrementAndGet();
+            }
+        }
+
+        /**
+         * 等待正在写入的线程完成
+         */
+        void awaitWriters() {
+            while (writers.get() > 0) {
+                Thread.yield();
+            }
+        }
+
+        /**
+         * 取出所有事件, 调用前需确保没有线程正在写入
+         */
+        List<T> drain() {
+            List<T> events = new ArrayList<>(size.get());
+            if (latestEvents != null) {
+                events.addAll(latestEvents.values());
+                latestEvents.clear();
+            } else {
+                T event;
+                while ((event = queue.poll()) != null) {
+                    events.add(event);
+                }
+            }
+            size.set(0);
+            return events;
+        }
+
+        int size() {
+            return size.get();
+        }
+
+        boolean isEmpty() {
+            return size.get() == 0;
+        }
+    }
 }
@@ -51,4 +51,9 @@ class MultiEventHandlers<T> implements EventHandler<T> {
         OrderedUtils.sort(handlers);
         this.handlers = handlers;
     }
+
+    //getter
+    List<EventHandler<T>> getHandlers() {
+        return handlers;
+    }
 }
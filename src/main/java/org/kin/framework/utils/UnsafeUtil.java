@@ -233,6 +233,29 @@ public final class UnsafeUtil {
         UNSAFE_ACCESSOR.putLong(address, value);
     }
 
+    /**
+     * 分配堆外内存, 内容未初始化, 使用完后必须调用{@link #freeMemory(long)}释放
+     *
+     * @return 堆外内存地址
+     */
+    public static long allocateMemory(long bytes) {
+        return UNSAFE_ACCESSOR.allocateMemory(bytes);
+    }
+
+    /**
+     * 将[address, address + bytes)的堆外内存填充为{@code value}
+     */
+    public static void setMemory(long address, long bytes, byte value) {
+        UNSAFE_ACCESSOR.setMemory(address, bytes, value);
+    }
+
+    /**
+     * 释放{@link #allocateMemory(long)}分配的堆外内存
+     */
+    public static void freeMemory(long address) {
+        UNSAFE_ACCESSOR.freeMemory(address);
+    }
+
     public static byte getByteVolatile(byte[] target, long index) {
         return UNSAFE_ACCESSOR.getByteVolatile(target, BYTE_ARRAY_BASE_OFFSET + index);
     }
@@ -555,6 +578,18 @@ public final class UnsafeUtil {
             this.unsafe.copyMemory(srcAddress, dstAddress, bytes);
         }
 
+        public long allocateMemory(long bytes) {
+            return this.unsafe.allocateMemory(bytes);
+        }
+
+        public void setMemory(long address, long bytes, byte value) {
+            this.unsafe.setMemory(address, bytes, value);
+        }
+
+        public void freeMemory(long address) {
+            this.unsafe.freeMemory(address);
+        }
+
         public byte getByteVolatile(Object target, long offset) {
             return this.unsafe.getByteVolatile(target, offset);
         }
@@ -0,0 +1,40 @@
+package org.kin.framework.beans;
+
+import org.kin.framework.collection.CopyOnWriteMap;
+import org.kin.framework.collection.PersistentHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 校验{@link PolymorphicCopy}深复制{@link CopyOnWriteMap#getMap()}返回的{@link PersistentHashMap}
+ *
+ * @author huangjianqin
+ * @date 2023/7/25
+ */
+public class PolymorphicCopyTest {
+    public static void main(String[] args) {
+        CopyOnWriteMap<Integer, List<Integer>> cowMap = new CopyOnWriteMap<>();
+        for (int i = 0; i < 100; i++) {
+            cowMap.put(i, new ArrayList<>(Arrays.asList(i, i + 1)));
+        }
+
+        Map<Integer, List<Integer>> source = cowMap.getMap();
+        @SuppressWarnings("unchecked")
+        Map<Integer, List<Integer>> copy = (Map<Integer, List<Integer>>) ReflectionBeanCopy.INSTANCE.selfCopy(source);
+        if (!(copy instanceof PersistentHashMap)) {
+            throw new IllegalStateException("copy type is not PersistentHashMap, " + copy.getClass());
+        }
+        if (!source.equals(copy)) {
+            throw new IllegalStateException("copy not equal");
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : source.entrySet()) {
+            if (entry.getValue() == copy.get(entry.getKey())) {
+                throw new IllegalStateException("value is not deep copied, key=" + entry.getKey());
+            }
+        }
+        System.out.println("ok");
+    }
+}
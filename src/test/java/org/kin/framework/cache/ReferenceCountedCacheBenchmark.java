@@ -0,0 +1,67 @@
+package org.kin.framework.cache;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 32条线程并发访问同一个热点key, 对比{@link ReferenceCountedCache}的get/release以及peek性能
+ * 热点key一直被引用(引用计数>0), 故get/release都走无锁cas路径
+ *
+ * @author huangjianqin
+ * @date 2023/7/18
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(32)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReferenceCountedCacheBenchmark {
+    private static final String HOT_KEY = "hot";
+
+    private ReferenceCountedCache<String, Object> cache;
+
+    @Setup
+    public void setup() {
+        cache = new ReferenceCountedCache<>();
+        //常驻引用, 保证热点key不会因引用计数减少到0而被移除
+        cache.put(HOT_KEY, new Object());
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.clear();
+    }
+
+    @Benchmark
+    public Object getAndRelease() {
+        Object value = cache.get(HOT_KEY);
+        cache.release(HOT_KEY);
+        return value;
+    }
+
+    @Benchmark
+    public Object getWithSupplierAndRelease() {
+        Object value = cache.get(HOT_KEY, Object::new);
+        cache.release(HOT_KEY);
+        return value;
+    }
+
+    @Benchmark
+    public Object peek() {
+        return cache.peek(HOT_KEY);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ReferenceCountedCacheBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,85 @@
+package org.kin.framework.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author huangjianqin
+ * @date 2023/7/16
+ */
+public class ReferenceCountedCacheEvictionTest {
+    public static void main(String[] args) throws InterruptedException {
+        ReferenceCountedCache<String, String> cache = new ReferenceCountedCache<>(ReferenceCountedCacheOptions.<String, String>builder()
+                .bucketSize(16)
+                .maximumSize(10)
+                .expireAfterAccess(500, TimeUnit.MILLISECONDS)
+                .removalListener((k, v, c) -> System.out.println(String.format("%s-%s removed, cause: %s", k, v, c)))
+                .build());
+
+        //live entry永远不会被驱逐
+        for (int i = 0; i < 20; i++) {
+            String key = "k" + i;
+            cache.get(key, () -> "v" + key);
+        }
+        System.out.println("live size: " + cache.size() + ", weighted size: " + cache.weightedSize());
+
+        //释放后成为空闲entry, 超过容量的空闲entry被驱逐
+        for (int i = 0; i < 20; i++) {
+            cache.release("k" + i);
+        }
+        System.out.println("idle size: " + cache.size() + ", weighted size: " + cache.weightedSize());
+        System.out.println("-----------------------------------");
+
+        //热点key, 访问频率高, 不会被新的空闲entry挤出
+        for (int i = 0; i < 5; i++) {
+            cache.get("hot", () -> "vhot");
+            cache.release("hot");
+        }
+        for (int i = 20; i < 30; i++) {
+            String key = "k" + i;
+            cache.get(key, () -> "v" + key);
+            cache.release(key);
+        }
+        System.out.println("hot retained: " + (cache.peek("hot") != null));
+        System.out.println("-----------------------------------");
+
+        //空闲entry过期
+        Thread.sleep(600);
+        cache.cleanUp();
+        System.out.println("expired size: " + cache.size() + ", weighted size: " + cache.weightedSize());
+        System.out.println("-----------------------------------");
+
+        checkConcurrentAccess();
+    }
+
+    /**
+     * 多线程并发访问, 访问记录先写入read buffer, 再由持有eviction lock的线程回放, 驱逐后不超过容量上限
+     */
+    private static void checkConcurrentAccess() throws InterruptedException {
+        ReferenceCountedCache<String, String> cache = new ReferenceCountedCache<>(ReferenceCountedCacheOptions.<String, String>builder()
+                .maximumSize(10)
+                .build());
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 100_000; j++) {
+                    String key = "c" + random.nextInt(50);
+                    if (!("v" + key).equals(cache.get(key, () -> "v" + key))) {
+                        throw new IllegalStateException("unexpected value of " + key);
+                    }
+                    cache.release(key);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        cache.cleanUp();
+        System.out.println("concurrent size: " + cache.size() + ", weighted size: " + cache.weightedSize());
+        if (cache.weightedSize() > 10) {
+            throw new IllegalStateException("weighted size exceeds maximum size, " + cache.weightedSize());
+        }
+    }
+}
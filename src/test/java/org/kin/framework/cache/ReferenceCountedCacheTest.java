@@ -104,5 +104,59 @@ public class ReferenceCountedCacheTest {
         latch1.await();
         System.out.println(cache);
         System.out.println("-----------------------------------");
+
+        checkRemovalNotifiedOnce();
+    }
+
+    /**
+     * 并发释放与强制移除(或者清空)同一缓存, 移除监听仅通知一次
+     */
+    private static void checkRemovalNotifiedOnce() throws InterruptedException {
+        ConcurrentHashMap<String, Integer> notified = new ConcurrentHashMap<>();
+        ReferenceCountedCache<String, String> cache = new ReferenceCountedCache<>((k, v) -> notified.merge(k, 1, Integer::sum));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            int rounds = 200;
+            for (int i = 0; i < rounds; i++) {
+                String key = "k" + i;
+                CountDownLatch inSupplier = new CountDownLatch(1);
+                CountDownLatch proceed = new CountDownLatch(1);
+                CountDownLatch done = new CountDownLatch(2);
+                //创建value期间持有entry对象锁, 强制移除已查询到entry, 阻塞在entry对象锁上, 之后与释放竞争
+                executor.execute(() -> {
+                    cache.get(key, () -> {
+                        inSupplier.countDown();
+                        try {
+                            proceed.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return "v";
+                    });
+                    cache.release(key);
+                    done.countDown();
+                });
+                inSupplier.await();
+                boolean clear = i % 2 == 0;
+                executor.execute(() -> {
+                    if (clear) {
+                        cache.clear();
+                    } else {
+                        cache.remove(key);
+                    }
+                    done.countDown();
+                });
+                Thread.sleep(5);
+                proceed.countDown();
+                done.await();
+            }
+
+            if (notified.size() != rounds || notified.values().stream().anyMatch(c -> c != 1)) {
+                throw new IllegalStateException("removal is not notified exactly once, " + notified);
+            }
+            System.out.println("removal notified once");
+        } finally {
+            executor.shutdown();
+        }
     }
 }
@@ -0,0 +1,99 @@
+package org.kin.framework.collection;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author huangjianqin
+ * @date 2023/7/20
+ */
+public class BoundedConcurrentMapTest {
+    private static final int MAXIMUM_SIZE = 1000;
+
+    public static void main(String[] args) throws InterruptedException {
+        lru();
+        for (BoundedConcurrentMap.Policy policy : BoundedConcurrentMap.Policy.values()) {
+            concurrent(policy);
+        }
+        for (BoundedConcurrentMap.Policy policy : BoundedConcurrentMap.Policy.values()) {
+            hitRate(policy);
+        }
+    }
+
+    /**
+     * 单线程下与{@link LRUMap}行为一致
+     */
+    private static void lru() {
+        BoundedConcurrentMap<Integer, Integer> map = BoundedConcurrentMap.lru(3);
+        map.put(1, 1);
+        map.put(2, 2);
+        map.put(3, 3);
+        map.get(1);
+        map.put(4, 4);
+        map.cleanUp();
+        System.out.println("lru: " + map.keySet() + ", expect [1, 3, 4]");
+        if (map.containsKey(2) || map.size() != 3) {
+            throw new IllegalStateException("key 2 should be evicted");
+        }
+    }
+
+    /**
+     * 并发读写后, 元素数量不超过上限
+     */
+    private static void concurrent(BoundedConcurrentMap.Policy policy) throws InterruptedException {
+        BoundedConcurrentMap<Integer, Integer> map = new BoundedConcurrentMap<>(MAXIMUM_SIZE, policy);
+        int threads = 8;
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 500_000; j++) {
+                    int key = random.nextInt(MAXIMUM_SIZE * 10);
+                    int op = random.nextInt(10);
+                    if (op == 0) {
+                        map.remove(key);
+                    } else if (op < 4) {
+                        map.put(key, j);
+                    } else {
+                        map.get(key);
+                    }
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        map.cleanUp();
+        System.out.println(policy + " concurrent size: " + map.size());
+        if (map.size() > MAXIMUM_SIZE) {
+            throw new IllegalStateException("size exceeds maximum size");
+        }
+    }
+
+    /**
+     * 热点访问 + 周期性扫描, 对比不同策略的命中率
+     */
+    private static void hitRate(BoundedConcurrentMap.Policy policy) {
+        BoundedConcurrentMap<Integer, Integer> map = new BoundedConcurrentMap<>(MAXIMUM_SIZE, policy);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int hit = 0;
+        int total = 0;
+        int scanKey = MAXIMUM_SIZE * 100;
+        for (int i = 0; i < 2_000_000; i++) {
+            int key;
+            if (i % 10 < 7) {
+                //热点数据
+                key = random.nextInt(MAXIMUM_SIZE / 2);
+            } else {
+                //一次性扫描数据
+                key = scanKey++;
+            }
+            total++;
+            if (map.get(key) != null) {
+                hit++;
+            } else {
+                map.put(key, key);
+            }
+        }
+        System.out.printf("%s hit rate: %.2f%%%n", policy, hit * 100.0 / total);
+    }
+}
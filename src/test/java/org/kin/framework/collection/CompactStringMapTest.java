@@ -0,0 +1,161 @@
+package org.kin.framework.collection;
+
+import org.kin.framework.utils.IllegalFormatException;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * 与{@link HashMap}对比随机put/remove结果, 校验{@link CompactStringMap}正确性, 包括升级前后以及primitive slot
+ *
+ * @author huangjianqin
+ * @date 2023/7/24
+ */
+public class CompactStringMapTest {
+    private static final int OPS = 1_000_000;
+    private static final String[] KEYS = new String[12];
+
+    static {
+        for (int i = 0; i < KEYS.length; i++) {
+            KEYS[i] = "key" + i;
+        }
+    }
+
+    public static void main(String[] args) {
+        checkRandom();
+        checkPrimitive();
+        checkIterator();
+        checkNullKey();
+        System.out.println("ok");
+    }
+
+    private static void checkRandom() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        CompactStringMap map = new CompactStringMap();
+        Map<String, Object> expected = new HashMap<>();
+        for (int i = 0; i < OPS; i++) {
+            //new String, 校验非同一引用时也能找到key, 同时混入null key
+            int keyIndex = random.nextInt(KEYS.length + 1);
+            String key = keyIndex == KEYS.length ? null : new String(KEYS[keyIndex]);
+            int op = random.nextInt(10);
+            if (op < 3) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else if (op < 6) {
+                int value = random.nextInt(100);
+                assertEquals(expected.put(key, value), map.put(key, value));
+            } else if (op < 8) {
+                long value = random.nextLong();
+                expected.put(key, value);
+                map.putLong(key, value);
+            } else if (op < 9) {
+                assertEquals(expected.get(key), map.get(key));
+                assertEquals(expected.containsKey(key), map.containsKey(key));
+            } else if (random.nextInt(100) == 0) {
+                expected.clear();
+                map.clear();
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(expected, new CompactStringMap(map));
+    }
+
+    /**
+     * 与{@link HashMap}一致, 支持null key
+     */
+    private static void checkNullKey() {
+        AttachmentMap attachments = new AttachmentMap();
+        attachments.attach(null, "null");
+        attachments.attachInt("key", 1);
+        assertEquals(true, attachments.hasAttachment(null));
+        assertEquals("null", attachments.attachment(null));
+        assertEquals(4, attachments.attachment(null, (Function<Object, Integer>) v -> v.toString().length()));
+        assertEquals(1, attachments.intAttachment("key", 0));
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put(null, "null");
+        expected.put("key", 1);
+        assertEquals(expected, attachments.attachments());
+        assertEquals("null", attachments.detach(null));
+        assertEquals(false, attachments.hasAttachment(null));
+        assertEquals(null, attachments.attachment(null, (Function<Object, Integer>) v -> v.toString().length()));
+    }
+
+    private static void checkPrimitive() {
+        CompactStringMap map = new CompactStringMap("attachment");
+        map.putBool("bool", true);
+        map.putByte("byte", (byte) 1);
+        map.putShort("short", (short) 2);
+        map.putInt("int", 3);
+        map.putLong("long", 4L);
+        map.putFloat("float", 5.5F);
+        map.putDouble("double", 6.6D);
+        map.put("str", "7");
+
+        assertEquals(true, map.getBool("bool", false));
+        assertEquals((byte) 1, map.getByte("byte", (byte) 0));
+        assertEquals((short) 2, map.getShort("short", (short) 0));
+        assertEquals(3, map.getInt("int", 0));
+        assertEquals(4L, map.getLong("long", 0));
+        assertEquals(5.5F, map.getFloat("float", 0));
+        assertEquals(6.6D, map.getDouble("double", 0));
+        assertEquals(7, map.getInt("str", 0));
+        assertEquals(-1, map.getInt("absent", -1));
+        //装箱后类型与原类型一致
+        assertEquals(Short.class, map.get("short").getClass());
+        assertEquals(Float.class, map.get("float").getClass());
+        try {
+            map.getInt("long", 0);
+            throw new IllegalStateException("expect IllegalFormatException");
+        } catch (IllegalFormatException e) {
+            //expected
+        }
+
+        CompactStringMap copy = new CompactStringMap(map);
+        assertEquals(map, copy);
+        assertEquals(false, copy.isPromoted());
+
+        //升级后值不变
+        map.put("promote1", 1);
+        assertEquals(true, map.isPromoted());
+        assertEquals(3, map.getInt("int", 0));
+        assertEquals(6.6D, map.getDouble("double", 0));
+        assertEquals(9, map.size());
+        map.clear();
+        assertEquals(false, map.isPromoted());
+    }
+
+    private static void checkIterator() {
+        CompactStringMap map = new CompactStringMap();
+        for (int i = 0; i < 6; i++) {
+            map.putInt(KEYS[i], i);
+        }
+        Iterator<Map.Entry<String, Object>> iterator = map.entrySet().iterator();
+        int count = 0;
+        while (iterator.hasNext()) {
+            Map.Entry<String, Object> entry = iterator.next();
+            count++;
+            if ((int) entry.getValue() % 2 == 0) {
+                iterator.remove();
+            } else {
+                entry.setValue("odd");
+            }
+        }
+        assertEquals(6, count);
+        assertEquals(3, map.size());
+        for (Object value : map.values()) {
+            assertEquals("odd", value);
+        }
+    }
+
+    private static void assertEquals(Object expected, Object actual) {
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            throw new IllegalStateException(String.format("expected %s, but actual %s", expected, actual));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.kin.framework.collection;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单writer追加并截断, 多reader并发随机读取, 校验读到的元素与下标一致
+ *
+ * @author huangjianqin
+ * @date 2023/7/22
+ */
+public class ConcurrentSegmentListTest {
+    private static final long COUNT = 5_000_000;
+    /** 保留的窗口大小 */
+    private static final int WINDOW = 10_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentSegmentList<Long> list = new ConcurrentSegmentList<>(1, 64, true);
+        int readers = 3;
+        CountDownLatch latch = new CountDownLatch(readers + 1);
+        AtomicLong hit = new AtomicLong();
+        AtomicLong miss = new AtomicLong();
+        AtomicLong error = new AtomicLong();
+        new Thread(() -> {
+            for (long i = 1; i <= COUNT; i++) {
+                list.add(i);
+                if (i % 1000 == 0 && list.size() > WINDOW) {
+                    list.removeFromFirst(list.lastIndex() - WINDOW);
+                }
+            }
+            latch.countDown();
+        }).start();
+        for (int r = 0; r < readers; r++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (list.lastIndex() < COUNT) {
+                    long first = list.firstIndex();
+                    long last = list.lastIndex();
+                    if (last < first) {
+                        continue;
+                    }
+                    //包含部分已截断的下标
+                    long index = first - 10 + random.nextLong(last - first + 11);
+                    Long value = list.get(index);
+                    if (value == null) {
+                        miss.incrementAndGet();
+                    } else if (value != index) {
+                        error.incrementAndGet();
+                    } else {
+                        hit.incrementAndGet();
+                    }
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        System.out.println("hit: " + hit + ", miss: " + miss + ", error: " + error + ", list: " + list);
+        if (error.get() > 0) {
+            throw new IllegalStateException("read wrong element");
+        }
+
+        list.removeFromFirstWhen(e -> e < COUNT);
+        System.out.println("after removeFromFirstWhen, first: " + list.peekFirst() + ", size: " + list.size());
+        list.clear();
+        System.out.println("after clear, size: " + list.size() + ", first: " + list.peekFirst());
+    }
+}
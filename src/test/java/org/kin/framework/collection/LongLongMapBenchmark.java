@@ -0,0 +1,120 @@
+package org.kin.framework.collection;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比{@code HashMap<Long, Long>}与{@link LongLongHashMap}(堆内/堆外)的put和get性能
+ *
+ * @author huangjianqin
+ * @date 2023/7/19
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LongLongMapBenchmark {
+    @Param({"1000", "1000000"})
+    private int size;
+
+    /** 预先生成的随机key, 避免随机数生成成本影响结果 */
+    private long[] keys;
+    private Map<Long, Long> hashMap;
+    private LongLongHashMap heapMap;
+    private LongLongHashMap offHeapMap;
+
+    @Setup
+    public void setup() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextLong();
+        }
+
+        hashMap = new HashMap<>();
+        heapMap = new LongLongHashMap(size);
+        offHeapMap = new LongLongHashMap(size, true);
+        for (long key : keys) {
+            hashMap.put(key, key);
+            heapMap.put(key, key);
+            offHeapMap.put(key, key);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        offHeapMap.close();
+    }
+
+    @Benchmark
+    public long hashMapGet() {
+        long sum = 0;
+        for (long key : keys) {
+            sum += hashMap.get(key);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long heapMapGet() {
+        long sum = 0;
+        for (long key : keys) {
+            sum += heapMap.get(key);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long offHeapMapGet() {
+        long sum = 0;
+        for (long key : keys) {
+            sum += offHeapMap.get(key);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Map<Long, Long> hashMapPut() {
+        Map<Long, Long> map = new HashMap<>();
+        for (long key : keys) {
+            map.put(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public LongLongHashMap heapMapPut() {
+        LongLongHashMap map = new LongLongHashMap();
+        for (long key : keys) {
+            map.put(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public long offHeapMapPut() {
+        try (LongLongHashMap map = new LongLongHashMap(16, true)) {
+            for (long key : keys) {
+                map.put(key, key);
+            }
+            return map.size();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LongLongMapBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
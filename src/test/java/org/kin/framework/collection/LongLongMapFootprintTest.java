@@ -0,0 +1,57 @@
+package org.kin.framework.collection;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 对比存储相同数量元素时, {@code HashMap<Long, Long>}与{@link LongLongHashMap}(堆内/堆外)占用的堆内存
+ * 结果仅是通过gc后used heap差值估算的近似值, 建议加上-Xms1g -XX:+UseParallelGC运行, g1对humongous对象的回收时机会导致差值不准确
+ *
+ * @author huangjianqin
+ * @date 2023/7/19
+ */
+public class LongLongMapFootprintTest {
+    private static final int SIZE = 1_000_000;
+
+    public static void main(String[] args) {
+        long base = usedHeap();
+        Map<Long, Long> hashMap = new HashMap<>();
+        for (long i = 1; i <= SIZE; i++) {
+            hashMap.put(i * 31, i);
+        }
+        long hashMapBytes = usedHeap() - base;
+        System.out.println("HashMap<Long, Long>: " + hashMapBytes / 1024 + "KB, size: " + hashMap.size());
+        hashMap = null;
+
+        base = usedHeap();
+        LongLongHashMap heapMap = new LongLongHashMap();
+        for (long i = 1; i <= SIZE; i++) {
+            heapMap.put(i * 31, i);
+        }
+        long heapMapBytes = usedHeap() - base;
+        System.out.println("LongLongHashMap(heap): " + heapMapBytes / 1024 + "KB, storage: " + heapMap.storageBytes() / 1024 + "KB, size: " + heapMap.size());
+        heapMap = null;
+
+        base = usedHeap();
+        try (LongLongHashMap offHeapMap = new LongLongHashMap(16, true)) {
+            for (long i = 1; i <= SIZE; i++) {
+                offHeapMap.put(i * 31, i);
+            }
+            long offHeapMapBytes = usedHeap() - base;
+            System.out.println("LongLongHashMap(off-heap): " + offHeapMapBytes / 1024 + "KB, off-heap storage: " + offHeapMap.storageBytes() / 1024 + "KB, size: " + offHeapMap.size());
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
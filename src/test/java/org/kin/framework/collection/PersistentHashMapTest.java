@@ -0,0 +1,89 @@
+package org.kin.framework.collection;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 与{@link HashMap}对比随机修改结果, 校验{@link PersistentHashMap}正确性, 并对比{@link CopyOnWriteMap}全量复制与结构共享的写性能
+ *
+ * @author huangjianqin
+ * @date 2023/7/21
+ */
+public class PersistentHashMapTest {
+    public static void main(String[] args) {
+        check();
+        writeCost(new CopyOnWriteMap<>(HashMap::new), "HashMap");
+        writeCost(new CopyOnWriteMap<>(), "PersistentHashMap");
+    }
+
+    private static void check() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<CollidingKey, Integer> expected = new HashMap<>();
+        PersistentHashMap<CollidingKey, Integer> map = PersistentHashMap.empty();
+        PersistentHashMap<CollidingKey, Integer> snapshot = map;
+        Map<CollidingKey, Integer> snapshotExpected = new HashMap<>();
+        for (int i = 0; i < 500_000; i++) {
+            int id = random.nextInt(20_000);
+            CollidingKey key = id == 0 ? null : new CollidingKey(id);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.without(key);
+            } else {
+                expected.put(key, i);
+                map = map.with(key, i);
+            }
+            if (i == 250_000) {
+                snapshot = map;
+                snapshotExpected = new HashMap<>(expected);
+            }
+        }
+        assertEquals(expected, map);
+        //旧版本不受后续修改影响
+        assertEquals(snapshotExpected, snapshot);
+        System.out.println("check ok, size: " + map.size());
+    }
+
+    private static void assertEquals(Map<?, ?> expected, Map<?, ?> actual) {
+        if (expected.size() != actual.size() || !expected.equals(actual) || !actual.equals(expected)
+                || expected.hashCode() != actual.hashCode()) {
+            throw new IllegalStateException("map not equal");
+        }
+    }
+
+    private static void writeCost(CopyOnWriteMap<Integer, Integer> map, String desc) {
+        int size = 50_000;
+        for (int i = 0; i < size; i++) {
+            map.put(i, i);
+        }
+        int writes = 2_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < writes; i++) {
+            map.put(i, -i);
+            map.remove(size + i);
+        }
+        long cost = System.nanoTime() - start;
+        System.out.printf("%s, %d entries, avg write cost: %dns%n", desc, size, cost / (writes * 2));
+    }
+
+    /**
+     * hash值范围较小的key, 以覆盖hash冲突节点
+     */
+    private static final class CollidingKey {
+        private final int id;
+
+        CollidingKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey && ((CollidingKey) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id % 5000;
+        }
+    }
+}
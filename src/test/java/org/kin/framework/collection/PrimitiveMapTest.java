@@ -0,0 +1,111 @@
+package org.kin.framework.collection;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 与{@link HashMap}对比随机put/remove结果, 校验primitive map实现正确性
+ *
+ * @author huangjianqin
+ * @date 2023/7/19
+ */
+public class PrimitiveMapTest {
+    private static final int OPS = 1_000_000;
+    /** key范围较小, 以产生大量冲突与删除 */
+    private static final int KEY_RANGE = 10_000;
+
+    public static void main(String[] args) {
+        check(new LongLongHashMap(16, false, -1));
+        try (LongLongHashMap offHeapMap = new LongLongHashMap(16, true, -1)) {
+            check(offHeapMap);
+        }
+        try (ConcurrentLongLongMap concurrentMap = new ConcurrentLongLongMap(16, 8, true, -1)) {
+            check(concurrentMap);
+        }
+        checkObjectMap();
+        checkSet();
+    }
+
+    private static void check(LongLongMap map) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < OPS; i++) {
+            long key = random.nextInt(KEY_RANGE) - KEY_RANGE / 2;
+            int op = random.nextInt(4);
+            if (op == 0) {
+                assertEquals(expected.getOrDefault(key, -1L), map.remove(key));
+                expected.remove(key);
+            } else if (op == 1) {
+                assertEquals(expected.merge(key, 1L, Long::sum), map.addTo(key, 1));
+            } else {
+                Long old = expected.put(key, (long) i);
+                assertEquals(old == null ? -1 : old, map.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        int[] count = {0};
+        map.forEach((k, v) -> {
+            assertEquals(expected.get(k), v);
+            count[0]++;
+        });
+        assertEquals(expected.size(), count[0]);
+        System.out.println(map.getClass().getSimpleName() + " ok, size: " + map.size());
+    }
+
+    private static void checkObjectMap() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LongObjectMap<String> longMap = new LongObjectHashMap<>();
+        IntObjectMap<String> intMap = new IntObjectHashMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+        for (int i = 0; i < OPS; i++) {
+            int key = random.nextInt(KEY_RANGE) - KEY_RANGE / 2;
+            if (random.nextInt(3) == 0) {
+                String old = expected.remove(key);
+                assertEquals(old, longMap.remove(key));
+                assertEquals(old, intMap.remove(key));
+            } else {
+                String value = String.valueOf(i);
+                String old = expected.put(key, value);
+                assertEquals(old, longMap.put(key, value));
+                assertEquals(old, intMap.put(key, value));
+            }
+        }
+        assertEquals(expected.size(), longMap.size());
+        assertEquals(expected.size(), intMap.size());
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), longMap.get(entry.getKey()));
+            assertEquals(entry.getValue(), intMap.get(entry.getKey()));
+        }
+        System.out.println("object map ok, size: " + intMap.size());
+    }
+
+    private static void checkSet() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try (LongHashSet set = new LongHashSet(16, true)) {
+            java.util.Set<Long> expected = new java.util.HashSet<>();
+            for (int i = 0; i < OPS; i++) {
+                long value = random.nextInt(KEY_RANGE) - KEY_RANGE / 2;
+                if (random.nextBoolean()) {
+                    assertEquals(expected.add(value), set.add(value));
+                } else {
+                    assertEquals(expected.remove(value), set.remove(value));
+                }
+            }
+            assertEquals(expected.size(), set.size());
+            for (long value : set.toArray()) {
+                assertEquals(true, expected.contains(value));
+            }
+            System.out.println("set ok, size: " + set.size());
+        }
+    }
+
+    private static void assertEquals(Object expected, Object actual) {
+        if (!String.valueOf(expected).equals(String.valueOf(actual))) {
+            throw new IllegalStateException("expected " + expected + ", but " + actual);
+        }
+    }
+}
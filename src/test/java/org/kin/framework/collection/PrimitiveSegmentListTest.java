@@ -0,0 +1,161 @@
+package org.kin.framework.collection;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 与{@link ArrayList}对比随机操作结果, 校验堆内, 堆外以及内存映射存储的基础类型segment list
+ *
+ * @author huangjianqin
+ * @date 2023/7/22
+ */
+public class PrimitiveSegmentListTest {
+    public static void main(String[] args) throws IOException {
+        check(new LongSegmentList(64));
+        check(new LongSegmentList(64, true));
+        File file = File.createTempFile("LongSegmentList", ".dat");
+        file.deleteOnExit();
+        check(new LongSegmentList(64, file));
+
+        File intFile = File.createTempFile("IntSegmentList", ".dat");
+        intFile.deleteOnExit();
+        checkInts(new IntSegmentList(64));
+        checkInts(new IntSegmentList(64, true));
+        checkInts(new IntSegmentList(64, intFile));
+        File doubleFile = File.createTempFile("DoubleSegmentList", ".dat");
+        doubleFile.deleteOnExit();
+        checkDoubles(new DoubleSegmentList(64));
+        checkDoubles(new DoubleSegmentList(64, true));
+        checkDoubles(new DoubleSegmentList(64, doubleFile));
+
+        DoubleSegmentList doubles = new DoubleSegmentList(64, true);
+        IntSegmentList ints = new IntSegmentList(64);
+        for (int i = 0; i < 1000; i++) {
+            doubles.add(i * 0.5);
+            ints.add(i);
+        }
+        double[] sum = {0};
+        doubles.forEachSegment((elements, from, to) -> {
+            for (int i = from; i < to; i++) {
+                sum[0] += elements[i];
+            }
+        });
+        ints.removeFromFirstWhen(i -> i < 500);
+        System.out.println("double sum: " + sum[0] + ", int first: " + ints.peekFirst() + ", int size: " + ints.size());
+    }
+
+    private static void check(LongSegmentList list) {
+        try (LongSegmentList closeable = list) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            List<Long> expected = new ArrayList<>();
+            long next = 0;
+            for (int round = 0; round < 10_000; round++) {
+                int op = random.nextInt(5);
+                if (op == 0) {
+                    long[] batch = new long[random.nextInt(200)];
+                    for (int i = 0; i < batch.length; i++) {
+                        batch[i] = next++;
+                        expected.add(batch[i]);
+                    }
+                    closeable.addAll(batch);
+                } else if (op == 1 && !expected.isEmpty()) {
+                    long bound = expected.get(random.nextInt(expected.size()));
+                    closeable.removeFromFirstWhen(e -> e < bound);
+                    expected.removeIf(e -> e < bound);
+                } else if (op == 2 && !expected.isEmpty()) {
+                    int toIndex = random.nextInt(expected.size() + 1);
+                    closeable.removeFromFirst(toIndex);
+                    expected.subList(0, toIndex).clear();
+                } else if (op == 3 && !expected.isEmpty()) {
+                    long bound = expected.get(random.nextInt(expected.size()));
+                    closeable.removeFromLastWhen(e -> e > bound);
+                    expected.removeIf(e -> e > bound);
+                    next = bound + 1;
+                } else {
+                    closeable.add(next);
+                    expected.add(next++);
+                }
+
+                if (closeable.size() != expected.size()) {
+                    throw new IllegalStateException("size not equal, " + closeable.size() + " != " + expected.size());
+                }
+                if (!expected.isEmpty()) {
+                    int index = random.nextInt(expected.size());
+                    if (closeable.get(index) != expected.get(index) || closeable.peekFirst() != expected.get(0)
+                            || closeable.peekLast() != expected.get(expected.size() - 1)) {
+                        throw new IllegalStateException("element not equal at " + index);
+                    }
+                }
+            }
+            long[] array = closeable.toArray();
+            for (int i = 0; i < array.length; i++) {
+                if (array[i] != expected.get(i)) {
+                    throw new IllegalStateException("toArray not equal at " + i);
+                }
+            }
+            System.out.println(closeable + " ok");
+        }
+    }
+
+    /**
+     * 校验int segment list读写, 批量添加, 移除以及遍历
+     */
+    private static void checkInts(IntSegmentList list) {
+        try (IntSegmentList closeable = list) {
+            int[] batch = new int[150];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = i;
+            }
+            closeable.addAll(batch);
+            closeable.add(150);
+            closeable.removeFromFirstWhen(i -> i < 70);
+            closeable.removeFromLastWhen(i -> i > 140);
+
+            int[] array = closeable.toArray();
+            int[] next = {70};
+            closeable.forEach(i -> {
+                if (i != next[0]++) {
+                    throw new IllegalStateException("forEach not equal, " + i);
+                }
+            });
+            if (array.length != 71 || next[0] != 141 || closeable.get(10) != 80
+                    || closeable.peekFirst() != 70 || closeable.peekLast() != 140 || array[70] != 140) {
+                throw new IllegalStateException("int segment list not equal, " + closeable);
+            }
+            System.out.println(closeable + " ok");
+        }
+    }
+
+    /**
+     * 校验double segment list读写, 批量添加, 移除以及遍历
+     */
+    private static void checkDoubles(DoubleSegmentList list) {
+        try (DoubleSegmentList closeable = list) {
+            double[] batch = new double[150];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = i * 0.5;
+            }
+            closeable.addAll(batch);
+            closeable.add(75);
+            closeable.removeFromFirst(70);
+            closeable.removeFromLastWhen(d -> d > 70);
+
+            double[] array = closeable.toArray();
+            double[] sum = {0};
+            closeable.forEachSegment((elements, from, to) -> {
+                for (int i = from; i < to; i++) {
+                    sum[0] += elements[i];
+                }
+            });
+            //35 + 35.5 + ... + 70
+            if (array.length != 71 || sum[0] != 3727.5 || closeable.get(10) != 40
+                    || closeable.peekFirst() != 35 || closeable.peekLast() != 70 || array[70] != 70) {
+                throw new IllegalStateException("double segment list not equal, " + closeable);
+            }
+            System.out.println(closeable + " ok");
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.kin.framework.collection;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比{@link PriorityQueueType}各实现在不同队列长度下的性能
+ * offerPoll: 稳态下offer一个元素再poll堆顶, 即定时任务调度
+ * removeOffer: 随机移除一个元素再重新offer, 即定时任务取消后重新调度
+ * priorityChanged: 随机修改一个元素优先级
+ *
+ * @author huangjianqin
+ * @date 2023/7/23
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class PriorityQueueBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    private int size;
+    @Param({"BINARY", "DARY", "PAIRING"})
+    private PriorityQueueType type;
+
+    private PriorityQueue<PriorityQueueTest.TestNode> queue;
+    private PriorityQueueTest.TestNode[] nodes;
+    private long nextId;
+
+    @Setup
+    public void setup() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        queue = type.newQueue(PriorityQueueTest.TestNode.COMPARATOR, size);
+        nodes = new PriorityQueueTest.TestNode[size];
+        for (int i = 0; i < size; i++) {
+            PriorityQueueTest.TestNode node = new PriorityQueueTest.TestNode(random.nextInt(1 << 30), nextId++);
+            nodes[i] = node;
+            queue.offer(node);
+        }
+    }
+
+    @Benchmark
+    public PriorityQueueTest.TestNode offerPoll() {
+        PriorityQueueTest.TestNode node = queue.poll();
+        //重新以更晚的优先级入队, 保持队列长度不变
+        node.priority(node.priority() + ThreadLocalRandom.current().nextInt(1 << 16));
+        queue.offer(node);
+        return node;
+    }
+
+    @Benchmark
+    public boolean removeOffer() {
+        PriorityQueueTest.TestNode node = nodes[ThreadLocalRandom.current().nextInt(size)];
+        queue.removeTyped(node);
+        return queue.offer(node);
+    }
+
+    @Benchmark
+    public PriorityQueueTest.TestNode priorityChanged() {
+        PriorityQueueTest.TestNode node = nodes[ThreadLocalRandom.current().nextInt(size)];
+        node.priority(ThreadLocalRandom.current().nextInt(1 << 30));
+        queue.priorityChanged(node);
+        return node;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PriorityQueueBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,128 @@
+package org.kin.framework.collection;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 与{@link java.util.PriorityQueue}对比随机offer/poll/remove/priorityChanged结果, 校验各{@link PriorityQueue}实现正确性
+ *
+ * @author huangjianqin
+ * @date 2023/7/23
+ */
+public class PriorityQueueTest {
+    private static final int OPS = 1_000_000;
+
+    public static void main(String[] args) {
+        for (PriorityQueueType type : PriorityQueueType.values()) {
+            check(type);
+            System.out.println(type + " ok");
+        }
+    }
+
+    private static void check(PriorityQueueType type) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        PriorityQueue<TestNode> queue = type.newQueue(TestNode.COMPARATOR, 4);
+        java.util.PriorityQueue<TestNode> expected = new java.util.PriorityQueue<>(TestNode.COMPARATOR);
+        //在队列中的元素, 用于随机remove和修改优先级
+        List<TestNode> nodes = new ArrayList<>();
+        long id = 0;
+        for (int i = 0; i < OPS; i++) {
+            int op = random.nextInt(10);
+            if (op < 4) {
+                TestNode node = new TestNode(random.nextInt(1000), id++);
+                queue.offer(node);
+                expected.offer(node);
+                nodes.add(node);
+            } else if (op < 6) {
+                TestNode node = queue.poll();
+                assertTrue(node == expected.poll());
+                if (node != null) {
+                    assertTrue(node.index == PriorityQueueNode.INDEX_NOT_IN_QUEUE);
+                    nodes.remove(node);
+                }
+            } else if (op < 8) {
+                if (nodes.isEmpty()) {
+                    continue;
+                }
+                TestNode node = nodes.remove(random.nextInt(nodes.size()));
+                assertTrue(queue.removeTyped(node));
+                assertTrue(expected.remove(node));
+                assertTrue(!queue.containsTyped(node));
+                assertTrue(!queue.removeTyped(node));
+            } else {
+                if (nodes.isEmpty()) {
+                    continue;
+                }
+                TestNode node = nodes.get(random.nextInt(nodes.size()));
+                expected.remove(node);
+                node.priority = random.nextInt(1000);
+                queue.priorityChanged(node);
+                expected.offer(node);
+            }
+            assertTrue(queue.size() == expected.size());
+            assertTrue(queue.peek() == expected.peek());
+        }
+
+        int count = 0;
+        for (TestNode ignored : queue) {
+            count++;
+        }
+        assertTrue(count == expected.size());
+        assertTrue(queue.toArray(new TestNode[0]).length == expected.size());
+
+        while (!expected.isEmpty()) {
+            assertTrue(queue.poll() == expected.poll());
+        }
+        assertTrue(queue.isEmpty());
+
+        for (TestNode node : nodes) {
+            node.index = PriorityQueueNode.INDEX_NOT_IN_QUEUE;
+            queue.offer(node);
+        }
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        for (TestNode node : nodes) {
+            assertTrue(node.index == PriorityQueueNode.INDEX_NOT_IN_QUEUE);
+        }
+    }
+
+    private static void assertTrue(boolean condition) {
+        if (!condition) {
+            throw new IllegalStateException("assert fail");
+        }
+    }
+
+    static final class TestNode implements PriorityQueueNode {
+        /** 先按优先级, 再按id比较, 保证全序, 结果可以与{@link java.util.PriorityQueue}逐个对比 */
+        static final Comparator<TestNode> COMPARATOR = Comparator.<TestNode>comparingInt(n -> n.priority).thenComparingLong(n -> n.id);
+
+        private int priority;
+        private final long id;
+        private int index = INDEX_NOT_IN_QUEUE;
+
+        TestNode(int priority, long id) {
+            this.priority = priority;
+            this.id = id;
+        }
+
+        int priority() {
+            return priority;
+        }
+
+        void priority(int priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public int priorityQueueIndex(PriorityQueue<?> queue) {
+            return index;
+        }
+
+        @Override
+        public void priorityQueueIndex(PriorityQueue<?> queue, int i) {
+            index = i;
+        }
+    }
+}
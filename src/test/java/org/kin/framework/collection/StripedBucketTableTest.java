@@ -0,0 +1,201 @@
+package org.kin.framework.collection;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author huangjianqin
+ * @date 2023/7/17
+ */
+public class StripedBucketTableTest {
+    public static void main(String[] args) throws InterruptedException {
+        IntTable table = new IntTable();
+        int threads = 4;
+        int num = 200_000;
+        AtomicInteger missed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int finalT = t;
+            executor.execute(() -> {
+                for (int i = finalT; i < num; i += threads) {
+                    IntNode node = table.getOrCreate(i);
+                    //扩容期间, 已添加的node必须都能无锁读到
+                    if (table.find(i) != node || (i >= threads && table.find(i - threads) == null)) {
+                        missed.incrementAndGet();
+                    }
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        executor.shutdown();
+        System.out.println("size: " + table.size() + ", capacity: " + table.capacity() + ", missed: " + missed.get());
+
+        //并发移除
+        CountDownLatch latch1 = new CountDownLatch(threads);
+        executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int finalT = t;
+            executor.execute(() -> {
+                for (int i = finalT; i < num; i += threads) {
+                    if (i % 2 == 0) {
+                        table.unlink(table.find(i));
+                    }
+                }
+                latch1.countDown();
+            });
+        }
+        latch1.await();
+        executor.shutdown();
+        AtomicInteger counter = new AtomicInteger();
+        table.forEach(n -> counter.incrementAndGet());
+        System.out.println("size: " + table.size() + ", iterated: " + counter.get() + ", find(1): " + (table.find(1) != null) + ", find(2): " + (table.find(2) != null));
+        System.out.println("cleared: " + table.clear().size() + ", size: " + table.size());
+
+        checkUnlinkDuringResize();
+    }
+
+    /**
+     * 扩容期间并发移除, 不能丢失或者破坏其余node
+     */
+    private static void checkUnlinkDuringResize() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            //hash耗时, 拉长bucket迁移时间窗口
+            IntTable table = new SlowHashIntTable();
+            int num = 50_000;
+            IntNode[] nodes = new IntNode[num];
+            for (int i = 0; i < num; i++) {
+                nodes[i] = table.getOrCreate(i);
+            }
+
+            int threads = 4;
+            ExecutorService executor = Executors.newFixedThreadPool(threads * 2);
+            CountDownLatch latch = new CountDownLatch(threads * 2);
+            for (int t = 0; t < threads; t++) {
+                int finalT = t;
+                //持续添加node, 触发扩容
+                executor.execute(() -> {
+                    for (int i = num + finalT; i < num * 8; i += threads) {
+                        table.getOrCreate(i);
+                    }
+                    latch.countDown();
+                });
+                //同时移除偶数node
+                executor.execute(() -> {
+                    for (int i = finalT * 2; i < num; i += threads * 2) {
+                        //直接使用扩容前获取的node, 不经过find等待bucket迁移完成
+                        if (!table.unlink(nodes[i])) {
+                            throw new IllegalStateException("unlink fail, key=" + i);
+                        }
+                    }
+                    latch.countDown();
+                });
+            }
+            latch.await();
+            executor.shutdown();
+
+            int expectedSize = num * 8 - num / 2;
+            AtomicInteger counter = new AtomicInteger();
+            table.forEach(n -> counter.incrementAndGet());
+            if (table.size() != expectedSize || counter.get() != expectedSize) {
+                throw new IllegalStateException(String.format("expected size %d, but size %d, iterated %d", expectedSize, table.size(), counter.get()));
+            }
+            for (int i = 0; i < num * 8; i++) {
+                boolean removed = i < num && i % 2 == 0;
+                if ((table.find(i) == null) != removed) {
+                    throw new IllegalStateException("unexpected find result, key=" + i);
+                }
+            }
+        }
+        System.out.println("unlink during resize ok");
+    }
+
+    private static class IntTable extends StripedBucketTable<Integer, IntNode> {
+        IntTable() {
+            super(2);
+        }
+
+        @Override
+        protected int hash(Integer key) {
+            return key;
+        }
+
+        @Override
+        protected boolean matches(IntNode node, Integer key) {
+            return node.key.equals(key);
+        }
+
+        @Override
+        protected IntNode newHead() {
+            IntNode head = new IntNode(null);
+            head.bucket = head;
+            return head;
+        }
+
+        @Override
+        protected IntNode newNode(Integer key) {
+            return new IntNode(key);
+        }
+    }
+
+    private static final class SlowHashIntTable extends IntTable {
+        private volatile int sink;
+
+        @Override
+        protected int hash(Integer key) {
+            for (int i = 0; i < 50; i++) {
+                sink += i;
+            }
+            return super.hash(key);
+        }
+    }
+
+    private static final class IntNode implements StripedBucketTable.Node<Integer, IntNode> {
+        private final Integer key;
+        private IntNode prev;
+        private volatile IntNode next;
+        private volatile IntNode bucket;
+
+        IntNode(Integer key) {
+            this.key = key;
+        }
+
+        @Override
+        public Integer key() {
+            return key;
+        }
+
+        @Override
+        public IntNode prev() {
+            return prev;
+        }
+
+        @Override
+        public void setPrev(IntNode prev) {
+            this.prev = prev;
+        }
+
+        @Override
+        public IntNode next() {
+            return next;
+        }
+
+        @Override
+        public void setNext(IntNode next) {
+            this.next = next;
+        }
+
+        @Override
+        public IntNode bucket() {
+            return bucket;
+        }
+
+        @Override
+        public void setBucket(IntNode bucket) {
+            this.bucket = bucket;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.kin.framework.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author huangjianqin
+ * @date 2023/7/14
+ */
+public class BatchThreadLessExecutorTest {
+    public static void main(String[] args) throws InterruptedException {
+        ExecutorService ioExecutor = Executors.newFixedThreadPool(4);
+        BatchThreadLessExecutor executor = new BatchThreadLessExecutor();
+        try {
+            //模拟scatter-gather, 响应在io线程到达, callback在caller线程执行
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                int finalI = i;
+                CompletableFuture<Integer> future = new CompletableFuture<>();
+                futures.add(future);
+                ioExecutor.execute(() -> {
+                    try {
+                        Thread.sleep(ThreadLocalRandom.current().nextInt(100));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    executor.execute(() -> {
+                        System.out.println(Thread.currentThread().getName() + " | callback " + finalI);
+                        future.complete(finalI);
+                    });
+                });
+            }
+
+            CompletableFuture<?> first = executor.waitAny(futures);
+            System.out.println("first done: " + first.join());
+            System.out.println("all done: " + executor.waitAll(futures, 1, TimeUnit.SECONDS));
+
+            //timeout
+            System.out.println("timeout: " + executor.waitAny(Collections.singletonList(new CompletableFuture<>()), 100, TimeUnit.MILLISECONDS));
+
+            //重复超时等待同一future, 仅注册一次完成回调
+            CompletableFuture<Integer> slow = new CompletableFuture<>();
+            for (int i = 0; i < 10; i++) {
+                executor.waitAll(Collections.singletonList(slow), 1, TimeUnit.MILLISECONDS);
+                executor.waitAny(Collections.singletonList(slow), 1, TimeUnit.MILLISECONDS);
+            }
+            if (slow.getNumberOfDependents() != 1) {
+                throw new IllegalStateException("expected 1 dependent, but actual " + slow.getNumberOfDependents());
+            }
+            ioExecutor.execute(() -> executor.execute(() -> slow.complete(-1)));
+            System.out.println("slow done: " + executor.waitAny(Collections.singletonList(slow), 1, TimeUnit.SECONDS).join());
+        } finally {
+            executor.finish();
+            ioExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.kin.framework.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author huangjianqin
+ * @date 2023/7/12
+ */
+public class FastThreadLocalReclaimTest {
+    public static void main(String[] args) throws InterruptedException {
+        FastThreadLocalThread thread = new FastThreadLocalThread(() -> {
+            List<FastThreadLocal<Integer>> threadLocals = new ArrayList<>();
+            for (int i = 0; i < 10000; i++) {
+                FastThreadLocal<Integer> threadLocal = new FastThreadLocal<>();
+                threadLocal.set(i);
+                threadLocals.add(threadLocal);
+            }
+            System.out.println("before reclaim, size: " + FastThreadLocal.size() + ", table length: " + InternalThreadLocalMap.get().indexedVariables.length);
+
+            threadLocals.clear();
+            for (int i = 0; i < 5; i++) {
+                System.gc();
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            //触发index回收
+            FastThreadLocal<Integer> threadLocal = new FastThreadLocal<>();
+            System.out.println("reused index: " + threadLocal.index() + ", value: " + threadLocal.get());
+            System.out.println("after reclaim, size: " + FastThreadLocal.size() + ", table length: " + InternalThreadLocalMap.get().indexedVariables.length);
+        });
+        thread.start();
+        thread.join();
+
+        checkReusedIndex();
+        checkIdentity();
+    }
+
+    /**
+     * 其他线程复用已回收的index后, 不能读到前任owner残留的过期value
+     */
+    private static void checkReusedIndex() throws InterruptedException {
+        CountDownLatch valueSet = new CountDownLatch(1);
+        CountDownLatch reused = new CountDownLatch(1);
+        AtomicReference<FastThreadLocal<String>> reusedHolder = new AtomicReference<>();
+        AtomicReference<Object> result = new AtomicReference<>();
+        AtomicInteger staleIndex = new AtomicInteger();
+        FastThreadLocalThread thread = new FastThreadLocalThread(() -> {
+            FastThreadLocal<String> stale = new FastThreadLocal<>();
+            stale.set("stale");
+            staleIndex.set(stale.index());
+            //不再引用, 使其可被gc
+            stale = null;
+            valueSet.countDown();
+            try {
+                reused.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            FastThreadLocal<String> threadLocal = reusedHolder.get();
+            result.set(threadLocal.isSet() + "|" + threadLocal.get());
+        });
+        thread.start();
+        valueSet.await();
+
+        //等待前一个FastThreadLocal被gc, 并复用其index, 期间创建的FastThreadLocal保持可达, 避免更小的index被反复复用
+        List<FastThreadLocal<String>> candidates = new ArrayList<>();
+        FastThreadLocal<String> threadLocal = null;
+        for (int i = 0; i < 50 && threadLocal == null; i++) {
+            System.gc();
+            Thread.sleep(20);
+            FastThreadLocal<String> candidate = new FastThreadLocal<>();
+            candidates.add(candidate);
+            if (candidate.index() == staleIndex.get()) {
+                threadLocal = candidate;
+            }
+        }
+        if (threadLocal == null) {
+            System.out.println("index not reclaimed, skip");
+            thread.interrupt();
+            return;
+        }
+        reusedHolder.set(threadLocal);
+        reused.countDown();
+        thread.join();
+        System.out.println("reused index " + threadLocal.index() + " value: " + result.get());
+        if (!"false|null".equals(result.get())) {
+            throw new IllegalStateException("read stale value: " + result.get());
+        }
+    }
+
+    /**
+     * 即使{@link FastThreadLocal}子类重写equals, {@link FastThreadLocal#removeAll()}仍然能移除所有value
+     */
+    private static void checkIdentity() {
+        AtomicInteger removed = new AtomicInteger();
+        EqualsFastThreadLocal threadLocal1 = new EqualsFastThreadLocal(removed);
+        EqualsFastThreadLocal threadLocal2 = new EqualsFastThreadLocal(removed);
+        threadLocal1.set(1);
+        threadLocal2.set(2);
+        FastThreadLocal.removeAll();
+        System.out.println("removed: " + removed.get());
+        if (removed.get() != 2) {
+            throw new IllegalStateException("removeAll miss value, removed: " + removed.get());
+        }
+    }
+
+    private static final class EqualsFastThreadLocal extends FastThreadLocal<Integer> {
+        private final AtomicInteger removed;
+
+        EqualsFastThreadLocal(AtomicInteger removed) {
+            this.removed = removed;
+        }
+
+        @Override
+        protected void onRemoval(Integer value) {
+            removed.incrementAndGet();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof EqualsFastThreadLocal;
+        }
+
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.kin.framework.concurrent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author huangjianqin
+ * @date 2023/7/15
+ */
+public class KeeperTest {
+    public static void main(String[] args) throws InterruptedException {
+        Queue<Integer> queue = new ConcurrentLinkedQueue<>();
+        AtomicInteger idleCounter = new AtomicInteger();
+        Keeper.KeeperStopper stopper = Keeper.keep(new BackoffKeeperAction() {
+            @Override
+            public boolean tryAction() {
+                Integer item = queue.poll();
+                if (item == null) {
+                    idleCounter.incrementAndGet();
+                    return false;
+                }
+                System.out.println(Thread.currentThread().getName() + " | consume " + item);
+                return true;
+            }
+
+            @Override
+            public void preAction() {
+                System.out.println("virtual thread available: " + Keeper.isVirtualThreadAvailable());
+            }
+
+            @Override
+            public void postAction() {
+                System.out.println("keeper stopped");
+            }
+        }, true);
+
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(500);
+            queue.offer(i);
+            stopper.wakeup();
+        }
+        Thread.sleep(100);
+        //退避后, 空转次数应该很少
+        System.out.println("idle action count: " + idleCounter.get());
+        stopper.stop();
+        Thread.sleep(100);
+
+        checkWakeupDuringAction();
+    }
+
+    /**
+     * action执行期间到达的唤醒, 不应该残留unpark permit导致后续park立即返回
+     */
+    private static void checkWakeupDuringAction() throws InterruptedException {
+        AtomicInteger actionCounter = new AtomicInteger();
+        Keeper.KeeperStopper[] holder = new Keeper.KeeperStopper[1];
+        Keeper.KeeperStopper stopper = Keeper.keep(new BackoffKeeperAction() {
+            @Override
+            public boolean tryAction() {
+                if (actionCounter.incrementAndGet() == 2) {
+                    //第二次action期间唤醒, 第三次action后应该完整park
+                    holder[0].wakeup();
+                }
+                return false;
+            }
+
+            @Override
+            public long minIdleParkNanos() {
+                return TimeUnit.MILLISECONDS.toNanos(300);
+            }
+
+            @Override
+            public long maxIdleParkNanos() {
+                return minIdleParkNanos();
+            }
+
+            @Override
+            public void preAction() {
+            }
+
+            @Override
+            public void postAction() {
+            }
+        });
+        holder[0] = stopper;
+        //等待第一次park结束, 并执行第二, 三次action
+        Thread.sleep(450);
+        int count = actionCounter.get();
+        stopper.stop();
+        System.out.println("action count after wakeup during action: " + count);
+        if (count != 3) {
+            throw new IllegalStateException("stale unpark permit, action count: " + count);
+        }
+    }
+}
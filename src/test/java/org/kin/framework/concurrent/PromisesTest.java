@@ -0,0 +1,104 @@
+package org.kin.framework.concurrent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @author huangjianqin
+ * @date 2023/7/10
+ */
+public class PromisesTest {
+    public static void main(String[] args) throws Exception {
+        MultiThreadEventLoopGroup eventLoopGroup = new MultiThreadEventLoopGroup(1);
+        EventExecutor eventExecutor = eventLoopGroup.next();
+        try {
+            //CompletionStage -> Promise
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            Promise<Integer> promise1 = Promises.toPromise(future, eventExecutor);
+            promise1.addListener(p -> System.out.println(Thread.currentThread().getName() + " | toPromise >>>>>> " + p.get()));
+            ForkJoinPool.commonPool().execute(() -> future.complete(1));
+            System.out.println(promise1.sync().getNow());
+
+            //Promise -> CompletionStage
+            CompletionStagePromise<Integer> promise2 = new CompletionStagePromise<>(eventExecutor, true);
+            CompletableFuture<Integer> stage = promise2.thenApply(i -> i + 1)
+                    .thenApplyAsync(i -> {
+                        System.out.println(Thread.currentThread().getName() + " | inline >>>>>> " + i);
+                        return i * 2;
+                    })
+                    .toCompletableFuture();
+            eventExecutor.execute(() -> promise2.success(2));
+            System.out.println(stage.get());
+            System.out.println(Promises.toPromise(promise2) == promise2);
+
+            //failure
+            DefaultPromise<Integer> promise3 = new DefaultPromise<>();
+            CompletableFuture<Integer> future3 = promise3.toCompletableFuture();
+            promise3.failure(new IllegalStateException("test"));
+            System.out.println(future3.isCompletedExceptionally());
+
+            DefaultPromise<Integer> promise4 = new DefaultPromise<>();
+            promise4.cancel(true);
+            System.out.println(promise4.toCompletableFuture().isCancelled());
+
+            checkStages(eventExecutor);
+        } finally {
+            eventLoopGroup.shutdown();
+        }
+    }
+
+    /**
+     * 检查基于listener实现的stage操作
+     */
+    private static void checkStages(EventExecutor eventExecutor) throws Exception {
+        CompletionStagePromise<Integer> p1 = new CompletionStagePromise<>(eventExecutor);
+        CompletionStagePromise<Integer> p2 = new CompletionStagePromise<>(eventExecutor);
+        CompletableFuture<Integer> combine = p1.thenCombine(p2, Integer::sum)
+                .thenCompose(i -> CompletableFuture.supplyAsync(() -> i * 10))
+                .thenApplyAsync(i -> i + 1)
+                .toCompletableFuture();
+        CompletableFuture<Integer> either = p1.applyToEither(p2, i -> i).toCompletableFuture();
+        p2.success(2);
+        System.out.println("either: " + either.get());
+        p1.success(1);
+        System.out.println("combine: " + combine.get());
+        if (combine.get() != 31 || either.get() != 2) {
+            throw new IllegalStateException("unexpected stage result");
+        }
+
+        //异常不被CompletionException包装
+        CompletionStagePromise<Integer> p3 = new CompletionStagePromise<>(eventExecutor);
+        IllegalStateException cause = new IllegalStateException("test");
+        CompletableFuture<Throwable> failure = p3.thenApply(i -> i + 1)
+                .handle((r, t) -> t)
+                .toCompletableFuture();
+        CompletableFuture<Integer> recover = p3.exceptionallyAsync(t -> -1).toCompletableFuture();
+        CompletableFuture<Integer> recoverCompose = p3.exceptionallyCompose(t -> CompletableFuture.completedFuture(-2)).toCompletableFuture();
+        p3.failure(cause);
+        if (failure.get() != cause || recover.get() != -1 || recoverCompose.get() != -2) {
+            throw new IllegalStateException("unexpected failure propagation");
+        }
+        System.out.println("failure: " + failure.get());
+
+        //timeout
+        CompletionStagePromise<Integer> p4 = new CompletionStagePromise<>();
+        try {
+            p4.orTimeout(50, TimeUnit.MILLISECONDS).toCompletableFuture().get();
+            throw new IllegalStateException("expect timeout");
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof TimeoutException)) {
+                throw e;
+            }
+        }
+        CompletionStagePromise<Integer> p5 = new CompletionStagePromise<>(eventExecutor);
+        System.out.println("completeOnTimeout: " + p5.completeOnTimeout(5, 50, TimeUnit.MILLISECONDS).get());
+        CompletionStagePromise<Integer> p6 = new CompletionStagePromise<>(eventExecutor);
+        p6.orTimeout(50, TimeUnit.MILLISECONDS);
+        p6.success(6);
+        Thread.sleep(100);
+        System.out.println("orTimeout after success: " + p6.get());
+    }
+}
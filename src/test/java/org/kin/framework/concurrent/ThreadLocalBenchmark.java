@@ -0,0 +1,139 @@
+package org.kin.framework.concurrent;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.*;
+
+/**
+ * {@link ThreadLocalPerformTest}的jmh版本
+ * 对比jdk {@link ThreadLocal}与{@link FastThreadLocal}在普通线程, {@link FastThreadLocalThread}以及fork join线程上的查询性能
+ * <p>
+ * 每次调用都会提交一个task到对应线程池, 并在该线程上执行{@link #QUERY}次查询, 故结果是单次查询的平均耗时(包含分摊的task提交成本)
+ *
+ * @author huangjianqin
+ * @date 2023/7/13
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThreadLocalBenchmark {
+    /** thread local num */
+    private static final int NUM = 128;
+    /** 每个task的thread local query num */
+    private static final int QUERY = 10_000;
+
+    /** 预先生成的随机查询下标, 避免随机数生成成本影响结果 */
+    private final int[] indexes = new int[QUERY];
+    private ThreadLocal<Integer>[] threadLocals;
+    private FastThreadLocal<Integer>[] fastThreadLocals;
+
+    /** 普通线程 */
+    private ExecutorService threadExecutor;
+    /** {@link FastThreadLocalThread} */
+    private ExecutorService fastThreadExecutor;
+    /** jdk默认fork join线程 */
+    private ForkJoinPool forkJoinPool;
+    /** {@link SimpleForkJoinWorkerThread} */
+    private ForkJoinPool fastForkJoinPool;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < QUERY; i++) {
+            indexes[i] = random.nextInt(NUM);
+        }
+
+        threadLocals = (ThreadLocal<Integer>[]) new ThreadLocal<?>[NUM];
+        fastThreadLocals = (FastThreadLocal<Integer>[]) new FastThreadLocal<?>[NUM];
+        for (int i = 0; i < NUM; i++) {
+            Integer value = i;
+            threadLocals[i] = ThreadLocal.withInitial(() -> value);
+            fastThreadLocals[i] = new FastThreadLocal<Integer>() {
+                @Override
+                protected Integer initialValue() {
+                    return value;
+                }
+            };
+        }
+
+        threadExecutor = Executors.newSingleThreadExecutor();
+        fastThreadExecutor = Executors.newSingleThreadExecutor(new FastThreadLocalThreadFactory("fastThreadLocal"));
+        forkJoinPool = new ForkJoinPool(1);
+        fastForkJoinPool = new ForkJoinPool(1, new SimpleForkJoinWorkerThreadFactory("fastForkJoin"), null, false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        threadExecutor.shutdownNow();
+        fastThreadExecutor.shutdownNow();
+        forkJoinPool.shutdownNow();
+        fastForkJoinPool.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY)
+    public int threadLocal() throws Exception {
+        return threadExecutor.submit(this::queryThreadLocal).get();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY)
+    public int fastThreadLocal() throws Exception {
+        return threadExecutor.submit(this::queryFastThreadLocal).get();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY)
+    public int fastThreadLocalOnFastThreadLocalThread() throws Exception {
+        return fastThreadExecutor.submit(this::queryFastThreadLocal).get();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY)
+    public int threadLocalOnForkJoinWorker() throws Exception {
+        return forkJoinPool.submit(this::queryThreadLocal).get();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY)
+    public int fastThreadLocalOnForkJoinWorker() throws Exception {
+        return forkJoinPool.submit(this::queryFastThreadLocal).get();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY)
+    public int fastThreadLocalOnSimpleForkJoinWorker() throws Exception {
+        return fastForkJoinPool.submit(this::queryFastThreadLocal).get();
+    }
+
+    private int queryThreadLocal() {
+        int sum = 0;
+        for (int index : indexes) {
+            sum += threadLocals[index].get();
+        }
+        return sum;
+    }
+
+    private int queryFastThreadLocal() {
+        int sum = 0;
+        for (int index : indexes) {
+            sum += fastThreadLocals[index].get();
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ThreadLocalBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -30,5 +30,37 @@ public class CounterTest {
         }
         latch.await();
         System.out.println(Reporters.report());
+
+        checkNoLostIncrement(worker, parallelism);
+        worker.shutdown();
+    }
+
+    /**
+     * 与递增并发的重置不会丢失计数
+     */
+    private static void checkNoLostIncrement(ExecutionContext worker, int parallelism) throws InterruptedException {
+        Counter counter = Counters.counter("lost", "counter");
+        int times = 100_000;
+        CountDownLatch latch = new CountDownLatch(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            worker.execute(() -> {
+                for (int j = 0; j < times; j++) {
+                    counter.increment();
+                }
+                latch.countDown();
+            });
+        }
+
+        boolean done = false;
+        long reported = 0;
+        while (!done) {
+            done = latch.getCount() == 0;
+            reported += counter.reset();
+        }
+        reported += counter.reset();
+        if (reported != (long) times * parallelism || counter.total() != reported) {
+            throw new IllegalStateException("lost increments, expected " + (long) times * parallelism + ", but actual " + reported);
+        }
+        System.out.println("reported " + reported);
     }
 }
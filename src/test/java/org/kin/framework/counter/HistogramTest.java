@@ -0,0 +1,96 @@
+package org.kin.framework.counter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 校验{@link Histogram}对数-线性bucket边界以及分位数误差
+ *
+ * @author huangjianqin
+ * @date 2023/7/31
+ */
+public class HistogramTest {
+    public static void main(String[] args) {
+        checkBuckets(Histogram.DEFAULT_PRECISION);
+        checkBuckets(1);
+        checkBuckets(10);
+        checkPercentile();
+        checkTimer();
+        System.out.println("ok");
+    }
+
+    /**
+     * bucket连续覆盖[0, Long.MAX_VALUE], 且数值落在所在bucket的边界内
+     */
+    private static void checkBuckets(int precision) {
+        int bucketNum = Histogram.bucketNum(precision);
+        long expectedLower = 0;
+        for (int i = 0; i < bucketNum; i++) {
+            long lower = Histogram.lowerBound(i, precision);
+            long upper = Histogram.upperBound(i, precision);
+            if (lower != expectedLower || upper < lower) {
+                throw new IllegalStateException(String.format("bucket %d [%d, %d] is not contiguous", i, lower, upper));
+            }
+            if (Histogram.bucketIndex(lower, precision) != i || Histogram.bucketIndex(upper, precision) != i) {
+                throw new IllegalStateException(String.format("bucket %d [%d, %d] index mismatch", i, lower, upper));
+            }
+            expectedLower = upper + 1;
+        }
+        if (Histogram.upperBound(bucketNum - 1, precision) != Long.MAX_VALUE) {
+            throw new IllegalStateException("last bucket does not reach Long.MAX_VALUE");
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            long value = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+            int index = Histogram.bucketIndex(value, precision);
+            if (value < Histogram.lowerBound(index, precision) || value > Histogram.upperBound(index, precision)) {
+                throw new IllegalStateException(value + " out of bucket " + index);
+            }
+        }
+    }
+
+    private static void checkPercentile() {
+        Histogram histogram = Counters.histogram("histogram", "latency");
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i);
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+        System.out.println(snapshot);
+        assertEquals(10_000, snapshot.getCount());
+        assertEquals(50_005_000, snapshot.getSum());
+        assertEquals(1, snapshot.getMin());
+        //默认精度相对误差不超过1/16
+        assertApprox(5_000, snapshot.valueAtPercentile(50));
+        assertApprox(9_900, snapshot.valueAtPercentile(99));
+        assertApprox(10_000, snapshot.getMax());
+
+        //快照后开始新的统计周期
+        histogram.record(7);
+        snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(7, snapshot.valueAtPercentile(100));
+        assertEquals(0, histogram.snapshot().getCount());
+    }
+
+    private static void checkTimer() {
+        Timer timer = Counters.timer("histogram", "timer");
+        timer.record(3, TimeUnit.MILLISECONDS);
+        timer.record(-1, TimeUnit.MILLISECONDS);
+        HistogramSnapshot snapshot = timer.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.getMin());
+        assertApprox(TimeUnit.MILLISECONDS.toNanos(3), snapshot.getMax());
+    }
+
+    private static void assertApprox(long expected, long actual) {
+        if (Math.abs(expected - actual) > expected / 16) {
+            throw new IllegalStateException(String.format("expected about %d, but actual %d", expected, actual));
+        }
+    }
+
+    private static void assertEquals(long expected, long actual) {
+        if (expected != actual) {
+            throw new IllegalStateException(String.format("expected %d, but actual %d", expected, actual));
+        }
+    }
+}
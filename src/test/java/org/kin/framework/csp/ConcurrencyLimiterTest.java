@@ -0,0 +1,97 @@
+package org.kin.framework.csp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟容量固定的服务端, 并发数超过容量后rtt线性增长, 校验各算法的并发限制收敛于容量附近
+ *
+ * @author huangjianqin
+ * @date 2023/7/28
+ */
+public class ConcurrencyLimiterTest {
+    /** 服务端容量 */
+    private static final int CAPACITY = 50;
+    /** 无负载rtt */
+    private static final long BASE_RTT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    public static void main(String[] args) {
+        for (ConcurrencyLimitAlgorithm algorithm : ConcurrencyLimitAlgorithm.values()) {
+            ConcurrencyLimiter limiter = ConcurrencyLimiter.create(ConcurrencyLimitOptions.builder()
+                    .algorithm(algorithm)
+                    .initialLimit(10)
+                    .maxLimit(500)
+                    //aimd在rtt超过1.5倍无负载rtt时缩减
+                    .timeout(15, TimeUnit.MILLISECONDS)
+                    .build());
+            simulate(limiter, 500);
+            //vegas探测时并发限制会短暂降低, 故取最后100轮的最大并发限制
+            int limit = simulate(limiter, 100);
+            System.out.println(limiter);
+            if (limit < CAPACITY / 2 || limit > CAPACITY * 2) {
+                throw new IllegalStateException(algorithm + " limit does not converge, " + limit);
+            }
+            assertEquals(0, limiter.getInFlight());
+        }
+
+        checkDrop();
+        checkAcquire();
+        System.out.println("ok");
+    }
+
+    /**
+     * 每轮占满并发限制, 并以当轮并发数计算rtt后全部归还
+     *
+     * @return 模拟过程中的最大并发限制
+     */
+    private static int simulate(ConcurrencyLimiter limiter, int rounds) {
+        int maxLimit = 0;
+        for (int i = 0; i < rounds; i++) {
+            maxLimit = Math.max(maxLimit, limiter.getLimit());
+            int inFlight = 0;
+            while (limiter.acquire()) {
+                inFlight++;
+            }
+            long rtt = inFlight <= CAPACITY ? BASE_RTT_NANOS : BASE_RTT_NANOS * inFlight / CAPACITY;
+            for (int j = 0; j < inFlight; j++) {
+                limiter.release(rtt);
+            }
+        }
+        return maxLimit;
+    }
+
+    private static void checkDrop() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.create(ConcurrencyLimitOptions.builder()
+                .algorithm(ConcurrencyLimitAlgorithm.AIMD)
+                .initialLimit(100)
+                .windowSize(1)
+                .backoffRatio(0.5)
+                .build());
+        assertEquals(true, limiter.acquire());
+        limiter.releaseDropped(BASE_RTT_NANOS);
+        assertEquals(50, limiter.getLimit());
+
+        //不作为样本
+        assertEquals(true, limiter.acquire());
+        limiter.releaseIgnored();
+        assertEquals(50, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private static void checkAcquire() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.create(ConcurrencyLimitOptions.builder()
+                .algorithm(ConcurrencyLimitAlgorithm.VEGAS)
+                .initialLimit(3)
+                .build());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(true, limiter.acquire());
+        }
+        assertEquals(false, limiter.acquire());
+        assertEquals(3, limiter.getInFlight());
+    }
+
+    private static void assertEquals(Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(String.format("expected %s, but actual %s", expected, actual));
+        }
+    }
+}
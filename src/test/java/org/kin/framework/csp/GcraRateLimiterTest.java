@@ -0,0 +1,113 @@
+package org.kin.framework.csp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于模拟时钟校验{@link GcraRateLimiter}令牌桶和漏桶语义
+ *
+ * @author huangjianqin
+ * @date 2023/7/27
+ */
+public class GcraRateLimiterTest {
+    public static void main(String[] args) {
+        checkTokenBucket();
+        checkLeakyBucket();
+        checkWait();
+        checkRefund();
+        System.out.println("ok");
+    }
+
+    private static void checkTokenBucket() {
+        AtomicLong clock = new AtomicLong(1_000_000_000L);
+        //10/s, 突发20
+        GcraRateLimiter limiter = new GcraRateLimiter(10, TimeUnit.SECONDS, 20, clock::get);
+        assertEquals(20, limiter.availablePermits());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(true, limiter.tryAcquire());
+        }
+        assertEquals(false, limiter.tryAcquire());
+
+        //100ms后补充1个
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(true, limiter.tryAcquire());
+        assertEquals(false, limiter.tryAcquire());
+
+        //长时间空闲, 最多积累20个
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(100));
+        assertEquals(20, limiter.availablePermits());
+        assertEquals(true, limiter.tryAcquire(20));
+        assertEquals(false, limiter.tryAcquire());
+
+        //1s内共放行10个, 不存在窗口边界突发
+        int passed = 0;
+        for (int i = 0; i < 1000; i++) {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+            if (limiter.tryAcquire()) {
+                passed++;
+            }
+        }
+        assertEquals(10, passed);
+    }
+
+    private static void checkLeakyBucket() {
+        AtomicLong clock = new AtomicLong(0);
+        GcraRateLimiter limiter = leakyBucket(100, clock);
+        assertEquals(true, limiter.tryAcquire());
+        //间隔10ms才允许下一个
+        assertEquals(false, limiter.tryAcquire());
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(9));
+        assertEquals(false, limiter.tryAcquire());
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(true, limiter.tryAcquire());
+    }
+
+    private static void checkWait() {
+        //真实时钟, 10/s, 无突发
+        GcraRateLimiter limiter = GcraRateLimiter.leakyBucket(10, TimeUnit.SECONDS);
+        assertEquals(true, limiter.tryAcquire());
+        //下一个permit需等待约100ms
+        assertEquals(false, limiter.tryAcquire(1, 10, TimeUnit.MILLISECONDS));
+        long start = System.nanoTime();
+        assertEquals(true, limiter.tryAcquire(1, 200, TimeUnit.MILLISECONDS));
+        long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (waitMillis < 50 || waitMillis > 150) {
+            throw new IllegalStateException("unexpected wait time " + waitMillis + "ms");
+        }
+    }
+
+    /**
+     * 归还的permit可再次获取, 但最多积累burst个
+     */
+    private static void checkRefund() {
+        AtomicLong clock = new AtomicLong(0);
+        GcraRateLimiter limiter = new GcraRateLimiter(10, TimeUnit.SECONDS, 2, clock::get);
+        assertEquals(true, limiter.tryAcquire());
+        assertEquals(true, limiter.tryAcquire());
+        assertEquals(false, limiter.tryAcquire());
+        limiter.refund(1);
+        assertEquals(true, limiter.tryAcquire());
+        assertEquals(false, limiter.tryAcquire());
+
+        //未消耗permit时归还不生效
+        limiter.refund(2);
+        limiter.refund(2);
+        assertEquals(2, limiter.availablePermits());
+    }
+
+    private static GcraRateLimiter leakyBucket(long permits, AtomicLong clock) {
+        return new GcraRateLimiter(permits, TimeUnit.SECONDS, 1, clock::get);
+    }
+
+    private static void assertEquals(Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(String.format("expected %s, but actual %s", expected, actual));
+        }
+    }
+
+    private static void assertEquals(long expected, long actual) {
+        if (expected != actual) {
+            throw new IllegalStateException(String.format("expected %d, but actual %d", expected, actual));
+        }
+    }
+}
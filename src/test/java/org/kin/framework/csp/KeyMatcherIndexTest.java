@@ -0,0 +1,54 @@
+package org.kin.framework.csp;
+
+import org.kin.framework.utils.StringUtils;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * 随机生成pattern和key, 与{@link StringUtils#match(String, String)}对比, 校验{@link KeyMatcherIndex}匹配结果
+ *
+ * @author huangjianqin
+ * @date 2023/7/25
+ */
+public class KeyMatcherIndexTest {
+    private static final char[] CHARS = {'a', 'b', 'c', '*', ' '};
+
+    public static void main(String[] args) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int round = 0; round < 1000; round++) {
+            List<String> patterns = new ArrayList<>();
+            int patternNum = random.nextInt(1, 20);
+            for (int i = 0; i < patternNum; i++) {
+                patterns.add(randomString(random, 5));
+            }
+            KeyMatcherIndex<String> index = new KeyMatcherIndex<>(patterns, Function.identity(), 16);
+            for (int i = 0; i < 200; i++) {
+                String key = randomString(random, 6).replace('*', 'a');
+                List<String> expected = new ArrayList<>();
+                for (String pattern : patterns) {
+                    if (StringUtils.match(pattern, key)) {
+                        expected.add(pattern);
+                    }
+                }
+                List<String> actual = new ArrayList<>(index.match(key));
+                Collections.sort(expected);
+                Collections.sort(actual);
+                if (!expected.equals(actual)) {
+                    throw new IllegalStateException(String.format("key '%s', patterns %s, expected %s, but actual %s", key, patterns, expected, actual));
+                }
+            }
+        }
+        System.out.println("ok");
+    }
+
+    private static String randomString(ThreadLocalRandom random, int maxLen) {
+        int len = random.nextInt(maxLen + 1);
+        StringBuilder sb = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            sb.append(CHARS[random.nextInt(CHARS.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,85 @@
+package org.kin.framework.csp;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 校验{@link SlidingWindowCounter}滑动计数以及并发rollover时不丢失计数
+ *
+ * @author huangjianqin
+ * @date 2023/7/26
+ */
+public class SlidingWindowCounterTest {
+    public static void main(String[] args) throws InterruptedException {
+        checkRolling();
+        checkConcurrent();
+        System.out.println("ok");
+    }
+
+    /**
+     * 1s窗口, 10个100ms子窗口
+     */
+    private static void checkRolling() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1000, 10);
+        long base = 1_000_000L;
+        //每10ms计数一次, 持续3s
+        for (long t = base; t < base + 3000; t += 10) {
+            counter.pass(t);
+            //滑动窗口为当前子窗口及其之前9个子窗口, 即[t所在子窗口起始时间-900ms, t]
+            long bucketStart = t - t % 100;
+            long expected = Math.min((t - Math.max(base, bucketStart - 900)) / 10 + 1, 100);
+            assertEquals(expected, counter.rollingCount(t));
+        }
+        //上一个完整窗口
+        assertEquals(100, counter.windowStat(base + 1000).count);
+        //超过两个窗口没有计数
+        assertEquals(false, counter.isIdle(base + 3000));
+        assertEquals(true, counter.isIdle(base + 10_000));
+        assertEquals(0, counter.rollingCount(base + 10_000));
+    }
+
+    /**
+     * 多线程并发计数, 期间不断rollover
+     */
+    private static void checkConcurrent() throws InterruptedException {
+        //10s窗口, 10个1s子窗口, 测试时长远小于两个窗口, 所有计数都可统计
+        SlidingWindowCounter counter = new SlidingWindowCounter(10_000, 10);
+        int threadNum = 4;
+        LongAdder total = new LongAdder();
+        CountDownLatch latch = new CountDownLatch(threadNum);
+        long end = System.currentTimeMillis() + 2500;
+        for (int i = 0; i < threadNum; i++) {
+            new Thread(() -> {
+                long now;
+                while ((now = System.currentTimeMillis()) < end) {
+                    counter.pass(now);
+                    total.increment();
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+
+        long now = System.currentTimeMillis();
+        long windowStart = now - now % 10_000;
+        long sum = counter.windowStat(windowStart).count + counter.windowStat(windowStart - 10_000).count;
+        assertEquals(total.sum(), sum);
+        long rolling = counter.rollingCount(now);
+        //rollover后仍在旧子窗口计数的少量调用者不计入滑动计数
+        if (rolling > total.sum() || total.sum() - rolling > threadNum * 3L) {
+            throw new IllegalStateException(String.format("rolling count %d, but total %d", rolling, total.sum()));
+        }
+    }
+
+    private static void assertEquals(Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(String.format("expected %s, but actual %s", expected, actual));
+        }
+    }
+
+    private static void assertEquals(long expected, long actual) {
+        if (expected != actual) {
+            throw new IllegalStateException(String.format("expected %d, but actual %d", expected, actual));
+        }
+    }
+}
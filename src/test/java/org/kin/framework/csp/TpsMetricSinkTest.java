@@ -0,0 +1,98 @@
+package org.kin.framework.csp;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 校验reporter输出到{@link TpsMetricSink}的快照
+ *
+ * @author huangjianqin
+ * @date 2023/7/30
+ */
+public class TpsMetricSinkTest {
+    public static void main(String[] args) throws InterruptedException {
+        TpsRuleManager tpsRuleManager = TpsRuleManager.instance();
+        List<String> rows = new CopyOnWriteArrayList<>();
+        List<String> windows = new CopyOnWriteArrayList<>();
+        //快照仅在调用期间有效, 需复制
+        TpsMetricSink sink = snapshot -> {
+            for (int i = 0; i < snapshot.size(); i++) {
+                rows.add(snapshot.getGroup(i) + "|" + snapshot.getKey(i) + "|" + snapshot.getProtoKey(i) + "|" +
+                        snapshot.getCount(i) + "|" + snapshot.getInterceptedCount(i));
+                windows.add(snapshot.getGroup(i) + "|" + snapshot.getKey(i) + "|" + snapshot.getProtoKey(i) + "|" +
+                        snapshot.getUnit(i) + "|" + snapshot.getWindowStart(i));
+            }
+        };
+        tpsRuleManager.addMetricSink(sink);
+        try {
+            tpsRuleManager.createTpsRule(TpsRuleGroupOptions.builder()
+                    .group("sink")
+                    .childRuleMap("user*", TpsRuleOptions.builder().maxTps(2).model(TpsModel.PROTO).monitorType(TpsMonitorType.INTERCEPT).build())
+                    .build());
+            for (int i = 0; i < 3; i++) {
+                tpsRuleManager.entry("sink", "user1");
+            }
+            tpsRuleManager.entry("sink", "user2");
+
+            //等待窗口结束并被reporter收集
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (rows.size() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            System.out.println(rows);
+            assertContains(rows, "sink|null|null|3|1");
+            assertContains(rows, "sink|user*|user1|2|1");
+            assertContains(rows, "sink|user*|user2|1|0");
+
+            //多次上报后, 同一窗口仅上报一次
+            Thread.sleep(3_000);
+            Set<String> uniqueWindows = new HashSet<>(windows);
+            if (uniqueWindows.size() != windows.size()) {
+                throw new IllegalStateException("window is reported repeatedly, " + windows);
+            }
+            checkMicrometerExpire();
+            System.out.println("ok");
+        } finally {
+            tpsRuleManager.removeMetricSink(sink);
+            tpsRuleManager.close();
+        }
+    }
+
+    /**
+     * 长时间没有计数的meter会从registry移除
+     */
+    private static void checkMicrometerExpire() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerTpsMetricSink sink = new MicrometerTpsMetricSink(registry, true);
+        TpsSnapshot snapshot = new TpsSnapshot();
+        long now = System.currentTimeMillis();
+        snapshot.reset(now);
+        for (int i = 0; i < 10; i++) {
+            snapshot.add("sink", "user*", "user" + i, TimeUnit.SECONDS, now - 1000, new SlidingWindowCounter.WindowStat(1, 0));
+        }
+        sink.report(snapshot);
+        //每个key 3个meter
+        if (registry.getMeters().size() != 30) {
+            throw new IllegalStateException("expected 30 meters, but actual " + registry.getMeters().size());
+        }
+
+        now += TimeUnit.MINUTES.toMillis(2);
+        snapshot.reset(now);
+        snapshot.add("sink", "user*", "user0", TimeUnit.SECONDS, now - 1000, new SlidingWindowCounter.WindowStat(1, 0));
+        sink.report(snapshot);
+        if (registry.getMeters().size() != 3) {
+            throw new IllegalStateException("expected 3 meters, but actual " + registry.getMeters().size());
+        }
+    }
+
+    private static void assertContains(List<String> rows, String row) {
+        if (!rows.contains(row)) {
+            throw new IllegalStateException(String.format("expected row '%s', but actual %s", row, rows));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.kin.framework.csp;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+/**
+ * 校验{@link TpsRuleHandle}限流语义, 配置变化后重新解析, 以及稳定状态下不分配对象
+ *
+ * @author huangjianqin
+ * @date 2023/7/29
+ */
+public class TpsRuleHandleTest {
+    public static void main(String[] args) {
+        TpsRuleManager tpsRuleManager = TpsRuleManager.instance();
+        try {
+            checkIntercept(tpsRuleManager);
+            checkAllocation(tpsRuleManager);
+            checkKeyIdBound(tpsRuleManager);
+            checkGroupModel(tpsRuleManager);
+            checkGroupInterceptRefund(tpsRuleManager, "refundHandle", true);
+            checkGroupInterceptRefund(tpsRuleManager, "refundEntry", false);
+            System.out.println("ok");
+        } finally {
+            tpsRuleManager.close();
+        }
+    }
+
+    private static void checkIntercept(TpsRuleManager tpsRuleManager) {
+        tpsRuleManager.createTpsRule(TpsRuleGroupOptions.builder()
+                .group("handle")
+                .childRuleMap("user*", TpsRuleOptions.builder().maxTps(3).model(TpsModel.PROTO).monitorType(TpsMonitorType.INTERCEPT).build())
+                .build());
+
+        //精准模式, 每个key独立计数
+        TpsRuleHandle user1 = tpsRuleManager.handle("handle", "user1");
+        TpsRuleHandle user2 = tpsRuleManager.handle("handle", "user2");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(true, user1.tryEntry());
+        }
+        assertEquals(false, user1.tryEntry());
+        assertEquals(true, user2.tryEntry());
+        //与字符串入口共享计数器
+        assertEquals(false, tpsRuleManager.entry("handle", "user1"));
+
+        //未注册的group不限制
+        assertEquals(true, tpsRuleManager.handle("unknown", "user1").tryEntry());
+
+        //配置变化后重新解析
+        tpsRuleManager.ruleMap.get("handle").applyOptions(TpsRuleGroupOptions.builder()
+                .group("handle")
+                .childRuleMap("user*", TpsRuleOptions.builder().maxTps(100).model(TpsModel.PROTO).monitorType(TpsMonitorType.INTERCEPT).build())
+                .build());
+        assertEquals(true, user1.tryEntry());
+    }
+
+    private static void checkAllocation(TpsRuleManager tpsRuleManager) {
+        tpsRuleManager.createTpsRule(TpsRuleGroupOptions.builder()
+                .group("allocation")
+                .groupRule(TpsRuleOptions.builder().maxTps(Long.MAX_VALUE).build())
+                .childRuleMap("order*", TpsRuleOptions.builder().maxTps(Long.MAX_VALUE).model(TpsModel.PROTO).build())
+                .childRuleMap("order1", TpsRuleOptions.builder().maxTps(Long.MAX_VALUE).build())
+                .build());
+        TpsRuleHandle handle = tpsRuleManager.handle("allocation", "order1", "order2");
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        //预热, 解析handle并创建bucket
+        for (int i = 0; i < 100_000; i++) {
+            handle.tryEntry();
+        }
+
+        int times = 100_000;
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < times; i++) {
+            handle.tryEntry();
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        System.out.printf("allocated %d bytes for %d entries%n", allocated, times);
+        //仅bucket轮转时分配, 远小于每次调用一个对象
+        if (allocated > times) {
+            throw new IllegalStateException("entry hot path allocates " + allocated + " bytes");
+        }
+    }
+
+    /**
+     * 超过key id上限的key仍然正确限流, 回退到以key hash查找计数器
+     */
+    private static void checkKeyIdBound(TpsRuleManager tpsRuleManager) {
+        tpsRuleManager.createTpsRule(TpsRuleGroupOptions.builder()
+                .group("bound")
+                .childRuleMap("user*", TpsRuleOptions.builder().maxTps(1).model(TpsModel.PROTO).monitorType(TpsMonitorType.INTERCEPT).build())
+                .build());
+        TpsRule rule = tpsRuleManager.ruleMap.get("bound");
+        int keyNum = TpsRule.MAX_KEY_ID_NUM + 10;
+        for (int i = 0; i < keyNum; i++) {
+            TpsRuleHandle handle = tpsRuleManager.handle("bound", "user" + i);
+            assertEquals(true, handle.tryEntry());
+            assertEquals(false, handle.tryEntry());
+        }
+        //同一key复用key id, 超过上限则不分配
+        assertEquals(0, rule.keyId("user0"));
+        assertEquals(TpsRule.NO_KEY_ID, rule.keyId("user" + (keyNum - 1)));
+        assertEquals(keyNum, rule.getChildMonitorMap().get("user*").getCounterMap().size());
+    }
+
+    /**
+     * group rule的模式, burst等配置同样生效, 变化时重新创建group monitor
+     */
+    private static void checkGroupModel(TpsRuleManager tpsRuleManager) {
+        tpsRuleManager.createTpsRule(TpsRuleGroupOptions.builder()
+                .group("groupModel")
+                .groupRule(TpsRuleOptions.builder().maxTps(1).burst(2).model(TpsModel.TOKEN_BUCKET).monitorType(TpsMonitorType.INTERCEPT).build())
+                .build());
+        TpsRule rule = tpsRuleManager.ruleMap.get("groupModel");
+        assertEquals(TpsModel.TOKEN_BUCKET, rule.getTpsMonitor().getModel());
+        assertEquals(2L, rule.getTpsMonitor().getBurst());
+        TpsRuleHandle handle = tpsRuleManager.handle("groupModel", "any");
+        //允许瞬间通过burst个请求
+        assertEquals(true, handle.tryEntry());
+        assertEquals(true, handle.tryEntry());
+        assertEquals(false, handle.tryEntry());
+
+        rule.applyOptions(TpsRuleGroupOptions.builder()
+                .group("groupModel")
+                .groupRule(TpsRuleOptions.builder().maxTps(1).model(TpsModel.LEAKY_BUCKET).monitorType(TpsMonitorType.INTERCEPT).build())
+                .build());
+        assertEquals(TpsModel.LEAKY_BUCKET, rule.getTpsMonitor().getModel());
+        //leaky bucket不允许突发
+        assertEquals(true, handle.tryEntry());
+        assertEquals(false, handle.tryEntry());
+    }
+
+    /**
+     * group monitor拦截请求后, 归还child monitor已消耗的permit, 被拦截的请求不会消耗child burst
+     *
+     * @param useHandle true则通过{@link TpsRuleHandle}校验, 否则通过字符串入口校验
+     */
+    private static void checkGroupInterceptRefund(TpsRuleManager tpsRuleManager, String group, boolean useHandle) {
+        TpsRuleOptions childOptions = TpsRuleOptions.builder().maxTps(1).burst(2).model(TpsModel.TOKEN_BUCKET).monitorType(TpsMonitorType.INTERCEPT).build();
+        tpsRuleManager.createTpsRule(TpsRuleGroupOptions.builder()
+                .group(group)
+                .groupRule(TpsRuleOptions.builder().maxTps(1).model(TpsModel.LEAKY_BUCKET).monitorType(TpsMonitorType.INTERCEPT).build())
+                .childRuleMap("user*", childOptions)
+                .build());
+        TpsRuleHandle handle = tpsRuleManager.handle(group, "user1");
+        Supplier<Boolean> entry = () -> useHandle ? handle.tryEntry() : tpsRuleManager.entry(group, "user1");
+        assertEquals(true, entry.get());
+        //被group拦截
+        for (int i = 0; i < 10; i++) {
+            assertEquals(false, entry.get());
+        }
+
+        //放开group限制, child仍剩余1个burst
+        tpsRuleManager.ruleMap.get(group).applyOptions(TpsRuleGroupOptions.builder()
+                .group(group)
+                .childRuleMap("user*", childOptions)
+                .build());
+        assertEquals(true, entry.get());
+        assertEquals(false, entry.get());
+    }
+
+    private static void assertEquals(Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(String.format("expected %s, but actual %s", expected, actual));
+        }
+    }
+}
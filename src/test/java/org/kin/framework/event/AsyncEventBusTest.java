@@ -0,0 +1,243 @@
+package org.kin.framework.event;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 校验{@link DefaultEventBus}异步投递的顺序, 隔离, 背压以及shutdown
+ *
+ * @author huangjianqin
+ * @date 2023/8/2
+ */
+public class AsyncEventBusTest {
+    public static void main(String[] args) throws Exception {
+        checkPerEventTypeOrder();
+        checkPerHandlerIsolation();
+        checkDrop();
+        checkBlock();
+        checkCallerRuns();
+        checkScheduleRejected();
+        checkInFlightOffer();
+        System.out.println("ok");
+    }
+
+    private static void checkPerEventTypeOrder() throws InterruptedException {
+        DefaultEventBus eventBus = DefaultEventBus.createAsync(4, AsyncEventOptions.builder()
+                .mode(EventDeliveryMode.PER_EVENT_TYPE)
+                .batchSize(16)
+                .build());
+        SeqEventHandler handler = new SeqEventHandler(0);
+        eventBus.register(handler);
+        int num = 10_000;
+        for (int i = 0; i < num; i++) {
+            eventBus.post(new SeqEvent(i));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (handler.seqs.size() < num && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        eventBus.shutdown();
+
+        assertEquals(num, handler.seqs.size());
+        for (int i = 0; i < num; i++) {
+            assertEquals(i, handler.seqs.get(i));
+        }
+        if (handler.threads.contains(Thread.currentThread().getName())) {
+            throw new IllegalStateException("event is handled by post thread");
+        }
+
+        //shutdown时在当前线程处理完剩余事件
+        eventBus = DefaultEventBus.createAsync(1, AsyncEventOptions.builder().build());
+        handler = new SeqEventHandler(1);
+        eventBus.register(handler);
+        for (int i = 0; i < 100; i++) {
+            eventBus.post(new SeqEvent(i));
+        }
+        eventBus.shutdown();
+        assertEquals(100, handler.seqs.size());
+    }
+
+    private static void checkPerHandlerIsolation() throws InterruptedException {
+        DefaultEventBus eventBus = DefaultEventBus.createAsync(2, AsyncEventOptions.builder()
+                .mode(EventDeliveryMode.PER_HANDLER)
+                .build());
+        SeqEventHandler slow = new SeqEventHandler(200);
+        SeqEventHandler fast = new SeqEventHandler(0);
+        eventBus.register(slow);
+        eventBus.register(fast);
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            eventBus.post(new SeqEvent(i));
+        }
+        //投递线程不执行event handler, 立即返回
+        if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) > 100) {
+            throw new IllegalStateException("post blocks caller");
+        }
+        //慢event handler不阻塞其余event handler
+        if (!fast.latch.await(1, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("fast handler is blocked by slow handler");
+        }
+        eventBus.shutdown();
+        assertEquals(5, slow.seqs.size());
+    }
+
+    private static void checkDrop() throws InterruptedException {
+        DefaultEventBus eventBus = DefaultEventBus.createAsync(1, AsyncEventOptions.builder()
+                .queueCapacity(2)
+                .backpressure(BackpressureStrategy.DROP)
+                .build());
+        SeqEventHandler handler = new SeqEventHandler(100);
+        eventBus.register(handler);
+        for (int i = 0; i < 10; i++) {
+            eventBus.post(new SeqEvent(i));
+        }
+        eventBus.shutdown();
+        assertEquals(8L, eventBus.getDroppedEventCount());
+        assertEquals(2, handler.seqs.size());
+    }
+
+    private static void checkBlock() throws InterruptedException {
+        DefaultEventBus eventBus = DefaultEventBus.createAsync(1, AsyncEventOptions.builder()
+                .queueCapacity(2)
+                .backpressure(BackpressureStrategy.BLOCK)
+                .build());
+        SeqEventHandler handler = new SeqEventHandler(20);
+        eventBus.register(handler);
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long startCpuTime = threadMXBean.getCurrentThreadCpuTime();
+        long startTime = System.nanoTime();
+        int num = 20;
+        for (int i = 0; i < num; i++) {
+            eventBus.post(new SeqEvent(i));
+        }
+        long cpuTime = threadMXBean.getCurrentThreadCpuTime() - startCpuTime;
+        long elapsed = System.nanoTime() - startTime;
+        //队列已满时阻塞等待worker唤醒, 而不是自旋
+        if (cpuTime > elapsed / 4) {
+            throw new IllegalStateException(String.format("blocked producer burns cpu, cpu time %dms, elapsed %dms",
+                    TimeUnit.NANOSECONDS.toMillis(cpuTime), TimeUnit.NANOSECONDS.toMillis(elapsed)));
+        }
+        eventBus.shutdown();
+
+        assertEquals(0L, eventBus.getDroppedEventCount());
+        assertEquals(num, handler.seqs.size());
+        for (int i = 0; i < num; i++) {
+            assertEquals(i, handler.seqs.get(i));
+        }
+    }
+
+    private static void checkCallerRuns() throws InterruptedException {
+        DefaultEventBus eventBus = DefaultEventBus.createAsync(1, AsyncEventOptions.builder()
+                .queueCapacity(2)
+                .backpressure(BackpressureStrategy.CALLER_RUNS)
+                .build());
+        SeqEventHandler handler = new SeqEventHandler(20);
+        eventBus.register(handler);
+        int num = 10;
+        for (int i = 0; i < num; i++) {
+            eventBus.post(new SeqEvent(i));
+        }
+        eventBus.shutdown();
+
+        assertEquals(0L, eventBus.getDroppedEventCount());
+        assertEquals(num, handler.seqs.size());
+        //队列已满时由投递线程处理
+        if (!handler.threads.contains(Thread.currentThread().getName())) {
+            throw new IllegalStateException("event is not handled by post thread when mailbox is full");
+        }
+    }
+
+    private static void checkScheduleRejected() throws InterruptedException {
+        AtomicInteger rejects = new AtomicInteger(1);
+        //第一次提交被拒绝, 之后正常执行
+        Executor worker = task -> {
+            if (rejects.getAndDecrement() > 0) {
+                throw new RejectedExecutionException();
+            }
+            new Thread(task).start();
+        };
+        List<Object> events = new CopyOnWriteArrayList<>();
+        EventMailbox mailbox = new EventMailbox(events::add, worker, AsyncEventOptions.builder().build());
+        mailbox.offer(1);
+        //提交被拒绝后, 下一次投递重新提交
+        mailbox.offer(2);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (events.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, events.size());
+        assertEquals(0, mailbox.getPending());
+    }
+
+    /**
+     * 投递者已增加pending但还未入队时, worker不会反复重新提交, 由投递者入队后提交
+     */
+    private static void checkInFlightOffer() throws Exception {
+        AtomicInteger submits = new AtomicInteger();
+        List<Object> events = new CopyOnWriteArrayList<>();
+        EventMailbox mailbox = new EventMailbox(events::add, task -> submits.incrementAndGet(), AsyncEventOptions.builder().build());
+        mailbox.offer(1);
+        assertEquals(1, submits.get());
+        //模拟另一投递者已增加pending, 但还未入队
+        Field pendingField = EventMailbox.class.getDeclaredField("pending");
+        pendingField.setAccessible(true);
+        ((AtomicInteger) pendingField.get(mailbox)).incrementAndGet();
+
+        mailbox.run();
+        assertEquals(1, events.size());
+        assertEquals(1, mailbox.getPending());
+        //队列已空, 不会重新提交
+        assertEquals(1, submits.get());
+    }
+
+    private static void assertEquals(Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(String.format("expected %s, but actual %s", expected, actual));
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------------------------
+    private static class SeqEvent {
+        private final int seq;
+
+        SeqEvent(int seq) {
+            this.seq = seq;
+        }
+    }
+
+    private static class SeqEventHandler implements EventHandler<SeqEvent> {
+        /** 处理耗时 */
+        private final long sleepMillis;
+        private final List<Integer> seqs = new CopyOnWriteArrayList<>();
+        private final List<String> threads = new CopyOnWriteArrayList<>();
+        private final CountDownLatch latch = new CountDownLatch(5);
+
+        SeqEventHandler(long sleepMillis) {
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public void handle(EventBus eventBus, SeqEvent event) {
+            if (sleepMillis > 0) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            seqs.add(event.seq);
+            threads.add(Thread.currentThread().getName());
+            latch.countDown();
+        }
+    }
+}
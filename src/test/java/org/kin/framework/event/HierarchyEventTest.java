@@ -0,0 +1,88 @@
+package org.kin.framework.event;
+
+import org.kin.framework.common.Ordered;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 校验{@link DefaultEventBus}多态分派, 以及注册后缓存失效
+ *
+ * @author huangjianqin
+ * @date 2023/8/1
+ */
+@EventListener
+public class HierarchyEventTest {
+    private final List<String> handled = new CopyOnWriteArrayList<>();
+
+    public static void main(String[] args) {
+        DefaultEventBus eventBus = DefaultEventBus.create(1);
+        try {
+            HierarchyEventTest listener = new HierarchyEventTest();
+            eventBus.register(listener);
+
+            eventBus.post(new ChildEvent());
+            assertEquals("[marker, child, base]", listener.handled.toString());
+
+            listener.handled.clear();
+            eventBus.post(new BaseEvent());
+            assertEquals("[base]", listener.handled.toString());
+
+            //注册后, 已缓存的事件类重新解析
+            eventBus.register(new ObjectEventHandler(listener.handled));
+            listener.handled.clear();
+            eventBus.post(new ChildEvent());
+            assertEquals("[marker, child, base, object]", listener.handled.toString());
+            System.out.println("ok");
+        } finally {
+            eventBus.shutdown();
+        }
+    }
+
+    @EventFunction
+    public void handleBaseEvent(BaseEvent event) {
+        handled.add("base");
+    }
+
+    @EventFunction
+    public void handleChildEvent(ChildEvent event) {
+        handled.add("child");
+    }
+
+    @EventFunction(order = Ordered.HIGHEST_PRECEDENCE)
+    public void handleMarkerEvent(MarkerEvent event) {
+        handled.add("marker");
+    }
+
+    private static void assertEquals(Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(String.format("expected %s, but actual %s", expected, actual));
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------------------------
+    public interface MarkerEvent {
+    }
+
+    public static class BaseEvent {
+    }
+
+    public static class ChildEvent extends BaseEvent implements MarkerEvent {
+    }
+
+    /**
+     * 处理所有事件
+     */
+    private static class ObjectEventHandler implements EventHandler<Object> {
+        private final List<String> handled;
+
+        ObjectEventHandler(List<String> handled) {
+            this.handled = handled;
+        }
+
+        @Override
+        public void handle(EventBus eventBus, Object event) {
+            handled.add("object");
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.kin.framework.event;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 校验{@link MergedEventHandler}并发合并不丢事件, debounce截止时间以及按key合并
+ *
+ * @author huangjianqin
+ * @date 2023/8/3
+ */
+public class MergedEventHandlerTest {
+    public static void main(String[] args) throws Exception {
+        checkWindowConcurrent();
+        checkDebounce();
+        checkLatestByKey();
+        checkWindowAfterClose();
+        System.out.println("ok");
+    }
+
+    private static void checkWindowConcurrent() throws InterruptedException {
+        DefaultEventBus eventBus = DefaultEventBus.create(2, 1);
+        WindowListener listener = new WindowListener();
+        eventBus.register(listener);
+
+        int threadNum = 4;
+        int num = 50_000;
+        CountDownLatch latch = new CountDownLatch(threadNum);
+        for (int i = 0; i < threadNum; i++) {
+            int base = i * num;
+            new Thread(() -> {
+                for (int j = 0; j < num; j++) {
+                    eventBus.post(new SeqEvent(base + j));
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        eventBus.shutdown();
+
+        //每个事件恰好分发一次
+        assertEquals(threadNum * num, listener.count.get());
+        assertEquals(threadNum * num, listener.seqs.size());
+        System.out.println("window batches: " + listener.batches.get());
+    }
+
+    private static void checkDebounce() throws InterruptedException {
+        DefaultEventBus eventBus = DefaultEventBus.create(2, 1);
+        DebounceListener listener = new DebounceListener();
+        eventBus.register(listener);
+
+        //事件间隔小于窗口时间, 截止时间不断延后, 不会分发
+        for (int i = 0; i < 10; i++) {
+            eventBus.post(new SeqEvent(i));
+            Thread.sleep(50);
+        }
+        if (!listener.batches.isEmpty()) {
+            throw new IllegalStateException("debounce triggered before quiet period");
+        }
+        Thread.sleep(400);
+        assertEquals(1, listener.batches.size());
+        assertEquals(10, listener.batches.get(0));
+
+        //达到最大窗口大小立即分发
+        for (int i = 0; i < 250; i++) {
+            eventBus.post(new SeqEvent(i));
+        }
+        assertEquals(3, listener.batches.size());
+        assertEquals(100, listener.batches.get(1));
+        assertEquals(100, listener.batches.get(2));
+        eventBus.shutdown();
+        assertEquals(4, listener.batches.size());
+        assertEquals(50, listener.batches.get(3));
+    }
+
+    private static void checkLatestByKey() throws InterruptedException {
+        DefaultEventBus eventBus = DefaultEventBus.create(2, 1);
+        KeyedListener listener = new KeyedListener();
+        eventBus.register(listener);
+
+        for (int i = 0; i < 1000; i++) {
+            eventBus.post(new KeyedSeqEvent(i % 10, i));
+        }
+        eventBus.shutdown();
+
+        //同一窗口内相同key仅保留最新事件
+        assertEquals(1, listener.batches.size());
+        List<KeyedSeqEvent> events = listener.batches.get(0);
+        assertEquals(10, events.size());
+        for (KeyedSeqEvent event : events) {
+            assertEquals(990 + event.key, event.seq);
+        }
+    }
+
+    /**
+     * 关闭后不再启动窗口定时任务, 不会向已关闭的delegate分发事件
+     */
+    private static void checkWindowAfterClose() throws Exception {
+        DefaultEventBus eventBus = DefaultEventBus.create(2, 1);
+        try {
+            EventMerge eventMerge = WindowListener.class.getMethod("handle", List.class).getAnnotation(EventMerge.class);
+            List<Collection<SeqEvent>> batches = new CopyOnWriteArrayList<>();
+            MergedEventHandler<SeqEvent> handler = new MergedEventHandler<>((bus, events) -> batches.add(events), eventMerge, eventBus);
+            handler.close();
+
+            handler.handle(eventBus, new SeqEvent(1));
+            //等待多个窗口时间
+            Thread.sleep(eventMerge.unit().toMillis(eventMerge.window()) * 10);
+            assertEquals(0, batches.size());
+        } finally {
+            eventBus.shutdown();
+        }
+    }
+
+    private static void assertEquals(long expected, long actual) {
+        if (expected != actual) {
+            throw new IllegalStateException(String.format("expected %d, but actual %d", expected, actual));
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------
+
+    public static class SeqEvent {
+        private final int seq;
+
+        public SeqEvent(int seq) {
+            this.seq = seq;
+        }
+    }
+
+    public static class KeyedSeqEvent implements KeyedEvent {
+        private final int key;
+        private final int seq;
+
+        public KeyedSeqEvent(int key, int seq) {
+            this.key = key;
+            this.seq = seq;
+        }
+
+        @Override
+        public Object mergeKey() {
+            return key;
+        }
+    }
+
+    @EventListener
+    public static class WindowListener {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final Set<Integer> seqs = ConcurrentHashMap.newKeySet();
+
+        @EventMerge(window = 10)
+        @EventFunction
+        public void handle(List<SeqEvent> events) {
+            batches.incrementAndGet();
+            count.addAndGet(events.size());
+            for (SeqEvent event : events) {
+                seqs.add(event.seq);
+            }
+        }
+    }
+
+    @EventListener
+    public static class DebounceListener {
+        private final List<Integer> batches = new CopyOnWriteArrayList<>();
+
+        @EventMerge(type = MergeType.DEBOUNCE, window = 200, maxSize = 100)
+        @EventFunction
+        public void handle(List<SeqEvent> events) {
+            batches.add(events.size());
+        }
+    }
+
+    @EventListener
+    public static class KeyedListener {
+        private final List<List<KeyedSeqEvent>> batches = new CopyOnWriteArrayList<>();
+
+        @EventMerge(window = 1, unit = TimeUnit.HOURS, latestByKey = true)
+        @EventFunction
+        public void handle(List<KeyedSeqEvent> events) {
+            batches.add(events);
+        }
+    }
+}